@@ -5,14 +5,12 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.concurrent.Executor;
-
 @Configuration
 @EnableAsync
 public class AsyncConfig {
 
     @Bean(name = "emailTaskExecutor")
-    public Executor emailTaskExecutor() {
+    public ThreadPoolTaskExecutor emailTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
@@ -21,4 +19,26 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    @Bean(name = "payoutTaskExecutor")
+    public ThreadPoolTaskExecutor payoutTaskExecutor(PayoutProperties payoutProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(payoutProperties.getParallelism());
+        executor.setMaxPoolSize(payoutProperties.getParallelism());
+        executor.setThreadNamePrefix("payout-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "passwordHashExecutor")
+    public ThreadPoolTaskExecutor passwordHashExecutor(PasswordHashProperties passwordHashProperties) {
+        // 有界队列，满了直接拒绝，登录高峰不会把请求线程都堵在 BCrypt 上
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(passwordHashProperties.getThreads());
+        executor.setMaxPoolSize(passwordHashProperties.getThreads());
+        executor.setQueueCapacity(passwordHashProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("password-hash-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,26 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.document")
+@Data
+@Validated
+public class DocumentProperties {
+
+    /**
+     * 文档缓存目录，其下 statements 存放已生成的投资人对账单
+     */
+    @NotBlank(message = "文档目录不能为空")
+    private String directory = "./data/documents";
+
+    @NotNull
+    private Duration staleStatementGrace = Duration.ofMinutes(5); // 旧版本对账单在新版本生成后保留的时长，供正在进行的下载读完
+}
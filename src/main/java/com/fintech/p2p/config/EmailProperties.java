@@ -1,12 +1,18 @@
 package com.fintech.p2p.config;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+import java.util.List;
+
 @Component
 @ConfigurationProperties(prefix = "app.email")
 @Data
@@ -25,4 +31,92 @@ public class EmailProperties {
 
     @NotBlank(message = "控制面板URL不能为空")
     private String dashboardUrl = "https://your-p2p-platform.com/dashboard";
-}
\ No newline at end of file
+
+    /**
+     * 发送失败后各重试阶段的延迟，阶段用尽后进入死信
+     */
+    @NotNull
+    private List<Duration> retryDelays = List.of(
+            Duration.ofSeconds(10), Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(30));
+
+    @Min(value = 1, message = "每次领取的重试任务数至少为1")
+    private int retryBatchSize = 100;
+
+    /**
+     * 重试任务被领取后的租约时长，节点在租约内宕机时任务会在租约到期后被重新领取
+     */
+    @NotNull
+    private Duration retryLease = Duration.ofMinutes(2);
+
+    /**
+     * 持久化发送队列配置
+     */
+    @Valid
+    private Spool spool = new Spool();
+
+    @Data
+    public static class Spool {
+        @NotBlank(message = "发送队列目录不能为空")
+        private String directory = "./data/email-spool";
+
+        @Min(value = 1024 * 1024, message = "段文件大小至少为1MB")
+        private int segmentBytes = 64 * 1024 * 1024;
+
+        /**
+         * 组提交窗口，窗口内的追加共用一次落盘
+         */
+        @Min(0)
+        private long groupCommitMillis = 5;
+
+        /**
+         * 同时投递中的最大批次数，每批占用一个SMTP连接，通常与连接池大小一致
+         */
+        @Min(1)
+        private int maxInFlight = 4;
+
+        /**
+         * 每批最多投递的邮件数，同一批邮件复用同一个SMTP连接
+         */
+        @Min(1)
+        private int batchSize = 20;
+
+        /**
+         * 积压超过该字节数时认为邮件通道已饱和
+         */
+        @Min(1)
+        private long maxBacklogBytes = 512L * 1024 * 1024;
+
+        /**
+         * 同一条记录连续读取失败该次数后跳过，原始内容写入死信文件
+         */
+        @Min(1)
+        private int maxReadAttempts = 3;
+    }
+
+    /**
+     * SMTP连接池配置
+     */
+    @Valid
+    private Smtp smtp = new Smtp();
+
+    @Data
+    public static class Smtp {
+        @Min(1)
+        private int poolSize = 4;
+
+        /**
+         * 单个连接发送该数量的邮件后重建连接
+         */
+        @Min(1)
+        private int maxMessagesPerConnection = 100;
+
+        /**
+         * 连接空闲超过该时长后，复用前先发送 NOOP 校验
+         */
+        @Min(0)
+        private long validateAfterIdleMillis = 5000;
+
+        @Min(1)
+        private long borrowTimeoutMillis = 30000;
+    }
+}
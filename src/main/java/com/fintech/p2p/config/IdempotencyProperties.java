@@ -0,0 +1,36 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "app.idempotency")
+@Data
+@Validated
+public class IdempotencyProperties {
+
+    /**
+     * 支持 Idempotency-Key 请求头的 POST 接口
+     */
+    @NotNull
+    private List<String> paths = List.of("/api/repayments/pay", "/api/investments/invest");
+
+    @NotNull
+    private Duration ttl = Duration.ofHours(24); // 幂等键及其响应的保留时长
+
+    @Min(value = 1, message = "内存缓存条目数必须大于0")
+    private int maxEntries = 100_000; // 内存中最多保留的幂等键数，超出后最早的键只保留在数据库中
+
+    @NotNull
+    private Duration lease = Duration.ofMinutes(5); // 处理中的键超过该时长仍未完成，视为首个请求已崩溃，允许重新占用
+
+    @Min(value = 0, message = "等待时间不能为负数")
+    private long inProgressWaitMillis = 10_000; // 同一节点上的重复请求等待首个请求完成的最长时间
+}
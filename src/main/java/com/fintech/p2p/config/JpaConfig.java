@@ -0,0 +1,51 @@
+package com.fintech.p2p.config;
+
+import com.fintech.p2p.id.IdSegmentAllocator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate JDBC 批处理配置
+ * <p>
+ * 实体主键由 {@link IdSegmentAllocator} 按号段分配（不再使用 IDENTITY），插入时无需逐条取回自增主键，
+ * 同一事务内的 INSERT/UPDATE 可按实体排序后合并为批量语句。
+ * MySQL 连接串需加 rewriteBatchedStatements=true，驱动才会把一批语句改写为多值 INSERT。
+ */
+@Configuration
+public class JpaConfig {
+
+    @Value("${app.jpa.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.jpa.id-allocation-size:100}")
+    private int idAllocationSize;
+
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+            properties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, true);
+        };
+    }
+
+    /**
+     * 号段分配器使用独立的两连接池，与业务连接池隔离
+     */
+    @Bean(destroyMethod = "close")
+    public IdSegmentAllocator idSegmentAllocator(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("id-segment");
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setMinimumIdle(1);
+        return new IdSegmentAllocator(dataSource, idAllocationSize);
+    }
+}
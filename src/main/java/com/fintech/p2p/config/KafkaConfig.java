@@ -0,0 +1,98 @@
+package com.fintech.p2p.config;
+
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.event.RepaymentEventCodec;
+import com.fintech.p2p.event.RepaymentEventDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * 还款事件编码格式，默认紧凑二进制，调试时可切换为 json
+     */
+    @Bean
+    public RepaymentEventCodec repaymentEventCodec(@Value("${app.kafka.event-format:binary}") String format) {
+        return new RepaymentEventCodec(RepaymentEventCodec.Format.valueOf(format.toUpperCase()));
+    }
+
+    /**
+     * 发件箱专用生产者：事件在写入发件箱时已由 RepaymentEventCodec 编码，这里直接透传字节；
+     * 中继按批发送，开启 linger/压缩/幂等，减少请求数并避免重试产生重复
+     */
+    @Bean
+    public ProducerFactory<String, byte[]> outboxProducerFactory(
+            KafkaProperties kafkaProperties,
+            ObjectProvider<SslBundles> sslBundles,
+            @Value("${app.outbox.producer.linger-ms:20}") int lingerMs,
+            @Value("${app.outbox.producer.batch-size:262144}") int batchSize,
+            @Value("${app.outbox.producer.compression:lz4}") String compression) {
+        Map<String, Object> props = new HashMap<>(kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable()));
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> outboxKafkaTemplate(ProducerFactory<String, byte[]> outboxProducerFactory) {
+        return new KafkaTemplate<>(outboxProducerFactory);
+    }
+
+    /**
+     * 还款事件消费者，解析失败的消息交给容器的错误处理器跳过，不会反复重试；
+     * 关闭自动提交，由监听器在整批邮件被接收后手动提交位移
+     */
+    @Bean
+    public ConsumerFactory<String, RepaymentEvent> repaymentEventConsumerFactory(
+            KafkaProperties kafkaProperties, ObjectProvider<SslBundles> sslBundles,
+            NotificationProperties notificationProperties) {
+        Map<String, Object> props = new HashMap<>(kafkaProperties.buildConsumerProperties(sslBundles.getIfAvailable()));
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, notificationProperties.getOverdueMaxPollRecords());
+        return new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new RepaymentEventDeserializer()));
+    }
+
+    /**
+     * 批量监听 + 多消费者线程 + 手动提交
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, RepaymentEvent> repaymentEventListenerContainerFactory(
+            ConsumerFactory<String, RepaymentEvent> repaymentEventConsumerFactory,
+            NotificationProperties notificationProperties) {
+        ConcurrentKafkaListenerContainerFactory<String, RepaymentEvent> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(repaymentEventConsumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(notificationProperties.getOverdueConcurrency());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+}
@@ -0,0 +1,39 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "app.login-throttle")
+@Data
+@Validated
+public class LoginThrottleProperties {
+
+    @Min(value = 1, message = "用户名失败次数上限必须大于0")
+    private int maxUserFailures = 5; // 同一用户名在滑动窗口内允许的失败次数，达到后锁定
+
+    @Min(value = 1, message = "IP失败次数上限必须大于0")
+    private int maxIpFailures = 100; // 同一IP在滑动窗口内允许的失败次数，达到后锁定该IP
+
+    @NotNull
+    private Duration window = Duration.ofMinutes(15); // 失败次数的滑动窗口
+
+    @NotNull
+    private Duration lockout = Duration.ofMinutes(15); // 锁定时长
+
+    @Min(value = 1, message = "内存计数器条目数必须大于0")
+    private int maxEntries = 100_000; // 用户名、IP计数器各自最多保留的条目数，超出后淘汰
+
+    private boolean sharedLockouts = false; // 是否把锁定写入数据库，使锁定在所有节点上生效
+
+    @NotNull
+    private List<String> trustedProxies = new ArrayList<>(); // 受信任的反向代理地址，只有来自这些地址的请求才按 X-Forwarded-For 取客户端IP
+}
@@ -0,0 +1,34 @@
+package com.fintech.p2p.config;
+
+import com.fintech.p2p.mail.EmailSpool;
+import com.fintech.p2p.mail.SmtpTransportPool;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class MailConfig {
+
+    @Bean(destroyMethod = "close")
+    public EmailSpool emailSpool(EmailProperties emailProperties) throws IOException {
+        EmailProperties.Spool spool = emailProperties.getSpool();
+        return new EmailSpool(Path.of(spool.getDirectory()), spool.getSegmentBytes(), spool.getGroupCommitMillis());
+    }
+
+    /**
+     * 复用 spring.mail.* 配置的会话和服务器参数建立SMTP长连接池
+     */
+    @Bean(destroyMethod = "close")
+    public SmtpTransportPool smtpTransportPool(JavaMailSender mailSender, EmailProperties emailProperties) {
+        if (!(mailSender instanceof JavaMailSenderImpl mailSenderImpl)) {
+            throw new IllegalStateException("SMTP连接池需要 JavaMailSenderImpl，实际为: " + mailSender.getClass());
+        }
+        EmailProperties.Smtp smtp = emailProperties.getSmtp();
+        return new SmtpTransportPool(mailSenderImpl, smtp.getPoolSize(), smtp.getMaxMessagesPerConnection(),
+                smtp.getValidateAfterIdleMillis(), smtp.getBorrowTimeoutMillis());
+    }
+}
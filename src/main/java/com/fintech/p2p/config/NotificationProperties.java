@@ -0,0 +1,35 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Component
+@ConfigurationProperties(prefix = "app.notification")
+@Data
+@Validated
+public class NotificationProperties {
+
+    @Min(value = 1, message = "消费者并发数必须大于0")
+    private int overdueConcurrency = 3; // 逾期通知消费者线程数（不超过分区数才有意义）
+
+    @Min(value = 1, message = "单批拉取条数必须大于0")
+    private int overdueMaxPollRecords = 500; // 每次poll最多拉取的记录数
+
+    @Min(value = 1, message = "背压暂停时间必须大于0")
+    private long backpressurePauseMs = 1000; // 邮件通道饱和时暂停消费的时间
+
+    @Min(value = 0, message = "合并窗口不能为负数")
+    private long overdueDigestWindowMs = 60000; // 同一借款人的逾期通知在该窗口内合并为一封邮件
+
+    @Min(value = 1, message = "单封合并邮件的条目数必须大于0")
+    private int overdueDigestMaxItems = 50; // 合并条目达到该数量时立即发送，不再等待窗口结束
+
+    @Min(value = 1, message = "合并缓存的事件数上限必须大于0")
+    private int overdueDigestMaxBuffered = 20000; // 缓存中的事件达到该数量时立即发送全部合并邮件，并暂停消费
+
+    @Min(value = 1, message = "合并邮件的最大发送次数必须大于0")
+    private int overdueDigestMaxAttempts = 5; // 合并邮件连续写入发送队列失败该次数后放弃并确认位移
+}
@@ -0,0 +1,31 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.password-hash")
+@Data
+@Validated
+public class PasswordHashProperties {
+
+    @Min(value = 4, message = "BCrypt强度不能小于4")
+    @Max(value = 31, message = "BCrypt强度不能大于31")
+    private int strength = 10; // BCrypt 强度，修改后旧哈希在用户下次登录成功时重新计算
+
+    @Min(value = 1, message = "哈希线程数必须大于0")
+    private int threads = Runtime.getRuntime().availableProcessors(); // 专用于 BCrypt 的线程数
+
+    @Min(value = 0, message = "队列容量不能为负数")
+    private int queueCapacity = 200; // 等待计算的哈希请求上限，超出后直接拒绝
+
+    @NotNull
+    private Duration timeout = Duration.ofSeconds(10); // 请求线程等待哈希结果的最长时间
+}
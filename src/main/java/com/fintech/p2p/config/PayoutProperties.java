@@ -0,0 +1,23 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Component
+@ConfigurationProperties(prefix = "app.payout")
+@Data
+@Validated
+public class PayoutProperties {
+
+    @Min(value = 1, message = "并行度必须大于0")
+    private int parallelism = 4; // 同时处理的贷款批次数
+
+    @Min(value = 1, message = "每批贷款数必须大于0")
+    private int chunkLoans = 200; // 每个事务处理的贷款数，同一贷款的还款总在同一批次中
+
+    @Min(value = 1, message = "刷新行数必须大于0")
+    private int flushRows = 1000; // 每写入多少行回款刷新并清空持久化上下文
+}
@@ -0,0 +1,26 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.refresh-token")
+@Data
+@Validated
+public class RefreshTokenProperties {
+
+    @NotNull
+    private Duration ttl = Duration.ofDays(30); // 刷新令牌有效期
+
+    @NotNull
+    private Duration reuseGrace = Duration.ofSeconds(10); // 轮换后旧令牌的宽限期，期间重复提交不视为盗用
+
+    @Min(value = 1, message = "缓存条目数必须大于0")
+    private int cacheMaxEntries = 10_000; // 宽限期内缓存的轮换结果数
+}
@@ -0,0 +1,42 @@
+package com.fintech.p2p.config;
+
+import com.fintech.p2p.enums.AmortizationMethod;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.repayment")
+@Data
+@Validated
+public class RepaymentProperties {
+
+    @Min(value = 1, message = "还款通道数必须大于0")
+    private int lanes = 8; // 异步还款按贷款ID分到的单写通道数
+
+    @Min(value = 1, message = "通道队列容量必须大于0")
+    private int laneQueueCapacity = 10000; // 每个通道最多排队的还款数，满时拒绝新请求
+
+    @Min(value = 1, message = "单批还款数必须大于0")
+    private int laneBatchSize = 200; // 通道每次最多取出并提交的还款数
+
+    @Min(value = 1, message = "每页大小上限必须大于0")
+    private int maxPageSize = 100; // 还款计划列表每页最多返回的条数
+
+    @Min(value = 1, message = "导出刷新间隔必须大于0")
+    private int exportFlushRows = 1000; // 导出时每写出多少行刷新一次响应流
+
+    @NotNull
+    private AmortizationMethod amortizationMethod = AmortizationMethod.EQUAL_INSTALLMENT; // 贷款审批通过时默认生成的还款方式
+
+    @NotNull
+    private Duration paymentHandleTtl = Duration.ofMinutes(30); // 已完成的还款受理结果保留时长，供客户端轮询
+
+    @NotNull
+    private Duration recoveryDelay = Duration.ofMinutes(1); // 受理后超过该时长仍未入账的还款视为受理节点已丢失，重新排队
+}
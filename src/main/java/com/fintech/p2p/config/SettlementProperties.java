@@ -0,0 +1,27 @@
+package com.fintech.p2p.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Component
+@ConfigurationProperties(prefix = "app.settlement")
+@Data
+@Validated
+public class SettlementProperties {
+
+    /**
+     * 结算文件工作目录，其下 inbox 存放待处理文件，archive 存放已处理文件，reports 存放对账报告
+     */
+    @NotBlank(message = "结算文件目录不能为空")
+    private String directory = "./data/settlement";
+
+    @Min(value = 1, message = "每批处理行数必须大于0")
+    private int chunkSize = 1000; // 每个事务处理的结算行数
+
+    @Min(value = 64 * 1024, message = "映射窗口至少为64KB")
+    private int mapWindowBytes = 64 * 1024 * 1024; // 每次内存映射的文件区间大小
+}
@@ -4,7 +4,12 @@ import com.fintech.p2p.dto.LoginRequest;
 import com.fintech.p2p.dto.RegisterRequest;
 import com.fintech.p2p.dto.UserDto;
 import com.fintech.p2p.model.User;
+import com.fintech.p2p.security.ClientIpResolver;
+import com.fintech.p2p.security.CredentialHasher;
 import com.fintech.p2p.security.JwtTokenUtil;
+import com.fintech.p2p.security.JwtTokenVerifier;
+import com.fintech.p2p.security.LoginThrottle;
+import com.fintech.p2p.service.RefreshTokenService;
 import com.fintech.p2p.service.UserService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -15,7 +20,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,8 +28,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -34,19 +36,23 @@ public class AuthController {
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
     private final UserService userService;
     private final JwtTokenUtil jwtTokenUtil;
-    private final BCryptPasswordEncoder passwordEncoder;
-
-    // 登录尝试计数器 - 在生产环境中应该使用Redis等分布式缓存
-    private final Map<String, AtomicInteger> loginAttempts = new ConcurrentHashMap<>();
-    private final Map<String, LocalDateTime> lockoutTimes = new ConcurrentHashMap<>();
-    private static final int MAX_ATTEMPTS = 5;
-    private static final int LOCKOUT_MINUTES = 15;
+    private final JwtTokenVerifier jwtTokenVerifier;
+    private final CredentialHasher credentialHasher;
+    private final LoginThrottle loginThrottle;
+    private final RefreshTokenService refreshTokenService;
+    private final ClientIpResolver clientIpResolver;
 
     // 构造函数注入，避免 `@Autowired` 可能导致 NPE
-    public AuthController(UserService userService, JwtTokenUtil jwtTokenUtil, BCryptPasswordEncoder passwordEncoder) {
+    public AuthController(UserService userService, JwtTokenUtil jwtTokenUtil, JwtTokenVerifier jwtTokenVerifier,
+                          CredentialHasher credentialHasher, LoginThrottle loginThrottle,
+                          RefreshTokenService refreshTokenService, ClientIpResolver clientIpResolver) {
         this.userService = userService;
         this.jwtTokenUtil = jwtTokenUtil;
-        this.passwordEncoder = passwordEncoder;
+        this.jwtTokenVerifier = jwtTokenVerifier;
+        this.credentialHasher = credentialHasher;
+        this.loginThrottle = loginThrottle;
+        this.refreshTokenService = refreshTokenService;
+        this.clientIpResolver = clientIpResolver;
     }
 
     /**
@@ -72,7 +78,7 @@ public class AuthController {
         UserDto userDto = new UserDto();
         userDto.setUsername(registerRequest.getUsername());
         userDto.setEmail(registerRequest.getEmail());
-        userDto.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
+        userDto.setPassword(registerRequest.getPassword());
 
         try {
             User registeredUser = userService.register(userDto);
@@ -102,9 +108,10 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest) {
         String username = loginRequest.getUsername();
+        String clientIp = clientIpResolver.resolve();
 
-        // 检查账户是否被锁定
-        if (isAccountLocked(username)) {
+        // 检查账户或IP是否被锁定
+        if (loginThrottle.isLocked(username, clientIp)) {
             logger.warn("Login attempt for locked account: {}", username);
             return ResponseEntity.status(429).body("Too many failed attempts. Account temporarily locked.");
         }
@@ -112,20 +119,21 @@ public class AuthController {
         Optional<User> existingUser = userService.findByUsername(username);
 
         // 验证登录凭证
-        if (existingUser.isEmpty() || !passwordEncoder.matches(loginRequest.getPassword(), existingUser.get().getPassword())) {
+        if (existingUser.isEmpty() || !credentialHasher.matches(loginRequest.getPassword(), existingUser.get().getPassword())) {
             // 记录失败尝试
-            recordFailedAttempt(username);
+            loginThrottle.recordFailure(username, clientIp);
             logger.warn("Failed login attempt for user: {}", username);
             return ResponseEntity.status(401).body("Invalid credentials");
         }
 
         // 登录成功，重置尝试计数器
-        resetLoginAttempts(username);
+        loginThrottle.recordSuccess(username);
         User user = existingUser.orElseThrow(() -> new RuntimeException("User not found"));
+        userService.upgradePasswordHash(user, loginRequest.getPassword());
 
         // 生成JWT令牌
-        String token = jwtTokenUtil.generateToken(existingUser.get().getUsername());
-        String refreshToken = generateRefreshToken(user);
+        String token = jwtTokenUtil.generateToken(user.getUsername(), user.getRole());
+        String refreshToken = refreshTokenService.issue(user);
         logger.info("User logged in successfully: {}", username);
 
         Map<String, Object> response = new HashMap<>();
@@ -151,21 +159,23 @@ public class AuthController {
     public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> request) {
         String refreshToken = request.get("refreshToken");
 
-        if (refreshToken == null || !userService.isValidRefreshToken(refreshToken)) {
+        if (refreshToken == null) {
             return ResponseEntity.status(401).body("Invalid refresh token");
         }
 
-        Optional<User> user = userService.findUserByRefreshToken(refreshToken);
-        if (user.isEmpty()) {
+        // 一次查询完成校验和轮换，旧令牌随即失效
+        Optional<RefreshTokenService.Rotation> rotation = refreshTokenService.rotate(refreshToken);
+        if (rotation.isEmpty()) {
             return ResponseEntity.status(401).body("Invalid refresh token");
         }
 
-        String newToken = jwtTokenUtil.generateToken(user.get().getUsername());
-        String newRefreshToken = generateRefreshToken(user.get());
+        // 角色可能在上次登录后变更，按当前用户记录签发
+        String role = userService.findByUsername(rotation.get().username()).map(User::getRole).orElse(null);
+        String newToken = jwtTokenUtil.generateToken(rotation.get().username(), role);
 
         Map<String, Object> response = new HashMap<>();
         response.put("token", newToken);
-        response.put("refreshToken", newRefreshToken);
+        response.put("refreshToken", rotation.get().refreshToken());
         response.put("tokenExpiresIn", jwtTokenUtil.getTokenExpirationTime(newToken));
 
         return ResponseEntity.ok(response);
@@ -231,7 +241,9 @@ public class AuthController {
         }
 
         // 更新密码
-        userService.updatePassword(user.get().getId(), passwordEncoder.encode(newPassword));
+        userService.updatePassword(user.get().getId(), newPassword);
+        // 密码重置后其他设备上的会话全部失效
+        refreshTokenService.revokeAll(user.get().getId());
 
         // 使重置令牌失效
         userService.deleteByPasswordResetToken(token);
@@ -243,14 +255,24 @@ public class AuthController {
 
     /**
      * 注销
+     * <p>
+     * 请求体带 refreshToken 时只吊销当前设备的刷新令牌 family，否则吊销该用户的全部刷新令牌，注销后都不能再换取访问令牌。
      */
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader,
+                                    @RequestBody(required = false) Map<String, String> request) {
         String token = authHeader.replace("Bearer ", "");
         String username = jwtTokenUtil.getUsernameFromToken(token);
 
-        // 在实际应用中，将令牌加入黑名单
-        // jwtTokenUtil.blacklistToken(token);
+        // 令牌加入吊销表，过期前不再通过校验
+        jwtTokenVerifier.revoke(token);
+
+        String refreshToken = request != null ? request.get("refreshToken") : null;
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken, username);
+        } else {
+            userService.findByUsername(username).ifPresent(user -> refreshTokenService.revokeAll(user.getId()));
+        }
 
         logger.info("User logged out: {}", username);
 
@@ -264,44 +286,6 @@ public class AuthController {
         String regex = "^(?=.*[0-9])(?=.*[a-z])(?=.*[A-Z])(?=.*[@#$%^&+=!])(?=\\S+$).{8,}$";
         return password.matches(regex);
     }
-
-    private boolean isAccountLocked(String username) {
-        LocalDateTime lockoutTime = lockoutTimes.get(username);
-        if (lockoutTime != null) {
-            if (LocalDateTime.now().isBefore(lockoutTime)) {
-                return true;
-            } else {
-                // 锁定时间已过
-                lockoutTimes.remove(username);
-                loginAttempts.remove(username);
-            }
-        }
-        return false;
-    }
-
-    private void recordFailedAttempt(String username) {
-        AtomicInteger attempts = loginAttempts.computeIfAbsent(username, k -> new AtomicInteger(0));
-        int currentAttempts = attempts.incrementAndGet();
-
-        if (currentAttempts >= MAX_ATTEMPTS) {
-            // 锁定账户
-            lockoutTimes.put(username, LocalDateTime.now().plusMinutes(LOCKOUT_MINUTES));
-            logger.warn("Account locked due to too many failed attempts: {}", username);
-        }
-    }
-
-    private void resetLoginAttempts(String username) {
-        loginAttempts.remove(username);
-        lockoutTimes.remove(username);
-    }
-
-    private String generateRefreshToken(User user) {
-        String refreshToken = UUID.randomUUID().toString();
-        // 设置30天过期
-        LocalDateTime expiryDate = LocalDateTime.now().plusDays(30);
-        userService.updateRefreshToken(user.getId(), refreshToken, expiryDate);
-        return refreshToken;
-    }
 }
 
 @Setter
@@ -1,12 +1,21 @@
 package com.fintech.p2p.controller;
 
+import com.fintech.p2p.document.DocumentResponseWriter;
 import com.fintech.p2p.dto.InvestmentRequest;
+import com.fintech.p2p.exception.ResourceNotFoundException;
 import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.security.CallerResolver;
+import com.fintech.p2p.service.InvestmentDocumentService;
 import com.fintech.p2p.service.InvestmentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +24,9 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class InvestmentController {
     private final InvestmentService investmentService;
+    private final InvestmentDocumentService investmentDocumentService;
+    private final DocumentResponseWriter documentResponseWriter;
+    private final CallerResolver callerResolver;
 
     // 投资人投资贷款
     @PostMapping("/invest")
@@ -65,4 +77,40 @@ public class InvestmentController {
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    /**
+     * 下载单笔投资文档，支持 ETag 和 Range，只能下载自己的投资文档（管理员除外）
+     *
+     * @param id 投资记录ID
+     */
+    @GetMapping("/{id}/document")
+    public void downloadInvestmentDocument(
+            @PathVariable(name = "id") Long id,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        // 管理员可以查看任意投资文档，其他用户只能查看自己的
+        Long investorId = callerResolver.isAdmin(authentication) ? null : callerResolver.callerId(authentication);
+        InvestmentDocumentService.InvestmentDocument document = investmentDocumentService.getInvestmentDocument(id, investorId)
+                .orElseThrow(() -> new ResourceNotFoundException("投资记录不存在: " + id));
+        documentResponseWriter.write(request, response, document.body(), document.etag(),
+                MediaType.APPLICATION_JSON_VALUE, "investment-" + id + ".json");
+    }
+
+    /**
+     * 下载投资人对账单，支持 ETag 和 Range，已生成的对账单直接从缓存文件发送；只能下载自己的对账单（管理员除外）
+     *
+     * @param investorId 投资人ID
+     */
+    @GetMapping("/statement/investor/{investorId}")
+    public void downloadStatement(
+            @PathVariable(name = "investorId") Long investorId,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        callerResolver.scopeToCaller(authentication, investorId);
+        InvestmentDocumentService.StatementFile statement = investmentDocumentService.getStatement(investorId);
+        documentResponseWriter.write(request, response, statement.file(), statement.etag(),
+                MediaType.APPLICATION_JSON_VALUE, "statement-" + investorId + ".json");
+    }
 }
@@ -1,29 +1,50 @@
 package com.fintech.p2p.controller;
 
 import com.fintech.p2p.dto.RepaymentDTO;
+import com.fintech.p2p.dto.RepaymentListResponse;
 import com.fintech.p2p.dto.RepaymentRequest;
+import com.fintech.p2p.enums.AmortizationMethod;
 import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.exception.BusinessException;
 import com.fintech.p2p.exception.InvalidRepaymentException;
 import com.fintech.p2p.exception.ResourceNotFoundException;
+import com.fintech.p2p.export.RepaymentExportFormat;
 import com.fintech.p2p.mapper.RepaymentMapper;
 import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.security.CallerResolver;
+import com.fintech.p2p.service.RepaymentBatchWriter;
+import com.fintech.p2p.service.RepaymentExportService;
+import com.fintech.p2p.service.RepaymentPipeline;
+import com.fintech.p2p.service.RepaymentScheduleService;
 import com.fintech.p2p.service.RepaymentService;
+import com.fintech.p2p.service.SettlementIngestService;
+import com.fintech.p2p.settlement.SettlementFormat;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -36,6 +57,11 @@ import java.util.Optional;
 public class RepaymentController {
     private final RepaymentService repaymentService;
     private final RepaymentMapper repaymentMapper;
+    private final RepaymentPipeline repaymentPipeline;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final SettlementIngestService settlementIngestService;
+    private final RepaymentExportService repaymentExportService;
+    private final CallerResolver callerResolver;
 
     /**
      * 生成还款计划
@@ -61,16 +87,38 @@ public class RepaymentController {
     }
 
     /**
-     * 查询借款人的所有还款计划
+     * 一次生成贷款的全部还款计划
+     *
+     * @param loanId 贷款ID
+     * @param method 还款方式，默认等额本息
+     * @return 按期数排列的还款计划
+     */
+    @PostMapping("/schedule/{loanId}")
+    @Operation(summary = "生成贷款还款计划", description = "按贷款金额、期限和利率生成全部分期，已生成时返回原计划")
+    @ApiResponse(responseCode = "201", description = "还款计划生成成功")
+    @ApiResponse(responseCode = "404", description = "贷款不存在")
+    public ResponseEntity<List<RepaymentDTO>> createSchedule(
+            @PathVariable Long loanId,
+            @RequestParam(defaultValue = "EQUAL_INSTALLMENT") AmortizationMethod method) {
+        List<Repayment> schedule = repaymentScheduleService.createSchedule(loanId, method);
+        return ResponseEntity.status(HttpStatus.CREATED).body(repaymentMapper.toDTOList(schedule));
+    }
+
+    /**
+     * 分页查询借款人的还款计划
      *
      * @param borrowerId 借款人ID
-     * @return 还款记录列表
+     * @param cursor     上一页返回的 nextCursor，首页不传
+     * @param size       每页大小
+     * @return 本页还款计划和下一页游标
      */
     @GetMapping("/list/{borrowerId}")
-    @Operation(summary = "获取借款人还款计划列表", description = "分页获取指定借款人的所有还款计划")
-    public ResponseEntity<List<Repayment>> getRepaymentsByBorrower(@PathVariable Long borrowerId) {
-        List<Repayment> repayments = repaymentService.getRepaymentsByBorrower(borrowerId);
-        return ResponseEntity.ok(repayments);
+    @Operation(summary = "获取借款人还款计划列表", description = "按到期日分页获取指定借款人的所有还款计划，翻页时传回上一页的 nextCursor")
+    public ResponseEntity<RepaymentListResponse> getRepaymentsByBorrower(
+            @PathVariable Long borrowerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(toListResponse(repaymentService.getRepaymentsByBorrower(borrowerId, cursor, size)));
     }
 
     /**
@@ -110,6 +158,75 @@ public class RepaymentController {
         }
     }
 
+    /**
+     * 异步还款：受理记录落库并进入贷款所在的单写通道后立即返回202和还款句柄
+     *
+     * @param request 还款请求
+     * @return 排队中的还款句柄，Location 指向轮询地址
+     */
+    @PostMapping(value = "/pay", params = "async=true")
+    @Operation(summary = "异步处理贷款还款", description = "受理还款请求并排队入账，通过返回的句柄在任一节点轮询处理结果")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "还款已受理",
+                    content = @Content(schema = @Schema(implementation = RepaymentPipeline.PaymentHandle.class))),
+            @ApiResponse(responseCode = "400", description = "请求参数错误"),
+            @ApiResponse(responseCode = "503", description = "还款通道繁忙")
+    })
+    public ResponseEntity<RepaymentPipeline.PaymentHandle> submitRepayment(@Valid @RequestBody RepaymentRequest request) {
+        RepaymentPipeline.PaymentHandle handle = repaymentPipeline.submit(new RepaymentBatchWriter.RepaymentCommand(
+                request.getLoanId(),
+                request.getBorrowerId(),
+                request.getBorrowerEmail(),
+                request.getAmount(),
+                request.getDueDate(),
+                request.getStatus(),
+                request.getRepaymentType()
+        ));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/repayments/payments/" + handle.paymentId()))
+                .body(handle);
+    }
+
+    /**
+     * 查询异步还款的处理结果
+     *
+     * @param paymentId 还款句柄ID
+     * @return 还款句柄
+     */
+    @GetMapping("/payments/{paymentId}")
+    @Operation(summary = "查询异步还款结果", description = "根据还款句柄查询排队、入账或拒绝状态")
+    @ApiResponse(responseCode = "200", description = "查询成功")
+    @ApiResponse(responseCode = "404", description = "还款句柄不存在或已过期")
+    public ResponseEntity<RepaymentPipeline.PaymentHandle> getPayment(@PathVariable String paymentId) {
+        return repaymentPipeline.getHandle(paymentId)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResourceNotFoundException("还款句柄不存在或已过期: " + paymentId));
+    }
+
+    /**
+     * 上传银行结算文件，暂存后由定时任务批量入账
+     *
+     * @param file   结算文件（CSV 或定长格式）
+     * @param format 文件格式，不指定时按扩展名判断
+     * @return 暂存回执，对账结果写入报告目录
+     */
+    @PostMapping(value = "/settlements", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "批量入账结算文件", description = "暂存结算文件后立即返回，定时任务按还款计划ID匹配每一行，分批入账并生成对账报告")
+    @ApiResponse(responseCode = "202", description = "已暂存，等待入账")
+    @ApiResponse(responseCode = "400", description = "文件为空")
+    @ApiResponse(responseCode = "403", description = "非管理员或运营人员")
+    public ResponseEntity<SettlementIngestService.SettlementUpload> ingestSettlement(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) SettlementFormat format) throws IOException {
+        if (file.isEmpty()) {
+            throw new BusinessException("结算文件不能为空");
+        }
+        SettlementFormat resolved = format != null ? format : SettlementFormat.fromFileName(file.getOriginalFilename());
+        try (InputStream content = file.getInputStream()) {
+            return ResponseEntity.accepted().body(settlementIngestService.stageUpload(file.getOriginalFilename(), content, resolved));
+        }
+    }
+
     /**
      * 进行还款
      *
@@ -127,34 +244,79 @@ public class RepaymentController {
     }
 
     /**
-     * 获取待还款列表
+     * 分页获取待还款列表
      *
      * @param borrowerId 借款人ID
-     * @return 待还款记录列表
+     * @param cursor     上一页返回的 nextCursor，首页不传
+     * @param size       每页大小
+     * @return 本页待还款记录和下一页游标
      */
     @GetMapping("/borrower/{borrowerId}/pending")
-    @Operation(summary = "获取待还款列表", description = "获取指定借款人的待还款计划")
-    public ResponseEntity<List<RepaymentDTO>> getPendingRepayments(@PathVariable Long borrowerId) {
-        List<Repayment> pendingRepayments = repaymentService.getPendingRepaymentsByBorrower(borrowerId);
-        return ResponseEntity.ok(repaymentMapper.toDTOList(pendingRepayments));
+    @Operation(summary = "获取待还款列表", description = "按到期日分页获取指定借款人的待还款计划")
+    public ResponseEntity<RepaymentListResponse> getPendingRepayments(
+            @PathVariable Long borrowerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(toListResponse(repaymentService.getPendingRepaymentsByBorrower(borrowerId, cursor, size)));
     }
 
     /**
-     * 根据日期范围查询还款计划
+     * 根据日期范围分页查询还款计划
      *
      * @param borrowerId 借款人ID
      * @param startDate  开始日期
      * @param endDate    结束日期
-     * @return 符合条件的还款记录列表
+     * @param cursor     上一页返回的 nextCursor，首页不传
+     * @param size       每页大小
+     * @return 本页还款记录和下一页游标
      */
     @GetMapping("/borrower/{borrowerId}/date-range")
-    @Operation(summary = "按日期范围查询还款计划", description = "获取指定借款人在日期范围内的还款计划")
-    public ResponseEntity<List<RepaymentDTO>> getRepaymentsByDateRange(
+    @Operation(summary = "按日期范围查询还款计划", description = "按到期日分页获取指定借款人在日期范围内的还款计划")
+    public ResponseEntity<RepaymentListResponse> getRepaymentsByDateRange(
             @PathVariable Long borrowerId,
             @RequestParam LocalDate startDate,
-            @RequestParam LocalDate endDate) {
+            @RequestParam LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        RepaymentService.SummaryPage page = repaymentService.getRepaymentsByDateRange(
+                borrowerId, startDate, endDate, cursor, size);
+        return ResponseEntity.ok(toListResponse(page));
+    }
+
+    /**
+     * 流式导出还款记录
+     *
+     * @param borrowerId     借款人ID；管理员不传时不过滤，其他用户只能导出自己的还款记录
+     * @param loanId         贷款ID，不传时不过滤
+     * @param format         导出格式，默认 CSV
+     * @param gzip           是否以 gzip 压缩下载
+     * @param authentication 当前认证信息
+     * @param response       HTTP 响应，记录逐行写入响应流
+     */
+    @GetMapping("/export")
+    @Operation(summary = "导出还款记录", description = "按ID顺序逐行导出还款记录，支持 NDJSON 和 CSV，可选 gzip 压缩")
+    @ApiResponse(responseCode = "200", description = "导出成功")
+    @ApiResponse(responseCode = "403", description = "未登录或导出他人的还款记录")
+    public void exportRepayments(
+            @RequestParam(required = false) Long borrowerId,
+            @RequestParam(required = false) Long loanId,
+            @RequestParam(defaultValue = "CSV") RepaymentExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        // 先确定范围再写响应头，越权时由异常处理器返回 403
+        borrowerId = callerResolver.scopeToCaller(authentication, borrowerId);
+        String fileName = "repayments-" + LocalDate.now() + "." + format.getExtension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : format.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+        try (OutputStream out = response.getOutputStream()) {
+            repaymentExportService.export(borrowerId, loanId, format, gzip, out);
+        }
+    }
 
-        List<Repayment> repayments = repaymentService.getRepaymentsByDateRange(borrowerId, startDate, endDate);
-        return ResponseEntity.ok(repaymentMapper.toDTOList(repayments));
+    private RepaymentListResponse toListResponse(RepaymentService.SummaryPage page) {
+        List<RepaymentDTO> repayments = page.rows().stream().map(repaymentMapper::toDTO).toList();
+        return new RepaymentListResponse(repayments, page.pageSize(), page.hasMore(), page.nextCursor());
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.fintech.p2p.document;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 把文档写入 HTTP 响应，支持 ETag 条件请求（304）和单区间 Range 请求（206）
+ * <p>
+ * 文件优先交给 Tomcat 的 sendfile 由内核直接发送到套接字；容器不支持时用 {@link FileChannel#transferTo}
+ * 写入响应流，两种方式都不经过应用层的字节缓冲区。
+ */
+@Component
+public class DocumentResponseWriter {
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 写出内存中的文档
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, byte[] body, String etag,
+                      String contentType, String fileName) throws IOException {
+        long[] range = prepare(request, response, body.length, etag, contentType, fileName);
+        if (range != null) {
+            response.getOutputStream().write(body, (int) range[0], (int) (range[1] - range[0] + 1));
+        }
+    }
+
+    /**
+     * 写出磁盘上的文档，文件在响应发送完之前不能被删除
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file, String etag,
+                      String contentType, String fileName) throws IOException {
+        long[] range = prepare(request, response, Files.size(file), etag, contentType, fileName);
+        if (range == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由容器在本次请求处理结束后用 sendfile 发送，end 不包含在区间内
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range[0]);
+            request.setAttribute(SENDFILE_END, range[1] + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = range[0];
+            long remaining = range[1] - range[0] + 1;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * 处理条件请求和 Range 并写出响应头
+     *
+     * @return 需要写出的区间 [start, end]（均包含）；已完整响应（304、416）时返回 null
+     */
+    private long[] prepare(HttpServletRequest request, HttpServletResponse response, long length, String etag,
+                           String contentType, String fileName) {
+        String quotedEtag = '"' + etag + '"';
+        response.setHeader(HttpHeaders.ETAG, quotedEtag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), quotedEtag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range 与当前版本不一致时忽略 Range，返回完整的新版本
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(quotedEtag))) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // 多区间请求按完整文档返回
+                if (ranges.size() == 1) {
+                    long start = ranges.get(0).getRangeStart(length);
+                    long end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || start > end) {
+                        throw new IllegalArgumentException("Range 超出文档长度: " + rangeHeader);
+                    }
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                    response.setContentLengthLong(end - start + 1);
+                    return new long[]{start, end};
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return null;
+            }
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLengthLong(length);
+        return new long[]{0, length - 1};
+    }
+
+    private static boolean matches(String ifNoneMatch, String quotedEtag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(quotedEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
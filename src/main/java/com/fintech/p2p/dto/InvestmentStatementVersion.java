@@ -0,0 +1,7 @@
+package com.fintech.p2p.dto;
+
+/**
+ * 投资人对账单版本：新增或删除投资改变条数和最大ID，修改投资使其版本号加一从而改变版本号之和，三项都不变时对账单内容不变
+ */
+public record InvestmentStatementVersion(Long investments, Long lastInvestmentId, Long revisions) {
+}
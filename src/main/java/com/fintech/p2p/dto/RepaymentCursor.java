@@ -0,0 +1,50 @@
+package com.fintech.p2p.dto;
+
+import com.fintech.p2p.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 还款计划列表的键集游标，指向上一页最后一条记录的 (due_date, id)
+ *
+ * @param dueDate 到期日
+ * @param id      还款ID
+ */
+public record RepaymentCursor(LocalDate dueDate, Long id) {
+
+    public static RepaymentCursor of(RepaymentSummary last) {
+        return new RepaymentCursor(last.dueDate(), last.id());
+    }
+
+    /**
+     * 编码为客户端不需要解析的字符串
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((dueDate + ":" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 解析客户端传回的游标
+     *
+     * @param cursor 游标，首页为null或空
+     * @return 游标，首页返回null
+     * @throws BusinessException 游标格式不正确
+     */
+    public static RepaymentCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = value.indexOf(':');
+            return new RepaymentCursor(LocalDate.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new BusinessException("无效的分页游标: " + cursor);
+        }
+    }
+}
@@ -33,6 +33,15 @@ public class RepaymentDTO {
     @Schema(description = "还款金额")
     private BigDecimal amount;
 
+    @Schema(description = "还款计划期数")
+    private Integer installmentNo;
+
+    @Schema(description = "本期本金")
+    private BigDecimal principalAmount;
+
+    @Schema(description = "本期利息")
+    private BigDecimal interestAmount;
+
     @Schema(description = "到期日期")
     private LocalDate dueDate;
 
@@ -10,20 +10,17 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Schema(description = "还款计划分页响应")
+@Schema(description = "还款计划分页响应（按到期日、还款ID排序的键集分页）")
 public class RepaymentListResponse {
     @Schema(description = "还款计划列表")
     private List<RepaymentDTO> repayments;
 
-    @Schema(description = "当前页码")
-    private int pageNumber;
-
     @Schema(description = "每页大小")
     private int pageSize;
 
-    @Schema(description = "总记录数")
-    private long totalElements;
+    @Schema(description = "是否还有下一页")
+    private boolean hasMore;
 
-    @Schema(description = "总页数")
-    private int totalPages;
-}
\ No newline at end of file
+    @Schema(description = "下一页游标，作为 cursor 参数传回；没有下一页时为空")
+    private String nextCursor;
+}
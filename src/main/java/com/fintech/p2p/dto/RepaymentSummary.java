@@ -0,0 +1,14 @@
+package com.fintech.p2p.dto;
+
+import com.fintech.p2p.enums.RepaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 还款计划列表投影：只查询列表返回的列，不加载完整实体
+ */
+public record RepaymentSummary(Long id, Long loanId, Long borrowerId, BigDecimal amount, Integer installmentNo,
+                               BigDecimal principalAmount, BigDecimal interestAmount, LocalDate dueDate,
+                               RepaymentStatus status, LocalDate paymentDate) {
+}
@@ -0,0 +1,16 @@
+package com.fintech.p2p.enums;
+
+public enum AmortizationMethod {
+    EQUAL_INSTALLMENT("等额本息"),
+    EQUAL_PRINCIPAL("等额本金");
+
+    private final String displayName;
+
+    AmortizationMethod(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
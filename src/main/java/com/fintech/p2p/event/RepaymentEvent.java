@@ -0,0 +1,76 @@
+package com.fintech.p2p.event;
+
+import com.fintech.p2p.model.Repayment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * 还款相关的Kafka事件，消息Key为贷款ID，保证同一笔贷款的事件有序
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RepaymentEvent {
+    public static final String OVERDUE_TOPIC = "overdue-repayment-topic";
+
+    private Type type;
+    private Long repaymentId;
+    private Long loanId;
+    private Long borrowerId;
+    private String borrowerEmail;
+    private BigDecimal amount;
+    private LocalDate dueDate;
+    private Instant occurredAt;
+
+    /**
+     * 根据还款计划构建逾期事件
+     */
+    public static RepaymentEvent overdue(Repayment repayment) {
+        return RepaymentEvent.builder()
+                .type(Type.OVERDUE)
+                .repaymentId(repayment.getId())
+                .loanId(repayment.getLoanId())
+                .borrowerId(repayment.getBorrowerId())
+                .borrowerEmail(repayment.getBorrowerEmail())
+                .amount(repayment.getAmount())
+                .dueDate(repayment.getDueDate())
+                .occurredAt(Instant.now())
+                .build();
+    }
+
+    /**
+     * 根据已支付的还款计划构建还款事件
+     */
+    public static RepaymentEvent repaid(Repayment repayment) {
+        return RepaymentEvent.builder()
+                .type(Type.REPAID)
+                .repaymentId(repayment.getId())
+                .loanId(repayment.getLoanId())
+                .borrowerId(repayment.getBorrowerId())
+                .borrowerEmail(repayment.getBorrowerEmail())
+                .amount(repayment.getAmount())
+                .dueDate(repayment.getDueDate())
+                .occurredAt(Instant.now())
+                .build();
+    }
+
+    /**
+     * Kafka消息Key
+     */
+    public String key() {
+        return String.valueOf(loanId);
+    }
+
+    // 二进制编码写入序号，新增类型只能追加在末尾
+    public enum Type {
+        OVERDUE, // 逾期
+        REPAID   // 已还款
+    }
+}
@@ -0,0 +1,267 @@
+package com.fintech.p2p.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * 还款事件编解码器
+ * <p>
+ * 二进制格式 v1（所有整数均为 varint，有符号字段先做 zigzag）：
+ * <pre>
+ * version(1) | type(1) | flags(1) | loanId
+ * [repaymentId] [borrowerId] [email: len + UTF-8] [amount: scale + len + unscaled]
+ * [dueDate: epochDay] [occurredAt: epochMilli]
+ * </pre>
+ * flags 的每一位表示对应的可选字段是否存在。解码时根据首字节自动识别格式：
+ * 0x01 为二进制，'{' 为JSON（调试用），其余按旧版 "邮箱,贷款ID,金额" CSV 处理，保证滚动升级期间旧消息仍可消费。
+ * 实例无状态，线程安全。
+ */
+public class RepaymentEventCodec {
+    static final byte BINARY_V1 = 0x01;
+    private static final byte JSON_START = '{';
+
+    private static final int HAS_REPAYMENT_ID = 1;
+    private static final int HAS_BORROWER_ID = 1 << 1;
+    private static final int HAS_EMAIL = 1 << 2;
+    private static final int HAS_AMOUNT = 1 << 3;
+    private static final int HAS_DUE_DATE = 1 << 4;
+    private static final int HAS_OCCURRED_AT = 1 << 5;
+
+    private static final RepaymentEvent.Type[] TYPES = RepaymentEvent.Type.values();
+
+    private static final ObjectMapper JSON = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final Format format;
+
+    public RepaymentEventCodec(Format format) {
+        this.format = format;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * 按配置的格式编码
+     */
+    public byte[] encode(RepaymentEvent event) {
+        return format == Format.JSON ? encodeJson(event) : encodeBinary(event);
+    }
+
+    /**
+     * 自动识别格式并解码
+     */
+    public RepaymentEvent decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("事件内容为空");
+        }
+        if (data[0] == BINARY_V1) {
+            return decodeBinary(data);
+        }
+        if (data[0] == JSON_START) {
+            return decodeJson(data);
+        }
+        return decodeLegacyCsv(data);
+    }
+
+    public static byte[] encodeBinary(RepaymentEvent event) {
+        if (event.getType() == null || event.getLoanId() == null) {
+            throw new IllegalArgumentException("事件类型和贷款ID不能为空");
+        }
+        byte[] email = event.getBorrowerEmail() == null
+                ? null : event.getBorrowerEmail().getBytes(StandardCharsets.UTF_8);
+
+        int flags = 0;
+        if (event.getRepaymentId() != null) flags |= HAS_REPAYMENT_ID;
+        if (event.getBorrowerId() != null) flags |= HAS_BORROWER_ID;
+        if (email != null) flags |= HAS_EMAIL;
+        if (event.getAmount() != null) flags |= HAS_AMOUNT;
+        if (event.getDueDate() != null) flags |= HAS_DUE_DATE;
+        if (event.getOccurredAt() != null) flags |= HAS_OCCURRED_AT;
+
+        Writer out = new Writer(32 + (email == null ? 0 : email.length));
+        out.writeByte(BINARY_V1);
+        out.writeByte(event.getType().ordinal());
+        out.writeByte(flags);
+        out.writeSignedVarLong(event.getLoanId());
+        if (event.getRepaymentId() != null) out.writeSignedVarLong(event.getRepaymentId());
+        if (event.getBorrowerId() != null) out.writeSignedVarLong(event.getBorrowerId());
+        if (email != null) out.writeBytes(email);
+        if (event.getAmount() != null) {
+            out.writeSignedVarLong(event.getAmount().scale());
+            out.writeBytes(event.getAmount().unscaledValue().toByteArray());
+        }
+        if (event.getDueDate() != null) out.writeSignedVarLong(event.getDueDate().toEpochDay());
+        if (event.getOccurredAt() != null) out.writeSignedVarLong(event.getOccurredAt().toEpochMilli());
+        return out.toByteArray();
+    }
+
+    public static RepaymentEvent decodeBinary(byte[] data) {
+        Reader in = new Reader(data);
+        byte version = in.readByte();
+        if (version != BINARY_V1) {
+            throw new IllegalArgumentException("不支持的事件版本: " + version);
+        }
+        int typeOrdinal = in.readByte();
+        if (typeOrdinal < 0 || typeOrdinal >= TYPES.length) {
+            throw new IllegalArgumentException("未知的事件类型: " + typeOrdinal);
+        }
+        int flags = in.readByte();
+
+        RepaymentEvent event = new RepaymentEvent();
+        event.setType(TYPES[typeOrdinal]);
+        event.setLoanId(in.readSignedVarLong());
+        if ((flags & HAS_REPAYMENT_ID) != 0) event.setRepaymentId(in.readSignedVarLong());
+        if ((flags & HAS_BORROWER_ID) != 0) event.setBorrowerId(in.readSignedVarLong());
+        if ((flags & HAS_EMAIL) != 0) event.setBorrowerEmail(new String(in.readBytes(), StandardCharsets.UTF_8));
+        if ((flags & HAS_AMOUNT) != 0) {
+            int scale = (int) in.readSignedVarLong();
+            event.setAmount(new BigDecimal(new BigInteger(in.readBytes()), scale));
+        }
+        if ((flags & HAS_DUE_DATE) != 0) event.setDueDate(LocalDate.ofEpochDay(in.readSignedVarLong()));
+        if ((flags & HAS_OCCURRED_AT) != 0) event.setOccurredAt(Instant.ofEpochMilli(in.readSignedVarLong()));
+        return event;
+    }
+
+    public static byte[] encodeJson(RepaymentEvent event) {
+        try {
+            return JSON.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("事件JSON序列化失败", e);
+        }
+    }
+
+    public static RepaymentEvent decodeJson(byte[] data) {
+        try {
+            return JSON.readValue(data, RepaymentEvent.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("事件JSON解析失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解析旧版 "借款人邮箱,贷款ID,金额" 消息，从右侧切分以兼容邮箱中的逗号
+     */
+    static RepaymentEvent decodeLegacyCsv(byte[] data) {
+        String message = new String(data, StandardCharsets.UTF_8);
+        int amountSep = message.lastIndexOf(',');
+        int loanSep = amountSep <= 0 ? -1 : message.lastIndexOf(',', amountSep - 1);
+        if (loanSep <= 0) {
+            throw new IllegalArgumentException("消息格式错误: " + message);
+        }
+        try {
+            RepaymentEvent event = new RepaymentEvent();
+            event.setType(RepaymentEvent.Type.OVERDUE);
+            event.setBorrowerEmail(message.substring(0, loanSep));
+            event.setLoanId(Long.parseLong(message.substring(loanSep + 1, amountSep).trim()));
+            event.setAmount(new BigDecimal(message.substring(amountSep + 1).trim()));
+            return event;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("消息格式错误: " + message, e);
+        }
+    }
+
+    public enum Format {
+        BINARY, JSON
+    }
+
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+
+        Writer(int initialCapacity) {
+            this.buf = new byte[initialCapacity];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte readByte() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("事件内容被截断");
+            }
+            return buf[pos++];
+        }
+
+        long readSignedVarLong() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("varint 超长");
+        }
+
+        byte[] readBytes() {
+            long len = readVarLong();
+            if (len < 0 || len > buf.length - pos) {
+                throw new IllegalArgumentException("事件内容被截断");
+            }
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + (int) len);
+            pos += (int) len;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.fintech.p2p.event;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Kafka 还款事件反序列化器，自动识别二进制、JSON 和旧版 CSV 消息
+ */
+public class RepaymentEventDeserializer implements Deserializer<RepaymentEvent> {
+    private final RepaymentEventCodec codec = new RepaymentEventCodec(RepaymentEventCodec.Format.BINARY);
+
+    @Override
+    public RepaymentEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return codec.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("无法解析Topic " + topic + " 的还款事件: " + e.getMessage(), e);
+        }
+    }
+}
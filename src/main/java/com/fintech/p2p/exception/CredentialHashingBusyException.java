@@ -0,0 +1,10 @@
+package com.fintech.p2p.exception;
+
+/**
+ * 密码哈希线程池已满或等待超时
+ */
+public class CredentialHashingBusyException extends RuntimeException {
+    public CredentialHashingBusyException(String message) {
+        super(message);
+    }
+}
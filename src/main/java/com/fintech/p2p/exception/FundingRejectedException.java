@@ -0,0 +1,10 @@
+package com.fintech.p2p.exception;
+
+/**
+ * 数据库拒绝了内存台账已放行的投资：额度已被其他节点占用或贷款已不在募集中
+ */
+public class FundingRejectedException extends BusinessException {
+    public FundingRejectedException(String message) {
+        super(message);
+    }
+}
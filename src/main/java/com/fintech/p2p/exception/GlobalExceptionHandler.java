@@ -39,6 +39,44 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
     }
 
+    /**
+     * 处理异步还款通道已满
+     */
+    @ExceptionHandler(RepaymentQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleRepaymentQueueFullException(
+            RepaymentQueueFullException ex, WebRequest request) {
+
+        logger.warn("还款通道已满: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Repayment Queue Full",
+                ex.getMessage(),
+                request.getDescription(false).replace("uri=", "")
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * 处理密码哈希线程池已满
+     */
+    @ExceptionHandler(CredentialHashingBusyException.class)
+    public ResponseEntity<ErrorResponse> handleCredentialHashingBusyException(
+            CredentialHashingBusyException ex, WebRequest request) {
+
+        logger.warn("密码哈希繁忙: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Credential Hashing Busy",
+                ex.getMessage(),
+                request.getDescription(false).replace("uri=", "")
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     // 处理资源未找到异常
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleResourceNotFoundException(
@@ -0,0 +1,10 @@
+package com.fintech.p2p.exception;
+
+/**
+ * 异步还款通道已满
+ */
+public class RepaymentQueueFullException extends RuntimeException {
+    public RepaymentQueueFullException(String message) {
+        super(message);
+    }
+}
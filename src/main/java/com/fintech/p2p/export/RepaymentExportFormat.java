@@ -0,0 +1,149 @@
+package com.fintech.p2p.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fintech.p2p.model.Repayment;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 还款记录导出格式
+ * <p>
+ * NDJSON：每行一个 JSON 对象；CSV：首行为表头。两种格式的字段相同，日期和时间为 ISO-8601 格式，空值输出为 null 或空字段。
+ */
+public enum RepaymentExportFormat {
+    NDJSON("application/x-ndjson", "ndjson") {
+        @Override
+        public RowWriter open(OutputStream out) throws IOException {
+            JsonGenerator generator = JSON.createGenerator(out, JsonEncoding.UTF8);
+            return new RowWriter() {
+                @Override
+                public void write(Repayment r) throws IOException {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", r.getId());
+                    generator.writeNumberField("loanId", r.getLoanId());
+                    generator.writeNumberField("borrowerId", r.getBorrowerId());
+                    if (r.getInstallmentNo() == null) {
+                        generator.writeNullField("installmentNo");
+                    } else {
+                        generator.writeNumberField("installmentNo", r.getInstallmentNo());
+                    }
+                    writeNumber(generator, "amount", r.getAmount());
+                    writeNumber(generator, "principalAmount", r.getPrincipalAmount());
+                    writeNumber(generator, "interestAmount", r.getInterestAmount());
+                    writeString(generator, "dueDate", r.getDueDate());
+                    writeString(generator, "status", r.getStatus());
+                    writeString(generator, "paymentDate", r.getPaymentDate());
+                    writeString(generator, "paymentTimestamp", r.getPaymentTimestamp());
+                    writeString(generator, "repaymentType", r.getRepaymentType());
+                    writeString(generator, "createdAt", r.getCreatedAt());
+                    writeString(generator, "updatedAt", r.getUpdatedAt());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    generator.flush();
+                }
+            };
+        }
+    },
+
+    CSV("text/csv", "csv") {
+        private static final String HEADER = "id,loan_id,borrower_id,installment_no,amount,principal_amount,interest_amount,"
+                + "due_date,status,payment_date,payment_timestamp,repayment_type,created_at,updated_at";
+
+        @Override
+        public RowWriter open(OutputStream out) throws IOException {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(HEADER);
+            writer.write('\n');
+            return new RowWriter() {
+                @Override
+                public void write(Repayment r) throws IOException {
+                    // 所有字段都是数字、日期或枚举，不含逗号和引号，无需转义
+                    writer.write(r.getId() + "," + r.getLoanId() + "," + r.getBorrowerId() + ","
+                            + field(r.getInstallmentNo()) + "," + amount(r.getAmount()) + ","
+                            + amount(r.getPrincipalAmount()) + "," + amount(r.getInterestAmount()) + ","
+                            + field(r.getDueDate()) + "," + field(r.getStatus()) + "," + field(r.getPaymentDate()) + ","
+                            + field(r.getPaymentTimestamp()) + "," + field(r.getRepaymentType()) + ","
+                            + field(r.getCreatedAt()) + "," + field(r.getUpdatedAt()));
+                    writer.write('\n');
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    writer.flush();
+                }
+            };
+        }
+    };
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private final String contentType;
+    private final String extension;
+
+    RepaymentExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * 在输出流上开始导出，CSV 格式会先写出表头
+     * <p>
+     * 返回的 RowWriter 自带缓冲，写完最后一行后必须调用 {@link RowWriter#flush()}；输出流由调用方关闭。
+     */
+    public abstract RowWriter open(OutputStream out) throws IOException;
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 逐行写出还款记录
+     */
+    public interface RowWriter {
+        void write(Repayment repayment) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static void writeNumber(JsonGenerator generator, String name, BigDecimal value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeStringField(name, value.toString());
+        }
+    }
+
+    private static String amount(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    private static String field(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
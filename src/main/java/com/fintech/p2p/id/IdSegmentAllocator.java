@@ -0,0 +1,160 @@
+package com.fintech.p2p.id;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 号段式主键分配器
+ * <p>
+ * id_generator 表每行记录一个号段名下一个未分配的主键（next_val），每次取号段时原子地把 next_val
+ * 推进 allocationSize，本进程在内存中依次发放 [next_val, next_val + allocationSize) 内的主键，
+ * 插入实体时不再依赖数据库自增，Hibernate 可以把 INSERT 合并为 JDBC 批量语句。
+ * <p>
+ * 取号段使用独立的小连接池，不占用业务连接：业务事务持有连接等待号段时，取号段本身不会因连接池耗尽而卡住。
+ * 多个实例共用同一张表，号段互不重叠，但主键只在单个实例内递增。
+ * <p>
+ * 号段名即表名。表中还没有某个号段时，从该表现有的 MAX(id) + 1 开始分配，不会与迁移前的自增主键冲突；
+ * 表不存在时直接失败，不凭空从 1 开始。
+ */
+@Slf4j
+public class IdSegmentAllocator implements Closeable {
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS id_generator (" +
+            "entity VARCHAR(255) NOT NULL PRIMARY KEY, next_val BIGINT NOT NULL)";
+    private static final String ADVANCE = "UPDATE id_generator SET next_val = next_val + ? WHERE entity = ?";
+    private static final String CURRENT = "SELECT next_val FROM id_generator WHERE entity = ?";
+    private static final String INITIALIZE = "INSERT INTO id_generator (entity, next_val) VALUES (?, ?)";
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final DataSource dataSource;
+    private final int allocationSize;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    public IdSegmentAllocator(DataSource dataSource, int allocationSize) {
+        if (allocationSize < 1) {
+            throw new IllegalArgumentException("号段大小必须大于0");
+        }
+        this.dataSource = dataSource;
+        this.allocationSize = allocationSize;
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+        } catch (SQLException e) {
+            throw new IllegalStateException("初始化主键号段表失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 取下一个主键
+     *
+     * @param segment 号段名
+     */
+    public long next(String segment) {
+        return segments.computeIfAbsent(segment, Segment::new).next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dataSource instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * 从表中取一个新号段，返回号段起始值
+     */
+    private long allocate(String segment) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long start = advance(connection, segment);
+                connection.commit();
+                log.debug("分配主键号段: {} [{}, {})", segment, start, start + allocationSize);
+                return start;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("分配主键号段失败: " + segment + ", " + e.getMessage(), e);
+        }
+    }
+
+    private long advance(Connection connection, String segment) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(ADVANCE)) {
+            update.setInt(1, allocationSize);
+            update.setString(2, segment);
+            if (update.executeUpdate() == 0) {
+                long start = firstUnusedId(connection, segment);
+                if (initialize(connection, segment, start + allocationSize)) {
+                    return start;
+                }
+                // 其他实例刚插入了该号段，重新推进
+                update.executeUpdate();
+            }
+        }
+        try (PreparedStatement query = connection.prepareStatement(CURRENT)) {
+            query.setString(1, segment);
+            try (ResultSet rs = query.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) - allocationSize;
+            }
+        }
+    }
+
+    /**
+     * 号段对应表中现有最大主键的下一个值
+     */
+    private long firstUnusedId(Connection connection, String segment) throws SQLException {
+        if (!TABLE_NAME.matcher(segment).matches()) {
+            throw new SQLException("号段名不是合法的表名: " + segment);
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + segment)) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new SQLException("号段" + segment + "没有对应的表，无法确定起始主键，请先执行 db/id_generator.sql: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private boolean initialize(Connection connection, String segment, long nextValue) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INITIALIZE)) {
+            insert.setString(1, segment);
+            insert.setLong(2, nextValue);
+            insert.executeUpdate();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return false;
+        }
+    }
+
+    private final class Segment {
+        private final String name;
+        private long nextValue;
+        private long endValue;
+
+        private Segment(String name) {
+            this.name = name;
+        }
+
+        synchronized long next() {
+            if (nextValue == endValue) {
+                nextValue = allocate(name);
+                endValue = nextValue + allocationSize;
+            }
+            return nextValue++;
+        }
+    }
+}
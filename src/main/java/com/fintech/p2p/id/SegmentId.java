@@ -0,0 +1,21 @@
+package com.fintech.p2p.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 主键由 {@link IdSegmentAllocator} 按号段分配
+ */
+@IdGeneratorType(SegmentIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SegmentId {
+    /**
+     * id_generator 表中的号段名，一般与表名相同
+     */
+    String value();
+}
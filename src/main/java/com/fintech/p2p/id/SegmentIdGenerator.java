@@ -0,0 +1,66 @@
+package com.fintech.p2p.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+import org.hibernate.service.ServiceRegistry;
+
+import java.lang.reflect.Member;
+
+/**
+ * {@link SegmentId} 对应的 Hibernate 主键生成器，从 Spring 容器中的 {@link IdSegmentAllocator} 取号
+ */
+public class SegmentIdGenerator implements IdentifierGenerator {
+    private static final BeanContainer.LifecycleOptions SHARED_BEAN = new BeanContainer.LifecycleOptions() {
+        @Override
+        public boolean canUseCachedReferences() {
+            return true;
+        }
+
+        @Override
+        public boolean useJpaCompliantCreation() {
+            return false;
+        }
+    };
+
+    private final String segment;
+    private final ServiceRegistry serviceRegistry;
+    private volatile IdSegmentAllocator allocator;
+
+    public SegmentIdGenerator(SegmentId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.segment = config.value();
+        this.serviceRegistry = context.getServiceRegistry();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return allocator().next(segment);
+    }
+
+    private IdSegmentAllocator allocator() {
+        IdSegmentAllocator resolved = allocator;
+        if (resolved == null) {
+            // 取容器中的单例，不能让 Hibernate 另建实例
+            BeanContainer container = serviceRegistry.requireService(ManagedBeanRegistry.class).getBeanContainer();
+            if (container == null) {
+                throw new IllegalStateException("未配置 Spring BeanContainer，无法获取主键号段分配器");
+            }
+            resolved = container.getBean(IdSegmentAllocator.class, SHARED_BEAN, new BeanInstanceProducer() {
+                @Override
+                public <B> B produceBeanInstance(Class<B> beanType) {
+                    throw new IllegalStateException("容器中没有主键号段分配器: " + beanType.getName());
+                }
+
+                @Override
+                public <B> B produceBeanInstance(String name, Class<B> beanType) {
+                    return produceBeanInstance(beanType);
+                }
+            }).getBeanInstance();
+            allocator = resolved;
+        }
+        return resolved;
+    }
+}
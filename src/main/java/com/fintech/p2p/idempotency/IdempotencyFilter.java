@@ -0,0 +1,219 @@
+package com.fintech.p2p.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.p2p.config.IdempotencyProperties;
+import com.fintech.p2p.model.ErrorResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 处理带 Idempotency-Key 请求头的 POST 请求
+ * <p>
+ * 首个请求正常执行并保存响应；同一调用方使用同一键的重复请求直接重放保存的响应，不会再次进入控制器和业务服务。
+ * 首个请求仍在处理时返回409，同一键携带不同请求体时返回422。不带该请求头的请求不受影响。
+ * <p>
+ * 只有首个请求抛出异常或返回5xx时才释放键；业务已执行成功但保存响应失败时键保持处理中，
+ * 租约到期前的重复请求返回409，不会再次执行付款。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String ANONYMOUS = "-";
+
+    private final IdempotencyStore idempotencyStore;
+    private final IdempotencyProperties idempotencyProperties;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || !idempotencyProperties.getPaths().contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientKey = request.getHeader(HEADER);
+        if (clientKey.isBlank() || clientKey.length() > MAX_KEY_LENGTH) {
+            writeError(request, response, HttpStatus.BAD_REQUEST, "Idempotency-Key 不能为空且不能超过" + MAX_KEY_LENGTH + "个字符");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        // 同一个键在不同接口、不同调用方之间互不影响，不会重放他人的响应
+        String key = request.getRequestURI() + (request.getQueryString() == null ? "" : "?" + request.getQueryString())
+                + " " + principal() + " " + clientKey;
+        IdempotencyStore.Claim claim = idempotencyStore.claim(key, sha256(body));
+        switch (claim.outcome()) {
+            case REPLAY -> replay(response, claim.response());
+            case IN_PROGRESS -> writeError(request, response, HttpStatus.CONFLICT, "相同 Idempotency-Key 的请求正在处理，请稍后重试");
+            case MISMATCH -> writeError(request, response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key 已用于不同的请求内容");
+            case ACQUIRED -> proceed(new CachedBodyRequest(request, body), response, chain, key);
+        }
+    }
+
+    private void proceed(HttpServletRequest request, HttpServletResponse response, FilterChain chain, String key)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        try {
+            boolean succeeded = false;
+            try {
+                chain.doFilter(request, captured);
+                succeeded = captured.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value();
+            } finally {
+                // 异常和 5xx 不保存，客户端可以用同一个键重试
+                if (!succeeded) {
+                    idempotencyStore.release(key);
+                }
+            }
+            if (succeeded) {
+                complete(key, captured);
+            }
+        } finally {
+            captured.copyBodyToResponse();
+        }
+    }
+
+    // 业务已经提交，此时释放键会让重试再执行一次；保存失败时保持处理中，由租约到期后接管
+    private void complete(String key, ContentCachingResponseWrapper captured) {
+        try {
+            idempotencyStore.complete(key, new IdempotencyStore.StoredResponse(
+                    captured.getStatus(), captured.getContentType(), captured.getContentAsByteArray()));
+        } catch (RuntimeException e) {
+            log.error("保存幂等响应失败，幂等键保持处理中直到租约到期: {}", key, e);
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.body() != null) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    private void writeError(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(status.value(), status.getReasonPhrase(), message, request.getRequestURI()));
+    }
+
+    // 本过滤器排在 Spring Security 过滤器链之后，此时已完成 JWT 认证；未登录的请求共用匿名范围
+    private static String principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return ANONYMOUS;
+        }
+        return authentication.getName();
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 请求体已被读取用于计算摘要，之后交给控制器的请求从缓存的字节重新读取
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // 请求体已全部缓存，注册时即可读完
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() == null ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
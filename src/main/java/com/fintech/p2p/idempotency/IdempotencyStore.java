@@ -0,0 +1,250 @@
+package com.fintech.p2p.idempotency;
+
+import com.fintech.p2p.config.IdempotencyProperties;
+import com.fintech.p2p.model.IdempotencyRecord;
+import com.fintech.p2p.repository.IdempotencyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 两级幂等键存储
+ * <p>
+ * 内存层是有界、按写入顺序过期的 ConcurrentHashMap，重放只需一次内存查找；同一节点上的并发重复请求
+ * 通过 putIfAbsent 只放行一个，其余等待首个请求的响应。数据库层以幂等键为主键，
+ * 跨节点或重启后的重复请求由主键冲突识别，内存层淘汰的键仍可从数据库重放。
+ * 处理中的键带租约，占用方崩溃或卡住超过租约后，重复请求可以重新占用，不必等到 TTL 过期。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyStore {
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final IdempotencyProperties idempotencyProperties;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 按写入顺序排列，TTL 固定，因此队首总是最早过期的条目
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 尝试占用幂等键
+     *
+     * @param key         接口 + 调用方 + 客户端提供的键
+     * @param requestHash 请求体摘要
+     * @return 占用结果：ACQUIRED 时调用方必须随后调用 {@link #complete} 或 {@link #release}
+     */
+    public Claim claim(String key, String requestHash) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(key, requestHash, now, now + idempotencyProperties.getTtl().toMillis());
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            if (existing.expiresAtMillis > now) {
+                if (!isStale(existing, now)) {
+                    return awaitExisting(existing, requestHash);
+                }
+                if (!existing.requestHash.equals(requestHash)) {
+                    return Claim.MISMATCH;
+                }
+            }
+            if (!entries.replace(key, existing, entry)) {
+                return claim(key, requestHash);
+            }
+            // 超过租约的占用方不再等待，本地等待者按处理中返回
+            existing.response.complete(null);
+        }
+        insertionOrder.add(entry);
+        trim(now);
+
+        // 内存层已放行，再由数据库层确认没有其他节点占用该键
+        Claim durable;
+        try {
+            durable = claimDurable(key, requestHash);
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            entry.response.complete(null);
+            throw e;
+        }
+        if (durable.outcome() == Outcome.REPLAY) {
+            // 从数据库重放的响应留在内存层，之后的重复请求不再访问数据库
+            entry.response.complete(durable.response());
+        } else if (durable.outcome() != Outcome.ACQUIRED) {
+            entries.remove(key, entry);
+            entry.response.complete(null);
+        }
+        return durable;
+    }
+
+    /**
+     * 保存首个请求的响应，之后的重复请求直接重放
+     */
+    public void complete(String key, StoredResponse response) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(idempotencyProperties.getTtl());
+        idempotencyRecordRepository.complete(key, response.status(), response.contentType(), response.body(), expiresAt,
+                IdempotencyRecord.Status.COMPLETED, IdempotencyRecord.Status.IN_PROGRESS);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.response.complete(response);
+        }
+    }
+
+    /**
+     * 首个请求失败（异常或5xx）时释放幂等键，客户端可以用同一个键重试
+     */
+    public void release(String key) {
+        try {
+            idempotencyRecordRepository.deleteById(key);
+        } catch (RuntimeException e) {
+            log.warn("释放幂等键失败，将在过期后清理: {}", key, e);
+        }
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.response.complete(null);
+        }
+    }
+
+    /**
+     * 定期清理过期的幂等键
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        trim(System.currentTimeMillis());
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("已清理{}个过期幂等键", deleted);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Claim awaitExisting(Entry existing, String requestHash) {
+        if (!existing.requestHash.equals(requestHash)) {
+            return Claim.MISMATCH;
+        }
+        StoredResponse response = existing.response.getNow(null);
+        if (response == null && !existing.response.isDone()) {
+            try {
+                response = existing.response.get(idempotencyProperties.getInProgressWaitMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return Claim.IN_PROGRESS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Claim.IN_PROGRESS;
+            } catch (ExecutionException e) {
+                return Claim.IN_PROGRESS;
+            }
+        }
+        // 首个请求失败并已释放键时 response 为 null，客户端应重试
+        return response == null ? Claim.IN_PROGRESS : Claim.replay(response);
+    }
+
+    private Claim claimDurable(String key, String requestHash) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setIdempotencyKey(key);
+        record.setRequestHash(requestHash);
+        record.setExpiresAt(LocalDateTime.now().plus(idempotencyProperties.getTtl()));
+        try {
+            idempotencyRecordRepository.saveAndFlush(record);
+            return Claim.ACQUIRED;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("幂等键已被占用: {}", key);
+        }
+
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findById(key);
+        if (existing.isEmpty()) {
+            // 占用方刚刚释放
+            return Claim.IN_PROGRESS;
+        }
+        IdempotencyRecord stored = existing.get();
+        if (stored.getExpiresAt().isBefore(LocalDateTime.now())) {
+            idempotencyRecordRepository.delete(stored);
+            return claimDurable(key, requestHash);
+        }
+        if (!stored.getRequestHash().equals(requestHash)) {
+            return Claim.MISMATCH;
+        }
+        if (stored.getStatus() != IdempotencyRecord.Status.COMPLETED) {
+            LocalDateTime now = LocalDateTime.now();
+            if (stored.getClaimedAt().isBefore(now.minus(idempotencyProperties.getLease()))
+                    && idempotencyRecordRepository.reclaim(key, now, now.minus(idempotencyProperties.getLease()),
+                    IdempotencyRecord.Status.IN_PROGRESS) == 1) {
+                log.warn("幂等键占用超过租约仍未完成，重新占用: {}", key);
+                return Claim.ACQUIRED;
+            }
+            return Claim.IN_PROGRESS;
+        }
+        return Claim.replay(new StoredResponse(stored.getResponseStatus(), stored.getContentType(), stored.getResponseBody()));
+    }
+
+    // 内存层中处理超过租约仍未完成的键
+    private boolean isStale(Entry entry, long now) {
+        return !entry.response.isDone() && entry.claimedAtMillis + idempotencyProperties.getLease().toMillis() <= now;
+    }
+
+    private void trim(long now) {
+        int maxEntries = idempotencyProperties.getMaxEntries();
+        Entry head;
+        while ((head = insertionOrder.peek()) != null
+                && (head.expiresAtMillis <= now || entries.size() > maxEntries || entries.get(head.key) != head)) {
+            if (insertionOrder.remove(head) && entries.remove(head.key, head)) {
+                // 被淘汰时仍在处理中的键：本地等待者按处理中返回，重试时由数据库层重放
+                head.response.complete(null);
+            }
+        }
+    }
+
+    public enum Outcome {
+        ACQUIRED,    // 首个请求，继续处理
+        REPLAY,      // 已有响应，直接重放
+        IN_PROGRESS, // 首个请求仍在处理
+        MISMATCH     // 同一键携带了不同的请求体
+    }
+
+    /**
+     * 占用幂等键的结果，仅 REPLAY 时 response 不为空
+     */
+    public record Claim(Outcome outcome, StoredResponse response) {
+        static final Claim ACQUIRED = new Claim(Outcome.ACQUIRED, null);
+        static final Claim IN_PROGRESS = new Claim(Outcome.IN_PROGRESS, null);
+        static final Claim MISMATCH = new Claim(Outcome.MISMATCH, null);
+
+        static Claim replay(StoredResponse response) {
+            return new Claim(Outcome.REPLAY, response);
+        }
+    }
+
+    /**
+     * 首个请求的响应
+     */
+    public record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    private static final class Entry {
+        final String key;
+        final String requestHash;
+        final long claimedAtMillis;
+        final long expiresAtMillis;
+        final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        Entry(String key, String requestHash, long claimedAtMillis, long expiresAtMillis) {
+            this.key = key;
+            this.requestHash = requestHash;
+            this.claimedAtMillis = claimedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
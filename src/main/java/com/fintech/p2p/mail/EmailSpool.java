@@ -0,0 +1,493 @@
+package com.fintech.p2p.mail;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的持久化邮件发送队列（只追加）
+ * <p>
+ * 记录格式为 [int 长度][int CRC32][内容]，按段存储，段文件名为该段的起始偏移量。
+ * 追加只写映射内存，由后台线程按组提交策略批量 force 到磁盘，
+ * {@link #append} 返回的 CompletableFuture 在记录落盘后完成。
+ * 消费方处理完一条记录后调用 {@link #markDelivered}，连续处理完成的前缀由 {@link #checkpoint}
+ * 写入 checkpoint 文件，检查点之前的段文件随之删除。重启后从检查点继续读取，
+ * 只有崩溃前已处理但尚未写入检查点的少量记录会被再次投递。
+ */
+@Slf4j
+public class EmailSpool implements Closeable {
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String DEAD_LETTER_FILE = "dead-letter";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long groupCommitMillis;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Long> delivered = new ConcurrentSkipListMap<>();
+    private final Object durableSignal = new Object();
+    private final Object commitLock = new Object();
+    private final Object checkpointLock = new Object();
+
+    // 以下字段由 this 保护
+    private Segment active;
+    private List<PendingAppend> pending = new ArrayList<>();
+    private final Set<Segment> dirty = new LinkedHashSet<>();
+    private boolean closed;
+
+    private volatile long writeOffset;
+    private volatile long durableOffset;
+    private volatile long committedOffset;
+    private long checkpointedOffset;
+
+    private final Thread flusher;
+
+    /**
+     * 打开（或创建）发送队列目录，并从检查点恢复
+     *
+     * @param directory         队列目录
+     * @param segmentBytes      单个段文件大小
+     * @param groupCommitMillis 组提交等待时间，同一窗口内的追加共用一次 force
+     */
+    public EmailSpool(Path directory, int segmentBytes, long groupCommitMillis) throws IOException {
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("段文件大小过小: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.groupCommitMillis = groupCommitMillis;
+
+        Files.createDirectories(directory);
+        recover();
+
+        flusher = new Thread(this::flushLoop, "email-spool-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 追加一封邮件
+     *
+     * @param email 已渲染的邮件
+     * @return 记录落盘后完成，结果为记录偏移量
+     */
+    public CompletableFuture<Long> append(SpooledEmail email) {
+        byte[] payload = email.encode();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int size = HEADER_BYTES + payload.length;
+
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("邮件发送队列已关闭");
+            }
+            int position = (int) (writeOffset - active.base);
+            if (position + size > active.capacity) {
+                roll(size);
+                position = 0;
+            }
+            long offset = writeOffset;
+            active.buffer.putInt(position + 4, (int) crc.getValue());
+            active.buffer.put(position + HEADER_BYTES, payload);
+            active.buffer.putInt(position, payload.length);
+            writeOffset = offset + size;
+
+            dirty.add(active);
+            pending.add(new PendingAppend(offset, future));
+            if (pending.size() == 1) {
+                notifyAll();
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 读取指定偏移量处的记录，只返回已落盘的记录
+     *
+     * @param offset 读取位置，通常是上一条记录的 {@link Record#nextOffset()}
+     * @return 记录，没有新记录时返回null
+     */
+    public Record read(long offset) {
+        long position = offset;
+        while (position < durableOffset) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            if (entry == null) {
+                throw new IllegalStateException("偏移量不在发送队列范围内: " + position);
+            }
+            Segment segment = entry.getValue();
+            int relative = (int) (position - segment.base);
+            if (relative + HEADER_BYTES > segment.capacity || segment.buffer.getInt(relative) == 0) {
+                // 当前段剩余空间已放弃，跳到下一段
+                position = segment.base + segment.capacity;
+                continue;
+            }
+
+            int length = segment.buffer.getInt(relative);
+            int checksum = segment.buffer.getInt(relative + 4);
+            byte[] payload = new byte[length];
+            segment.buffer.get(relative + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                throw new IllegalStateException("发送队列记录校验失败, offset=" + position);
+            }
+            return new Record(offset, position + HEADER_BYTES + length, SpooledEmail.decode(ByteBuffer.wrap(payload)));
+        }
+        return null;
+    }
+
+    /**
+     * 跳过指定偏移量处无法读取的记录并视为已处理，原始字节追加到队列目录下的死信文件
+     * <p>
+     * 记录头中的长度不可信时跳过该段的剩余部分。
+     *
+     * @param offset 读取失败的位置
+     * @return 下一条记录的读取位置
+     */
+    public long skip(long offset) throws IOException {
+        long position = offset;
+        while (position < durableOffset) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            if (entry == null) {
+                throw new IllegalStateException("偏移量不在发送队列范围内: " + position);
+            }
+            Segment segment = entry.getValue();
+            int relative = (int) (position - segment.base);
+            if (relative + HEADER_BYTES > segment.capacity || segment.buffer.getInt(relative) == 0) {
+                position = segment.base + segment.capacity;
+                continue;
+            }
+
+            int length = segment.buffer.getInt(relative);
+            int end = length < 0 || relative + HEADER_BYTES + (long) length > segment.capacity
+                    ? segment.capacity : relative + HEADER_BYTES + length;
+            byte[] raw = new byte[end - relative];
+            segment.buffer.get(relative, raw);
+            try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(position).putInt(raw.length);
+                channel.write(new ByteBuffer[]{header.flip(), ByteBuffer.wrap(raw)});
+                channel.force(true);
+            }
+            long next = segment.base + end;
+            markDelivered(offset, next);
+            log.warn("发送队列偏移量{}处的记录无法读取，已跳过{}字节并写入死信文件", position, raw.length);
+            return next;
+        }
+        return offset;
+    }
+
+    /**
+     * 等待指定偏移量之后有新记录落盘
+     */
+    public void awaitDurable(long offset, long timeoutMillis) throws InterruptedException {
+        synchronized (durableSignal) {
+            if (durableOffset <= offset) {
+                durableSignal.wait(timeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * 标记一条记录已处理完成，处理顺序可以与读取顺序不同
+     */
+    public void markDelivered(Record record) {
+        markDelivered(record.offset(), record.nextOffset());
+    }
+
+    private void markDelivered(long offset, long nextOffset) {
+        delivered.put(offset, nextOffset);
+        synchronized (commitLock) {
+            long committed = committedOffset;
+            Long next;
+            while ((next = delivered.remove(committed)) != null) {
+                committed = next;
+            }
+            committedOffset = committed;
+        }
+    }
+
+    /**
+     * 把连续处理完成的位置写入检查点文件，并删除检查点之前的段
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long committed = committedOffset;
+            if (committed == checkpointedOffset) {
+                return;
+            }
+            Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, committed));
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointedOffset = committed;
+
+            Segment current;
+            synchronized (this) {
+                current = active;
+            }
+            for (Segment segment : segments.headMap(current.base).values()) {
+                if (segment.base + segment.capacity <= committed) {
+                    segments.remove(segment.base);
+                    segment.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 下一条待处理记录的位置
+     */
+    public long committedOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * 尚未处理完成的字节数
+     */
+    public long backlogBytes() {
+        return writeOffset - committedOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private void roll(int recordSize) {
+        long base = active.base + active.capacity;
+        try {
+            active = Segment.create(segmentPath(base), base, Math.max(segmentBytes, recordSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建发送队列段文件失败", e);
+        }
+        segments.put(base, active);
+        writeOffset = base;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            if (groupCommitMillis > 0) {
+                try {
+                    Thread.sleep(groupCommitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            List<PendingAppend> batch;
+            List<Segment> toForce;
+            long target;
+            synchronized (this) {
+                batch = pending;
+                pending = new ArrayList<>();
+                toForce = new ArrayList<>(dirty);
+                dirty.clear();
+                target = writeOffset;
+            }
+
+            try {
+                for (Segment segment : toForce) {
+                    segment.buffer.force();
+                }
+            } catch (RuntimeException e) {
+                log.error("发送队列落盘失败: {}", e.getMessage(), e);
+                synchronized (this) {
+                    dirty.addAll(toForce);
+                }
+                batch.forEach(p -> p.future().completeExceptionally(e));
+                continue;
+            }
+
+            durableOffset = target;
+            synchronized (durableSignal) {
+                durableSignal.notifyAll();
+            }
+            batch.forEach(p -> p.future().complete(p.offset()));
+        }
+    }
+
+    private void recover() throws IOException {
+        long checkpoint = readCheckpoint();
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = Segment.open(file, base);
+            if (segment.base + segment.capacity <= checkpoint) {
+                segment.delete();
+            } else {
+                segments.put(base, segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(checkpoint, Segment.create(segmentPath(checkpoint), checkpoint, segmentBytes));
+        }
+
+        // 从检查点开始校验记录，截断崩溃时未写完的尾部
+        long position = Math.max(checkpoint, segments.firstKey());
+        while (true) {
+            Segment segment = segments.floorEntry(position).getValue();
+            int relative = (int) (position - segment.base);
+            Long nextBase = segments.higherKey(segment.base);
+            if (relative + HEADER_BYTES > segment.capacity || segment.buffer.getInt(relative) == 0) {
+                if (nextBase == null) {
+                    break;
+                }
+                position = nextBase;
+                continue;
+            }
+            if (isValidRecord(segment, relative)) {
+                position += HEADER_BYTES + segment.buffer.getInt(relative);
+                continue;
+            }
+
+            log.warn("发送队列在偏移量{}处存在未写完的记录，已截断", position);
+            for (Segment later : segments.tailMap(segment.base, false).values()) {
+                segments.remove(later.base);
+                later.delete();
+            }
+            for (int i = relative; i < segment.capacity; i++) {
+                segment.buffer.put(i, (byte) 0);
+            }
+            segment.buffer.force();
+            break;
+        }
+
+        active = segments.lastEntry().getValue();
+        writeOffset = position;
+        durableOffset = position;
+        committedOffset = Math.min(Math.max(checkpoint, segments.firstKey()), position);
+        checkpointedOffset = checkpoint;
+        log.info("邮件发送队列已打开: 目录={}, 检查点={}, 待处理{}字节", directory, committedOffset, backlogBytes());
+    }
+
+    private static boolean isValidRecord(Segment segment, int relative) {
+        int length = segment.buffer.getInt(relative);
+        if (length < 0 || relative + HEADER_BYTES + (long) length > segment.capacity) {
+            return false;
+        }
+        byte[] payload = new byte[length];
+        segment.buffer.get(relative + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == segment.buffer.getInt(relative + 4);
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        return bytes.length == Long.BYTES ? ByteBuffer.wrap(bytes).getLong() : 0;
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 读取到的一条记录
+     *
+     * @param offset     读取时传入的偏移量
+     * @param nextOffset 下一条记录的读取位置
+     * @param email      邮件内容
+     */
+    public record Record(long offset, long nextOffset, SpooledEmail email) {
+    }
+
+    private record PendingAppend(long offset, CompletableFuture<Long> future) {
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long base;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, long base, int capacity, FileChannel channel) throws IOException {
+            this.path = path;
+            this.base = base;
+            this.capacity = capacity;
+            this.channel = channel;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        static Segment create(Path path, long base, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, base, capacity, channel);
+        }
+
+        static Segment open(Path path, long base) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, base, (int) channel.size(), channel);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.fintech.p2p.mail;
+
+/**
+ * 邮件模板，对应 templates/email 下的 Thymeleaf 模板
+ */
+public enum EmailTemplate {
+    OVERDUE_NOTIFICATION("email/overdue-notification"),
+    LOAN_APPROVED("email/loan-approved"),
+    REPAYMENT_SUCCESS("email/repayment-success");
+
+    private final String path;
+
+    EmailTemplate(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,231 @@
+package com.fintech.p2p.mail;
+
+import com.fintech.p2p.exception.EmailSendingException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SMTP长连接池
+ * <p>
+ * 每个连接持有一个已登录的 {@link Transport}，借出一次可连续发送一批邮件，省去逐封建立连接和TLS握手。
+ * 空闲较久的连接在复用前先校验；发送时连接已断开则自动重连并重发当前邮件一次；
+ * 单个连接发送数达到上限后主动断开，下次使用时重建，避免触发服务器端的会话限制。
+ */
+@Slf4j
+public class SmtpTransportPool implements Closeable {
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int maxMessagesPerConnection;
+    private final long validateAfterIdleMillis;
+    private final long borrowTimeoutMillis;
+
+    private final List<PooledConnection> connections;
+    private final BlockingQueue<PooledConnection> available;
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender, int poolSize, int maxMessagesPerConnection,
+                             long validateAfterIdleMillis, long borrowTimeoutMillis) {
+        this.session = mailSender.getSession();
+        this.protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+        this.host = mailSender.getHost();
+        this.port = mailSender.getPort();
+        this.username = mailSender.getUsername();
+        this.password = mailSender.getPassword();
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+
+        this.connections = new ArrayList<>(poolSize);
+        this.available = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            PooledConnection connection = new PooledConnection(i);
+            connections.add(connection);
+            available.add(connection);
+        }
+    }
+
+    /**
+     * 借用一个连接顺序发送一批邮件
+     *
+     * @param messages 待发送的邮件
+     * @return 与入参一一对应的发送异常，发送成功的位置为null
+     * @throws EmailSendingException 等待可用连接超时
+     */
+    public List<MessagingException> send(List<MimeMessage> messages) {
+        PooledConnection connection = borrow();
+        try {
+            List<MessagingException> failures = new ArrayList<>(messages.size());
+            for (MimeMessage message : messages) {
+                failures.add(connection.send(message));
+            }
+            return failures;
+        } finally {
+            available.offer(connection);
+        }
+    }
+
+    /**
+     * 获取各连接的吞吐指标
+     */
+    public List<ConnectionStats> getStats() {
+        return connections.stream().map(PooledConnection::stats).toList();
+    }
+
+    @Override
+    public void close() {
+        for (PooledConnection connection : connections) {
+            connection.disconnect();
+        }
+    }
+
+    private PooledConnection borrow() {
+        try {
+            PooledConnection connection = available.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (connection == null) {
+                throw new EmailSendingException("等待SMTP连接超时");
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmailSendingException("等待SMTP连接时被中断", e);
+        }
+    }
+
+    /**
+     * 单个SMTP连接的吞吐指标
+     *
+     * @param id                连接编号
+     * @param connects          建立连接的次数（含重连）
+     * @param sent              发送成功数
+     * @param failed            发送失败数
+     * @param messagesPerSecond 按实际发送耗时计算的每秒发送数
+     */
+    public record ConnectionStats(int id, long connects, long sent, long failed, double messagesPerSecond) {
+    }
+
+    /**
+     * 池中的一个连接，同一时刻只会被一个线程借用
+     */
+    private final class PooledConnection {
+        private final int id;
+        private Transport transport;
+        private int messagesSinceConnect;
+        private long lastUsedAt;
+
+        private final LongAdder connects = new LongAdder();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+
+        private PooledConnection(int id) {
+            this.id = id;
+        }
+
+        MessagingException send(MimeMessage message) {
+            long start = System.nanoTime();
+            try {
+                try {
+                    ensureConnected();
+                    sendMessage(message);
+                } catch (MessagingException e) {
+                    if (e instanceof SendFailedException && !connectionLost(e)) {
+                        // 收件人被服务器拒绝，重发也不会成功
+                        failed.increment();
+                        return e;
+                    }
+                    // 连接已被服务器关闭（断开的连接上发送也可能表现为 SendFailedException），重连后重发一次
+                    log.debug("SMTP连接#{}发送失败，重连后重试: {}", id, e.getMessage());
+                    disconnect();
+                    ensureConnected();
+                    sendMessage(message);
+                }
+            } catch (MessagingException e) {
+                failed.increment();
+                disconnect();
+                return e;
+            } finally {
+                lastUsedAt = System.currentTimeMillis();
+                busyNanos.add(System.nanoTime() - start);
+            }
+
+            sent.increment();
+            if (++messagesSinceConnect >= maxMessagesPerConnection) {
+                disconnect();
+            }
+            return null;
+        }
+
+        /**
+         * 发送失败是否由连接断开引起：异常链中有 IO 异常，或连接已不可用
+         */
+        private boolean connectionLost(MessagingException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+                if (cause instanceof IOException) {
+                    return true;
+                }
+            }
+            return transport == null || !transport.isConnected();
+        }
+
+        private void sendMessage(MimeMessage message) throws MessagingException {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        private void ensureConnected() throws MessagingException {
+            if (transport != null) {
+                // isConnected 在已连接时会发送 NOOP，只对空闲较久的连接做校验，
+                // 刚用过的连接若已断开会在发送失败后重连
+                boolean idleTooLong = System.currentTimeMillis() - lastUsedAt > validateAfterIdleMillis;
+                if (!idleTooLong || transport.isConnected()) {
+                    return;
+                }
+                disconnect();
+            }
+            transport = session.getTransport(protocol);
+            transport.connect(host, port, username, password);
+            connects.increment();
+            messagesSinceConnect = 0;
+        }
+
+        void disconnect() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("关闭SMTP连接#{}失败: {}", id, e.getMessage());
+            }
+            transport = null;
+        }
+
+        ConnectionStats stats() {
+            long sentCount = sent.sum();
+            long nanos = busyNanos.sum();
+            double perSecond = nanos == 0 ? 0 : sentCount * 1_000_000_000.0 / nanos;
+            return new ConnectionStats(id, connects.sum(), sentCount, failed.sum(), perSecond);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.fintech.p2p.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 发送队列中的一封已渲染邮件
+ *
+ * @param toEmail        收件人邮箱
+ * @param subject        邮件主题
+ * @param content        HTML内容
+ * @param stage          重试阶段，0为首次发送
+ * @param firstAttemptAt 首次进入发送队列的时间
+ */
+public record SpooledEmail(String toEmail, String subject, String content, int stage, LocalDateTime firstAttemptAt) {
+
+    private static final byte VERSION = 1;
+
+    public static SpooledEmail first(String toEmail, String subject, String content) {
+        return new SpooledEmail(toEmail, subject, content, 0, LocalDateTime.now());
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + content.length() * 3);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(stage);
+            out.writeLong(firstAttemptAt.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(firstAttemptAt.getNano());
+            writeString(out, toEmail);
+            writeString(out, subject);
+            writeString(out, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static SpooledEmail decode(ByteBuffer in) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("不支持的发送队列记录版本: " + version);
+        }
+        int stage = in.getInt();
+        LocalDateTime firstAttemptAt = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+        return new SpooledEmail(readString(in), readString(in), readString(in), stage, firstAttemptAt);
+    }
+
+    // 内容可能超过 writeUTF 的 64KB 上限，因此使用 int 长度前缀
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,7 @@
 package com.fintech.p2p.mapper;
 
 import com.fintech.p2p.dto.RepaymentDTO;
+import com.fintech.p2p.dto.RepaymentSummary;
 import com.fintech.p2p.model.Repayment;
 import org.mapstruct.Mapper;
 
@@ -12,4 +13,6 @@ public interface RepaymentMapper {
     RepaymentDTO toDTO(Repayment repayment);
 
     List<RepaymentDTO> toDTOList(List<Repayment> repayments);
+
+    RepaymentDTO toDTO(RepaymentSummary summary);
 }
\ No newline at end of file
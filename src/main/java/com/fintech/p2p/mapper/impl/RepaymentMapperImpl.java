@@ -1,6 +1,7 @@
 package com.fintech.p2p.mapper.impl;
 
 import com.fintech.p2p.dto.RepaymentDTO;
+import com.fintech.p2p.dto.RepaymentSummary;
 import com.fintech.p2p.mapper.RepaymentMapper;
 import com.fintech.p2p.model.Repayment;
 import org.springframework.stereotype.Component;
@@ -22,6 +23,9 @@ public class RepaymentMapperImpl implements RepaymentMapper {
         dto.setLoanId(repayment.getLoanId());
         dto.setBorrowerId(repayment.getBorrowerId());
         dto.setAmount(repayment.getAmount());
+        dto.setInstallmentNo(repayment.getInstallmentNo());
+        dto.setPrincipalAmount(repayment.getPrincipalAmount());
+        dto.setInterestAmount(repayment.getInterestAmount());
         dto.setDueDate(repayment.getDueDate());
         dto.setStatus(repayment.getStatus());
         dto.setPaymentDate(repayment.getPaymentDate());
@@ -39,4 +43,25 @@ public class RepaymentMapperImpl implements RepaymentMapper {
                 .map(this::toDTO)
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public RepaymentDTO toDTO(RepaymentSummary summary) {
+        if (summary == null) {
+            return null;
+        }
+
+        RepaymentDTO dto = new RepaymentDTO();
+        dto.setId(summary.id());
+        dto.setLoanId(summary.loanId());
+        dto.setBorrowerId(summary.borrowerId());
+        dto.setAmount(summary.amount());
+        dto.setInstallmentNo(summary.installmentNo());
+        dto.setPrincipalAmount(summary.principalAmount());
+        dto.setInterestAmount(summary.interestAmount());
+        dto.setDueDate(summary.dueDate());
+        dto.setStatus(summary.status());
+        dto.setPaymentDate(summary.paymentDate());
+
+        return dto;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.fintech.p2p.model;
+
+import com.fintech.p2p.id.SegmentId;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 邮件重试队列：首次发送失败的邮件按阶段延迟重投，超过最大阶段后进入死信状态
+ */
+@Entity
+@Data
+@Table(name = "email_retries", indexes = {
+        @Index(name = "idx_email_retry_due", columnList = "status, next_attempt_at")
+})
+public class EmailRetry {
+    @Id
+    @SegmentId("email_retries")
+    private Long id;
+
+    @Column(nullable = false)
+    private String toEmail;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Lob
+    @Column(nullable = false)
+    private String content; // 已渲染的HTML内容
+
+    @Column(nullable = false)
+    private int stage; // 当前所处的重试阶段，从1开始
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime firstAttemptAt; // 首次发送时间，用于统计送达耗时
+
+    @Column(length = 512)
+    private String lastError;
+
+    public enum Status {
+        PENDING, // 等待重试
+        DEAD     // 重试耗尽（死信）
+    }
+}
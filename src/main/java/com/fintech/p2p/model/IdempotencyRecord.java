@@ -0,0 +1,71 @@
+package com.fintech.p2p.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 幂等键记录：首个请求插入 IN_PROGRESS 行占用该键，完成后保存响应供重放；主键冲突即为并发重复请求
+ * <p>
+ * 占用带租约：IN_PROGRESS 超过租约仍未完成的键视为占用方已崩溃，可由重复请求重新占用。
+ */
+@Entity
+@Data
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+})
+public class IdempotencyRecord implements Persistable<String> {
+    @Id
+    @Column(length = 512)
+    private String idempotencyKey; // 接口 + 调用方 + 客户端提供的键
+
+    @Column(nullable = false, length = 64)
+    private String requestHash; // 请求体的 SHA-256，同一键携带不同请求体时拒绝
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.IN_PROGRESS;
+
+    private Integer responseStatus;
+
+    private String contentType;
+
+    @Lob
+    private byte[] responseBody;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime claimedAt = LocalDateTime.now(); // 最近一次占用时间，租约由此起算
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // 主键由客户端提供，save 时必须执行 INSERT，才能由主键冲突识别重复请求
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public enum Status {
+        IN_PROGRESS, // 首个请求处理中
+        COMPLETED    // 已保存响应
+    }
+}
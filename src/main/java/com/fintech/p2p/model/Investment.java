@@ -1,5 +1,6 @@
 package com.fintech.p2p.model;
 
+import com.fintech.p2p.id.SegmentId;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -8,10 +9,13 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "investments")
+@Table(name = "investments", indexes = {
+        @Index(name = "idx_investment_investor", columnList = "investor_id, id"),
+        @Index(name = "idx_investment_loan", columnList = "loan_id, id")
+})
 public class Investment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SegmentId("investments")
     private Long id;
 
     @Column(nullable = false)
@@ -28,4 +32,7 @@ public class Investment {
 
     @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Version
+    private Long version; // 每次修改加一，投资文档和对账单的 ETag 由此得出
 }
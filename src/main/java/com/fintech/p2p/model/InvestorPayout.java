@@ -0,0 +1,46 @@
+package com.fintech.p2p.model;
+
+import com.fintech.p2p.id.SegmentId;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 投资人回款台账：一笔还款按投资份额拆分给该贷款的每笔投资，每笔投资一行
+ */
+@Entity
+@Data
+@Table(name = "investor_payouts", indexes = {
+        @Index(name = "idx_payout_investor_date", columnList = "investor_id, payout_date")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payout_repayment_investment", columnNames = {"repayment_id", "investment_id"})
+})
+public class InvestorPayout {
+    @Id
+    @SegmentId("investor_payouts")
+    private Long id;
+
+    @Column(nullable = false)
+    private Long repaymentId; // 还款记录ID
+
+    @Column(nullable = false)
+    private Long loanId; // 贷款ID
+
+    @Column(nullable = false)
+    private Long investmentId; // 投资记录ID
+
+    @Column(nullable = false)
+    private Long investorId; // 投资人ID
+
+    @Column(nullable = false)
+    private BigDecimal amount; // 回款金额
+
+    @Column(nullable = false)
+    private LocalDate payoutDate; // 对应还款的支付日期
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -1,5 +1,6 @@
 package com.fintech.p2p.model;
 
+import com.fintech.p2p.id.SegmentId;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
@@ -18,7 +19,7 @@ import java.time.LocalDateTime;
 @Data
 public class Loan {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SegmentId("loan")
     private Long id;
 
     @Column(nullable = false)
@@ -48,11 +49,15 @@ public class Loan {
     @Enumerated(EnumType.STRING)
     private RepaymentStatus repaymentStatus;
 
-    private BigDecimal repaidAmount = BigDecimal.ZERO;
+    private BigDecimal repaidAmount = BigDecimal.ZERO; // 已还本金
+
+    private BigDecimal repaidInterest = BigDecimal.ZERO; // 已还利息，不冲减剩余本金
 
     @Column(nullable = false)
     private BigDecimal remainingAmount;
 
+    private BigDecimal fundedAmount = BigDecimal.ZERO; // 已募集金额（含待确认的投资）
+
     private Integer riskScore;
     private LocalDate fundingDeadline;
     private LocalDateTime updatedAt;
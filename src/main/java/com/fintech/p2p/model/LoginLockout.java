@@ -0,0 +1,44 @@
+package com.fintech.p2p.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 跨节点共享的登录锁定：以用户名或IP的摘要为主键，锁定到 lockedUntil
+ */
+@Entity
+@Data
+@Table(name = "login_lockouts", indexes = {
+        @Index(name = "idx_login_lockout_until", columnList = "locked_until")
+})
+public class LoginLockout implements Persistable<String> {
+    @Id
+    @Column(length = 64)
+    private String lockKey; // "user:" 或 "ip:" 加上值的 SHA-256，不保存原始用户名
+
+    @Column(nullable = false)
+    private LocalDateTime lockedUntil;
+
+    // 主键由调用方提供，save 时必须执行 INSERT，并发插入由主键冲突识别
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public String getId() {
+        return lockKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,49 @@
+package com.fintech.p2p.model;
+
+import com.fintech.p2p.id.SegmentId;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱事件：与业务数据在同一事务中写入，由 OutboxRelay 异步投递到 Kafka
+ */
+@Entity
+@Data
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at, id")
+})
+public class OutboxEvent {
+    @Id
+    @SegmentId("outbox_events")
+    private Long id;
+
+    @Column(nullable = false, length = 128)
+    private String topic; // 目标Topic
+
+    @Column(length = 128)
+    private String eventKey; // 消息Key
+
+    @Column(nullable = false, length = 2048)
+    private byte[] payload; // 已编码的消息内容
+
+    @Column(nullable = false)
+    private int attempts = 0; // 投递失败次数
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    // 最早可投递时间：投递中的事件在租约期内不会被其他中继取走，失败的事件按退避时间延后
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public enum Status {
+        PENDING, // 待投递
+        DEAD // 超过最大投递次数，不再重试，需人工处理
+    }
+}
@@ -0,0 +1,64 @@
+package com.fintech.p2p.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 刷新令牌：只保存令牌的 SHA-256 摘要
+ * <p>
+ * 同一次登录后轮换产生的令牌属于同一个 family；已轮换的令牌在宽限期后再次出现即视为被盗用，整个 family 吊销。
+ */
+@Entity
+@Data
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_token_user", columnList = "user_id"),
+        @Index(name = "idx_refresh_token_family", columnList = "family_id"),
+        @Index(name = "idx_refresh_token_expires", columnList = "expires_at")
+})
+public class RefreshToken implements Persistable<String> {
+    @Id
+    @Column(length = 64)
+    private String tokenHash; // 令牌的 SHA-256（Base64URL）
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String username; // 冗余保存，刷新时一次查询即可签发访问令牌
+
+    @Column(nullable = false, length = 36)
+    private String familyId;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    private LocalDateTime usedAt; // 已轮换
+
+    private LocalDateTime revokedAt; // 已吊销
+
+    // 主键由调用方提供，save 时必须执行 INSERT
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public String getId() {
+        return tokenHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -2,8 +2,10 @@ package com.fintech.p2p.model;
 
 import com.fintech.p2p.enums.RepaymentStatus;
 import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.id.SegmentId;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -13,10 +15,17 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "repayments")
+@Table(name = "repayments", indexes = {
+        @Index(name = "idx_repayment_status_due", columnList = "status, due_date, id"),
+        @Index(name = "idx_repayment_borrower_due", columnList = "borrower_id, due_date, id"),
+        @Index(name = "idx_repayment_borrower_status_due", columnList = "borrower_id, status, due_date, id"),
+        @Index(name = "idx_repayment_undistributed", columnList = "status, distributed, loan_id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_repayment_loan_installment", columnNames = {"loan_id", "installment_no"})
+})
 public class Repayment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SegmentId("repayments")
     private Long id;
 
     @Column(nullable = false)
@@ -31,6 +40,13 @@ public class Repayment {
     @Column(nullable = false)
     private BigDecimal amount; // 还款金额
 
+    // 还款计划期数，手工创建的还款为空
+    private Integer installmentNo;
+
+    private BigDecimal principalAmount; // 本期本金
+
+    private BigDecimal interestAmount; // 本期利息
+
     @Column(nullable = false)
     private LocalDate dueDate; // 还款截止日期
 
@@ -44,6 +60,11 @@ public class Repayment {
     // 实际支付时间戳（精确到秒/毫秒）
     private LocalDateTime paymentTimestamp;
 
+    // 是否已按投资份额分配给投资人，与回款行在同一事务中置位；列默认值使不写该列的插入（如旧版本实例）仍然有效
+    @Column(nullable = false)
+    @ColumnDefault("false")
+    private boolean distributed;
+
     // 记录创建时间
     @CreationTimestamp
     private LocalDateTime createdAt;
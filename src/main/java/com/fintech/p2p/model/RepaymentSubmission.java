@@ -0,0 +1,92 @@
+package com.fintech.p2p.model;
+
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 异步受理的还款：返回202之前落库，入账时与还款记录在同一事务中更新状态，任一节点都可查询和恢复
+ */
+@Entity
+@Data
+@Table(name = "repayment_submissions", indexes = {
+        @Index(name = "idx_repayment_submission_state", columnList = "state, accepted_at"),
+        @Index(name = "idx_repayment_submission_updated", columnList = "updated_at")
+})
+public class RepaymentSubmission implements Persistable<String> {
+    @Id
+    @Column(length = 36)
+    private String paymentId; // 返回给客户端的还款句柄ID
+
+    @Column(nullable = false)
+    private Long loanId;
+
+    @Column(nullable = false)
+    private Long borrowerId;
+
+    @Column(nullable = false)
+    private String borrowerEmail;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDate dueDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RepaymentStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RepaymentType repaymentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private State state = State.QUEUED;
+
+    private Long repaymentId; // 入账后的还款记录ID
+
+    private BigDecimal remainingAmount; // 入账后的剩余本金
+
+    private String message; // 拒绝或失败原因
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime acceptedAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // 主键由受理节点生成，save 时直接执行 INSERT
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public String getId() {
+        return paymentId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public enum State {
+        QUEUED,   // 已受理，等待入账
+        APPLIED,  // 已入账
+        REJECTED, // 校验未通过
+        FAILED    // 入账异常，需重新提交
+    }
+}
@@ -1,5 +1,6 @@
 package com.fintech.p2p.model;
 
+import com.fintech.p2p.id.SegmentId;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -14,7 +15,7 @@ import java.time.LocalDateTime;
 @Entity
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SegmentId("user")
     private Long id;
 
     @NotBlank(message = "Username cannot be empty")
@@ -37,11 +38,6 @@ public class User {
     @Column(nullable = false)
     private String role;
 
-    @Column(unique = true, nullable = false, length = 255)
-    private String refreshToken;
-
-    private LocalDateTime tokenExpiry;
-
     @Column(unique = true)
     private String passwordResetToken;
     private LocalDateTime passwordResetExpiry;
@@ -0,0 +1,29 @@
+package com.fintech.p2p.repository;
+
+import com.fintech.p2p.model.EmailRetry;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailRetryRepository extends JpaRepository<EmailRetry, Long> {
+
+    // 取出已到期的重试任务，跳过其他节点正在领取的行
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM EmailRetry r WHERE r.status = :status AND r.nextAttemptAt <= :now ORDER BY r.nextAttemptAt")
+    List<EmailRetry> findDue(@Param("status") EmailRetry.Status status,
+                             @Param("now") LocalDateTime now,
+                             Pageable pageable);
+
+    long countByStatus(EmailRetry.Status status);
+}
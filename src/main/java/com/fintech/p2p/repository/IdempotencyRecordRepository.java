@@ -0,0 +1,44 @@
+package com.fintech.p2p.repository;
+
+import com.fintech.p2p.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // 保存首个请求的响应，只更新仍在处理中的记录
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :completed, r.responseStatus = :responseStatus, " +
+            "r.contentType = :contentType, r.responseBody = :responseBody, r.expiresAt = :expiresAt " +
+            "WHERE r.idempotencyKey = :key AND r.status = :inProgress")
+    int complete(@Param("key") String key,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("contentType") String contentType,
+                 @Param("responseBody") byte[] responseBody,
+                 @Param("expiresAt") LocalDateTime expiresAt,
+                 @Param("completed") IdempotencyRecord.Status completed,
+                 @Param("inProgress") IdempotencyRecord.Status inProgress);
+
+    // 重新占用租约已过期的处理中记录，多个节点同时接管时只有一个更新成功
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.claimedAt = :now " +
+            "WHERE r.idempotencyKey = :key AND r.status = :inProgress AND r.claimedAt < :staleBefore")
+    int reclaim(@Param("key") String key,
+                @Param("now") LocalDateTime now,
+                @Param("staleBefore") LocalDateTime staleBefore,
+                @Param("inProgress") IdempotencyRecord.Status inProgress);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,13 +1,39 @@
 package com.fintech.p2p.repository;
 
+import com.fintech.p2p.dto.InvestmentStatementVersion;
 import com.fintech.p2p.model.Investment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface InvestmentRepository extends JpaRepository<Investment, Long> {
     List<Investment> findByInvestorId(Long investorId);
     List<Investment> findByLoanId(Long loanId);
+
+    // 回款分配：一批贷款已确认的投资，按贷款和投资先后排序；PENDING 的投资不参与分配
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT i FROM Investment i WHERE i.loanId IN :loanIds AND i.status = 'CONFIRMED' ORDER BY i.loanId, i.id")
+    List<Investment> findConfirmedByLoanIds(@Param("loanIds") List<Long> loanIds);
+
+    // 对账单版本：只做聚合，不加载投资记录
+    @Query("SELECT new com.fintech.p2p.dto.InvestmentStatementVersion(COUNT(i), COALESCE(MAX(i.id), 0), " +
+            "COALESCE(SUM(i.version), 0)) " +
+            "FROM Investment i WHERE i.investorId = :investorId")
+    InvestmentStatementVersion findStatementVersion(@Param("investorId") Long investorId);
+
+    // 生成对账单：游标逐批读取，调用方需在事务内消费并关闭流
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT i FROM Investment i WHERE i.investorId = :investorId ORDER BY i.id")
+    Stream<Investment> streamByInvestorId(@Param("investorId") Long investorId);
 }
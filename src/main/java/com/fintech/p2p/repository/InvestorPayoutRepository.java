@@ -0,0 +1,15 @@
+package com.fintech.p2p.repository;
+
+import com.fintech.p2p.model.InvestorPayout;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface InvestorPayoutRepository extends JpaRepository<InvestorPayout, Long> {
+    List<InvestorPayout> findByRepaymentId(Long repaymentId);
+
+    List<InvestorPayout> findByInvestorIdAndPayoutDate(Long investorId, LocalDate payoutDate);
+}
@@ -1,12 +1,62 @@
 package com.fintech.p2p.repository;
 
 import com.fintech.p2p.model.Loan;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long> {
     List<Loan> findByStatus(Loan.LoanStatus status);
-}
\ No newline at end of file
+
+    // 加行锁读取贷款，批量还款期间阻止同步还款并发修改余额
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Loan l WHERE l.id = :id")
+    Optional<Loan> findByIdForUpdate(@Param("id") Long id);
+
+    // 原子入账一笔已拆分的还款：本金冲减剩余本金，利息累加到已还利息；余额不足、贷款不属于该借款人、
+    // 已结清或已还利息与拆分时读到的不一致（并发还款已改变应还利息）时不更新（返回0）；
+    // MySQL 按从左到右计算 SET 子句，repaidAmount 必须最后赋值
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Loan l SET l.remainingAmount = l.amount - COALESCE(l.repaidAmount, 0) - :principal, " +
+            "l.repaymentStatus = :repaymentStatus, l.updatedAt = :now, " +
+            "l.repaidInterest = COALESCE(l.repaidInterest, 0) + :interest, " +
+            "l.repaidAmount = COALESCE(l.repaidAmount, 0) + :principal " +
+            "WHERE l.id = :loanId AND l.borrowerId = :borrowerId AND (l.status IS NULL OR l.status <> :completed) " +
+            "AND l.amount - COALESCE(l.repaidAmount, 0) >= :principal " +
+            "AND COALESCE(l.repaidInterest, 0) = :seenRepaidInterest")
+    int applyRepayment(@Param("loanId") Long loanId,
+                       @Param("borrowerId") Long borrowerId,
+                       @Param("principal") BigDecimal principal,
+                       @Param("interest") BigDecimal interest,
+                       @Param("seenRepaidInterest") BigDecimal seenRepaidInterest,
+                       @Param("repaymentStatus") Loan.RepaymentStatus repaymentStatus,
+                       @Param("completed") Loan.LoanStatus completed,
+                       @Param("now") LocalDateTime now);
+
+    // 可投金额：只有审批通过、尚未募满的贷款接受投资，其他状态查不到结果
+    @Query("SELECT l.amount - COALESCE(l.fundedAmount, 0) FROM Loan l WHERE l.id = :id AND l.status = :open")
+    Optional<BigDecimal> findOpenCapacity(@Param("id") Long id, @Param("open") Loan.LoanStatus open);
+
+    // 原子占用募集额度，超出贷款金额或贷款不在募集中时不更新（返回0），募满时同时置为 FUNDED；
+    // MySQL 按从左到右计算 SET 子句，status 必须在 fundedAmount 之前赋值
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Loan l SET l.status = CASE WHEN COALESCE(l.fundedAmount, 0) + :amount >= l.amount " +
+            "THEN :funded ELSE l.status END, l.updatedAt = :now, " +
+            "l.fundedAmount = COALESCE(l.fundedAmount, 0) + :amount " +
+            "WHERE l.id = :loanId AND l.status = :open AND COALESCE(l.fundedAmount, 0) + :amount <= l.amount")
+    int reserveFunding(@Param("loanId") Long loanId,
+                       @Param("amount") BigDecimal amount,
+                       @Param("open") Loan.LoanStatus open,
+                       @Param("funded") Loan.LoanStatus funded,
+                       @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,31 @@
+package com.fintech.p2p.repository;
+
+import com.fintech.p2p.model.LoginLockout;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface LoginLockoutRepository extends JpaRepository<LoginLockout, String> {
+
+    // 任一键仍在锁定期内
+    @Query("SELECT COUNT(l) > 0 FROM LoginLockout l WHERE l.lockKey IN :keys AND l.lockedUntil > :now")
+    boolean anyLocked(@Param("keys") Collection<String> keys, @Param("now") LocalDateTime now);
+
+    // 只延长锁定，不缩短其他节点写入的更长锁定
+    @Transactional
+    @Modifying
+    @Query("UPDATE LoginLockout l SET l.lockedUntil = :lockedUntil WHERE l.lockKey = :key AND l.lockedUntil < :lockedUntil")
+    int extend(@Param("key") String key, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM LoginLockout l WHERE l.lockedUntil < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
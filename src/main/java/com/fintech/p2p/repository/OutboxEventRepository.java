@@ -0,0 +1,43 @@
+package com.fintech.p2p.repository;
+
+import com.fintech.p2p.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // 按写入顺序取一批到期的待投递事件，跳过其他中继实例已锁定的行（lock.timeout = -2 即 SKIP LOCKED）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.status = :status AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<OutboxEvent> findNextBatch(@Param("status") OutboxEvent.Status status,
+                                    @Param("now") LocalDateTime now,
+                                    Pageable pageable);
+
+    // 投递前占用事件直到租约到期，中继在发送期间崩溃时事件到期后重新可取
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.nextAttemptAt = :until WHERE e.id IN :ids")
+    int lease(@Param("ids") List<Long> ids, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :retryAt WHERE e.id IN :ids")
+    int recordFailure(@Param("ids") List<Long> ids, @Param("retryAt") LocalDateTime retryAt);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = :dead WHERE e.id IN :ids AND e.attempts >= :maxAttempts")
+    int markDead(@Param("ids") List<Long> ids,
+                 @Param("dead") OutboxEvent.Status dead,
+                 @Param("maxAttempts") int maxAttempts);
+}
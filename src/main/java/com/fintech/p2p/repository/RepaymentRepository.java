@@ -1,17 +1,42 @@
 package com.fintech.p2p.repository;
 
+import com.fintech.p2p.dto.RepaymentSummary;
 import com.fintech.p2p.enums.RepaymentStatus;
 import com.fintech.p2p.model.Repayment;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface RepaymentRepository extends JpaRepository<Repayment, Long> {
+    String SUMMARY_SELECT = "SELECT new com.fintech.p2p.dto.RepaymentSummary(r.id, r.loanId, r.borrowerId, r.amount, " +
+            "r.installmentNo, r.principalAmount, r.interestAmount, r.dueDate, r.status, r.paymentDate) FROM Repayment r ";
+    String AFTER_CURSOR = "AND (r.dueDate > :lastDueDate OR (r.dueDate = :lastDueDate AND r.id > :lastId)) ";
+    String EXPORT_FETCH_SIZE = "1000";
+
     List<Repayment> findByLoanId(Long loanId);
 
+    List<Repayment> findByLoanIdAndInstallmentNoNotNullOrderByInstallmentNo(Long loanId);
+
+    // 还款计划中到期日不晚于 dueDate 的各期利息合计，没有还款计划的贷款为0
+    @Query("SELECT COALESCE(SUM(r.interestAmount), 0) FROM Repayment r WHERE r.loanId = :loanId " +
+            "AND r.installmentNo IS NOT NULL AND r.dueDate <= :dueDate")
+    BigDecimal sumScheduledInterest(@Param("loanId") Long loanId, @Param("dueDate") LocalDate dueDate);
+
     List<Repayment> findByBorrowerId(Long borrowerId);
 
     List<Repayment> findByDueDateBeforeAndStatus(LocalDate today, RepaymentStatus status);
@@ -20,4 +45,105 @@ public interface RepaymentRepository extends JpaRepository<Repayment, Long> {
     List<Repayment> findByBorrowerIdAndDueDateBetweenOrderByDueDate(Long borrowerId, LocalDate startDate, LocalDate endDate);
 
     List<Repayment> findByBorrowerIdAndStatusOrderByDueDate(Long borrowerId, RepaymentStatus status);
+
+    // 借款人还款计划列表首页：按 (due_date, id) 排序，只查询列表列
+    @Query(SUMMARY_SELECT + "WHERE r.borrowerId = :borrowerId ORDER BY r.dueDate, r.id")
+    List<RepaymentSummary> findSummaries(@Param("borrowerId") Long borrowerId, Pageable pageable);
+
+    // 借款人还款计划列表后续页：从游标 (due_date, id) 之后继续（键集分页）
+    @Query(SUMMARY_SELECT + "WHERE r.borrowerId = :borrowerId " + AFTER_CURSOR + "ORDER BY r.dueDate, r.id")
+    List<RepaymentSummary> findSummariesAfter(@Param("borrowerId") Long borrowerId,
+                                              @Param("lastDueDate") LocalDate lastDueDate,
+                                              @Param("lastId") Long lastId,
+                                              Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE r.borrowerId = :borrowerId AND r.status = :status ORDER BY r.dueDate, r.id")
+    List<RepaymentSummary> findSummariesByStatus(@Param("borrowerId") Long borrowerId,
+                                                 @Param("status") RepaymentStatus status,
+                                                 Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE r.borrowerId = :borrowerId AND r.status = :status " + AFTER_CURSOR +
+            "ORDER BY r.dueDate, r.id")
+    List<RepaymentSummary> findSummariesByStatusAfter(@Param("borrowerId") Long borrowerId,
+                                                      @Param("status") RepaymentStatus status,
+                                                      @Param("lastDueDate") LocalDate lastDueDate,
+                                                      @Param("lastId") Long lastId,
+                                                      Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE r.borrowerId = :borrowerId AND r.dueDate BETWEEN :startDate AND :endDate " +
+            "ORDER BY r.dueDate, r.id")
+    List<RepaymentSummary> findSummariesByDueDate(@Param("borrowerId") Long borrowerId,
+                                                  @Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate,
+                                                  Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE r.borrowerId = :borrowerId AND r.dueDate BETWEEN :startDate AND :endDate " +
+            AFTER_CURSOR + "ORDER BY r.dueDate, r.id")
+    List<RepaymentSummary> findSummariesByDueDateAfter(@Param("borrowerId") Long borrowerId,
+                                                       @Param("startDate") LocalDate startDate,
+                                                       @Param("endDate") LocalDate endDate,
+                                                       @Param("lastDueDate") LocalDate lastDueDate,
+                                                       @Param("lastId") Long lastId,
+                                                       Pageable pageable);
+
+    // 导出还款记录：游标逐批读取，调用方需在事务内消费并关闭流；借款人ID、贷款ID为空时不过滤
+    // MySQL 需在连接串中设置 useCursorFetch=true，fetch size 才会生效，否则驱动会一次读入整个结果集
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r FROM Repayment r WHERE (:borrowerId IS NULL OR r.borrowerId = :borrowerId) " +
+            "AND (:loanId IS NULL OR r.loanId = :loanId) ORDER BY r.id")
+    Stream<Repayment> streamForExport(@Param("borrowerId") Long borrowerId, @Param("loanId") Long loanId);
+
+    // 已支付、尚未分配给投资人的还款所在的贷款，不论支付日期；没有已确认投资的贷款不参与分配
+    @Query("SELECT DISTINCT r.loanId FROM Repayment r WHERE r.status = :paid AND r.distributed = false " +
+            "AND EXISTS (SELECT 1 FROM Investment i WHERE i.loanId = r.loanId AND i.status = 'CONFIRMED') ORDER BY r.loanId")
+    List<Long> findLoansWithUndistributedRepayments(@Param("paid") RepaymentStatus paid);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT r FROM Repayment r WHERE r.loanId IN :loanIds AND r.status = :paid AND r.distributed = false " +
+            "ORDER BY r.loanId, r.id")
+    List<Repayment> findUndistributed(@Param("loanIds") List<Long> loanIds, @Param("paid") RepaymentStatus paid);
+
+    // 标记已分配的还款；只按ID更新，选出之后才入账的还款不受影响
+    @Modifying
+    @Query("UPDATE Repayment r SET r.distributed = true WHERE r.id IN :ids")
+    int markDistributed(@Param("ids") List<Long> ids);
+
+    // 逾期扫描首批：按 (due_date, id) 顺序取出到期未还记录并加行锁
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Repayment r WHERE r.status = :status AND r.dueDate < :today ORDER BY r.dueDate, r.id")
+    List<Repayment> findOverdueChunk(@Param("status") RepaymentStatus status,
+                                     @Param("today") LocalDate today,
+                                     Pageable pageable);
+
+    // 逾期扫描后续批次：从上一批最后一条记录的 (due_date, id) 之后继续（键集分页）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Repayment r WHERE r.status = :status AND r.dueDate < :today " +
+            "AND (r.dueDate > :lastDueDate OR (r.dueDate = :lastDueDate AND r.id > :lastId)) " +
+            "ORDER BY r.dueDate, r.id")
+    List<Repayment> findOverdueChunkAfter(@Param("status") RepaymentStatus status,
+                                          @Param("today") LocalDate today,
+                                          @Param("lastDueDate") LocalDate lastDueDate,
+                                          @Param("lastId") Long lastId,
+                                          Pageable pageable);
+
+    // 标记为已支付，只有尚未支付的记录会被更新；返回0说明已被其他事务入账
+    @Modifying
+    @Query("UPDATE Repayment r SET r.status = :paid, r.paymentDate = :paymentDate, " +
+            "r.paymentTimestamp = :now, r.updatedAt = :now WHERE r.id = :id AND r.status <> :paid")
+    int markPaid(@Param("id") Long id,
+                 @Param("paid") RepaymentStatus paid,
+                 @Param("paymentDate") LocalDate paymentDate,
+                 @Param("now") LocalDateTime now);
+
+    // 按ID批量更新状态，只更新仍处于预期状态的记录
+    @Modifying
+    @Query("UPDATE Repayment r SET r.status = :newStatus, r.updatedAt = :now " +
+            "WHERE r.id IN :ids AND r.status = :expectedStatus")
+    int updateStatusByIds(@Param("ids") List<Long> ids,
+                          @Param("expectedStatus") RepaymentStatus expectedStatus,
+                          @Param("newStatus") RepaymentStatus newStatus,
+                          @Param("now") LocalDateTime now);
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.fintech.p2p.repository;
+
+import com.fintech.p2p.model.RepaymentSubmission;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RepaymentSubmissionRepository extends JpaRepository<RepaymentSubmission, String> {
+
+    // 受理时间早于 acceptedBefore 仍未入账的还款，受理节点崩溃或重启后由任一节点重新排队
+    @Query("SELECT s FROM RepaymentSubmission s WHERE s.state = :queued AND s.acceptedAt < :acceptedBefore " +
+            "ORDER BY s.acceptedAt")
+    List<RepaymentSubmission> findStalled(@Param("queued") RepaymentSubmission.State queued,
+                                          @Param("acceptedBefore") LocalDateTime acceptedBefore,
+                                          Pageable pageable);
+
+    // 入账异常时标记失败，只更新仍在排队的记录
+    @Transactional
+    @Modifying
+    @Query("UPDATE RepaymentSubmission s SET s.state = :failed, s.message = :message, s.updatedAt = :now " +
+            "WHERE s.paymentId IN :ids AND s.state = :queued")
+    int markFailed(@Param("ids") List<String> ids,
+                   @Param("message") String message,
+                   @Param("now") LocalDateTime now,
+                   @Param("failed") RepaymentSubmission.State failed,
+                   @Param("queued") RepaymentSubmission.State queued);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RepaymentSubmission s WHERE s.state <> :queued AND s.updatedAt < :expiry")
+    int deleteCompletedBefore(@Param("queued") RepaymentSubmission.State queued,
+                              @Param("expiry") LocalDateTime expiry);
+}
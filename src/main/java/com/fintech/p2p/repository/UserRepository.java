@@ -20,14 +20,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> getUserByUsername(String username);
 
-    @Modifying
-    @Query("UPDATE User u SET u.refreshToken = :refreshToken, u.tokenExpiry = :expiry WHERE u.id = :id")
-    void updateRefreshToken(@Param("id") Long id,
-                            @Param("refreshToken") String refreshToken,
-                            @Param("expiry") LocalDateTime expiryDate);
-
-    Optional<User> findByRefreshToken(String refreshToken);
-
     @Modifying
     @Query("UPDATE User u SET u.password = :hashedPassword WHERE u.id = :id")
     void updatePassword(@Param("id") Long id,
@@ -0,0 +1,61 @@
+package com.fintech.p2p.security;
+
+import com.fintech.p2p.exception.UnauthorizedOperationException;
+import com.fintech.p2p.model.User;
+import com.fintech.p2p.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+/**
+ * 把接口参数中的用户ID限定为当前调用方
+ * <p>
+ * 普通用户只能访问自己的数据，参数为空时取自己的ID，参数为他人ID时拒绝；管理员可以访问任意用户的数据。
+ */
+@Component
+@RequiredArgsConstructor
+public class CallerResolver {
+    public static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+    private final UserRepository userRepository;
+
+    /**
+     * 限定用户ID
+     *
+     * @param authentication 当前认证信息
+     * @param requestedId    接口参数中的用户ID，可为空
+     * @return 管理员返回 requestedId 原值（为空表示不过滤），普通用户返回自己的ID
+     * @throws UnauthorizedOperationException 未登录，或普通用户访问他人的数据
+     */
+    public Long scopeToCaller(Authentication authentication, Long requestedId) {
+        if (isAdmin(authentication)) {
+            return requestedId;
+        }
+        Long callerId = callerId(authentication);
+        if (requestedId != null && !requestedId.equals(callerId)) {
+            throw new UnauthorizedOperationException("无权访问其他用户的数据");
+        }
+        return callerId;
+    }
+
+    /**
+     * 当前调用方的用户ID
+     *
+     * @throws UnauthorizedOperationException 未登录或用户不存在
+     */
+    public Long callerId(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new UnauthorizedOperationException("请先登录");
+        }
+        return userRepository.findByUsername(authentication.getName())
+                .map(User::getId)
+                .orElseThrow(() -> new UnauthorizedOperationException("当前用户不存在: " + authentication.getName()));
+    }
+
+    public boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(ADMIN_AUTHORITY::equals);
+    }
+}
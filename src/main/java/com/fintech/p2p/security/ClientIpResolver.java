@@ -0,0 +1,59 @@
+package com.fintech.p2p.security;
+
+import com.fintech.p2p.config.LoginThrottleProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+
+/**
+ * 解析登录限流使用的客户端IP
+ * <p>
+ * 部署在反向代理或负载均衡之后时，getRemoteAddr() 是代理的地址，所有用户共用一个IP计数器，IP 限流会锁住全部用户。
+ * 来自 trusted-proxies 中地址的请求从 X-Forwarded-For 的最右端向左取第一个不受信任的地址；
+ * 其他请求直接取 getRemoteAddr()，不读取请求头，客户端无法伪造IP绕过限流。
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientIpResolver {
+    static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    private final LoginThrottleProperties properties;
+
+    /**
+     * 当前请求的客户端IP
+     *
+     * @return 没有请求上下文时（如单元测试）返回 null
+     */
+    public String resolve() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servlet ? resolve(servlet.getRequest()) : null;
+    }
+
+    public String resolve(HttpServletRequest request) {
+        List<String> trustedProxies = properties.getTrustedProxies();
+        String remoteAddr = request.getRemoteAddr();
+        String forwardedFor = request.getHeader(FORWARDED_FOR);
+        if (forwardedFor == null || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        // 左侧的地址由客户端填写，不可信；从最靠近本服务的一跳往回找
+        String[] hops = forwardedFor.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                break;
+            }
+            client = hop;
+            if (!trustedProxies.contains(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+}
@@ -0,0 +1,152 @@
+package com.fintech.p2p.security;
+
+import com.fintech.p2p.config.PasswordHashProperties;
+import com.fintech.p2p.exception.CredentialHashingBusyException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 密码哈希与校验
+ * <p>
+ * 所有 BCrypt 计算都在专用的有界线程池上执行：队列满时立即拒绝并返回 503，请求线程等待结果也有超时，
+ * 登录高峰只会让哈希请求排队或被拒绝，不会占满处理其他接口的请求线程。等待超时的请求从队列中移除，不再占用排队位置。
+ */
+@Component
+public class CredentialHasher {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final ThreadPoolTaskExecutor executor;
+    private final PasswordHashProperties passwordHashProperties;
+
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder computeNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxComputeNanos = new LongAccumulator(Math::max, 0);
+
+    public CredentialHasher(BCryptPasswordEncoder passwordEncoder,
+                            @Qualifier("passwordHashExecutor") ThreadPoolTaskExecutor executor,
+                            PasswordHashProperties passwordHashProperties) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor = executor;
+        this.passwordHashProperties = passwordHashProperties;
+    }
+
+    /**
+     * 计算密码哈希
+     *
+     * @throws CredentialHashingBusyException 线程池已满或等待超时
+     */
+    public String hash(String rawPassword) {
+        String encoded = run(() -> passwordEncoder.encode(rawPassword));
+        hashed.increment();
+        return encoded;
+    }
+
+    /**
+     * 校验密码
+     *
+     * @throws CredentialHashingBusyException 线程池已满或等待超时
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        boolean matches = run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+        verified.increment();
+        return matches;
+    }
+
+    /**
+     * 哈希的强度与当前配置不同，需要在登录成功时用明文重新计算
+     */
+    public boolean needsRehash(String encodedPassword) {
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return !matcher.find() || Integer.parseInt(matcher.group(1)) != passwordHashProperties.getStrength();
+    }
+
+    public HashingStats getStats() {
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        long completed = hashed.sum() + verified.sum();
+        return new HashingStats(hashed.sum(), verified.sum(), rejected.sum(), timedOut.sum(),
+                pool.getQueue().size(), pool.getActiveCount(),
+                completed == 0 ? 0 : computeNanos.sum() / 1e6 / completed,
+                completed == 0 ? 0 : waitNanos.sum() / 1e6 / completed,
+                maxComputeNanos.get() / 1e6);
+    }
+
+    private <T> T run(Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    return task.get();
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    waitNanos.add(startedAt - submittedAt);
+                    computeNanos.add(elapsed);
+                    maxComputeNanos.accumulate(elapsed);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            throw new CredentialHashingBusyException("密码校验请求过多，请稍后再试");
+        }
+
+        try {
+            return future.get(passwordHashProperties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            // 仍在排队的任务取消后不会自动出队，移除它，让出的位置留给后续请求
+            executor.getThreadPoolExecutor().remove((Runnable) future);
+            timedOut.increment();
+            throw new CredentialHashingBusyException("密码校验等待超时，请稍后再试");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            executor.getThreadPoolExecutor().remove((Runnable) future);
+            Thread.currentThread().interrupt();
+            throw new CredentialHashingBusyException("密码校验被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 哈希统计
+     *
+     * @param hashed            已计算的哈希数
+     * @param verified          已完成的校验数
+     * @param rejected          因队列已满被拒绝的请求数
+     * @param timedOut          等待超时的请求数
+     * @param queueDepth        当前排队的请求数
+     * @param active            正在计算的线程数
+     * @param averageMillis     平均计算耗时
+     * @param averageWaitMillis 平均排队耗时
+     * @param maxMillis         最长计算耗时
+     */
+    public record HashingStats(long hashed, long verified, long rejected, long timedOut, int queueDepth, int active,
+                               double averageMillis, double averageWaitMillis, double maxMillis) {
+    }
+}
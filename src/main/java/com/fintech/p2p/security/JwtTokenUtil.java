@@ -9,6 +9,8 @@ import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.logging.Logger;
 
 @Component
@@ -16,6 +18,9 @@ public class JwtTokenUtil {
 
     private static final Logger logger = Logger.getLogger(JwtTokenUtil.class.getName());
 
+    // 用户角色，JwtTokenFilter 据此授予 ROLE_ 权限
+    public static final String ROLE_CLAIM = "role";
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -24,29 +29,36 @@ public class JwtTokenUtil {
 
     private SecretKey key;
 
+    // 解析器不可变且线程安全，所有请求共用一个实例
+    private JwtParser parser;
+
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(key).build();
     }
 
     // Generate JWT Token
     public String generateToken(String username) {
+        return generateToken(username, null);
+    }
+
+    // Generate JWT Token carrying the user's role, no role claim when role is null
+    public String generateToken(String username, String role) {
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
+                .claim(ROLE_CLAIM, role)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(key)
                 .compact();
     }
 
-    // Validate JWT Token
-    public boolean validateToken(String token) {
+    // Verify signature and expiration once and return the claims
+    public Optional<Claims> parseClaims(String token) {
         try {
-            Jwts.parser()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return Optional.of(parser.parseSignedClaims(token).getPayload());
         } catch (ExpiredJwtException e) {
             logger.warning("JWT token expired");
         } catch (UnsupportedJwtException e) {
@@ -58,26 +70,21 @@ public class JwtTokenUtil {
         } catch (IllegalArgumentException e) {
             logger.warning("JWT token compact of handler are invalid");
         }
-        return false;
+        return Optional.empty();
+    }
+
+    // Validate JWT Token
+    public boolean validateToken(String token) {
+        return parseClaims(token).isPresent();
     }
 
     // Get username from JWT Token
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return parser.parseSignedClaims(token).getPayload().getSubject();
     }
 
     // Get token expiration time
     public long getTokenExpirationTime(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getExpiration().getTime();
+        return parser.parseSignedClaims(token).getPayload().getExpiration().getTime();
     }
 }
@@ -0,0 +1,159 @@
+package com.fintech.p2p.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 带缓存的 JWT 校验
+ * <p>
+ * 令牌验签并解析一次后，按令牌的 SHA-256 摘要缓存用户名和角色直到令牌过期，同一令牌的后续请求不再做 HMAC 校验和 JSON 解析。
+ * 缓存条目数有上限，已满时按放入顺序淘汰最早的条目；令牌有效期相同，最早放入的也最先过期，淘汰是常数时间，不扫描整个缓存。
+ * 注销的令牌按 jti 记入 {@link TokenRevocationList}，缓存命中时同样检查吊销列表，因此缓存不会让已吊销的令牌继续生效。
+ * 没有 jti 的旧令牌以令牌摘要作为吊销标识。
+ */
+@Component
+public class JwtTokenVerifier {
+    private final JwtTokenUtil jwtTokenUtil;
+    private final TokenRevocationList tokenRevocationList;
+    private final int maxEntries;
+
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+    // 令牌摘要按放入缓存的顺序排列，可能含已移除的摘要，由定时清理压缩
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public JwtTokenVerifier(JwtTokenUtil jwtTokenUtil, TokenRevocationList tokenRevocationList,
+                            @Value("${jwt.cache.max-entries:10000}") int maxEntries) {
+        this.jwtTokenUtil = jwtTokenUtil;
+        this.tokenRevocationList = tokenRevocationList;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @return 令牌有效且未吊销时返回用户名
+     */
+    public Optional<String> verify(String token) {
+        return authenticate(token).map(VerifiedUser::username);
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @return 令牌有效且未吊销时返回用户名和角色
+     */
+    public Optional<VerifiedUser> authenticate(String token) {
+        String hash = hash(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verified.get(hash);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                return tokenRevocationList.isRevoked(cached.tokenId(), cached.expiresAt())
+                        ? Optional.empty() : Optional.of(cached.user());
+            }
+            verified.remove(hash, cached);
+        }
+
+        Optional<Claims> claims = jwtTokenUtil.parseClaims(token);
+        if (claims.isEmpty()) {
+            return Optional.empty();
+        }
+        String tokenId = tokenId(claims.get(), hash);
+        long expiresAt = expiresAt(claims.get());
+        if (tokenRevocationList.isRevoked(tokenId, expiresAt)) {
+            return Optional.empty();
+        }
+        VerifiedUser user = new VerifiedUser(claims.get().getSubject(),
+                claims.get().get(JwtTokenUtil.ROLE_CLAIM, String.class));
+        if (claims.get().getExpiration() != null) {
+            makeRoom();
+            if (verified.put(hash, new VerifiedToken(user, tokenId, expiresAt)) == null) {
+                insertionOrder.add(hash);
+            }
+        }
+        return Optional.of(user);
+    }
+
+    /**
+     * 吊销令牌，直到令牌过期前都不再通过校验
+     */
+    public void revoke(String token) {
+        Optional<Claims> claims = jwtTokenUtil.parseClaims(token);
+        if (claims.isEmpty()) {
+            return;
+        }
+        String hash = hash(token);
+        tokenRevocationList.revoke(tokenId(claims.get(), hash), expiresAt(claims.get()));
+        verified.remove(hash);
+    }
+
+    /**
+     * 缓存中的令牌数
+     */
+    public int cachedTokens() {
+        return verified.size();
+    }
+
+    /**
+     * 清理已过期的缓存
+     */
+    @Scheduled(fixedDelayString = "${jwt.cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        verified.values().removeIf(token -> token.expiresAt() <= now);
+        insertionOrder.removeIf(hash -> !verified.containsKey(hash));
+    }
+
+    // 每次淘汰对应一次放入，均摊常数时间
+    private void makeRoom() {
+        while (verified.size() >= maxEntries) {
+            String eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            verified.remove(eldest);
+        }
+    }
+
+    private static String tokenId(Claims claims, String tokenHash) {
+        return claims.getId() != null ? claims.getId() : tokenHash;
+    }
+
+    // 没有过期时间的令牌一直有效，吊销记录也一直保留
+    private static long expiresAt(Claims claims) {
+        return claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 令牌中的用户
+     *
+     * @param username 用户名
+     * @param role     用户角色，旧令牌没有角色时为 null
+     */
+    public record VerifiedUser(String username, String role) {
+    }
+
+    private record VerifiedToken(VerifiedUser user, String tokenId, long expiresAt) {
+    }
+}
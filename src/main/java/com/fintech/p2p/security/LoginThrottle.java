@@ -0,0 +1,266 @@
+package com.fintech.p2p.security;
+
+import com.fintech.p2p.config.LoginThrottleProperties;
+import com.fintech.p2p.model.LoginLockout;
+import com.fintech.p2p.repository.LoginLockoutRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 登录失败限流
+ * <p>
+ * 按用户名和IP分别计数，采用滑动窗口近似：当前窗口的失败次数加上上一窗口次数按剩余比例折算，达到上限即锁定。
+ * 每个计数器是不可变状态上的 CAS，递增不加锁。两类计数器各自最多保留 maxEntries 条，
+ * 超出时先清理两个窗口都已过去且未锁定的条目，仍然超出则随机淘汰未锁定的条目，
+ * 因此大量随机用户名的撞库请求不会让内存无限增长。锁定中的条目从不淘汰，已满且全部锁定时不再为新的用户名或IP建立计数器。
+ * <p>
+ * 开启 shared-lockouts 后，锁定同时写入 login_lockouts 表，其他节点在本地未锁定时会查询该表。
+ */
+@Component
+@Slf4j
+public class LoginThrottle {
+    private final LoginThrottleProperties properties;
+    private final LoginLockoutRepository loginLockoutRepository;
+
+    private final Counters users;
+    private final Counters ips;
+
+    public LoginThrottle(LoginThrottleProperties properties, LoginLockoutRepository loginLockoutRepository) {
+        this.properties = properties;
+        this.loginLockoutRepository = loginLockoutRepository;
+        this.users = new Counters("user:");
+        this.ips = new Counters("ip:");
+    }
+
+    /**
+     * 用户名或IP是否处于锁定期
+     *
+     * @param ip 客户端IP，未知时为 null
+     */
+    public boolean isLocked(String username, String ip) {
+        long now = System.currentTimeMillis();
+        if (users.isLocked(username, now) || (ip != null && ips.isLocked(ip, now))) {
+            return true;
+        }
+        if (!properties.isSharedLockouts()) {
+            return false;
+        }
+        List<String> keys = new ArrayList<>(2);
+        keys.add(users.sharedKey(username));
+        if (ip != null) {
+            keys.add(ips.sharedKey(ip));
+        }
+        try {
+            return loginLockoutRepository.anyLocked(keys, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("查询共享登录锁定失败，仅按本节点计数限流", e);
+            return false;
+        }
+    }
+
+    /**
+     * 记录一次失败的登录
+     *
+     * @param ip 客户端IP，未知时为 null
+     */
+    public void recordFailure(String username, String ip) {
+        long now = System.currentTimeMillis();
+        if (users.fail(username, properties.getMaxUserFailures(), now)) {
+            log.warn("Account locked due to too many failed attempts: {}", username);
+        }
+        if (ip != null && ips.fail(ip, properties.getMaxIpFailures(), now)) {
+            log.warn("IP locked due to too many failed attempts: {}", ip);
+        }
+    }
+
+    /**
+     * 登录成功，清除该用户名的失败计数；IP 计数保留，避免撞库时夹杂自己的有效账号来重置
+     */
+    public void recordSuccess(String username) {
+        users.entries.remove(username);
+    }
+
+    /**
+     * 内存中的用户名计数器数
+     */
+    public int trackedUsers() {
+        return users.entries.size();
+    }
+
+    /**
+     * 内存中的IP计数器数
+     */
+    public int trackedIps() {
+        return ips.entries.size();
+    }
+
+    /**
+     * 定期清理过期的计数器和共享锁定
+     */
+    @Scheduled(fixedDelayString = "${app.login-throttle.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        users.trim(now, false);
+        ips.trim(now, false);
+        if (properties.isSharedLockouts()) {
+            loginLockoutRepository.deleteExpired(LocalDateTime.now());
+        }
+    }
+
+    private void share(String key, long lockedUntilMillis) {
+        if (!properties.isSharedLockouts()) {
+            return;
+        }
+        LocalDateTime lockedUntil = LocalDateTime.ofInstant(Instant.ofEpochMilli(lockedUntilMillis), ZoneId.systemDefault());
+        try {
+            if (loginLockoutRepository.extend(key, lockedUntil) == 0 && !loginLockoutRepository.existsById(key)) {
+                LoginLockout lockout = new LoginLockout();
+                lockout.setLockKey(key);
+                lockout.setLockedUntil(lockedUntil);
+                loginLockoutRepository.save(lockout);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // 其他节点同时写入了锁定
+            loginLockoutRepository.extend(key, lockedUntil);
+        } catch (RuntimeException e) {
+            log.warn("写入共享登录锁定失败，锁定仅在本节点生效", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 一类计数器（用户名或IP）
+     */
+    private final class Counters {
+        private final String prefix;
+        private final Map<String, AtomicReference<Window>> entries = new ConcurrentHashMap<>();
+        private final AtomicBoolean trimming = new AtomicBoolean();
+
+        private Counters(String prefix) {
+            this.prefix = prefix;
+        }
+
+        private boolean isLocked(String key, long now) {
+            AtomicReference<Window> counter = entries.get(key);
+            return counter != null && counter.get().lockedUntil() > now;
+        }
+
+        /**
+         * @return 本次失败触发了锁定时返回 true
+         */
+        private boolean fail(String key, int maxFailures, long now) {
+            AtomicReference<Window> counter = entries.get(key);
+            if (counter == null) {
+                if (entries.size() >= properties.getMaxEntries()) {
+                    trim(now, true);
+                    if (entries.size() >= properties.getMaxEntries()) {
+                        // 剩下的都是锁定中的条目，淘汰它们等于解除锁定
+                        log.debug("登录计数器已满且全部锁定，不再记录新的条目: {}", prefix);
+                        return false;
+                    }
+                }
+                counter = entries.computeIfAbsent(key, k -> new AtomicReference<>(Window.EMPTY));
+            }
+            long windowMillis = properties.getWindow().toMillis();
+            long windowIndex = now / windowMillis;
+            Window current;
+            Window next;
+            do {
+                current = counter.get();
+                next = current.roll(windowIndex).failed();
+                if (current.lockedUntil() <= now && next.estimate(now, windowMillis) >= maxFailures) {
+                    // 锁定即是惩罚，锁定后重新计数
+                    next = new Window(windowIndex, 0, 0, now + properties.getLockout().toMillis());
+                }
+            } while (!counter.compareAndSet(current, next));
+
+            if (next.lockedUntil() == current.lockedUntil()) {
+                return false;
+            }
+            share(sharedKey(key), next.lockedUntil());
+            return true;
+        }
+
+        private String sharedKey(String key) {
+            return prefix + sha256(key);
+        }
+
+        /**
+         * 清理两个窗口都已过去且未锁定的计数器；force 时仍超出上限则淘汰未锁定的条目，直到低于上限的 90%，锁定中的条目保留
+         */
+        private void trim(long now, boolean force) {
+            if (!trimming.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                long windowIndex = now / properties.getWindow().toMillis();
+                entries.values().removeIf(counter -> counter.get().isIdle(windowIndex, now));
+                int target = properties.getMaxEntries() / 10 * 9;
+                if (!force || entries.size() <= target) {
+                    return;
+                }
+                // ConcurrentHashMap 按哈希顺序遍历，淘汰的条目与写入顺序无关
+                Iterator<AtomicReference<Window>> iterator = entries.values().iterator();
+                while (entries.size() > target && iterator.hasNext()) {
+                    if (iterator.next().get().lockedUntil() <= now) {
+                        iterator.remove();
+                    }
+                }
+            } finally {
+                trimming.set(false);
+            }
+        }
+    }
+
+    /**
+     * 计数器状态：窗口序号、当前窗口和上一窗口的失败次数、锁定截止时间
+     */
+    private record Window(long index, int current, int previous, long lockedUntil) {
+        private static final Window EMPTY = new Window(0, 0, 0, 0);
+
+        private Window roll(long windowIndex) {
+            if (windowIndex == index) {
+                return this;
+            }
+            return new Window(windowIndex, 0, windowIndex == index + 1 ? current : 0, lockedUntil);
+        }
+
+        private Window failed() {
+            return new Window(index, current + 1, previous, lockedUntil);
+        }
+
+        private double estimate(long now, long windowMillis) {
+            double remaining = 1.0 - (double) (now % windowMillis) / windowMillis;
+            return current + previous * remaining;
+        }
+
+        private boolean isIdle(long windowIndex, long now) {
+            return windowIndex > index + 1 && lockedUntil <= now;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.fintech.p2p.security;
 
+import com.fintech.p2p.config.PasswordHashProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -19,6 +21,13 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable) // 关闭 CSRF
                 .authorizeHttpRequests(auth -> auth
+                        // 必须放在 /api/repayments/** 之前，先匹配的规则生效
+                        .requestMatchers(HttpMethod.POST, "/api/repayments/settlements")
+                        .hasAnyRole("ADMIN", "OPS") // 结算文件入账仅限管理员和运营
+                        .requestMatchers(HttpMethod.GET, "/api/repayments/export")
+                        .authenticated() // 导出需登录，非管理员只能导出自己的还款记录
+                        .requestMatchers(HttpMethod.GET, "/api/investments/*/document", "/api/investments/statement/investor/*")
+                        .authenticated() // 投资文档和对账单需登录，非管理员只能下载自己的
                         .requestMatchers(
                                 "/api/auth/**",
                                 "/api/users/**",
@@ -38,8 +47,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(PasswordHashProperties passwordHashProperties) {
+        return new BCryptPasswordEncoder(passwordHashProperties.getStrength());
     }
 
     @Bean
@@ -0,0 +1,235 @@
+package com.fintech.p2p.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 已吊销 JWT 的列表，按令牌 jti 记录直到令牌过期
+ * <p>
+ * 吊销记录按令牌过期时间分桶，每个桶是一个布隆过滤器加一个精确集合。校验时只看令牌过期时间所在的桶：
+ * 该时段没有吊销记录时一次 Map 查找即返回，布隆过滤器判定不存在时也不查精确集合，只有疑似命中才做精确比较。
+ * 桶内令牌全部过期后整个桶丢弃，不需要逐条清理。布隆过滤器按每个桶预计的吊销数分配位数（每条约 10 位，误判率约 1%），
+ * 实际吊销数超出预计时误判率上升，多出的只是精确集合的查找，结果仍然准确。
+ * <p>
+ * 吊销列表定期并在关闭时写入快照文件（先写临时文件再原子替换），启动时加载未过期的记录；进程崩溃时最多丢失一个快照周期内的吊销。
+ */
+@Component
+@Slf4j
+public class TokenRevocationList {
+    private static final int SNAPSHOT_MAGIC = 0x4A52564C; // "JRVL"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int BLOOM_HASHES = 5;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+
+    private final long bucketMillis;
+    private final int bloomBits;
+    private final Path snapshotFile;
+
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public TokenRevocationList(@Value("${jwt.revocation.bucket-ms:900000}") long bucketMillis,
+                               @Value("${jwt.revocation.expected-per-bucket:10000}") int expectedPerBucket,
+                               @Value("${jwt.revocation.snapshot-file:data/jwt-revocations.snapshot}") String snapshotFile) {
+        this.bucketMillis = bucketMillis;
+        this.bloomBits = bloomBits(expectedPerBucket);
+        this.snapshotFile = snapshotFile == null || snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    }
+
+    /**
+     * 吊销令牌
+     *
+     * @param tokenId         令牌的 jti
+     * @param expiresAtMillis 令牌过期时间，过期后记录自动丢弃
+     */
+    public void revoke(String tokenId, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        buckets.computeIfAbsent(expiresAtMillis / bucketMillis, index -> new Bucket(bloomBits))
+                .add(tokenId, expiresAtMillis);
+        dirty.set(true);
+    }
+
+    /**
+     * 令牌是否已吊销
+     *
+     * @param tokenId         令牌的 jti
+     * @param expiresAtMillis 令牌过期时间，用于定位所在的桶
+     */
+    public boolean isRevoked(String tokenId, long expiresAtMillis) {
+        Bucket bucket = buckets.get(expiresAtMillis / bucketMillis);
+        return bucket != null && bucket.contains(tokenId);
+    }
+
+    // 向上取整到 2 的幂，按位与定位
+    private static int bloomBits(int expectedPerBucket) {
+        long bits = Math.max(64L, (long) expectedPerBucket * BLOOM_BITS_PER_ENTRY);
+        return (int) Math.min(1L << 30, Long.highestOneBit(bits - 1) << 1);
+    }
+
+    /**
+     * 未过期的吊销记录数
+     */
+    public int size() {
+        return buckets.values().stream().mapToInt(bucket -> bucket.entries.size()).sum();
+    }
+
+    /**
+     * 丢弃令牌已全部过期的桶
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long current = System.currentTimeMillis() / bucketMillis;
+        if (buckets.keySet().removeIf(index -> index < current)) {
+            dirty.set(true);
+        }
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("JWT吊销快照格式不符，忽略: {}", snapshotFile);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String tokenId = in.readUTF();
+                long expiresAt = in.readLong();
+                if (expiresAt > now) {
+                    revoke(tokenId, expiresAt);
+                    loaded++;
+                }
+            }
+            dirty.set(false);
+            log.info("已从快照加载{}条JWT吊销记录", loaded);
+        } catch (NoSuchFileException e) {
+            // 首次启动
+        } catch (IOException e) {
+            log.warn("读取JWT吊销快照失败: {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 有新的吊销时写入快照
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.snapshot-interval-ms:30000}")
+    @PreDestroy
+    public void writeSnapshot() {
+        if (snapshotFile == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            Path directory = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    Map<String, Long> live = new HashMap<>();
+                    for (Bucket bucket : buckets.values()) {
+                        bucket.entries.forEach((tokenId, expiresAt) -> {
+                            if (expiresAt > now) {
+                                live.put(tokenId, expiresAt);
+                            }
+                        });
+                    }
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeInt(SNAPSHOT_VERSION);
+                    out.writeInt(live.size());
+                    for (Map.Entry<String, Long> entry : live.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(entry.getValue());
+                    }
+                }
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("写入JWT吊销快照失败: {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 同一过期时段内的吊销记录
+     */
+    private static final class Bucket {
+        private final AtomicLongArray bloom;
+        private final int mask;
+        private final Map<String, Long> entries = new ConcurrentHashMap<>();
+
+        private Bucket(int bits) {
+            this.bloom = new AtomicLongArray(bits >>> 6);
+            this.mask = bits - 1;
+        }
+
+        private void add(String tokenId, long expiresAt) {
+            // 先写精确集合再置位，并发读到布隆位时精确集合中一定已有记录
+            entries.put(tokenId, expiresAt);
+            long h1 = hash(tokenId);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (int) (h1 + i * h2) & mask;
+                long word = 1L << bit;
+                int index = bit >>> 6;
+                long current;
+                do {
+                    current = bloom.get(index);
+                } while ((current & word) == 0 && !bloom.compareAndSet(index, current, current | word));
+            }
+        }
+
+        private boolean contains(String tokenId) {
+            long h1 = hash(tokenId);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (int) (h1 + i * h2) & mask;
+                if ((bloom.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return entries.containsKey(tokenId);
+        }
+
+        private static long hash(String value) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h = (h ^ value.charAt(i)) * 0x100000001B3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+            h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
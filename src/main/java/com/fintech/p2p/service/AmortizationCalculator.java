@@ -0,0 +1,100 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.enums.AmortizationMethod;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 还款计划计算器
+ * <p>
+ * 每期利息 = 期初剩余本金 × 月利率，按分四舍五入；每期本金按方式计算并截断到分，
+ * 最后一期偿还全部剩余本金，使各期本金之和严格等于借款金额。
+ */
+@Component
+public class AmortizationCalculator {
+    private static final int SCALE = 2;
+    private static final BigDecimal MONTHS_PER_YEAR_PERCENT = BigDecimal.valueOf(1200);
+    private static final MathContext MC = MathContext.DECIMAL128;
+
+    /**
+     * 计算还款计划
+     *
+     * @param principal    借款金额
+     * @param annualRate   年化利率（百分比，如 5.5 表示 5.5%）
+     * @param term         期数（月）
+     * @param method       还款方式
+     * @param firstDueDate 第一期到期日，之后每月同日到期
+     * @return 按期数排列的每期明细
+     */
+    public List<Installment> calculate(BigDecimal principal, BigDecimal annualRate, int term,
+                                       AmortizationMethod method, LocalDate firstDueDate) {
+        if (principal == null || principal.signum() <= 0) {
+            throw new IllegalArgumentException("借款金额必须大于0");
+        }
+        if (annualRate == null || annualRate.signum() < 0) {
+            throw new IllegalArgumentException("利率不能为负数");
+        }
+        if (term < 1) {
+            throw new IllegalArgumentException("期数必须大于0");
+        }
+
+        BigDecimal monthlyRate = annualRate.divide(MONTHS_PER_YEAR_PERCENT, MC);
+        BigDecimal remaining = principal.setScale(SCALE, RoundingMode.HALF_UP);
+        BigDecimal payment = method == AmortizationMethod.EQUAL_INSTALLMENT
+                ? installmentPayment(remaining, monthlyRate, term)
+                : null;
+        BigDecimal principalPart = method == AmortizationMethod.EQUAL_PRINCIPAL
+                ? remaining.divide(BigDecimal.valueOf(term), SCALE, RoundingMode.DOWN)
+                : null;
+
+        List<Installment> installments = new ArrayList<>(term);
+        for (int number = 1; number <= term; number++) {
+            BigDecimal interest = remaining.multiply(monthlyRate).setScale(SCALE, RoundingMode.HALF_UP);
+            BigDecimal principalPaid;
+            if (number == term) {
+                principalPaid = remaining;
+            } else if (payment != null) {
+                // 利息大于月供时（极端利率）本期不还本金
+                principalPaid = payment.subtract(interest).max(BigDecimal.ZERO).min(remaining);
+            } else {
+                principalPaid = principalPart.min(remaining);
+            }
+            remaining = remaining.subtract(principalPaid);
+            installments.add(new Installment(number, firstDueDate.plusMonths(number - 1),
+                    principalPaid.add(interest), principalPaid, interest, remaining));
+        }
+        return installments;
+    }
+
+    /**
+     * 等额本息月供：P × r × (1 + r)^n / ((1 + r)^n - 1)，按分四舍五入
+     */
+    private BigDecimal installmentPayment(BigDecimal principal, BigDecimal monthlyRate, int term) {
+        if (monthlyRate.signum() == 0) {
+            return principal.divide(BigDecimal.valueOf(term), SCALE, RoundingMode.HALF_UP);
+        }
+        BigDecimal growth = BigDecimal.ONE.add(monthlyRate).pow(term, MC);
+        return principal.multiply(monthlyRate, MC).multiply(growth, MC)
+                .divide(growth.subtract(BigDecimal.ONE), SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 单期还款明细
+     *
+     * @param number             期数，从1开始
+     * @param dueDate            到期日
+     * @param payment            本期应还总额（本金 + 利息）
+     * @param principal          本期应还本金
+     * @param interest           本期应还利息
+     * @param remainingPrincipal 本期还款后的剩余本金
+     */
+    public record Installment(int number, LocalDate dueDate, BigDecimal payment, BigDecimal principal,
+                              BigDecimal interest, BigDecimal remainingPrincipal) {
+    }
+}
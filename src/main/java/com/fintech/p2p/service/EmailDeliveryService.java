@@ -0,0 +1,121 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.exception.EmailSendingException;
+import com.fintech.p2p.mail.SmtpTransportPool;
+import com.fintech.p2p.mail.SpooledEmail;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 邮件投递服务，负责把已渲染好的邮件通过SMTP连接池发出，不做任何重试或等待
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailDeliveryService {
+    private final JavaMailSender mailSender;
+    private final SmtpTransportPool smtpTransportPool;
+    private final EmailProperties emailProperties;
+
+    /**
+     * 发送一封HTML邮件
+     *
+     * @param toEmail 收件人邮箱
+     * @param subject 邮件主题
+     * @param content HTML内容
+     * @throws EmailSendingException 发送失败
+     */
+    public void deliver(String toEmail, String subject, String content) {
+        DeliveryResult result = deliver(List.of(SpooledEmail.first(toEmail, subject, content))).get(0);
+        if (!result.success()) {
+            throw result.error();
+        }
+    }
+
+    /**
+     * 在同一个SMTP连接上发送一批邮件
+     *
+     * @param emails 待发送的邮件
+     * @return 与入参一一对应的发送结果
+     */
+    public List<DeliveryResult> deliver(List<SpooledEmail> emails) {
+        List<DeliveryResult> results = new ArrayList<>(emails.size());
+        List<MimeMessage> messages = new ArrayList<>(emails.size());
+        List<Integer> positions = new ArrayList<>(emails.size());
+        for (SpooledEmail email : emails) {
+            try {
+                messages.add(createMessage(email));
+                positions.add(results.size());
+                results.add(null);
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                results.add(failed(email, e));
+            }
+        }
+        if (messages.isEmpty()) {
+            return results;
+        }
+
+        List<MessagingException> failures;
+        try {
+            failures = smtpTransportPool.send(messages);
+        } catch (EmailSendingException e) {
+            for (int position : positions) {
+                results.set(position, failed(emails.get(position), e));
+            }
+            return results;
+        }
+
+        for (int i = 0; i < positions.size(); i++) {
+            int position = positions.get(i);
+            SpooledEmail email = emails.get(position);
+            MessagingException failure = failures.get(i);
+            if (failure == null) {
+                log.info("📩 邮件 '{}' 已成功发送到 {}", email.subject(), email.toEmail());
+                results.set(position, new DeliveryResult(email, null));
+            } else {
+                results.set(position, failed(email, failure));
+            }
+        }
+        return results;
+    }
+
+    private MimeMessage createMessage(SpooledEmail email)
+            throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(emailProperties.getSenderEmail(), emailProperties.getSenderName());
+        helper.setTo(email.toEmail());
+        helper.setSubject(email.subject());
+        helper.setText(email.content(), true);
+        return message;
+    }
+
+    private DeliveryResult failed(SpooledEmail email, Exception cause) {
+        log.error("❌ 发送邮件 '{}' 到 {} 失败：{}", email.subject(), email.toEmail(), cause.getMessage());
+        EmailSendingException error = cause instanceof EmailSendingException sendingException
+                ? sendingException : new EmailSendingException("发送邮件失败", cause);
+        return new DeliveryResult(email, error);
+    }
+
+    /**
+     * 单封邮件的投递结果
+     *
+     * @param email 邮件
+     * @param error 失败原因，成功时为null
+     */
+    public record DeliveryResult(SpooledEmail email, EmailSendingException error) {
+        public boolean success() {
+            return error == null;
+        }
+    }
+}
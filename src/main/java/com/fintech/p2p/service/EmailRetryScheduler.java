@@ -0,0 +1,71 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.mail.EmailSpool;
+import com.fintech.p2p.mail.SpooledEmail;
+import com.fintech.p2p.model.EmailRetry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 邮件重试调度器：定时领取到期的重试任务，整批追加到发送队列（共用组提交的落盘），
+ * 落盘后一次性从重试表删除；发送队列积压过多时暂停领取
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailRetryScheduler {
+    private final EmailRetryService emailRetryService;
+    private final EmailSpool emailSpool;
+    private final EmailProperties emailProperties;
+
+    @Scheduled(fixedDelayString = "${app.email.retry-poll-interval-ms:1000}")
+    public void dispatchDueRetries() {
+        if (emailSpool.backlogBytes() >= emailProperties.getSpool().getMaxBacklogBytes()) {
+            return;
+        }
+
+        List<EmailRetry> claimed;
+        try {
+            claimed = emailRetryService.claimDue(emailProperties.getRetryBatchSize());
+        } catch (Exception e) {
+            log.error("领取邮件重试任务失败: {}", e.getMessage(), e);
+            return;
+        }
+
+        List<CompletableFuture<Long>> appends = new ArrayList<>(claimed.size());
+        for (EmailRetry retry : claimed) {
+            SpooledEmail email = new SpooledEmail(retry.getToEmail(), retry.getSubject(), retry.getContent(),
+                    retry.getStage(), retry.getFirstAttemptAt());
+            try {
+                appends.add(emailSpool.append(email));
+            } catch (RuntimeException e) {
+                log.error("重试邮件放回发送队列失败, id={}: {}", retry.getId(), e.getMessage());
+                break;
+            }
+        }
+
+        // 只删除已落盘的任务，未删除的任务在租约到期后会被重新领取
+        List<EmailRetry> requeued = new ArrayList<>(appends.size());
+        for (int i = 0; i < appends.size(); i++) {
+            try {
+                appends.get(i).join();
+                requeued.add(claimed.get(i));
+            } catch (RuntimeException e) {
+                log.error("重试邮件落盘失败, id={}: {}", claimed.get(i).getId(), e.getMessage());
+            }
+        }
+        try {
+            emailRetryService.requeued(requeued);
+        } catch (RuntimeException e) {
+            // 删除失败的任务会在租约到期后再次投递，邮件可能重复但不会丢失
+            log.error("删除已放回发送队列的重试任务失败: {}", e.getMessage(), e);
+        }
+    }
+}
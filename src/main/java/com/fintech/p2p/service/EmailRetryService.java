@@ -0,0 +1,164 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.mail.SpooledEmail;
+import com.fintech.p2p.model.EmailRetry;
+import com.fintech.p2p.repository.EmailRetryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 邮件延迟重试服务
+ * <p>
+ * 发送失败的邮件连同渲染好的内容写入 email_retries 表，按 {@link EmailProperties#getRetryDelays()}
+ * 逐级延迟后由 {@link EmailRetryScheduler} 放回发送队列，所有阶段都失败后标记为死信。
+ * 等待期间不占用任何邮件线程。阶段0表示首次发送。
+ */
+@Service
+@Slf4j
+public class EmailRetryService {
+    private final EmailRetryRepository emailRetryRepository;
+    private final EmailProperties emailProperties;
+
+    private final AtomicLongArray attemptsPerStage;
+    private final AtomicLongArray deliveredPerStage;
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder deliveryMillisTotal = new LongAdder();
+    private final AtomicLong maxDeliveryMillis = new AtomicLong();
+
+    public EmailRetryService(EmailRetryRepository emailRetryRepository, EmailProperties emailProperties) {
+        this.emailRetryRepository = emailRetryRepository;
+        this.emailProperties = emailProperties;
+        int stages = emailProperties.getRetryDelays().size() + 1;
+        this.attemptsPerStage = new AtomicLongArray(stages);
+        this.deliveredPerStage = new AtomicLongArray(stages);
+    }
+
+    /**
+     * 发送失败，写入下一个重试阶段；已是最后阶段时转入死信
+     *
+     * @param email 发送失败的邮件
+     * @param cause 失败原因
+     */
+    public void scheduleRetry(SpooledEmail email, Exception cause) {
+        EmailRetry retry = new EmailRetry();
+        retry.setToEmail(email.toEmail());
+        retry.setSubject(email.subject());
+        retry.setContent(email.content());
+        retry.setFirstAttemptAt(email.firstAttemptAt());
+        retry.setStage(email.stage());
+        advance(retry, cause);
+    }
+
+    /**
+     * 领取一批到期的重试任务，并把它们的下次执行时间推后一个租约，避免被其他节点重复领取
+     *
+     * @param limit 最多领取的任务数
+     * @return 已领取的任务
+     */
+    @Transactional
+    public List<EmailRetry> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailRetry> due = emailRetryRepository.findDue(EmailRetry.Status.PENDING, now, PageRequest.of(0, limit));
+        LocalDateTime leaseUntil = now.plus(emailProperties.getRetryLease());
+        for (EmailRetry retry : due) {
+            retry.setNextAttemptAt(leaseUntil);
+        }
+        return due;
+    }
+
+    /**
+     * 重试任务已重新放回发送队列，从重试表批量删除
+     */
+    public void requeued(List<EmailRetry> retries) {
+        if (!retries.isEmpty()) {
+            emailRetryRepository.deleteAllByIdInBatch(retries.stream().map(EmailRetry::getId).toList());
+        }
+    }
+
+    /**
+     * 记录一次发送尝试
+     *
+     * @param stage 重试阶段，0为首次发送
+     */
+    public void recordAttempt(int stage) {
+        attemptsPerStage.incrementAndGet(stage);
+    }
+
+    /**
+     * 记录一次成功送达及从首次发送到送达的耗时
+     *
+     * @param stage          送达时所处的阶段
+     * @param firstAttemptAt 首次发送时间
+     */
+    public void recordDelivered(int stage, LocalDateTime firstAttemptAt) {
+        long millis = Math.max(0, Duration.between(firstAttemptAt, LocalDateTime.now()).toMillis());
+        deliveredPerStage.incrementAndGet(stage);
+        deliveryMillisTotal.add(millis);
+        maxDeliveryMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    private void advance(EmailRetry retry, Exception cause) {
+        List<Duration> delays = emailProperties.getRetryDelays();
+        int stage = retry.getStage();
+        retry.setLastError(abbreviate(cause.getMessage()));
+        if (stage >= delays.size()) {
+            retry.setStatus(EmailRetry.Status.DEAD);
+            retry.setNextAttemptAt(LocalDateTime.now());
+            deadLettered.increment();
+            log.error("邮件 '{}' 到 {} 已重试{}次仍失败，转入死信", retry.getSubject(), retry.getToEmail(), stage);
+        } else {
+            retry.setStage(stage + 1);
+            retry.setNextAttemptAt(LocalDateTime.now().plus(delays.get(stage)));
+            log.warn("邮件 '{}' 到 {} 发送失败，{}后进行第{}次重试", retry.getSubject(), retry.getToEmail(),
+                    delays.get(stage), stage + 1);
+        }
+        emailRetryRepository.save(retry);
+    }
+
+    private static String abbreviate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= 512 ? message : message.substring(0, 512);
+    }
+
+    /**
+     * 获取重试指标
+     */
+    public RetryStats getStats() {
+        int stages = attemptsPerStage.length();
+        long[] attempts = new long[stages];
+        long[] delivered = new long[stages];
+        long deliveredTotal = 0;
+        for (int i = 0; i < stages; i++) {
+            attempts[i] = attemptsPerStage.get(i);
+            delivered[i] = deliveredPerStage.get(i);
+            deliveredTotal += delivered[i];
+        }
+        long avgMillis = deliveredTotal == 0 ? 0 : deliveryMillisTotal.sum() / deliveredTotal;
+        return new RetryStats(attempts, delivered, deadLettered.sum(), avgMillis, maxDeliveryMillis.get());
+    }
+
+    /**
+     * 邮件重试指标
+     *
+     * @param attemptsPerStage        各阶段的发送尝试次数，下标0为首次发送
+     * @param deliveredPerStage       各阶段的成功送达数
+     * @param deadLettered            转入死信的邮件数
+     * @param avgTimeToDeliveryMillis 从首次发送到送达的平均耗时
+     * @param maxTimeToDeliveryMillis 从首次发送到送达的最大耗时
+     */
+    public record RetryStats(long[] attemptsPerStage, long[] deliveredPerStage, long deadLettered,
+                             long avgTimeToDeliveryMillis, long maxTimeToDeliveryMillis) {
+    }
+}
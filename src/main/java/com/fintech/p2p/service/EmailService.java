@@ -1,37 +1,37 @@
 package com.fintech.p2p.service;
 
 import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.event.RepaymentEvent;
 import com.fintech.p2p.exception.EmailSendingException;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.fintech.p2p.mail.EmailSpool;
+import com.fintech.p2p.mail.EmailTemplate;
+import com.fintech.p2p.mail.SpooledEmail;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * 邮件服务类，负责发送各类邮件通知
+ * <p>
+ * 邮件渲染后写入持久化发送队列 {@link EmailSpool}，返回的 CompletableFuture 在邮件落盘后完成，
+ * 之后由 {@link EmailSpoolDispatcher} 投递；发送失败交给 {@link EmailRetryService} 延迟重投。
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
-    private final JavaMailSender mailSender;
+    private final EmailSpool emailSpool;
     private final EmailProperties emailProperties;
-    private final TemplateEngine templateEngine;
+    private final EmailTemplateRenderer emailTemplateRenderer;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
@@ -41,12 +41,8 @@ public class EmailService {
      * @param toEmail 收件人邮箱
      * @param loanId  贷款ID
      * @param amount  逾期金额
-     * @return 异步任务的CompletableFuture
+     * @return 邮件落盘后完成的CompletableFuture
      */
-    @Async("emailTaskExecutor")
-    @Retryable(value = {MessagingException.class, EmailSendingException.class},
-            maxAttempts = 3,
-            backoff = @Backoff(delay = 1000, multiplier = 2))
     public CompletableFuture<Boolean> sendOverdueNotification(String toEmail, String loanId, BigDecimal amount) {
         validateEmail(toEmail);
 
@@ -59,7 +55,37 @@ public class EmailService {
         templateModel.put("amount", amount);
         templateModel.put("repaymentUrl", emailProperties.getRepaymentUrl());
 
-        return sendHtmlEmail(toEmail, subject, "email/overdue-notification", templateModel);
+        return sendHtmlEmail(toEmail, subject, EmailTemplate.OVERDUE_NOTIFICATION, templateModel);
+    }
+
+    /**
+     * 发送逾期还款合并通知邮件，一封邮件列出同一借款人的所有逾期还款
+     *
+     * @param toEmail 收件人邮箱
+     * @param items   逾期还款事件，至少一条
+     * @return 邮件落盘后完成的CompletableFuture
+     */
+    public CompletableFuture<Boolean> sendOverdueDigest(String toEmail, List<RepaymentEvent> items) {
+        if (items.size() == 1) {
+            RepaymentEvent item = items.get(0);
+            return sendOverdueNotification(toEmail, String.valueOf(item.getLoanId()), item.getAmount());
+        }
+        validateEmail(toEmail);
+
+        log.info("准备发送{}笔逾期还款的合并通知邮件到 {}", items.size(), toEmail);
+        String subject = "【重要】您有" + items.size() + "笔贷款还款已逾期，请尽快处理！";
+
+        BigDecimal totalAmount = items.stream()
+                .map(RepaymentEvent::getAmount)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        Map<String, Object> templateModel = new HashMap<>();
+        templateModel.put("items", items);
+        templateModel.put("totalAmount", totalAmount);
+        templateModel.put("repaymentUrl", emailProperties.getRepaymentUrl());
+
+        return sendHtmlEmail(toEmail, subject, EmailTemplate.OVERDUE_NOTIFICATION, templateModel);
     }
 
     /**
@@ -69,12 +95,8 @@ public class EmailService {
      * @param loanId  贷款ID
      * @param amount  贷款金额
      * @param dueDate 到期日
-     * @return 异步任务的CompletableFuture
+     * @return 邮件落盘后完成的CompletableFuture
      */
-    @Async("emailTaskExecutor")
-    @Retryable(value = {MessagingException.class, EmailSendingException.class},
-            maxAttempts = 3,
-            backoff = @Backoff(delay = 1000, multiplier = 2))
     public CompletableFuture<Boolean> sendLoanApprovedNotification(
             String toEmail, Long loanId, BigDecimal amount, LocalDate dueDate) {
         validateEmail(toEmail);
@@ -88,7 +110,7 @@ public class EmailService {
         templateModel.put("dueDate", dueDate);
         templateModel.put("dashboardUrl", emailProperties.getDashboardUrl());
 
-        return sendHtmlEmail(toEmail, subject, "email/loan-approved", templateModel);
+        return sendHtmlEmail(toEmail, subject, EmailTemplate.LOAN_APPROVED, templateModel);
     }
 
     /**
@@ -98,18 +120,14 @@ public class EmailService {
      * @param loanId          贷款ID
      * @param amount          还款金额
      * @param remainingAmount 剩余本金
-     * @return 异步任务的CompletableFuture
+     * @return 邮件落盘后完成的CompletableFuture
      */
-    @Async("emailTaskExecutor")
-    @Retryable(value = {MessagingException.class, EmailSendingException.class},
-            maxAttempts = 3,
-            backoff = @Backoff(delay = 1000, multiplier = 2))
     public CompletableFuture<Boolean> sendRepaymentSuccessNotification(
             String toEmail, Long loanId, BigDecimal amount, BigDecimal remainingAmount) {
         validateEmail(toEmail);
 
         log.info("准备发送还款成功通知邮件到 {}", toEmail);
-        String subject = "【通知】您的还款已成功处理";
+        String subject = "【P2Pレンディングプラットフォーム】ご返済完了のお知らせ";
 
         Map<String, Object> templateModel = new HashMap<>();
         templateModel.put("loanId", loanId);
@@ -117,20 +135,14 @@ public class EmailService {
         templateModel.put("remainingAmount", remainingAmount);
         templateModel.put("dashboardUrl", emailProperties.getDashboardUrl());
 
-        return sendHtmlEmail(toEmail, subject, "email/repayment-success", templateModel);
+        return sendHtmlEmail(toEmail, subject, EmailTemplate.REPAYMENT_SUCCESS, templateModel);
     }
 
     /**
-     * 使用Thymeleaf模板引擎处理邮件模板
-     *
-     * @param templateName 模板名称
-     * @param variables    模板变量
-     * @return 处理后的HTML内容
+     * 发送队列积压是否已超过上限，调用方据此暂停投递
      */
-    private String processTemplate(String templateName, Map<String, Object> variables) {
-        Context context = new Context();
-        context.setVariables(variables);
-        return templateEngine.process(templateName, context);
+    public boolean isSaturated() {
+        return emailSpool.backlogBytes() >= emailProperties.getSpool().getMaxBacklogBytes();
     }
 
     /**
@@ -158,47 +170,32 @@ public class EmailService {
      *
      * @param toEmail       收件人邮箱
      * @param subject       邮件主题
-     * @param templateName  模板名称
+     * @param template      邮件模板
      * @param templateModel 模板数据
-     * @return 异步发送结果
+     * @return 邮件落盘后完成
      */
     private CompletableFuture<Boolean> sendHtmlEmail(
-            String toEmail, String subject, String templateName, Map<String, Object> templateModel) {
-
-        String emailContent = processTemplate(templateName, templateModel);
+            String toEmail, String subject, EmailTemplate template, Map<String, Object> templateModel) {
 
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(emailProperties.getSenderEmail(), emailProperties.getSenderName());
-            helper.setTo(toEmail);
-            helper.setSubject(subject);
-            helper.setText(emailContent, true);
-
-            mailSender.send(message);
-            log.info("📩 邮件 '{}' 已成功发送到 {}", subject, toEmail);
-            return CompletableFuture.completedFuture(true);
-        } catch (Exception e) {
-            log.error("❌ 发送邮件 '{}' 到 {} 失败：{}", subject, toEmail, e.getMessage());
-            throw new EmailSendingException("发送邮件失败", e);
-        }
+        String emailContent = emailTemplateRenderer.render(template, templateModel);
+        return sendEmail(toEmail, subject, emailContent);
     }
 
+    /**
+     * 把已渲染好的HTML邮件写入发送队列
+     *
+     * @param toEmail 收件人邮箱
+     * @param subject 邮件主题
+     * @param content HTML内容
+     * @return 邮件落盘后完成
+     * @throws EmailSendingException 写入发送队列失败
+     */
     public CompletableFuture<Boolean> sendEmail(String toEmail, String subject, String content) {
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(emailProperties.getSenderEmail(), emailProperties.getSenderName());
-            helper.setTo(toEmail);
-            helper.setSubject(subject);
-            helper.setText(content, true);
-
-            mailSender.send(message);
-            log.info("📩 邮件 '{}' 已成功发送到 {}", subject, toEmail);
-            return CompletableFuture.completedFuture(true);
-        } catch (Exception e) {
-            log.error("❌ 发送邮件 '{}' 到 {} 失败：{}", subject, toEmail, e.getMessage());
-            throw new EmailSendingException("发送邮件失败", e);
+            return emailSpool.append(SpooledEmail.first(toEmail, subject, content)).thenApply(offset -> true);
+        } catch (RuntimeException e) {
+            log.error("❌ 邮件 '{}' 写入发送队列失败：{}", subject, e.getMessage());
+            throw new EmailSendingException("写入邮件发送队列失败", e);
         }
     }
-}
\ No newline at end of file
+}
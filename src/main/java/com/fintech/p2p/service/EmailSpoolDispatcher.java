@@ -0,0 +1,201 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.exception.EmailSendingException;
+import com.fintech.p2p.mail.EmailSpool;
+import com.fintech.p2p.mail.SpooledEmail;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送队列投递器：单线程按顺序读取 {@link EmailSpool}，把连续到达的邮件合成批次交给邮件线程池，
+ * 每批在一个SMTP长连接上发送，同时投递中的批次数受 maxInFlight 限制；投递失败的邮件转入 {@link EmailRetryService}。
+ * 同一条记录连续读取失败 maxReadAttempts 次后跳过并写入死信文件，不会卡住整个队列。
+ */
+@Component
+@Slf4j
+public class EmailSpoolDispatcher {
+    private static final long IDLE_WAIT_MILLIS = 100;
+
+    private final EmailSpool emailSpool;
+    private final EmailDeliveryService emailDeliveryService;
+    private final EmailRetryService emailRetryService;
+    private final ThreadPoolTaskExecutor emailTaskExecutor;
+    private final EmailProperties emailProperties;
+
+    private Semaphore inFlight;
+    private Thread reader;
+    private volatile boolean running;
+
+    public EmailSpoolDispatcher(EmailSpool emailSpool,
+                                EmailDeliveryService emailDeliveryService,
+                                EmailRetryService emailRetryService,
+                                @Qualifier("emailTaskExecutor") ThreadPoolTaskExecutor emailTaskExecutor,
+                                EmailProperties emailProperties) {
+        this.emailSpool = emailSpool;
+        this.emailDeliveryService = emailDeliveryService;
+        this.emailRetryService = emailRetryService;
+        this.emailTaskExecutor = emailTaskExecutor;
+        this.emailProperties = emailProperties;
+    }
+
+    @PostConstruct
+    public void start() {
+        inFlight = new Semaphore(emailProperties.getSpool().getMaxInFlight());
+        running = true;
+        reader = new Thread(this::readLoop, "email-spool-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        reader.interrupt();
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+        // 等待投递中的邮件完成，使它们能被写入检查点
+        int permits = emailProperties.getSpool().getMaxInFlight();
+        if (!inFlight.tryAcquire(permits, 30, TimeUnit.SECONDS)) {
+            log.warn("停止时仍有邮件投递未完成，重启后将重新投递");
+        }
+    }
+
+    /**
+     * 定期把已投递的位置写入检查点
+     */
+    @Scheduled(fixedDelayString = "${app.email.spool.checkpoint-interval-ms:1000}")
+    public void checkpoint() {
+        try {
+            emailSpool.checkpoint();
+        } catch (IOException e) {
+            log.error("写入发送队列检查点失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void readLoop() {
+        long offset = emailSpool.committedOffset();
+        int batchSize = emailProperties.getSpool().getBatchSize();
+        long failedOffset = -1;
+        int failures = 0;
+        while (running) {
+            List<EmailSpool.Record> batch = new ArrayList<>(batchSize);
+            try {
+                EmailSpool.Record record = emailSpool.read(offset);
+                if (record == null) {
+                    emailSpool.awaitDurable(offset, IDLE_WAIT_MILLIS);
+                    continue;
+                }
+
+                // 把已落盘的连续记录合成一批，复用同一个SMTP连接发送
+                while (record != null) {
+                    batch.add(record);
+                    offset = record.nextOffset();
+                    record = batch.size() < batchSize ? emailSpool.read(offset) : null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // 已读出的记录照常投递，offset 停在读取失败的记录上
+                failures = offset == failedOffset ? failures + 1 : 1;
+                failedOffset = offset;
+                log.error("读取邮件发送队列失败, offset={}, 第{}次: {}", offset, failures, e.getMessage(), e);
+                if (failures >= emailProperties.getSpool().getMaxReadAttempts()) {
+                    offset = skip(offset);
+                } else if (batch.isEmpty() && !pause()) {
+                    return;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    submit(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private long skip(long offset) {
+        try {
+            return emailSpool.skip(offset);
+        } catch (IOException | RuntimeException e) {
+            log.error("跳过发送队列记录失败, offset={}: {}", offset, e.getMessage(), e);
+            pause();
+            return offset;
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(IDLE_WAIT_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void submit(List<EmailSpool.Record> batch) throws InterruptedException {
+        inFlight.acquire();
+        while (true) {
+            try {
+                emailTaskExecutor.execute(() -> {
+                    try {
+                        deliver(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                return;
+            } catch (TaskRejectedException e) {
+                Thread.sleep(IDLE_WAIT_MILLIS);
+            }
+        }
+    }
+
+    private void deliver(List<EmailSpool.Record> batch) {
+        List<SpooledEmail> emails = new ArrayList<>(batch.size());
+        for (EmailSpool.Record record : batch) {
+            emails.add(record.email());
+            emailRetryService.recordAttempt(record.email().stage());
+        }
+
+        try {
+            for (EmailDeliveryService.DeliveryResult result : emailDeliveryService.deliver(emails)) {
+                SpooledEmail email = result.email();
+                if (result.success()) {
+                    emailRetryService.recordDelivered(email.stage(), email.firstAttemptAt());
+                } else {
+                    scheduleRetry(email, result.error());
+                }
+            }
+        } finally {
+            batch.forEach(emailSpool::markDelivered);
+        }
+    }
+
+    private void scheduleRetry(SpooledEmail email, EmailSendingException error) {
+        try {
+            emailRetryService.scheduleRetry(email, error);
+        } catch (RuntimeException retryFailure) {
+            // 重试表不可用时重新写回发送队列，保证邮件不丢失
+            log.error("写入邮件重试队列失败，重新放回发送队列: {}", retryFailure.getMessage());
+            emailSpool.append(email);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.mail.EmailTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * 邮件模板渲染器
+ * <p>
+ * 启动时预先解析所有邮件模板，解析结果由 Thymeleaf 的模板缓存保存，之后每次渲染只执行已解析的模板；
+ * 每个线程复用自己的 Context 和输出缓冲区，避免每封邮件重新分配。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailTemplateRenderer {
+    // 超过该容量的缓冲区用完后丢弃，避免个别大邮件让线程长期占用内存
+    private static final int MAX_RETAINED_BUFFER_CHARS = 64 * 1024;
+
+    private final TemplateEngine templateEngine;
+
+    private final ThreadLocal<RenderBuffer> buffers = ThreadLocal.withInitial(RenderBuffer::new);
+
+    /**
+     * 预解析所有模板，模板缺失或语法错误时启动即报错
+     */
+    @PostConstruct
+    public void warmUp() {
+        for (EmailTemplate template : EmailTemplate.values()) {
+            render(template, Map.of());
+            log.info("邮件模板 {} 已预加载", template.getPath());
+        }
+    }
+
+    /**
+     * 渲染邮件模板
+     *
+     * @param template  邮件模板
+     * @param variables 模板变量
+     * @return 渲染后的HTML内容
+     */
+    public String render(EmailTemplate template, Map<String, Object> variables) {
+        RenderBuffer buffer = buffers.get();
+        buffer.context.clearVariables();
+        buffer.context.setVariables(variables);
+        StringBuffer output = buffer.writer.getBuffer();
+        output.setLength(0);
+        try {
+            templateEngine.process(template.getPath(), buffer.context, buffer.writer);
+            return output.toString();
+        } finally {
+            buffer.context.clearVariables();
+            if (output.capacity() > MAX_RETAINED_BUFFER_CHARS) {
+                buffers.remove();
+            }
+        }
+    }
+
+    private static final class RenderBuffer {
+        private final Context context = new Context();
+        private final StringWriter writer = new StringWriter(8 * 1024);
+    }
+}
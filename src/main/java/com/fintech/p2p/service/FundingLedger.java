@@ -0,0 +1,84 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.repository.LoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 贷款募集额度的内存台账
+ * <p>
+ * 每笔募集中的贷款在内存中保存剩余可投金额，投资先用 CAS 扣减；额度不足的请求直接拒绝，不访问数据库，
+ * 热门贷款募满后的大量请求不会在贷款行锁上排队。内存台账只会比数据库乐观（其他节点的占用不在本地计数中），
+ * 最终以 {@link LoanRepository#reserveFunding} 的条件更新为准，数据库拒绝时调用 {@link #invalidate} 重新加载。
+ */
+@Component
+@RequiredArgsConstructor
+public class FundingLedger {
+    private final LoanRepository loanRepository;
+
+    private final Map<Long, AtomicReference<BigDecimal>> capacities = new ConcurrentHashMap<>();
+
+    /**
+     * 占用募集额度
+     *
+     * @return 占用成功返回 true；额度不足或贷款不在募集中返回 false
+     */
+    public boolean reserve(Long loanId, BigDecimal amount) {
+        AtomicReference<BigDecimal> capacity = capacity(loanId);
+        if (capacity == null) {
+            return false;
+        }
+        BigDecimal current;
+        do {
+            current = capacity.get();
+            if (current.compareTo(amount) < 0) {
+                return false;
+            }
+        } while (!capacity.compareAndSet(current, current.subtract(amount)));
+        return true;
+    }
+
+    /**
+     * 归还未能写入数据库的额度
+     */
+    public void release(Long loanId, BigDecimal amount) {
+        AtomicReference<BigDecimal> capacity = capacities.get(loanId);
+        if (capacity != null) {
+            capacity.accumulateAndGet(amount, BigDecimal::add);
+        }
+    }
+
+    /**
+     * 丢弃本地计数，下次占用时从数据库重新加载
+     */
+    public void invalidate(Long loanId) {
+        capacities.remove(loanId);
+    }
+
+    /**
+     * 本地记录的剩余可投金额，未加载时为空
+     */
+    public Optional<BigDecimal> remaining(Long loanId) {
+        return Optional.ofNullable(capacities.get(loanId)).map(AtomicReference::get);
+    }
+
+    private AtomicReference<BigDecimal> capacity(Long loanId) {
+        AtomicReference<BigDecimal> capacity = capacities.get(loanId);
+        if (capacity != null) {
+            return capacity;
+        }
+        // 只缓存募集中的贷款；尚未审批的贷款不缓存，审批通过后的第一笔投资再加载
+        Optional<BigDecimal> open = loanRepository.findOpenCapacity(loanId, Loan.LoanStatus.APPROVED);
+        if (open.isEmpty()) {
+            return null;
+        }
+        return capacities.computeIfAbsent(loanId, id -> new AtomicReference<>(open.get().max(BigDecimal.ZERO)));
+    }
+}
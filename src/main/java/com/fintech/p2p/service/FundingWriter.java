@@ -0,0 +1,41 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.exception.FundingRejectedException;
+import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.repository.InvestmentRepository;
+import com.fintech.p2p.repository.LoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 在一个事务中占用贷款的募集额度并写入投资记录
+ */
+@Service
+@RequiredArgsConstructor
+public class FundingWriter {
+    private final LoanRepository loanRepository;
+    private final InvestmentRepository investmentRepository;
+
+    /**
+     * 写入投资记录，数据库中的额度不足或贷款已不在募集中时抛出 {@link FundingRejectedException}
+     */
+    @Transactional
+    public Investment record(Long investorId, Long loanId, BigDecimal amount) {
+        int updated = loanRepository.reserveFunding(loanId, amount, Loan.LoanStatus.APPROVED, Loan.LoanStatus.FUNDED,
+                LocalDateTime.now());
+        if (updated == 0) {
+            throw new FundingRejectedException("贷款可投金额不足或不在募集中: " + loanId);
+        }
+        Investment investment = new Investment();
+        investment.setInvestorId(investorId);
+        investment.setLoanId(loanId);
+        investment.setAmount(amount);
+        investment.setStatus("PENDING"); // 默认 PENDING 状态
+        return investmentRepository.save(investment);
+    }
+}
@@ -0,0 +1,168 @@
+package com.fintech.p2p.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.p2p.config.DocumentProperties;
+import com.fintech.p2p.dto.InvestmentStatementVersion;
+import com.fintech.p2p.exception.UnauthorizedOperationException;
+import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.repository.InvestmentRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * 投资文档和投资人对账单
+ * <p>
+ * 单笔投资文档很小，用共享的 ObjectMapper 直接序列化为字节数组（Jackson 内部复用缓冲区），不落盘。
+ * 对账单可能很大，按版本生成一次后缓存为文件，之后的下载直接从文件零拷贝发送；
+ * 投资记录新增、删除或修改后版本随之变化，下一次下载时重新生成。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvestmentDocumentService {
+    static final String STATEMENTS = "statements";
+
+    private final InvestmentRepository investmentRepository;
+    private final DocumentProperties documentProperties;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+
+    /**
+     * 获取单笔投资文档
+     *
+     * @param id         投资记录ID
+     * @param investorId 调用方的投资人ID，为空时不校验归属（管理员）
+     * @return 投资文档，投资记录不存在时为空
+     * @throws UnauthorizedOperationException 投资记录不属于该投资人
+     */
+    public Optional<InvestmentDocument> getInvestmentDocument(Long id, Long investorId) {
+        return investmentRepository.findById(id).map(investment -> {
+            if (investorId != null && !investorId.equals(investment.getInvestorId())) {
+                throw new UnauthorizedOperationException("无权查看其他投资人的投资文档: " + id);
+            }
+            return renderDocument(investment);
+        });
+    }
+
+    /**
+     * 把投资记录序列化为 JSON 文档，ETag 取自记录ID和版本号，记录每次修改后都会变化
+     */
+    public InvestmentDocument renderDocument(Investment investment) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(investment);
+            return new InvestmentDocument(body, "investment-" + investment.getId() + "-" + investment.getVersion());
+        } catch (IOException e) {
+            throw new UncheckedIOException("投资文档序列化失败: " + investment.getId(), e);
+        }
+    }
+
+    /**
+     * 获取投资人对账单，当前版本已生成时直接返回缓存文件
+     *
+     * @param investorId 投资人ID
+     * @return 对账单文件和 ETag
+     */
+    @Transactional(readOnly = true)
+    public StatementFile getStatement(Long investorId) throws IOException {
+        InvestmentStatementVersion version = investmentRepository.findStatementVersion(investorId);
+        String etag = "investor-" + investorId + "-" + version.investments() + "-" + version.lastInvestmentId()
+                + "-" + version.revisions();
+        Path directory = Files.createDirectories(Path.of(documentProperties.getDirectory()).resolve(STATEMENTS));
+        Path file = directory.resolve(etag + ".json");
+        if (Files.exists(file)) {
+            return new StatementFile(file, etag);
+        }
+
+        long startNanos = System.nanoTime();
+        // 并发生成同一版本时内容相同，先写临时文件再原子替换，读取方不会看到写了一半的文件
+        Path temp = Files.createTempFile(directory, etag, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                writeStatement(investorId, out);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("已生成投资人对账单: {}, {}字节, 耗时{}ms", file.getFileName(), Files.size(file),
+                (System.nanoTime() - startNanos) / 1_000_000);
+        deleteStaleStatements(directory, investorId, file);
+        return new StatementFile(file, etag);
+    }
+
+    private void writeStatement(Long investorId, OutputStream out) throws IOException {
+        long count = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal confirmedAmount = BigDecimal.ZERO;
+        try (JsonGenerator generator = objectMapper.createGenerator(out);
+             Stream<Investment> investments = investmentRepository.streamByInvestorId(investorId)) {
+            generator.writeStartObject();
+            generator.writeNumberField("investorId", investorId);
+            generator.writeArrayFieldStart("investments");
+            Iterator<Investment> iterator = investments.iterator();
+            while (iterator.hasNext()) {
+                Investment investment = iterator.next();
+                generator.writeObject(investment);
+                entityManager.detach(investment);
+                count++;
+                totalAmount = totalAmount.add(investment.getAmount());
+                if ("CONFIRMED".equals(investment.getStatus())) {
+                    confirmedAmount = confirmedAmount.add(investment.getAmount());
+                }
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("investmentCount", count);
+            generator.writeNumberField("totalAmount", totalAmount);
+            generator.writeNumberField("confirmedAmount", confirmedAmount);
+            generator.writeEndObject();
+        }
+    }
+
+    private void deleteStaleStatements(Path directory, Long investorId, Path current) {
+        long cutoff = System.currentTimeMillis() - documentProperties.getStaleStatementGrace().toMillis();
+        try (DirectoryStream<Path> statements = Files.newDirectoryStream(directory, "investor-" + investorId + "-*.json")) {
+            for (Path statement : statements) {
+                // 旧版本保留一段时间，正在用它续传或发送的下载不会中断
+                if (!statement.equals(current) && Files.getLastModifiedTime(statement).toMillis() < cutoff) {
+                    Files.deleteIfExists(statement);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理旧对账单失败: investorId={}", investorId, e);
+        }
+    }
+
+    /**
+     * 单笔投资文档
+     *
+     * @param body JSON 内容
+     * @param etag 记录版本
+     */
+    public record InvestmentDocument(byte[] body, String etag) {
+    }
+
+    /**
+     * 已生成的对账单文件
+     *
+     * @param file 文件路径
+     * @param etag 对账单版本
+     */
+    public record StatementFile(Path file, String etag) {
+    }
+}
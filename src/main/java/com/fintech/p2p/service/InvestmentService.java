@@ -1,18 +1,14 @@
 package com.fintech.p2p.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.p2p.exception.BusinessException;
+import com.fintech.p2p.exception.FundingRejectedException;
 import com.fintech.p2p.model.Investment;
 import com.fintech.p2p.repository.InvestmentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.channels.FileChannel;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,15 +17,27 @@ import java.util.Optional;
 @Slf4j
 public class InvestmentService {
     private final InvestmentRepository investmentRepository;
+    private final FundingLedger fundingLedger;
+    private final FundingWriter fundingWriter;
 
-    // 投资人投资贷款
+    // 投资人投资贷款：先在内存台账中占用额度，再由数据库条件更新确认，贷款募满时自动置为 FUNDED
     public Investment invest(Long investorId, Long loanId, BigDecimal amount) {
-        Investment investment = new Investment();
-        investment.setInvestorId(investorId);
-        investment.setLoanId(loanId);
-        investment.setAmount(amount);
-        investment.setStatus("PENDING"); // 默认 PENDING 状态
-        return investmentRepository.save(investment);
+        if (amount == null || amount.signum() <= 0) {
+            throw new BusinessException("投资金额必须大于0");
+        }
+        if (!fundingLedger.reserve(loanId, amount)) {
+            throw new BusinessException("贷款可投金额不足或不在募集中: " + loanId);
+        }
+        try {
+            return fundingWriter.record(investorId, loanId, amount);
+        } catch (RuntimeException e) {
+            fundingLedger.release(loanId, amount);
+            if (e instanceof FundingRejectedException) {
+                // 本地计数比数据库乐观（其他节点已占用额度），重新加载
+                fundingLedger.invalidate(loanId);
+            }
+            throw e;
+        }
     }
 
     // 查询投资记录（按投资人）
@@ -52,38 +60,6 @@ public class InvestmentService {
         return investmentOpt;
     }
 
-    public FileChannel getInvestmentById(Long id) {
-        try {
-            // 查找投资记录
-            Optional<Investment> investment = investmentRepository.findById(id);
-
-            if (investment.isEmpty()) {
-                log.warn("Investment with ID {} not found", id);
-                return null;
-            }
-
-            // 创建临时文件
-            Path tempFile = Files.createTempFile("investment_" + id + "_", ".json");
-
-            // 将投资记录转换为JSON并写入文件
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.writeValue(tempFile.toFile(), investment.get());
-
-            log.info("Created temporary file for investment ID {}: {}", id, tempFile);
-
-            // 打开并返回文件通道
-            return FileChannel.open(
-                    tempFile,
-                    StandardOpenOption.READ,
-                    StandardOpenOption.DELETE_ON_CLOSE // 确保文件在通道关闭后被删除
-            );
-
-        } catch (IOException e) {
-            log.error("Error creating file for investment ID: {}", id, e);
-            throw new RuntimeException("Failed to generate investment file: " + e.getMessage(), e);
-        }
-    }
-
     /**
      * 根据ID获取投资记录
      *
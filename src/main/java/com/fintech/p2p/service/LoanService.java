@@ -1,19 +1,26 @@
 package com.fintech.p2p.service;
 
+import com.fintech.p2p.config.RepaymentProperties;
 import com.fintech.p2p.model.Loan;
 import com.fintech.p2p.repository.LoanRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class LoanService {
     private final LoanRepository loanRepository;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final RepaymentProperties repaymentProperties;
 
-    public LoanService(LoanRepository loanRepository) {
+    public LoanService(LoanRepository loanRepository, RepaymentScheduleService repaymentScheduleService,
+                       RepaymentProperties repaymentProperties) {
         this.loanRepository = loanRepository;
+        this.repaymentScheduleService = repaymentScheduleService;
+        this.repaymentProperties = repaymentProperties;
     }
 
     @Transactional
@@ -32,6 +39,9 @@ public class LoanService {
         loan.ifPresent(l -> {
             l.setStatus(Loan.LoanStatus.APPROVED);
             loanRepository.save(l);
+            // 审批通过即生成全部分期，与状态变更同一事务提交
+            repaymentScheduleService.createSchedule(l, repaymentProperties.getAmortizationMethod(),
+                    LocalDate.now().plusMonths(1));
         });
         return loan;
     }
@@ -0,0 +1,55 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.model.OutboxEvent;
+import com.fintech.p2p.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 发件箱的两个短事务：投递前取出并占用一批事件，投递后删除成功的事件、记录失败次数
+ * <p>
+ * 等待 Kafka 确认期间不持有数据库事务和行锁。
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxBatchWriter {
+    private final OutboxEventRepository outboxEventRepository;
+
+    /**
+     * 取出一批到期的待投递事件，并占用到 leaseUntil
+     *
+     * @param batchSize  每批最大事件数
+     * @param leaseUntil 租约到期时间
+     */
+    @Transactional
+    public List<OutboxEvent> claim(int batchSize, LocalDateTime leaseUntil) {
+        List<OutboxEvent> batch = outboxEventRepository.findNextBatch(
+                OutboxEvent.Status.PENDING, LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (!batch.isEmpty()) {
+            outboxEventRepository.lease(batch.stream().map(OutboxEvent::getId).toList(), leaseUntil);
+        }
+        return batch;
+    }
+
+    /**
+     * 删除已投递的事件；失败的事件累加次数后在 retryAt 之后重试，达到 maxAttempts 的转为死信
+     *
+     * @return 本次转为死信的事件数
+     */
+    @Transactional
+    public int complete(List<Long> sentIds, List<Long> failedIds, LocalDateTime retryAt, int maxAttempts) {
+        if (!sentIds.isEmpty()) {
+            outboxEventRepository.deleteAllByIdInBatch(sentIds);
+        }
+        if (failedIds.isEmpty()) {
+            return 0;
+        }
+        outboxEventRepository.recordFailure(failedIds, retryAt);
+        return outboxEventRepository.markDead(failedIds, OutboxEvent.Status.DEAD, maxAttempts);
+    }
+}
@@ -0,0 +1,81 @@
+package com.fintech.p2p.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 发件箱中继：定时批量排空 outbox_events 表，并记录投递延迟指标
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+    private final OutboxService outboxService;
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize;
+
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dead = new LongAdder();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final AtomicLong lastBatchMillis = new AtomicLong();
+
+    /**
+     * 持续排空直到没有满批，失败的事件留在表中等待下一轮
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms:200}")
+    public void relay() {
+        OutboxService.DrainResult result;
+        do {
+            long start = System.nanoTime();
+            try {
+                result = outboxService.drainBatch(batchSize);
+            } catch (Exception e) {
+                log.error("发件箱中继执行失败: {}", e.getMessage(), e);
+                return;
+            }
+            if (result.fetched() == 0) {
+                return;
+            }
+
+            long batchMillis = (System.nanoTime() - start) / 1_000_000;
+            relayed.add(result.sent());
+            failed.add(result.failed());
+            dead.add(result.dead());
+            lastBatchMillis.set(batchMillis);
+            lastLagMillis.set(result.lagMillis());
+            maxLagMillis.accumulateAndGet(result.lagMillis(), Math::max);
+            log.debug("发件箱中继: 取出{}条, 成功{}条, 失败{}条, 耗时{}ms, 延迟{}ms",
+                    result.fetched(), result.sent(), result.failed(), batchMillis, result.lagMillis());
+        } while (result.fetched() == batchSize && result.failed() == 0);
+    }
+
+    /**
+     * 获取中继运行指标
+     */
+    public RelayStats getStats() {
+        return new RelayStats(relayed.sum(), failed.sum(), dead.sum(),
+                lastBatchMillis.get(), lastLagMillis.get(), maxLagMillis.get());
+    }
+
+    /**
+     * 中继运行指标
+     *
+     * @param relayed         累计投递成功数
+     * @param failed          累计投递失败数
+     * @param dead            累计转为死信数
+     * @param lastBatchMillis 最近一批耗时
+     * @param lastLagMillis   最近一批的投递延迟
+     * @param maxLagMillis    历史最大投递延迟
+     */
+    public record RelayStats(long relayed, long failed, long dead, long lastBatchMillis, long lastLagMillis, long maxLagMillis) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.event.RepaymentEventCodec;
+import com.fintech.p2p.model.OutboxEvent;
+import com.fintech.p2p.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 事务发件箱服务
+ * <p>
+ * 业务方在自己的事务内调用 {@link #enqueue} 写入事件，事务回滚时事件一并回滚；
+ * {@link OutboxRelay} 定时调用 {@link #drainBatch} 批量投递到 Kafka，投递成功后删除。
+ * 失败的事件按退避时间重试，超过最大次数后标记为死信，不再阻塞后续投递。
+ * 投递语义为至少一次，消费端需要能容忍重复消息。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxBatchWriter outboxBatchWriter;
+    private final KafkaTemplate<String, byte[]> outboxKafkaTemplate;
+    private final RepaymentEventCodec repaymentEventCodec;
+
+    @Value("${app.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+
+    /**
+     * 在当前事务中写入一条待投递事件
+     *
+     * @param topic   目标Topic
+     * @param key     消息Key，可为null
+     * @param payload 已编码的消息内容
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, String key, byte[] payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setTopic(topic);
+        event.setEventKey(key);
+        event.setPayload(payload);
+        outboxEventRepository.save(event);
+    }
+
+    /**
+     * 在当前事务中写入一条还款事件，以贷款ID为Key保证同一贷款的事件有序
+     *
+     * @param topic 目标Topic
+     * @param event 还款事件
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, RepaymentEvent event) {
+        enqueue(topic, event.key(), repaymentEventCodec.encode(event));
+    }
+
+    /**
+     * 取出一批事件发送到 Kafka，等待 broker 确认后删除已投递的事件
+     * <p>
+     * 取出和确认各在一个短事务中完成，等待 broker 确认期间不占用数据库事务；
+     * 取出时事件被占用到发送超时的两倍，本实例中途崩溃时租约到期后由其他实例重新投递。
+     *
+     * @param batchSize 每批最大事件数
+     * @return 本批投递结果
+     */
+    public DrainResult drainBatch(int batchSize) {
+        List<OutboxEvent> batch = outboxBatchWriter.claim(batchSize,
+                LocalDateTime.now().plus(Duration.ofMillis(sendTimeoutMs * 2)));
+        if (batch.isEmpty()) {
+            return DrainResult.EMPTY;
+        }
+
+        List<CompletableFuture<?>> futures = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            futures.add(outboxKafkaTemplate.send(event.getTopic(), event.getEventKey(), event.getPayload()));
+        }
+        // 整批写入生产者缓冲区后立即刷出，不等 linger 超时
+        outboxKafkaTemplate.flush();
+
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        List<Long> failedIds = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < batch.size(); i++) {
+            Long id = batch.get(i).getId();
+            try {
+                futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sentIds.add(id);
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("发件箱事件ID={}投递失败: {}", id, e.getMessage());
+                failedIds.add(id);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedIds.add(id);
+            }
+        }
+
+        int dead = outboxBatchWriter.complete(sentIds, failedIds,
+                LocalDateTime.now().plus(Duration.ofMillis(retryBackoffMs)), maxAttempts);
+        if (dead > 0) {
+            log.error("{}条发件箱事件投递失败超过{}次，已转为死信", dead, maxAttempts);
+        }
+
+        Duration lag = Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now());
+        return new DrainResult(batch.size(), sentIds.size(), failedIds.size(), dead, lag.toMillis());
+    }
+
+    /**
+     * 单批投递结果
+     *
+     * @param fetched   本批取出的事件数
+     * @param sent      投递成功数
+     * @param failed    投递失败数
+     * @param dead      本批转为死信的事件数
+     * @param lagMillis 本批最早事件从写入到投递的延迟
+     */
+    public record DrainResult(int fetched, int sent, int failed, int dead, long lagMillis) {
+        public static final DrainResult EMPTY = new DrainResult(0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,262 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.NotificationProperties;
+import com.fintech.p2p.event.RepaymentEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 逾期通知合并器
+ * <p>
+ * 按借款人邮箱缓存逾期事件，窗口结束（或条目数达到上限）时发送一封合并邮件。
+ * Kafka 位移延迟到整批事件所在的合并邮件都已写入发送队列后才提交，
+ * 同一消费线程的批次按到达顺序提交，宕机时未发送的事件会被重新消费，不会丢失。
+ * 写入失败的合并邮件稍后重试，连续失败 overdueDigestMaxAttempts 次后放弃（记录错误日志并确认位移），
+ * 避免一封邮件卡住该消费线程后续所有批次的提交。缓存的事件数达到 overdueDigestMaxBuffered 时立即发送全部合并邮件，
+ * {@link #isSaturated()} 为真期间监听器暂停消费。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OverdueNotificationCoalescer {
+    private final EmailService emailService;
+    private final NotificationProperties notificationProperties;
+
+    private final Map<String, Digest> digests = new ConcurrentHashMap<>();
+    private final Map<Long, Deque<PendingBatch>> pendingAcks = new ConcurrentHashMap<>();
+
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder digestsSent = new LongAdder();
+    private final LongAdder smtpSendsSaved = new LongAdder();
+    private final LongAdder digestsAbandoned = new LongAdder();
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    /**
+     * 加入一批逾期事件，必须在 Kafka 消费线程上调用
+     *
+     * @param events 本批有效事件
+     * @param ack    本批的位移确认，合并邮件全部写入发送队列后调用
+     */
+    public void add(List<RepaymentEvent> events, Acknowledgment ack) {
+        Deque<PendingBatch> queue = pendingAcks.computeIfAbsent(Thread.currentThread().getId(), id -> new ArrayDeque<>());
+        PendingBatch batch = new PendingBatch(ack, queue, events.size());
+        synchronized (queue) {
+            queue.addLast(batch);
+        }
+
+        List<Map.Entry<String, Digest>> full = new ArrayList<>();
+        for (RepaymentEvent event : events) {
+            eventsReceived.increment();
+            String email = event.getBorrowerEmail();
+            Digest digest = digests.compute(email, (key, existing) -> {
+                Digest target = existing != null ? existing : new Digest(System.currentTimeMillis());
+                target.add(event, batch);
+                return target;
+            });
+            buffered.incrementAndGet();
+            if (digest.size() >= notificationProperties.getOverdueDigestMaxItems()) {
+                full.add(Map.entry(email, digest));
+            }
+        }
+        for (Map.Entry<String, Digest> entry : full) {
+            if (digests.remove(entry.getKey(), entry.getValue())) {
+                send(entry.getKey(), entry.getValue());
+            }
+        }
+        if (isSaturated()) {
+            log.warn("逾期通知合并缓存已有{}条事件，提前发送全部合并邮件", buffered.get());
+            flush(Long.MAX_VALUE);
+        }
+        if (events.isEmpty()) {
+            acknowledgeCompleted(queue);
+        }
+    }
+
+    /**
+     * 缓存的事件数是否已达上限，达到上限时监听器应暂停消费
+     */
+    public boolean isSaturated() {
+        return buffered.get() >= notificationProperties.getOverdueDigestMaxBuffered();
+    }
+
+    /**
+     * 发送已到窗口期的合并邮件
+     */
+    @Scheduled(fixedDelayString = "${app.notification.digest-flush-interval-ms:1000}")
+    public void flushDue() {
+        flush(System.currentTimeMillis() - notificationProperties.getOverdueDigestWindowMs());
+    }
+
+    /**
+     * 停止时发送所有缓存中的合并邮件
+     */
+    @PreDestroy
+    public void flushAll() {
+        flush(Long.MAX_VALUE);
+    }
+
+    private void flush(long startedBefore) {
+        for (String email : digests.keySet()) {
+            Digest[] removed = new Digest[1];
+            digests.computeIfPresent(email, (key, digest) -> {
+                if (digest.startedAt <= startedBefore) {
+                    removed[0] = digest;
+                    return null;
+                }
+                return digest;
+            });
+            if (removed[0] != null) {
+                send(email, removed[0]);
+            }
+        }
+    }
+
+    private void send(String email, Digest digest) {
+        buffered.addAndGet(-digest.owners.size());
+        CompletableFuture<Boolean> future;
+        try {
+            future = emailService.sendOverdueDigest(email, digest.items);
+        } catch (IllegalArgumentException e) {
+            // 邮箱无效，重试也无法发送，直接确认
+            log.error("逾期通知邮箱无效，丢弃{}条通知: {}", digest.items.size(), e.getMessage());
+            digest.owners.forEach(this::release);
+            return;
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((success, ex) -> {
+            if (ex != null) {
+                if (++digest.attempts >= notificationProperties.getOverdueDigestMaxAttempts()) {
+                    // 放弃该邮件并确认位移，逾期状态已在数据库中，不影响后续批次提交
+                    log.error("逾期合并通知连续{}次写入发送队列失败，放弃发送，接收方: {}, 还款ID: {}",
+                            digest.attempts, email, digest.repaymentIds, ex);
+                    digestsAbandoned.increment();
+                    digest.owners.forEach(this::release);
+                    return;
+                }
+                log.warn("逾期合并通知写入发送队列失败，稍后重试，接收方: {}", email);
+                requeue(email, digest);
+                return;
+            }
+            digestsSent.increment();
+            smtpSendsSaved.add(digest.items.size() - 1);
+            digest.owners.forEach(this::release);
+        });
+    }
+
+    private void requeue(String email, Digest failed) {
+        buffered.addAndGet(failed.owners.size());
+        digests.compute(email, (key, existing) -> {
+            if (existing == null) {
+                return failed;
+            }
+            existing.merge(failed);
+            return existing;
+        });
+    }
+
+    private void release(PendingBatch batch) {
+        if (batch.remaining.decrementAndGet() == 0) {
+            acknowledgeCompleted(batch.queue);
+        }
+    }
+
+    // 只确认队首连续完成的批次，保证位移按顺序提交
+    private void acknowledgeCompleted(Deque<PendingBatch> queue) {
+        synchronized (queue) {
+            while (!queue.isEmpty() && queue.peekFirst().remaining.get() == 0) {
+                queue.pollFirst().ack.acknowledge();
+            }
+        }
+    }
+
+    /**
+     * 获取合并指标
+     */
+    public CoalescerStats getStats() {
+        return new CoalescerStats(eventsReceived.sum(), digestsSent.sum(), smtpSendsSaved.sum(),
+                digestsAbandoned.sum(), digests.size(), buffered.get());
+    }
+
+    /**
+     * 逾期通知合并指标
+     *
+     * @param eventsReceived   收到的逾期事件数
+     * @param digestsSent      已发送的合并邮件数
+     * @param smtpSendsSaved   合并后少发的邮件数
+     * @param digestsAbandoned 多次写入失败后放弃的合并邮件数
+     * @param pendingDigests   尚在窗口中的借款人数
+     * @param bufferedEvents   缓存中的事件数
+     */
+    public record CoalescerStats(long eventsReceived, long digestsSent, long smtpSendsSaved, long digestsAbandoned,
+                                 int pendingDigests, int bufferedEvents) {
+    }
+
+    private static final class PendingBatch {
+        private final Acknowledgment ack;
+        private final Deque<PendingBatch> queue;
+        private final AtomicInteger remaining;
+
+        private PendingBatch(Acknowledgment ack, Deque<PendingBatch> queue, int events) {
+            this.ack = ack;
+            this.queue = queue;
+            this.remaining = new AtomicInteger(events);
+        }
+    }
+
+    /**
+     * 同一借款人在窗口内的逾期事件；owners 与收到的事件一一对应（含重复事件），用于位移确认
+     */
+    private static final class Digest {
+        private long startedAt;
+        private int attempts; // 写入发送队列失败的次数
+        private final List<RepaymentEvent> items = new ArrayList<>();
+        private final List<PendingBatch> owners = new ArrayList<>();
+        private final Set<Long> repaymentIds = new HashSet<>();
+
+        private Digest(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void add(RepaymentEvent event, PendingBatch owner) {
+            owners.add(owner);
+            // 发件箱为至少一次投递，同一还款的重复事件只列出一次
+            if (event.getRepaymentId() == null || repaymentIds.add(event.getRepaymentId())) {
+                items.add(event);
+            }
+        }
+
+        void merge(Digest other) {
+            // 窗口从最早的事件算起，重试的邮件不会因为合并了新事件而推迟
+            startedAt = Math.min(startedAt, other.startedAt);
+            attempts = Math.max(attempts, other.attempts);
+            for (RepaymentEvent event : other.items) {
+                if (event.getRepaymentId() == null || repaymentIds.add(event.getRepaymentId())) {
+                    items.add(event);
+                }
+            }
+            owners.addAll(other.owners);
+        }
+
+        int size() {
+            return items.size();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.RepaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 逾期还款扫描器
+ * <p>
+ * 按 (due_date, id) 键集分页取出到期未还的记录，每批使用一条批量UPDATE修改状态，
+ * 并在独立事务中提交，避免整个扫描任务占用一个长事务和大量内存。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OverdueRepaymentSweeper {
+    private final RepaymentRepository repaymentRepository;
+    private final OutboxService outboxService;
+
+    /**
+     * 处理一批逾期还款
+     *
+     * @param today       扫描基准日期
+     * @param lastDueDate 上一批最后一条记录的到期日，首批传null
+     * @param lastId      上一批最后一条记录的ID，首批传null
+     * @param chunkSize   每批最大记录数
+     * @return 本批处理结果
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public SweepChunk sweepChunk(LocalDate today, LocalDate lastDueDate, Long lastId, int chunkSize) {
+        PageRequest limit = PageRequest.of(0, chunkSize);
+        List<Repayment> chunk = lastId == null
+                ? repaymentRepository.findOverdueChunk(RepaymentStatus.PENDING, today, limit)
+                : repaymentRepository.findOverdueChunkAfter(RepaymentStatus.PENDING, today, lastDueDate, lastId, limit);
+
+        if (chunk.isEmpty()) {
+            return new SweepChunk(0, 0, lastDueDate, lastId);
+        }
+
+        List<Long> ids = chunk.stream().map(Repayment::getId).toList();
+        int updated = repaymentRepository.updateStatusByIds(
+                ids, RepaymentStatus.PENDING, RepaymentStatus.OVERDUE, LocalDateTime.now());
+
+        for (Repayment repayment : chunk) {
+            String borrowerEmail = repayment.getBorrowerEmail();
+            if (borrowerEmail == null || borrowerEmail.isEmpty()) {
+                log.error("还款ID={}的借款人邮箱为空，无法发送通知", repayment.getId());
+                continue;
+            }
+
+            // 与状态更新同一事务写入发件箱，由 OutboxRelay 投递到 NotificationService
+            outboxService.enqueue(RepaymentEvent.OVERDUE_TOPIC, RepaymentEvent.overdue(repayment));
+        }
+
+        Repayment last = chunk.get(chunk.size() - 1);
+        return new SweepChunk(chunk.size(), updated, last.getDueDate(), last.getId());
+    }
+
+    /**
+     * 单批扫描结果
+     *
+     * @param scanned     本批读取的记录数
+     * @param updated     本批实际更新为逾期的记录数
+     * @param lastDueDate 本批最后一条记录的到期日（下一批的游标）
+     * @param lastId      本批最后一条记录的ID（下一批的游标）
+     */
+    public record SweepChunk(int scanned, int updated, LocalDate lastDueDate, Long lastId) {
+    }
+}
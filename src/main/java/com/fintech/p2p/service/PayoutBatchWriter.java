@@ -0,0 +1,108 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.PayoutProperties;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.model.InvestorPayout;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.InvestmentRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 在一个事务中把一批贷款尚未分配的还款按已确认的投资拆分给投资人
+ * <p>
+ * 回款行通过 JDBC 批量写入，每 flushRows 行刷新并清空一次持久化上下文；
+ * 分配过的还款在同一事务中标记为已分配，(repayment_id, investment_id) 唯一约束兜底防止重复分配。
+ */
+@Service
+@RequiredArgsConstructor
+public class PayoutBatchWriter {
+    private final RepaymentRepository repaymentRepository;
+    private final InvestmentRepository investmentRepository;
+    private final PayoutCalculator payoutCalculator;
+    private final PayoutProperties payoutProperties;
+    private final EntityManager entityManager;
+
+    /**
+     * 分配一批贷款已支付、尚未分配的还款，回款日期为还款的支付日期
+     *
+     * @param loanIds 贷款ID
+     * @return 分配结果
+     */
+    @Transactional
+    public ChunkResult distribute(List<Long> loanIds) {
+        Map<Long, List<Investment>> investmentsByLoan = investmentRepository.findConfirmedByLoanIds(loanIds).stream()
+                .collect(Collectors.groupingBy(Investment::getLoanId));
+        List<Repayment> repayments = repaymentRepository.findUndistributed(loanIds, RepaymentStatus.PAID);
+
+        int flushRows = payoutProperties.getFlushRows();
+        long payouts = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        List<Long> distributed = new ArrayList<>(repayments.size());
+        for (Repayment repayment : repayments) {
+            List<Investment> investments = investmentsByLoan.get(repayment.getLoanId());
+            if (investments == null) {
+                continue;
+            }
+            LocalDate payoutDate = payoutDate(repayment);
+            List<BigDecimal> shares = new ArrayList<>(investments.size());
+            for (Investment investment : investments) {
+                shares.add(investment.getAmount());
+            }
+            BigDecimal[] split = payoutCalculator.split(repayment.getAmount(), shares);
+            for (int i = 0; i < split.length; i++) {
+                if (split[i].signum() == 0) {
+                    continue;
+                }
+                Investment investment = investments.get(i);
+                InvestorPayout payout = new InvestorPayout();
+                payout.setRepaymentId(repayment.getId());
+                payout.setLoanId(repayment.getLoanId());
+                payout.setInvestmentId(investment.getId());
+                payout.setInvestorId(investment.getInvestorId());
+                payout.setAmount(split[i]);
+                payout.setPayoutDate(payoutDate);
+                entityManager.persist(payout);
+                amount = amount.add(split[i]);
+                if (++payouts % flushRows == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            distributed.add(repayment.getId());
+        }
+        if (!distributed.isEmpty()) {
+            repaymentRepository.markDistributed(distributed);
+        }
+        return new ChunkResult(distributed.size(), payouts, amount);
+    }
+
+    // 早期异步入账的还款没有 paymentDate，按支付时间取日期
+    private static LocalDate payoutDate(Repayment repayment) {
+        if (repayment.getPaymentDate() != null) {
+            return repayment.getPaymentDate();
+        }
+        return repayment.getPaymentTimestamp() != null ? repayment.getPaymentTimestamp().toLocalDate() : LocalDate.now();
+    }
+
+    /**
+     * 一批贷款的分配结果
+     *
+     * @param repayments 分配的还款笔数
+     * @param payouts    写入的回款行数
+     * @param amount     分配总金额
+     */
+    public record ChunkResult(long repayments, long payouts, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.fintech.p2p.service;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按投资份额拆分还款金额
+ * <p>
+ * 以分为单位计算：每位投资人先得到 金额 × 份额 / 总份额 向下取整的部分，剩余的分按余数从大到小各补1分，
+ * 余数相同时按投资人的先后顺序。拆分结果之和严格等于还款金额，相同输入总是得到相同结果。
+ */
+@Component
+public class PayoutCalculator {
+    private static final int SCALE = 2;
+
+    /**
+     * 拆分金额
+     *
+     * @param amount 还款金额，按分四舍五入
+     * @param shares 各投资人的投资金额，顺序决定余数相同时谁先补分
+     * @return 与 shares 一一对应的分配金额
+     */
+    public BigDecimal[] split(BigDecimal amount, List<BigDecimal> shares) {
+        long[] shareCents = new long[shares.size()];
+        for (int i = 0; i < shareCents.length; i++) {
+            shareCents[i] = toCents(shares.get(i));
+        }
+        long[] payoutCents = split(toCents(amount), shareCents);
+        BigDecimal[] payouts = new BigDecimal[payoutCents.length];
+        for (int i = 0; i < payouts.length; i++) {
+            payouts[i] = BigDecimal.valueOf(payoutCents[i], SCALE);
+        }
+        return payouts;
+    }
+
+    /**
+     * 以分为单位拆分金额
+     *
+     * @param amountCents 还款金额（分）
+     * @param shareCents  各投资人的投资金额（分）
+     * @return 与 shareCents 一一对应的分配金额（分）
+     */
+    public long[] split(long amountCents, long[] shareCents) {
+        if (amountCents < 0) {
+            throw new IllegalArgumentException("还款金额不能为负数");
+        }
+        long totalShares = 0;
+        for (long share : shareCents) {
+            if (share < 0) {
+                throw new IllegalArgumentException("投资金额不能为负数");
+            }
+            totalShares = Math.addExact(totalShares, share);
+        }
+        if (totalShares == 0) {
+            throw new IllegalArgumentException("投资总额必须大于0");
+        }
+
+        int n = shareCents.length;
+        long[] payouts = new long[n];
+        long[] remainders = new long[n];
+        long distributed = 0;
+        for (int i = 0; i < n; i++) {
+            long product;
+            try {
+                product = Math.multiplyExact(amountCents, shareCents[i]);
+                payouts[i] = product / totalShares;
+                remainders[i] = product % totalShares;
+            } catch (ArithmeticException e) {
+                BigInteger[] qr = BigInteger.valueOf(amountCents).multiply(BigInteger.valueOf(shareCents[i]))
+                        .divideAndRemainder(BigInteger.valueOf(totalShares));
+                payouts[i] = qr[0].longValueExact();
+                remainders[i] = qr[1].longValueExact();
+            }
+            distributed += payouts[i];
+        }
+
+        // 剩余的分少于投资人数，按余数从大到小、余数相同按顺序各补1分
+        int leftover = (int) (amountCents - distributed);
+        if (leftover > 0) {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> remainders[a] != remainders[b]
+                    ? Long.compare(remainders[b], remainders[a])
+                    : Integer.compare(a, b));
+            for (int i = 0; i < leftover; i++) {
+                payouts[order[i]]++;
+            }
+        }
+        return payouts;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
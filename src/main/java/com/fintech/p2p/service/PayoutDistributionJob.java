@@ -0,0 +1,19 @@
+package com.fintech.p2p.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期把已支付、尚未分配的还款分配给投资人，迟到入账的还款在下一次运行时一并分配
+ */
+@Component
+@RequiredArgsConstructor
+public class PayoutDistributionJob {
+    private final PayoutDistributionService payoutDistributionService;
+
+    @Scheduled(fixedDelayString = "${app.payout.interval-ms:600000}")
+    public void distributePending() {
+        payoutDistributionService.distribute();
+    }
+}
@@ -0,0 +1,98 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.PayoutProperties;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.repository.RepaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 把已支付、尚未分配的还款按投资份额分配给投资人
+ * <p>
+ * 按还款上的已分配标记选取，不限支付日期，迟到入账的还款不会因为超出时间窗口而漏分。
+ * 待分配还款所在的贷款按ID排序后每 chunkLoans 笔分为一批，各批在 payoutTaskExecutor 上并行处理、
+ * 各自一个事务；同一贷款的还款总在同一批次中，批次之间不会争用同一行。
+ * 失败的批次不影响其他批次，下次运行时重新分配。
+ */
+@Service
+@Slf4j
+public class PayoutDistributionService {
+    private final RepaymentRepository repaymentRepository;
+    private final PayoutBatchWriter payoutBatchWriter;
+    private final PayoutProperties payoutProperties;
+    private final TaskExecutor payoutTaskExecutor;
+
+    public PayoutDistributionService(RepaymentRepository repaymentRepository,
+                                     PayoutBatchWriter payoutBatchWriter,
+                                     PayoutProperties payoutProperties,
+                                     @Qualifier("payoutTaskExecutor") TaskExecutor payoutTaskExecutor) {
+        this.repaymentRepository = repaymentRepository;
+        this.payoutBatchWriter = payoutBatchWriter;
+        this.payoutProperties = payoutProperties;
+        this.payoutTaskExecutor = payoutTaskExecutor;
+    }
+
+    /**
+     * 分配所有已支付、尚未分配的还款
+     *
+     * @return 分配结果
+     */
+    public DistributionReport distribute() {
+        long startNanos = System.nanoTime();
+        List<Long> loanIds = repaymentRepository.findLoansWithUndistributedRepayments(RepaymentStatus.PAID);
+        int chunkLoans = payoutProperties.getChunkLoans();
+
+        List<CompletableFuture<PayoutBatchWriter.ChunkResult>> chunks = new ArrayList<>();
+        for (int from = 0; from < loanIds.size(); from += chunkLoans) {
+            List<Long> chunk = loanIds.subList(from, Math.min(from + chunkLoans, loanIds.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> payoutBatchWriter.distribute(chunk), payoutTaskExecutor));
+        }
+
+        long repayments = 0;
+        long payouts = 0;
+        int failedChunks = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        for (CompletableFuture<PayoutBatchWriter.ChunkResult> chunk : chunks) {
+            try {
+                PayoutBatchWriter.ChunkResult result = chunk.join();
+                repayments += result.repayments();
+                payouts += result.payouts();
+                amount = amount.add(result.amount());
+            } catch (RuntimeException e) {
+                failedChunks++;
+                log.error("回款分配批次失败，下次运行时重试: {}", e.getMessage(), e);
+            }
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        DistributionReport report = new DistributionReport(loanIds.size(), repayments, payouts, amount,
+                failedChunks, elapsedMillis);
+        if (!loanIds.isEmpty()) {
+            log.info("回款分配完成: 贷款{}笔, 还款{}笔, 回款{}行(金额{}), 失败批次{}, 耗时{}ms, {}行/秒",
+                    report.loans(), report.repayments(), report.payouts(), report.amount(),
+                    report.failedChunks(), elapsedMillis, report.payouts() * 1000 / elapsedMillis);
+        }
+        return report;
+    }
+
+    /**
+     * 一次回款分配的结果
+     *
+     * @param loans         涉及的贷款数
+     * @param repayments    分配的还款笔数
+     * @param payouts       写入的回款行数
+     * @param amount        分配总金额
+     * @param failedChunks  失败的批次数
+     * @param elapsedMillis 耗时
+     */
+    public record DistributionReport(int loans, long repayments, long payouts, BigDecimal amount,
+                                     int failedChunks, long elapsedMillis) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.RefreshTokenProperties;
+import com.fintech.p2p.model.RefreshToken;
+import com.fintech.p2p.model.User;
+import com.fintech.p2p.repository.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 刷新令牌的签发、轮换与吊销
+ * <p>
+ * 数据库只保存令牌摘要，刷新时按摘要主键查询一次。每次刷新都轮换：旧令牌标记为已使用并在同一 family 下签发新令牌。
+ * 移动端断线重连时同一个旧令牌常被并发提交多次，宽限期内本节点重放缓存的轮换结果，不再签发新令牌；
+ * 重放前仍按主键确认旧令牌未被吊销，其他节点上的吊销同样对缓存生效。
+ * 其他节点在宽限期内收到的重复请求只拒绝不吊销。宽限期之后旧令牌再次出现视为被盗用，吊销整个 family。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenService {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenProperties refreshTokenProperties;
+
+    private final Map<String, RecentRotation> recentRotations = new ConcurrentHashMap<>();
+
+    /**
+     * 登录时签发新 family 的刷新令牌
+     */
+    @Transactional
+    public String issue(User user) {
+        return issue(user.getId(), user.getUsername(), UUID.randomUUID().toString(), LocalDateTime.now());
+    }
+
+    /**
+     * 用刷新令牌换取新的刷新令牌
+     *
+     * @return 令牌无效、过期、已吊销或被重复使用时为空
+     */
+    @Transactional
+    public Optional<Rotation> rotate(String refreshToken) {
+        String tokenHash = hash(refreshToken);
+        long nowMillis = System.currentTimeMillis();
+        Optional<RefreshToken> stored = refreshTokenRepository.findById(tokenHash);
+        if (stored.isEmpty()) {
+            recentRotations.remove(tokenHash);
+            return Optional.empty();
+        }
+        RefreshToken token = stored.get();
+        LocalDateTime now = LocalDateTime.now();
+        // 吊销 family 或用户时旧令牌一并吊销，缓存的轮换结果随之作废
+        if (token.getRevokedAt() != null || !token.getExpiresAt().isAfter(now)) {
+            recentRotations.remove(tokenHash);
+            return Optional.empty();
+        }
+        RecentRotation recent = recentRotations.get(tokenHash);
+        if (recent != null && recent.expiresAtMillis() > nowMillis) {
+            return Optional.of(recent.rotation());
+        }
+        if (token.getUsedAt() != null || refreshTokenRepository.markUsed(tokenHash, now) == 0) {
+            // 本节点的并发请求在行锁上等到了先到请求的轮换结果
+            recent = recentRotations.get(tokenHash);
+            if (recent != null && recent.expiresAtMillis() > nowMillis) {
+                return Optional.of(recent.rotation());
+            }
+            handleReuse(token, now);
+            return Optional.empty();
+        }
+
+        String next = issue(token.getUserId(), token.getUsername(), token.getFamilyId(), now);
+        Rotation rotation = new Rotation(token.getUserId(), token.getUsername(), next);
+        remember(tokenHash, rotation, nowMillis);
+        return Optional.of(rotation);
+    }
+
+    /**
+     * 吊销刷新令牌所在的 family（注销当前设备）
+     *
+     * @param username 当前登录的用户，令牌属于其他用户时不吊销
+     * @return 吊销的令牌数
+     */
+    public int revoke(String refreshToken, String username) {
+        String tokenHash = hash(refreshToken);
+        Optional<RefreshToken> stored = refreshTokenRepository.findById(tokenHash);
+        if (stored.isEmpty() || !stored.get().getUsername().equals(username)) {
+            return 0;
+        }
+        recentRotations.remove(tokenHash);
+        return refreshTokenRepository.revokeFamily(stored.get().getFamilyId(), LocalDateTime.now());
+    }
+
+    /**
+     * 吊销用户的全部刷新令牌（修改密码、账户被盗等）
+     */
+    public int revokeAll(Long userId) {
+        recentRotations.values().removeIf(recent -> recent.rotation().userId().equals(userId));
+        return refreshTokenRepository.revokeAllForUser(userId, LocalDateTime.now());
+    }
+
+    /**
+     * 定期清理过期的令牌和轮换缓存
+     */
+    @Scheduled(fixedDelayString = "${app.refresh-token.cleanup-interval-ms:3600000}")
+    public void evictExpired() {
+        long nowMillis = System.currentTimeMillis();
+        recentRotations.values().removeIf(recent -> recent.expiresAtMillis() <= nowMillis);
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("已清理{}个过期刷新令牌", deleted);
+        }
+    }
+
+    private void handleReuse(RefreshToken token, LocalDateTime now) {
+        // usedAt 为空说明刚被并发请求轮换
+        LocalDateTime usedAt = token.getUsedAt();
+        if (usedAt == null || usedAt.plus(refreshTokenProperties.getReuseGrace()).isAfter(now)) {
+            return;
+        }
+        int revoked = refreshTokenRepository.revokeFamily(token.getFamilyId(), now);
+        recentRotations.values().removeIf(recent -> recent.rotation().userId().equals(token.getUserId()));
+        log.warn("Refresh token reuse detected for user {}, revoked {} tokens in family {}",
+                token.getUsername(), revoked, token.getFamilyId());
+    }
+
+    private String issue(Long userId, String username, String familyId, LocalDateTime now) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(refreshToken));
+        token.setUserId(userId);
+        token.setUsername(username);
+        token.setFamilyId(familyId);
+        token.setCreatedAt(now);
+        token.setExpiresAt(now.plus(refreshTokenProperties.getTtl()));
+        refreshTokenRepository.saveAndFlush(token);
+        return refreshToken;
+    }
+
+    private void remember(String tokenHash, Rotation rotation, long nowMillis) {
+        if (recentRotations.size() >= refreshTokenProperties.getCacheMaxEntries()) {
+            recentRotations.values().removeIf(recent -> recent.expiresAtMillis() <= nowMillis);
+            if (recentRotations.size() >= refreshTokenProperties.getCacheMaxEntries()) {
+                return;
+            }
+        }
+        recentRotations.put(tokenHash,
+                new RecentRotation(rotation, nowMillis + refreshTokenProperties.getReuseGrace().toMillis()));
+    }
+
+    private static String hash(String refreshToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 轮换结果
+     *
+     * @param userId       用户ID
+     * @param username     用户名，用于签发访问令牌
+     * @param refreshToken 新的刷新令牌
+     */
+    public record Rotation(Long userId, String username, String refreshToken) {
+    }
+
+    private record RecentRotation(Rotation rotation, long expiresAtMillis) {
+    }
+}
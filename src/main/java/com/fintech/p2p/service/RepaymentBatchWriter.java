@@ -0,0 +1,186 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.model.RepaymentSubmission;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.repository.RepaymentSubmissionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 单笔贷款的批量还款写入器
+ * <p>
+ * 由 {@link RepaymentPipeline} 的单写通道调用：同一贷款排队的多笔还款在一个事务中按到达顺序逐笔校验，
+ * 通过的还款一次性插入，贷款余额只更新一次。受理记录的状态在同一事务中更新：
+ * 持有贷款行锁后只处理仍在排队的受理记录，同一笔还款被多个节点重新排队时也只入账一次。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RepaymentBatchWriter {
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final RepaymentSubmissionRepository repaymentSubmissionRepository;
+
+    /**
+     * 对同一贷款应用一批已受理的还款
+     *
+     * @param loanId     贷款ID
+     * @param paymentIds 按到达顺序排列的受理记录ID
+     * @return 本次实际处理的受理记录及结果，已被其他节点处理的记录不在其中
+     */
+    @Transactional
+    public BatchResult apply(Long loanId, List<String> paymentIds) {
+        Optional<Loan> loanOpt = loanRepository.findByIdForUpdate(loanId);
+        List<RepaymentSubmission> submissions = queued(paymentIds);
+        LocalDateTime now = LocalDateTime.now();
+        if (loanOpt.isEmpty()) {
+            List<PaymentOutcome> outcomes = submissions.stream()
+                    .map(submission -> record(submission, PaymentOutcome.rejected(submission, "贷款不存在,ID：" + loanId), now))
+                    .toList();
+            return new BatchResult(null, outcomes);
+        }
+
+        Loan loan = loanOpt.get();
+        BigDecimal repaid = loan.getRepaidAmount() == null ? BigDecimal.ZERO : loan.getRepaidAmount();
+        BigDecimal remaining = loan.getAmount().subtract(repaid);
+        BigDecimal repaidInterest = loan.getRepaidInterest() == null ? BigDecimal.ZERO : loan.getRepaidInterest();
+        boolean completed = loan.getStatus() == Loan.LoanStatus.COMPLETED;
+        Map<LocalDate, BigDecimal> interestDue = new HashMap<>();
+
+        List<PaymentOutcome> outcomes = new ArrayList<>(submissions.size());
+        List<Repayment> accepted = new ArrayList<>(submissions.size());
+        for (RepaymentSubmission submission : submissions) {
+            // 与同步还款一致：先抵扣已到期未还的利息，只有本金部分冲减剩余本金
+            RepaymentSplit split = RepaymentSplit.of(submission.getAmount(),
+                    interestDue.computeIfAbsent(submission.getDueDate(),
+                            dueDate -> repaymentRepository.sumScheduledInterest(loanId, dueDate)),
+                    repaidInterest);
+            String rejection = completed ? "该贷款已全部还清，无需再还款"
+                    : !loan.getBorrowerId().equals(submission.getBorrowerId()) ? "非法操作：该贷款不属于当前用户"
+                    : split.principal().compareTo(remaining) > 0 ? "还款金额超过剩余本金"
+                    : null;
+            if (rejection != null) {
+                outcomes.add(PaymentOutcome.rejected(submission, rejection));
+                continue;
+            }
+
+            remaining = remaining.subtract(split.principal());
+            repaid = repaid.add(split.principal());
+            repaidInterest = repaidInterest.add(split.interest());
+            completed = remaining.compareTo(BigDecimal.ZERO) == 0 || submission.getRepaymentType() == RepaymentType.FULL;
+
+            Repayment repayment = new Repayment();
+            repayment.setLoanId(loanId);
+            repayment.setBorrowerId(submission.getBorrowerId());
+            repayment.setBorrowerEmail(submission.getBorrowerEmail());
+            repayment.setAmount(submission.getAmount());
+            repayment.setPrincipalAmount(split.principal());
+            repayment.setInterestAmount(split.interest());
+            repayment.setDueDate(submission.getDueDate());
+            repayment.setStatus(submission.getStatus());
+            repayment.setRepaymentType(submission.getRepaymentType());
+            repayment.setPaymentDate(now.toLocalDate());
+            repayment.setPaymentTimestamp(now);
+            accepted.add(repayment);
+            outcomes.add(PaymentOutcome.applied(submission, repayment, remaining));
+        }
+
+        if (!accepted.isEmpty()) {
+            repaymentRepository.saveAll(accepted);
+
+            // 整批只更新一次贷款
+            loan.setRepaidAmount(repaid);
+            loan.setRepaidInterest(repaidInterest);
+            loan.setRemainingAmount(remaining);
+            loan.setUpdatedAt(now);
+            if (completed) {
+                loan.setStatus(Loan.LoanStatus.COMPLETED);
+                loan.setRepaymentStatus(Loan.RepaymentStatus.COMPLETED);
+                log.info("贷款 ID={} 已全部还清", loanId);
+            } else {
+                loan.setRepaymentStatus(Loan.RepaymentStatus.IN_PROGRESS);
+            }
+            loanRepository.save(loan);
+        }
+        outcomes.forEach(outcome -> record(outcome.submission(), outcome, now));
+
+        log.debug("贷款ID={}批量还款: 提交{}笔, 待处理{}笔, 成功{}笔, 剩余本金={}",
+                loanId, paymentIds.size(), submissions.size(), accepted.size(), remaining);
+        return new BatchResult(loan.getBorrowerEmail(), outcomes);
+    }
+
+    // 按到达顺序取出仍在排队的受理记录
+    private List<RepaymentSubmission> queued(List<String> paymentIds) {
+        Map<String, RepaymentSubmission> byId = repaymentSubmissionRepository.findAllById(paymentIds).stream()
+                .filter(submission -> submission.getState() == RepaymentSubmission.State.QUEUED)
+                .collect(Collectors.toMap(RepaymentSubmission::getPaymentId, Function.identity()));
+        return paymentIds.stream().map(byId::get).filter(Objects::nonNull).distinct().toList();
+    }
+
+    // 受理记录是托管实体，提交事务时随还款记录一起写入
+    private PaymentOutcome record(RepaymentSubmission submission, PaymentOutcome outcome, LocalDateTime now) {
+        if (outcome.success()) {
+            submission.setState(RepaymentSubmission.State.APPLIED);
+            submission.setRepaymentId(outcome.repayment().getId());
+            submission.setRemainingAmount(outcome.remainingAmount());
+        } else {
+            submission.setState(RepaymentSubmission.State.REJECTED);
+            submission.setMessage(outcome.rejection());
+        }
+        submission.setUpdatedAt(now);
+        return outcome;
+    }
+
+    /**
+     * 还款请求
+     */
+    public record RepaymentCommand(Long loanId, Long borrowerId, String borrowerEmail, BigDecimal amount,
+                                   LocalDate dueDate, RepaymentStatus status, RepaymentType repaymentType) {
+    }
+
+    /**
+     * 单笔还款的处理结果，rejection 为 null 表示已入账
+     */
+    public record PaymentOutcome(RepaymentSubmission submission, Repayment repayment, BigDecimal remainingAmount,
+                                 String rejection) {
+        static PaymentOutcome applied(RepaymentSubmission submission, Repayment repayment, BigDecimal remainingAmount) {
+            return new PaymentOutcome(submission, repayment, remainingAmount, null);
+        }
+
+        static PaymentOutcome rejected(RepaymentSubmission submission, String rejection) {
+            return new PaymentOutcome(submission, null, null, rejection);
+        }
+
+        public boolean success() {
+            return rejection == null;
+        }
+    }
+
+    /**
+     * 一批还款的处理结果
+     *
+     * @param borrowerEmail 贷款登记的借款人邮箱，贷款不存在时为null
+     * @param outcomes      按到达顺序排列的结果
+     */
+    public record BatchResult(String borrowerEmail, List<PaymentOutcome> outcomes) {
+    }
+}
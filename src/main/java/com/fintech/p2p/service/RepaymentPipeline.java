@@ -0,0 +1,281 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.exception.RepaymentQueueFullException;
+import com.fintech.p2p.model.RepaymentSubmission;
+import com.fintech.p2p.repository.RepaymentSubmissionRepository;
+import com.fintech.p2p.service.RepaymentBatchWriter.BatchResult;
+import com.fintech.p2p.service.RepaymentBatchWriter.PaymentOutcome;
+import com.fintech.p2p.service.RepaymentBatchWriter.RepaymentCommand;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步还款通道
+ * <p>
+ * 还款按贷款ID哈希分到固定的单写通道，每个通道一个线程顺序处理：取出排队的一批还款后按贷款分组，
+ * 同一贷款的还款交给 {@link RepaymentBatchWriter} 在一个事务内入账，贷款行只更新一次，
+ * 不同通道之间不会争抢同一行锁。
+ * <p>
+ * 受理的还款先写入 repayment_submissions 再返回202，通道队列只是内存中的加速路径：
+ * 节点崩溃或重启时未处理的还款由任一节点的恢复任务重新排队，客户端可在任一节点轮询结果。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RepaymentPipeline {
+    private static final long IDLE_WAIT_MILLIS = 100;
+    private static final int RECOVERY_BATCH_SIZE = 500;
+
+    private final RepaymentBatchWriter repaymentBatchWriter;
+    private final NotificationService notificationService;
+    private final RepaymentSubmissionRepository repaymentSubmissionRepository;
+    private final RepaymentProperties repaymentProperties;
+
+    // 本节点通道中尚未处理完的受理记录，恢复任务不重复排队
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private List<Lane> lanes;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        lanes = new ArrayList<>(repaymentProperties.getLanes());
+        for (int i = 0; i < repaymentProperties.getLanes(); i++) {
+            Lane lane = new Lane(i, repaymentProperties.getLaneQueueCapacity());
+            lanes.add(lane);
+            lane.thread.start();
+        }
+        log.info("异步还款通道已启动: {}个通道, 每通道队列容量{}",
+                repaymentProperties.getLanes(), repaymentProperties.getLaneQueueCapacity());
+    }
+
+    /**
+     * 停止受理新还款，已排队的还款处理完后再退出；超时未处理的仍在库中，由恢复任务重新入账
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+            if (!lane.queue.isEmpty()) {
+                log.warn("还款通道{}停止时仍有{}笔还款未处理，将由恢复任务重新入账", lane.index, lane.queue.size());
+            }
+        }
+    }
+
+    /**
+     * 受理一笔还款：受理记录落库后进入通道，立即返回还款句柄
+     *
+     * @param command 还款请求
+     * @return 排队中的还款句柄
+     * @throws RepaymentQueueFullException 对应通道已满
+     */
+    public PaymentHandle submit(RepaymentCommand command) {
+        if (command.amount() == null || command.amount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("还款金额必须大于零");
+        }
+        if (!running) {
+            throw new RepaymentQueueFullException("还款通道已停止受理");
+        }
+
+        RepaymentSubmission submission = repaymentSubmissionRepository.save(toSubmission(command));
+        if (!enqueue(submission.getPaymentId(), submission.getLoanId())) {
+            // 客户端收到503后会重新提交，删除受理记录以免重复入账
+            repaymentSubmissionRepository.deleteById(submission.getPaymentId());
+            throw new RepaymentQueueFullException("还款通道繁忙，请稍后再试");
+        }
+        return PaymentHandle.of(submission);
+    }
+
+    /**
+     * 查询还款句柄的当前状态，任一节点受理的还款都可查询
+     */
+    public Optional<PaymentHandle> getHandle(String paymentId) {
+        return repaymentSubmissionRepository.findById(paymentId).map(PaymentHandle::of);
+    }
+
+    /**
+     * 重新排队受理后超过恢复延迟仍未入账的还款
+     * <p>
+     * 受理节点崩溃或重启时内存队列丢失，受理记录仍在库中。入账时持有贷款行锁并跳过已处理的记录，
+     * 同一笔还款被多个节点同时恢复也只入账一次。
+     *
+     * @return 本次重新排队的还款数
+     */
+    @Scheduled(fixedDelayString = "${app.repayment.recovery-interval-ms:30000}")
+    public int recoverStalled() {
+        if (!running) {
+            return 0;
+        }
+        LocalDateTime acceptedBefore = LocalDateTime.now().minus(repaymentProperties.getRecoveryDelay());
+        int requeued = 0;
+        for (RepaymentSubmission submission : repaymentSubmissionRepository.findStalled(
+                RepaymentSubmission.State.QUEUED, acceptedBefore, PageRequest.of(0, RECOVERY_BATCH_SIZE))) {
+            if (inFlight.contains(submission.getPaymentId())) {
+                continue;
+            }
+            if (!enqueue(submission.getPaymentId(), submission.getLoanId())) {
+                break; // 通道已满，下次再恢复
+            }
+            requeued++;
+        }
+        if (requeued > 0) {
+            log.warn("重新排队{}笔受理后未入账的还款", requeued);
+        }
+        return requeued;
+    }
+
+    /**
+     * 定期清理已完成且超过保留时长的受理记录
+     */
+    @Scheduled(fixedDelayString = "${app.repayment.handle-cleanup-interval-ms:60000}")
+    public void evictExpiredHandles() {
+        LocalDateTime expiry = LocalDateTime.now().minus(repaymentProperties.getPaymentHandleTtl());
+        repaymentSubmissionRepository.deleteCompletedBefore(RepaymentSubmission.State.QUEUED, expiry);
+    }
+
+    private boolean enqueue(String paymentId, Long loanId) {
+        Lane lane = lanes.get(Math.floorMod(loanId.hashCode(), lanes.size()));
+        inFlight.add(paymentId);
+        if (!lane.queue.offer(new QueuedPayment(paymentId, loanId))) {
+            inFlight.remove(paymentId);
+            return false;
+        }
+        return true;
+    }
+
+    private static RepaymentSubmission toSubmission(RepaymentCommand command) {
+        RepaymentSubmission submission = new RepaymentSubmission();
+        submission.setPaymentId(UUID.randomUUID().toString());
+        submission.setLoanId(command.loanId());
+        submission.setBorrowerId(command.borrowerId());
+        submission.setBorrowerEmail(command.borrowerEmail());
+        submission.setAmount(command.amount());
+        submission.setDueDate(command.dueDate());
+        submission.setStatus(command.status());
+        submission.setRepaymentType(command.repaymentType());
+        return submission;
+    }
+
+    private void drainLoop(Lane lane) {
+        int batchSize = repaymentProperties.getLaneBatchSize();
+        List<QueuedPayment> batch = new ArrayList<>(batchSize);
+        while (running || !lane.queue.isEmpty()) {
+            try {
+                QueuedPayment first = lane.queue.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                lane.queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<QueuedPayment> batch) {
+        // 按贷款分组，保持同一贷款内的到达顺序
+        Map<Long, List<String>> byLoan = new LinkedHashMap<>();
+        for (QueuedPayment payment : batch) {
+            byLoan.computeIfAbsent(payment.loanId(), id -> new ArrayList<>()).add(payment.paymentId());
+        }
+
+        for (Map.Entry<Long, List<String>> entry : byLoan.entrySet()) {
+            Long loanId = entry.getKey();
+            List<String> paymentIds = entry.getValue();
+            try {
+                BatchResult result = repaymentBatchWriter.apply(loanId, paymentIds);
+                for (PaymentOutcome outcome : result.outcomes()) {
+                    if (outcome.success()) {
+                        notifyBorrower(result.borrowerEmail(), outcome.submission(), outcome.remainingAmount());
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("贷款ID={}的{}笔还款入账失败: {}", loanId, paymentIds.size(), e.getMessage(), e);
+                markFailed(paymentIds);
+            } finally {
+                paymentIds.forEach(inFlight::remove);
+            }
+        }
+    }
+
+    private void markFailed(List<String> paymentIds) {
+        try {
+            repaymentSubmissionRepository.markFailed(paymentIds, "还款处理失败，请重新提交", LocalDateTime.now(),
+                    RepaymentSubmission.State.FAILED, RepaymentSubmission.State.QUEUED);
+        } catch (RuntimeException e) {
+            // 仍为排队状态，由恢复任务重试
+            log.error("标记还款失败状态时发生错误: {}", e.getMessage(), e);
+        }
+    }
+
+    private void notifyBorrower(String borrowerEmail, RepaymentSubmission submission, BigDecimal remainingAmount) {
+        try {
+            notificationService.sendRepaymentNotification(borrowerEmail, submission.getLoanId(), submission.getAmount(),
+                    remainingAmount);
+        } catch (Exception e) {
+            // 通知失败不影响已入账的还款
+            log.error("发送还款通知邮件时发生错误: {}", e.getMessage(), e);
+        }
+    }
+
+    private final class Lane {
+        private final int index;
+        private final BlockingQueue<QueuedPayment> queue;
+        private final Thread thread;
+
+        private Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(() -> drainLoop(this), "repayment-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+    }
+
+    private record QueuedPayment(String paymentId, Long loanId) {
+    }
+
+    /**
+     * 还款句柄
+     *
+     * @param paymentId       句柄ID，用于轮询
+     * @param state           处理状态
+     * @param repaymentId     入账后的还款记录ID
+     * @param remainingAmount 入账后的剩余本金
+     * @param message         拒绝或失败原因
+     */
+    public record PaymentHandle(String paymentId, Long loanId, BigDecimal amount, RepaymentSubmission.State state,
+                                Long repaymentId, BigDecimal remainingAmount, String message,
+                                LocalDateTime acceptedAt, LocalDateTime updatedAt) {
+        static PaymentHandle of(RepaymentSubmission submission) {
+            return new PaymentHandle(submission.getPaymentId(), submission.getLoanId(), submission.getAmount(),
+                    submission.getState(), submission.getRepaymentId(), submission.getRemainingAmount(),
+                    submission.getMessage(), submission.getAcceptedAt(), submission.getUpdatedAt());
+        }
+    }
+}
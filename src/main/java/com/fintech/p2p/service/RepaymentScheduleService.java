@@ -0,0 +1,87 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.enums.AmortizationMethod;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.exception.BusinessException;
+import com.fintech.p2p.exception.ResourceNotFoundException;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 还款计划生成：按贷款的金额、期限和利率一次算出全部分期，在一个事务内批量写入
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RepaymentScheduleService {
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final AmortizationCalculator amortizationCalculator;
+
+    /**
+     * 为指定贷款生成还款计划，第一期在下个月的今天到期
+     *
+     * @param loanId 贷款ID
+     * @param method 还款方式
+     * @return 按期数排列的还款计划
+     */
+    @Transactional
+    public List<Repayment> createSchedule(Long loanId, AmortizationMethod method) {
+        Loan loan = loanRepository.findById(loanId)
+                .orElseThrow(() -> new ResourceNotFoundException("贷款不存在,ID：" + loanId));
+        if (loan.getStatus() == Loan.LoanStatus.PENDING || loan.getStatus() == Loan.LoanStatus.REJECTED) {
+            throw new BusinessException("贷款未审批通过，不能生成还款计划");
+        }
+        return createSchedule(loan, method, LocalDate.now().plusMonths(1));
+    }
+
+    /**
+     * 为贷款生成还款计划；已生成过的直接返回原计划，重复调用不会产生重复分期
+     *
+     * @param loan         贷款
+     * @param method       还款方式
+     * @param firstDueDate 第一期到期日
+     * @return 按期数排列的还款计划
+     */
+    @Transactional
+    public List<Repayment> createSchedule(Loan loan, AmortizationMethod method, LocalDate firstDueDate) {
+        List<Repayment> existing = repaymentRepository.findByLoanIdAndInstallmentNoNotNullOrderByInstallmentNo(loan.getId());
+        if (!existing.isEmpty()) {
+            log.info("贷款ID={}已有{}期还款计划，不再重复生成", loan.getId(), existing.size());
+            return existing;
+        }
+
+        List<AmortizationCalculator.Installment> installments = amortizationCalculator.calculate(
+                loan.getAmount(), loan.getInterestRate(), loan.getTerm(), method, firstDueDate);
+        List<Repayment> schedule = new ArrayList<>(installments.size());
+        for (AmortizationCalculator.Installment installment : installments) {
+            Repayment repayment = new Repayment();
+            repayment.setLoanId(loan.getId());
+            repayment.setBorrowerId(loan.getBorrowerId());
+            repayment.setBorrowerEmail(loan.getBorrowerEmail());
+            repayment.setInstallmentNo(installment.number());
+            repayment.setAmount(installment.payment());
+            repayment.setPrincipalAmount(installment.principal());
+            repayment.setInterestAmount(installment.interest());
+            repayment.setDueDate(installment.dueDate());
+            repayment.setStatus(RepaymentStatus.PENDING);
+            repayment.setRepaymentType(RepaymentType.PARTIAL);
+            schedule.add(repayment);
+        }
+
+        List<Repayment> saved = repaymentRepository.saveAll(schedule);
+        log.info("已生成贷款ID={}的还款计划: {}, {}期", loan.getId(), method.getDisplayName(), saved.size());
+        return saved;
+    }
+}
@@ -1,7 +1,12 @@
 package com.fintech.p2p.service;
 
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.dto.RepaymentCursor;
+import com.fintech.p2p.dto.RepaymentSummary;
 import com.fintech.p2p.enums.RepaymentStatus;
 import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.exception.BusinessException;
 import com.fintech.p2p.exception.InvalidRepaymentException;
 import com.fintech.p2p.model.Loan;
 import com.fintech.p2p.model.Repayment;
@@ -10,8 +15,8 @@ import com.fintech.p2p.repository.RepaymentRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,8 +34,13 @@ import java.util.concurrent.CompletableFuture;
 public class RepaymentService {
     private final LoanRepository loanRepository;
     private final RepaymentRepository repaymentRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OutboxService outboxService;
     private final NotificationService notificationService;
+    private final OverdueRepaymentSweeper overdueRepaymentSweeper;
+    private final RepaymentProperties repaymentProperties;
+
+    @Value("${app.repayment.overdue-chunk-size:1000}")
+    private int overdueChunkSize;
 
     // 生成还款计划
     @Transactional
@@ -55,10 +65,22 @@ public class RepaymentService {
         return repaymentRepository.save(repayment);
     }
 
-    // 查询借款人的所有还款计划
-    public List<Repayment> getRepaymentsByBorrower(Long borrowerId) {
-        log.debug("查询借款人ID={}的还款计划", borrowerId);
-        return repaymentRepository.findByBorrowerId(borrowerId);
+    /**
+     * 分页查询借款人的还款计划，按到期日、还款ID排序
+     *
+     * @param borrowerId 借款人ID
+     * @param cursor     上一页返回的游标，首页为null
+     * @param size       每页大小
+     * @return 本页还款计划和下一页游标
+     */
+    public SummaryPage getRepaymentsByBorrower(Long borrowerId, String cursor, int size) {
+        log.debug("查询借款人ID={}的还款计划, 游标={}", borrowerId, cursor);
+        RepaymentCursor after = RepaymentCursor.decode(cursor);
+        int limit = pageSize(size);
+        List<RepaymentSummary> rows = after == null
+                ? repaymentRepository.findSummaries(borrowerId, fetchLimit(limit))
+                : repaymentRepository.findSummariesAfter(borrowerId, after.dueDate(), after.id(), fetchLimit(limit));
+        return toPage(rows, limit);
     }
 
     /**
@@ -86,28 +108,13 @@ public class RepaymentService {
             throw new IllegalArgumentException("还款金额必须大于零");
         }
 
-        // 获取贷款信息
+        // 原子扣减余额：并发还款不会同时通过余额校验，也不会互相覆盖已还金额
+        RepaymentSplit split = applyRepayment(loanId, borrowerId, amount, dueDate);
+
+        // 更新已在本事务中持有行锁，此处读到的是扣减后的余额
         Loan loan = loanRepository.findById(loanId)
                 .orElseThrow(() -> new IllegalArgumentException("贷款不存在,ID：" + loanId));
-
-        // 验证借款人身份
-        if (!loan.getBorrowerId().equals(borrowerId)) {
-            throw new IllegalArgumentException("非法操作：该贷款不属于当前用户");
-        }
-
-        // 检查贷款状态
-        if (loan.getStatus() == Loan.LoanStatus.COMPLETED) {
-            throw new InvalidRepaymentException("该贷款已全部还清，无需再还款");
-        }
-
-        // 计算新的剩余本金
-        BigDecimal remainingAmount = loan.getAmount().subtract(loan.getRepaidAmount());
-        BigDecimal newRemainingAmount = remainingAmount.subtract(amount);
-
-        // 验证还款金额是否合理
-        if (newRemainingAmount.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("还款金额超过剩余本金");
-        }
+        BigDecimal newRemainingAmount = loan.getRemainingAmount();
 
         // 创建还款记录
         Repayment repayment = new Repayment();
@@ -115,32 +122,27 @@ public class RepaymentService {
         repayment.setBorrowerId(borrowerId);
         repayment.setBorrowerEmail(borrowerEmail);
         repayment.setAmount(amount);
+        repayment.setPrincipalAmount(split.principal());
+        repayment.setInterestAmount(split.interest());
         repayment.setDueDate(dueDate);
         repayment.setStatus(status);
         repayment.setRepaymentType(repaymentType);
         repayment.setPaymentTimestamp(LocalDateTime.now()); // 添加还款时间
+        repayment.setPaymentDate(repayment.getPaymentTimestamp().toLocalDate());
 
         // 保存还款记录
         repayment = repaymentRepository.save(repayment);
         log.info("已创建还款记录: ID={}, 金额={}, 类型={}",
                 repayment.getId(), amount, repaymentType);
 
-        // 更新贷款信息
-        loan.setRepaidAmount(loan.getRepaidAmount().add(amount)); // 更新已还金额
-        loan.setRemainingAmount(newRemainingAmount); // 更新剩余待还款金额
-
         // 更新贷款状态
         if (newRemainingAmount.compareTo(BigDecimal.ZERO) == 0 || repaymentType == RepaymentType.FULL) {
             loan.setStatus(Loan.LoanStatus.COMPLETED);
             loan.setRepaymentStatus(Loan.RepaymentStatus.COMPLETED);
+            loanRepository.save(loan);
             log.info("贷款 ID={} 已全部还清", loanId);
-        } else {
-            loan.setRepaymentStatus(Loan.RepaymentStatus.IN_PROGRESS);
         }
 
-        loan.setUpdatedAt(LocalDateTime.now()); // 更新修改时间
-        loanRepository.save(loan);
-
         // 发送邮件通知 (异步)
         try {
             CompletableFuture<Boolean> emailFuture = notificationService.sendRepaymentNotification(
@@ -161,6 +163,60 @@ public class RepaymentService {
         return repayment;
     }
 
+    /**
+     * 拆分利息和本金后原子入账
+     * <p>
+     * 拆分依赖已还利息：条件更新因并发还款改变了已还利息而未命中时，加行锁重新拆分再更新一次
+     */
+    private RepaymentSplit applyRepayment(Long loanId, Long borrowerId, BigDecimal amount, LocalDate dueDate) {
+        Loan loan = loanRepository.findById(loanId)
+                .orElseThrow(() -> new IllegalArgumentException("贷款不存在,ID：" + loanId));
+        BigDecimal interestDue = repaymentRepository.sumScheduledInterest(loanId, dueDate);
+        BigDecimal seenRepaidInterest = nullToZero(loan.getRepaidInterest());
+        RepaymentSplit split = RepaymentSplit.of(amount, interestDue, seenRepaidInterest);
+        if (update(loanId, borrowerId, split, seenRepaidInterest) > 0) {
+            return split;
+        }
+
+        Loan locked = loanRepository.findByIdForUpdate(loanId)
+                .orElseThrow(() -> new IllegalArgumentException("贷款不存在,ID：" + loanId));
+        BigDecimal currentRepaidInterest = nullToZero(locked.getRepaidInterest());
+        if (currentRepaidInterest.compareTo(seenRepaidInterest) != 0) {
+            split = RepaymentSplit.of(amount, interestDue, currentRepaidInterest);
+            if (update(loanId, borrowerId, split, currentRepaidInterest) > 0) {
+                return split;
+            }
+        }
+        throw rejectionReason(loanId, borrowerId);
+    }
+
+    private int update(Long loanId, Long borrowerId, RepaymentSplit split, BigDecimal seenRepaidInterest) {
+        return loanRepository.applyRepayment(loanId, borrowerId, split.principal(), split.interest(), seenRepaidInterest,
+                Loan.RepaymentStatus.IN_PROGRESS, Loan.LoanStatus.COMPLETED, LocalDateTime.now());
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    /**
+     * 条件更新未命中时，查明原因并返回与原校验一致的异常
+     */
+    private RuntimeException rejectionReason(Long loanId, Long borrowerId) {
+        Optional<Loan> loanOpt = loanRepository.findById(loanId);
+        if (loanOpt.isEmpty()) {
+            return new IllegalArgumentException("贷款不存在,ID：" + loanId);
+        }
+        Loan loan = loanOpt.get();
+        if (!loan.getBorrowerId().equals(borrowerId)) {
+            return new IllegalArgumentException("非法操作：该贷款不属于当前用户");
+        }
+        if (loan.getStatus() == Loan.LoanStatus.COMPLETED) {
+            return new InvalidRepaymentException("该贷款已全部还清，无需再还款");
+        }
+        return new IllegalArgumentException("还款金额超过剩余本金");
+    }
+
     // 借款人还款
     public Optional<Repayment> repay(Long repaymentId) {
         log.info("处理还款ID={}", repaymentId);
@@ -189,45 +245,50 @@ public class RepaymentService {
 
     /**
      * 每天检查逾期还款（凌晨 00:00 运行）
+     * <p>
+     * 按批次扫描并更新，每批独立提交，内存占用与逾期总数无关
      */
     @Scheduled(cron = "0 0 0 * * ?")
-    @Transactional(readOnly = true)
     public void checkOverdueRepayments() {
-        log.info("开始执行逾期还款检查任务");
+        log.info("开始执行逾期还款检查任务，每批{}条", overdueChunkSize);
         LocalDate today = LocalDate.now();
-        List<Repayment> overdueRepayments = repaymentRepository.findByDueDateBeforeAndStatus(today, RepaymentStatus.PENDING);
-
-        log.info("发现{}笔逾期还款", overdueRepayments.size());
-        for (Repayment repayment : overdueRepayments) {
-            // 更新状态为逾期
-            repayment.setStatus(RepaymentStatus.OVERDUE);
-            repaymentRepository.save(repayment);
-
-            String borrowerEmail = repayment.getBorrowerEmail();
-            String loanId = repayment.getLoanId().toString();
-            BigDecimal amount = repayment.getAmount();
-
-            if (borrowerEmail == null || borrowerEmail.isEmpty()) {
-                log.error("还款ID={}的借款人邮箱为空，无法发送通知", repayment.getId());
-                continue;
+        long startNanos = System.nanoTime();
+
+        long totalUpdated = 0;
+        int chunks = 0;
+        long maxChunkNanos = 0;
+        LocalDate lastDueDate = null;
+        Long lastId = null;
+
+        while (true) {
+            long chunkStart = System.nanoTime();
+            OverdueRepaymentSweeper.SweepChunk chunk =
+                    overdueRepaymentSweeper.sweepChunk(today, lastDueDate, lastId, overdueChunkSize);
+            long chunkNanos = System.nanoTime() - chunkStart;
+
+            if (chunk.scanned() == 0) {
+                break;
             }
 
-            String message = String.format("%s,%s,%.2f", borrowerEmail, loanId, amount);
-            log.debug("发送Kafka消息: {}", message);
+            chunks++;
+            totalUpdated += chunk.updated();
+            maxChunkNanos = Math.max(maxChunkNanos, chunkNanos);
+            lastDueDate = chunk.lastDueDate();
+            lastId = chunk.lastId();
+            log.debug("逾期扫描第{}批: 读取{}条, 更新{}条, 耗时{}ms",
+                    chunks, chunk.scanned(), chunk.updated(), chunkNanos / 1_000_000);
 
-            // 发送 Kafka 消息到 NotificationService
-            CompletableFuture<SendResult<String, String>> future =
-                    kafkaTemplate.send("overdue-repayment-topic", message);
-
-            future.whenComplete((result, ex) -> {
-                if (ex == null) {
-                    log.debug("成功发送消息到Kafka: {}", message);
-                } else {
-                    log.error("发送消息到Kafka失败: {}", ex.getMessage());
-                }
-            });
+            if (chunk.scanned() < overdueChunkSize) {
+                break;
+            }
         }
-        log.info("逾期还款检查任务执行完毕");
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        log.info("逾期还款检查任务执行完毕: 共{}笔逾期, {}批, 总耗时{}ms, {}条/秒, 平均每批{}ms, 最慢一批{}ms",
+                totalUpdated, chunks, elapsedMillis,
+                totalUpdated * 1000 / elapsedMillis,
+                chunks == 0 ? 0 : elapsedMillis / chunks,
+                maxChunkNanos / 1_000_000);
     }
 
     /**
@@ -249,17 +310,23 @@ public class RepaymentService {
         repaymentRepository.save(repayment);
 
         // 发送通知
-        String message = String.format("%s,%s,%.2f",
-                repayment.getBorrowerEmail(),
-                repayment.getLoanId(),
-                repayment.getAmount());
-
-        kafkaTemplate.send("overdue-repayment-topic", message);
+        outboxService.enqueue(RepaymentEvent.OVERDUE_TOPIC, RepaymentEvent.overdue(repayment));
 
         return true;
     }
 
-    public List<Repayment> getRepaymentsByDateRange(Long borrowerId, LocalDate startDate, LocalDate endDate) {
+    /**
+     * 分页查询借款人在日期范围内的还款计划，按到期日、还款ID排序
+     *
+     * @param borrowerId 借款人ID
+     * @param startDate  开始日期
+     * @param endDate    结束日期
+     * @param cursor     上一页返回的游标，首页为null
+     * @param size       每页大小
+     * @return 本页还款计划和下一页游标
+     */
+    public SummaryPage getRepaymentsByDateRange(Long borrowerId, LocalDate startDate, LocalDate endDate,
+                                                String cursor, int size) {
         if (borrowerId == null) {
             throw new IllegalArgumentException("借款人ID不能为空");
         }
@@ -272,28 +339,65 @@ public class RepaymentService {
             throw new IllegalArgumentException("开始日期不能晚于结束日期");
         }
 
-        return repaymentRepository.findByBorrowerIdAndDueDateBetweenOrderByDueDate(
-                borrowerId,
-                startDate,
-                endDate
-        );
+        RepaymentCursor after = RepaymentCursor.decode(cursor);
+        int limit = pageSize(size);
+        List<RepaymentSummary> rows = after == null
+                ? repaymentRepository.findSummariesByDueDate(borrowerId, startDate, endDate, fetchLimit(limit))
+                : repaymentRepository.findSummariesByDueDateAfter(borrowerId, startDate, endDate,
+                after.dueDate(), after.id(), fetchLimit(limit));
+        return toPage(rows, limit);
     }
 
     /**
-     * 获取借款人的所有待还款计划
+     * 分页获取借款人的待还款计划
      *
      * @param borrowerId 借款人ID
-     * @return 待还款的还款计划列表
+     * @param cursor     上一页返回的游标，首页为null
+     * @param size       每页大小
+     * @return 本页待还款计划和下一页游标
      */
-    public List<Repayment> getPendingRepaymentsByBorrower(Long borrowerId) {
+    public SummaryPage getPendingRepaymentsByBorrower(Long borrowerId, String cursor, int size) {
         if (borrowerId == null) {
             throw new IllegalArgumentException("借款人ID不能为空");
         }
 
         // 假设还款状态"PENDING"表示待还款
-        return repaymentRepository.findByBorrowerIdAndStatusOrderByDueDate(
-                borrowerId,
-                RepaymentStatus.PENDING
-        );
+        RepaymentCursor after = RepaymentCursor.decode(cursor);
+        int limit = pageSize(size);
+        List<RepaymentSummary> rows = after == null
+                ? repaymentRepository.findSummariesByStatus(borrowerId, RepaymentStatus.PENDING, fetchLimit(limit))
+                : repaymentRepository.findSummariesByStatusAfter(borrowerId, RepaymentStatus.PENDING,
+                after.dueDate(), after.id(), fetchLimit(limit));
+        return toPage(rows, limit);
+    }
+
+    private int pageSize(int size) {
+        if (size < 1) {
+            throw new BusinessException("每页大小必须大于0");
+        }
+        return Math.min(size, repaymentProperties.getMaxPageSize());
+    }
+
+    // 多取一条用于判断是否还有下一页
+    private static PageRequest fetchLimit(int limit) {
+        return PageRequest.of(0, limit + 1);
+    }
+
+    private static SummaryPage toPage(List<RepaymentSummary> rows, int limit) {
+        boolean hasMore = rows.size() > limit;
+        List<RepaymentSummary> page = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore ? RepaymentCursor.of(page.get(page.size() - 1)).encode() : null;
+        return new SummaryPage(page, limit, hasMore, nextCursor);
+    }
+
+    /**
+     * 还款计划列表的一页
+     *
+     * @param rows       本页记录
+     * @param pageSize   实际使用的每页大小
+     * @param hasMore    是否还有下一页
+     * @param nextCursor 下一页游标，没有下一页时为null
+     */
+    public record SummaryPage(List<RepaymentSummary> rows, int pageSize, boolean hasMore, String nextCursor) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.fintech.p2p.service;
+
+import java.math.BigDecimal;
+
+/**
+ * 一笔还款拆分为利息和本金
+ * <p>
+ * 还款计划的每期应还 = 本金 + 利息，只有本金部分冲减贷款的剩余本金。还款先抵扣截至本期到期日
+ * 已到期未还的利息，其余部分作为本金；没有还款计划的贷款应还利息为0，整笔冲减本金。
+ *
+ * @param principal 冲减剩余本金的部分
+ * @param interest  抵扣利息的部分
+ */
+public record RepaymentSplit(BigDecimal principal, BigDecimal interest) {
+
+    /**
+     * @param amount         还款金额
+     * @param interestDue    截至本期到期日还款计划中的利息合计
+     * @param repaidInterest 贷款已还利息
+     */
+    public static RepaymentSplit of(BigDecimal amount, BigDecimal interestDue, BigDecimal repaidInterest) {
+        BigDecimal repaid = repaidInterest == null ? BigDecimal.ZERO : repaidInterest;
+        BigDecimal interest = amount.min(interestDue.subtract(repaid).max(BigDecimal.ZERO));
+        return new RepaymentSplit(amount.subtract(interest), interest);
+    }
+}
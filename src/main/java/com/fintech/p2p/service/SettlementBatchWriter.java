@@ -0,0 +1,164 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.settlement.SettlementLine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 结算文件的分批入账：一批结算行在一个事务中匹配还款计划，按贷款分组入账
+ * <p>
+ * 整批还款计划一次查出；同一贷款的结算行加一次行锁、只更新一次余额。贷款按ID顺序加锁，
+ * 与其他批次或同步还款并发时不会互相死锁。还款计划在贷款加锁后按 status 条件更新为已支付，
+ * 查出后被其他节点或重试的批次抢先入账的行更新数为 0，记为重复，不会重复冲减余额，
+ * 因此同一文件重新处理时，已提交批次中的行只会被记为重复。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SettlementBatchWriter {
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+
+    /**
+     * 入账一批结算行
+     *
+     * @param lines 结算行
+     * @return 与结算行一一对应的匹配结果
+     */
+    @Transactional
+    public List<LineResult> apply(List<SettlementLine> lines) {
+        Set<Long> repaymentIds = lines.stream().map(SettlementLine::repaymentId).collect(Collectors.toSet());
+        Map<Long, Repayment> repayments = repaymentRepository.findAllById(repaymentIds).stream()
+                .collect(Collectors.toMap(Repayment::getId, Function.identity()));
+
+        LineResult[] results = new LineResult[lines.size()];
+        Map<Long, List<Integer>> byLoan = new TreeMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            Repayment repayment = repayments.get(lines.get(i).repaymentId());
+            if (repayment == null) {
+                results[i] = LineResult.unmatched(lines.get(i), "还款计划不存在");
+            } else {
+                byLoan.computeIfAbsent(repayment.getLoanId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Set<Long> paidInBatch = new HashSet<>();
+        int matched = 0;
+        for (Map.Entry<Long, List<Integer>> entry : byLoan.entrySet()) {
+            matched += applyToLoan(entry.getKey(), entry.getValue(), lines, repayments, paidInBatch, results, now);
+        }
+
+        log.debug("结算批次入账: {}行, 匹配{}行, 涉及{}笔贷款", lines.size(), matched, byLoan.size());
+        return Arrays.asList(results);
+    }
+
+    private int applyToLoan(Long loanId, List<Integer> indexes, List<SettlementLine> lines,
+                            Map<Long, Repayment> repayments, Set<Long> paidInBatch,
+                            LineResult[] results, LocalDateTime now) {
+        Optional<Loan> loanOpt = loanRepository.findByIdForUpdate(loanId);
+        if (loanOpt.isEmpty()) {
+            for (int i : indexes) {
+                results[i] = LineResult.unmatched(lines.get(i), "贷款不存在,ID：" + loanId);
+            }
+            return 0;
+        }
+
+        Loan loan = loanOpt.get();
+        BigDecimal repaid = loan.getRepaidAmount() == null ? BigDecimal.ZERO : loan.getRepaidAmount();
+        BigDecimal remaining = loan.getAmount().subtract(repaid);
+        BigDecimal repaidInterest = loan.getRepaidInterest() == null ? BigDecimal.ZERO : loan.getRepaidInterest();
+        int matched = 0;
+        for (int i : indexes) {
+            SettlementLine line = lines.get(i);
+            Repayment repayment = repayments.get(line.repaymentId());
+            if (paidInBatch.contains(repayment.getId()) || repayment.getStatus() == RepaymentStatus.PAID) {
+                results[i] = LineResult.duplicate(line, "还款计划已入账");
+                continue;
+            }
+            if (line.amount().compareTo(repayment.getAmount()) != 0) {
+                results[i] = LineResult.unmatched(line, "金额不符，应还" + repayment.getAmount());
+                continue;
+            }
+            // 分期计划只有本金部分冲减贷款余额，利息部分计入已还利息；手工创建的还款整笔冲减
+            BigDecimal principal = repayment.getPrincipalAmount() != null ? repayment.getPrincipalAmount() : line.amount();
+            BigDecimal interest = line.amount().subtract(principal);
+            if (principal.compareTo(remaining) > 0) {
+                results[i] = LineResult.unmatched(line, "还款金额超过剩余本金");
+                continue;
+            }
+
+            // 批次开头查出的状态可能已过期，以条件更新的结果为准
+            if (repaymentRepository.markPaid(repayment.getId(), RepaymentStatus.PAID, line.paymentDate(), now) == 0) {
+                results[i] = LineResult.duplicate(line, "还款计划已入账");
+                continue;
+            }
+            remaining = remaining.subtract(principal);
+            repaid = repaid.add(principal);
+            repaidInterest = repaidInterest.add(interest);
+            paidInBatch.add(repayment.getId());
+            results[i] = LineResult.matched(line);
+            matched++;
+        }
+
+        if (matched == 0) {
+            return 0;
+        }
+
+        // 每笔贷款只更新一次余额
+        loan.setRepaidAmount(repaid);
+        loan.setRepaidInterest(repaidInterest);
+        loan.setRemainingAmount(remaining);
+        loan.setUpdatedAt(now);
+        if (remaining.signum() == 0) {
+            loan.setStatus(Loan.LoanStatus.COMPLETED);
+            loan.setRepaymentStatus(Loan.RepaymentStatus.COMPLETED);
+            log.info("贷款 ID={} 已全部还清", loanId);
+        } else {
+            loan.setRepaymentStatus(Loan.RepaymentStatus.IN_PROGRESS);
+        }
+        loanRepository.save(loan);
+        return matched;
+    }
+
+    public enum LineStatus {
+        MATCHED, UNMATCHED, DUPLICATE
+    }
+
+    /**
+     * 单行结算记录的匹配结果，reason 在匹配成功时为null
+     */
+    public record LineResult(SettlementLine line, LineStatus status, String reason) {
+        static LineResult matched(SettlementLine line) {
+            return new LineResult(line, LineStatus.MATCHED, null);
+        }
+
+        static LineResult unmatched(SettlementLine line, String reason) {
+            return new LineResult(line, LineStatus.UNMATCHED, reason);
+        }
+
+        static LineResult duplicate(SettlementLine line, String reason) {
+            return new LineResult(line, LineStatus.DUPLICATE, reason);
+        }
+    }
+}
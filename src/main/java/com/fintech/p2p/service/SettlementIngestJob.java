@@ -0,0 +1,54 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.settlement.SettlementFormat;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 定期处理支付机构投递到 inbox 目录的结算文件，按文件名顺序逐个入账并归档
+ * <p>
+ * 投递方应先写入临时名（以 . 开头）再改名，避免读到未写完的文件；接口上传的文件由
+ * {@link SettlementIngestService#stageUpload} 写完后原子移入 inbox。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SettlementIngestJob {
+    private final SettlementIngestService settlementIngestService;
+
+    @Scheduled(fixedDelayString = "${app.settlement.poll-interval-ms:60000}")
+    public void ingestInbox() {
+        Path inbox = settlementIngestService.root().resolve(SettlementIngestService.INBOX);
+        if (!Files.isDirectory(inbox)) {
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(inbox)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.error("读取结算文件目录失败: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (Path file : files) {
+            try {
+                settlementIngestService.ingestAndArchive(file, SettlementFormat.fromFileName(file.getFileName().toString()));
+            } catch (IOException | RuntimeException e) {
+                // 文件留在 inbox 中，下次重新处理时已入账的行记为重复
+                log.error("处理结算文件{}失败: {}", file.getFileName(), e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.fintech.p2p.service;
+
+import com.fintech.p2p.config.SettlementProperties;
+import com.fintech.p2p.settlement.SettlementFileReader;
+import com.fintech.p2p.settlement.SettlementFormat;
+import com.fintech.p2p.settlement.SettlementLine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 银行结算文件入账
+ * <p>
+ * 通过 {@link SettlementFileReader} 流式读取文件，每满 chunkSize 行交给 {@link SettlementBatchWriter}
+ * 在一个事务中入账；未匹配、重复和格式错误的行逐行写入对账报告文件，内存中只保留当前批次和计数。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SettlementIngestService {
+    static final String INBOX = "inbox";
+    static final String ARCHIVE = "archive";
+    static final String REPORTS = "reports";
+    static final String UPLOADS = "uploads";
+    private static final String REPORT_HEADER = "line,status,reference,repayment_id,amount,reason";
+    private static final DateTimeFormatter UNIQUE_PREFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    private final SettlementBatchWriter settlementBatchWriter;
+    private final SettlementProperties settlementProperties;
+
+    /**
+     * 暂存通过接口上传的结算文件：先完整写入 uploads 目录，再原子移入 inbox 目录，由 {@link SettlementIngestJob} 入账
+     * <p>
+     * 暂存文件名带时间戳和随机后缀，同名文件多次上传互不覆盖，并按上传顺序处理；扩展名与 format 一致，
+     * 定时任务按扩展名判断格式。
+     *
+     * @param fileName 原始文件名
+     * @param content  文件内容
+     * @param format   文件格式
+     * @return 暂存回执
+     */
+    public SettlementUpload stageUpload(String fileName, InputStream content, SettlementFormat format) throws IOException {
+        Path uploads = Files.createDirectories(root().resolve(UPLOADS));
+        Path inbox = Files.createDirectories(root().resolve(INBOX));
+        String safeName = Path.of(fileName == null || fileName.isBlank() ? "settlement" : fileName).getFileName().toString();
+        String stagedName = uniqueName(withExtension(safeName, format));
+        Path partial = uploads.resolve(stagedName);
+        try {
+            Files.copy(content, partial);
+            Files.move(partial, inbox.resolve(stagedName), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        log.info("结算文件已暂存待入账: {} -> {}", safeName, stagedName);
+        return new SettlementUpload(stagedName, format);
+    }
+
+    /**
+     * 入账一个结算文件，处理完成后移入归档目录
+     * <p>
+     * 归档目录中已有同名文件时改用带时间戳的文件名，不覆盖之前的归档。
+     *
+     * @param file   结算文件
+     * @param format 文件格式
+     * @return 对账结果
+     */
+    public SettlementReport ingestAndArchive(Path file, SettlementFormat format) throws IOException {
+        SettlementReport report = ingest(file, format);
+        Path archive = Files.createDirectories(root().resolve(ARCHIVE));
+        String fileName = file.getFileName().toString();
+        try {
+            Files.move(file, archive.resolve(fileName));
+        } catch (FileAlreadyExistsException e) {
+            Files.move(file, archive.resolve(uniqueName(fileName)));
+        }
+        return report;
+    }
+
+    /**
+     * 入账一个结算文件
+     * <p>
+     * 每批独立提交，中途失败时已提交的批次保留；重新处理同一文件时这些行会被记为重复，不会重复入账。
+     * 每次处理生成新的对账报告文件，重新处理不会覆盖上一次的报告。
+     *
+     * @param file   结算文件
+     * @param format 文件格式
+     * @return 对账结果
+     */
+    public SettlementReport ingest(Path file, SettlementFormat format) throws IOException {
+        String fileName = file.getFileName().toString();
+        Path reportFile = Files.createDirectories(root().resolve(REPORTS)).resolve(uniqueName(fileName) + ".report.csv");
+        int chunkSize = settlementProperties.getChunkSize();
+        long startNanos = System.nanoTime();
+        log.info("开始处理结算文件: {}, 格式={}, 每批{}行", fileName, format, chunkSize);
+
+        Counters counters = new Counters();
+        try (SettlementFileReader reader = new SettlementFileReader(file, settlementProperties.getMapWindowBytes());
+             BufferedWriter out = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+            out.write(REPORT_HEADER);
+            out.newLine();
+
+            List<SettlementLine> chunk = new ArrayList<>(chunkSize);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                long lineNumber = reader.lineNumber();
+                if (text.isBlank() || format.isHeader(lineNumber, text)) {
+                    continue;
+                }
+                counters.lines++;
+                try {
+                    chunk.add(format.parse(lineNumber, text));
+                } catch (IllegalArgumentException e) {
+                    counters.malformed++;
+                    writeRow(out, lineNumber, "MALFORMED", null, null, null, e.getMessage());
+                }
+                if (chunk.size() == chunkSize) {
+                    applyChunk(chunk, out, counters);
+                }
+            }
+            applyChunk(chunk, out, counters);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        SettlementReport report = new SettlementReport(fileName, counters.lines, counters.matched, counters.unmatched,
+                counters.duplicate, counters.malformed, counters.matchedAmount, reportFile.toString(), elapsedMillis);
+        log.info("结算文件处理完毕: {}, 共{}行, 入账{}行(金额{}), 未匹配{}行, 重复{}行, 格式错误{}行, 耗时{}ms, {}行/秒",
+                fileName, report.totalLines(), report.matched(), report.matchedAmount(), report.unmatched(),
+                report.duplicate(), report.malformed(), elapsedMillis, report.totalLines() * 1000 / elapsedMillis);
+        return report;
+    }
+
+    Path root() {
+        return Path.of(settlementProperties.getDirectory());
+    }
+
+    // 时间戳前缀保证按文件名排序即按时间排序，随机后缀区分同一毫秒内的同名文件
+    private static String uniqueName(String fileName) {
+        return LocalDateTime.now().format(UNIQUE_PREFIX) + "-" + UUID.randomUUID().toString().substring(0, 8) + "-" + fileName;
+    }
+
+    private static String withExtension(String fileName, SettlementFormat format) {
+        if (SettlementFormat.fromFileName(fileName) == format) {
+            return fileName;
+        }
+        return fileName + (format == SettlementFormat.CSV ? ".csv" : ".dat");
+    }
+
+    private void applyChunk(List<SettlementLine> chunk, BufferedWriter out, Counters counters) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (SettlementBatchWriter.LineResult result : settlementBatchWriter.apply(chunk)) {
+            SettlementLine line = result.line();
+            switch (result.status()) {
+                case MATCHED -> {
+                    counters.matched++;
+                    counters.matchedAmount = counters.matchedAmount.add(line.amount());
+                    continue;
+                }
+                case UNMATCHED -> counters.unmatched++;
+                case DUPLICATE -> counters.duplicate++;
+            }
+            writeRow(out, line.lineNumber(), result.status().name(), line.reference(), line.repaymentId(),
+                    line.amount(), result.reason());
+        }
+        chunk.clear();
+    }
+
+    private static void writeRow(BufferedWriter out, long lineNumber, String status, String reference,
+                                 Long repaymentId, BigDecimal amount, String reason) throws IOException {
+        out.write(lineNumber + "," + status + "," + csv(reference) + ","
+                + (repaymentId == null ? "" : repaymentId) + ","
+                + (amount == null ? "" : amount.toPlainString()) + "," + csv(reason));
+        out.newLine();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static class Counters {
+        long lines;
+        long matched;
+        long unmatched;
+        long duplicate;
+        long malformed;
+        BigDecimal matchedAmount = BigDecimal.ZERO;
+    }
+
+    /**
+     * 上传结算文件的暂存回执
+     *
+     * @param fileName 暂存在 inbox 目录中的文件名，对账报告文件名中包含它
+     * @param format   文件格式
+     */
+    public record SettlementUpload(String fileName, SettlementFormat format) {
+    }
+
+    /**
+     * 结算文件的对账结果，未匹配、重复和格式错误的明细见 reportFile
+     *
+     * @param fileName      结算文件名
+     * @param totalLines    数据行数（不含表头和空行）
+     * @param matched       成功入账的行数
+     * @param unmatched     找不到还款计划或金额不符的行数
+     * @param duplicate     还款计划已入账的行数
+     * @param malformed     格式错误的行数
+     * @param matchedAmount 入账总金额
+     * @param reportFile    对账报告文件路径
+     * @param elapsedMillis 处理耗时
+     */
+    public record SettlementReport(String fileName, long totalLines, long matched, long unmatched, long duplicate,
+                                   long malformed, BigDecimal matchedAmount, String reportFile, long elapsedMillis) {
+    }
+}
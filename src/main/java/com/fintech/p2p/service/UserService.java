@@ -1,11 +1,14 @@
 package com.fintech.p2p.service;
 
 import com.fintech.p2p.dto.UserDto;
+import com.fintech.p2p.exception.CredentialHashingBusyException;
 import com.fintech.p2p.model.User;
 import com.fintech.p2p.repository.UserRepository;
+import com.fintech.p2p.security.CredentialHasher;
 import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,15 +17,17 @@ import java.util.Optional;
 
 @Service
 public class UserService {
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final CredentialHasher credentialHasher;
 
     @Autowired
-    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, CredentialHasher credentialHasher) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.credentialHasher = credentialHasher;
     }
 
+    // userDto 中是明文密码，只在这里计算一次哈希
     @Transactional
     public User register(UserDto userDto) {
         if (userRepository.existsByEmail(userDto.getEmail())) {
@@ -35,7 +40,7 @@ public class UserService {
         User user = new User();
         user.setEmail(userDto.getEmail());
         user.setUsername(userDto.getUsername());
-        user.setPassword(passwordEncoder.encode(userDto.getPassword()));
+        user.setPassword(credentialHasher.hash(userDto.getPassword()));
         user.setRole("BORROWER");
 
         return userRepository.save(user);
@@ -45,27 +50,6 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
-    @Transactional
-    public void updateRefreshToken(Long id, String refreshToken, LocalDateTime expiryDate) {
-        if (id == null || refreshToken == null || expiryDate == null) {
-            throw new IllegalArgumentException("User ID, refresh token, and expiry date must not be null");
-        }
-
-        if (!userRepository.existsById(id)) {
-            throw new IllegalArgumentException("User with ID " + id + " does not exist");
-        }
-
-        userRepository.updateRefreshToken(id, refreshToken, expiryDate);
-    }
-
-    public boolean isValidRefreshToken(String refreshToken) {
-        return userRepository.findByRefreshToken(refreshToken).isPresent();
-    }
-
-    public Optional<User> findUserByRefreshToken(String refreshToken) {
-        return userRepository.findByRefreshToken(refreshToken);
-    }
-
     @Transactional
     public void savePasswordResetToken(Long id, String resetToken, LocalDateTime expiryDate) {
         userRepository.updatePasswordResetToken(id, resetToken, expiryDate);
@@ -79,9 +63,27 @@ public class UserService {
         return userRepository.findByPasswordResetToken(token);
     }
 
+    // newPassword 是明文密码
     @Transactional
     public void updatePassword(Long id, String newPassword) {
-        userRepository.updatePassword(id, passwordEncoder.encode(newPassword));
+        userRepository.updatePassword(id, credentialHasher.hash(newPassword));
+    }
+
+    /**
+     * 登录成功后，若哈希强度与当前配置不同，用本次登录的明文重新计算哈希；哈希繁忙时跳过，下次登录再升级
+     */
+    @Transactional
+    public void upgradePasswordHash(User user, String rawPassword) {
+        if (!credentialHasher.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            String upgraded = credentialHasher.hash(rawPassword);
+            userRepository.updatePassword(user.getId(), upgraded);
+            user.setPassword(upgraded);
+        } catch (CredentialHashingBusyException e) {
+            logger.warn("Password hash upgrade skipped for user {}: {}", user.getUsername(), e.getMessage());
+        }
     }
 
     @Transactional
@@ -0,0 +1,104 @@
+package com.fintech.p2p.settlement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的结算文件逐行读取器
+ * <p>
+ * 文件按固定大小的窗口依次映射，只有当前窗口占用地址空间，内存占用与文件大小无关；
+ * 跨越窗口边界的行会从行首重新映射。支持 \n 与 \r\n 换行，单行长度不能超过窗口大小。
+ */
+public class SettlementFileReader implements Closeable {
+    private static final int INITIAL_LINE_BYTES = 256;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowBase;
+    private byte[] lineBytes = new byte[INITIAL_LINE_BYTES];
+    private long lineNumber;
+
+    /**
+     * @param file        结算文件
+     * @param windowBytes 每次映射的字节数
+     */
+    public SettlementFileReader(Path file, int windowBytes) throws IOException {
+        if (windowBytes < INITIAL_LINE_BYTES) {
+            throw new IllegalArgumentException("映射窗口过小: " + windowBytes);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowBytes = windowBytes;
+        map(0);
+    }
+
+    /**
+     * 读取下一行
+     *
+     * @return 去掉换行符的行内容，文件读完时返回null
+     */
+    public String readLine() throws IOException {
+        if (windowBase + window.position() >= fileSize) {
+            return null;
+        }
+
+        int start = window.position();
+        int end = indexOfNewline(start);
+        if (end < 0 && windowBase + window.limit() < fileSize) {
+            // 行跨越窗口边界，从行首重新映射
+            map(windowBase + start);
+            start = 0;
+            end = indexOfNewline(0);
+            if (end < 0 && windowBase + window.limit() < fileSize) {
+                throw new IOException("第" + (lineNumber + 1) + "行超过映射窗口大小" + windowBytes + "字节");
+            }
+        }
+
+        int length = (end < 0 ? window.limit() : end) - start;
+        window.position(end < 0 ? window.limit() : end + 1);
+        if (length > 0 && window.get(start + length - 1) == '\r') {
+            length--;
+        }
+        if (length > lineBytes.length) {
+            lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+        }
+        window.get(start, lineBytes, 0, length);
+        lineNumber++;
+        return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 最近一次读取的行号，从1开始
+     */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from, limit = window.limit(); i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void map(long base) throws IOException {
+        windowBase = base;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(windowBytes, fileSize - base));
+    }
+}
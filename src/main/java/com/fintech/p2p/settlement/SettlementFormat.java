@@ -0,0 +1,98 @@
+package com.fintech.p2p.settlement;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * 结算文件格式
+ * <p>
+ * CSV：{@code 流水号,还款计划ID,金额,扣款日期(yyyy-MM-dd)}，首行以 reference 开头时视为表头；<br>
+ * 定长：流水号 20 位（右补空格）、还款计划ID 19 位、金额 15 位（以分为单位，左补0）、扣款日期 8 位（yyyyMMdd）
+ */
+public enum SettlementFormat {
+    CSV {
+        @Override
+        public boolean isHeader(long lineNumber, String line) {
+            return lineNumber == 1 && line.regionMatches(true, 0, "reference", 0, "reference".length());
+        }
+
+        @Override
+        public SettlementLine parse(long lineNumber, String line) {
+            String[] fields = line.split(",", -1);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("字段数应为4，实际为" + fields.length);
+            }
+            return new SettlementLine(lineNumber, fields[0].trim(), parseId(fields[1].trim()),
+                    parseAmount(new BigDecimal(fields[2].trim())), parseDate(fields[3].trim(), DateTimeFormatter.ISO_LOCAL_DATE));
+        }
+    },
+
+    FIXED_WIDTH {
+        private static final int REFERENCE_END = 20;
+        private static final int REPAYMENT_ID_END = 39;
+        private static final int AMOUNT_END = 54;
+        private static final int LINE_LENGTH = 62;
+
+        @Override
+        public boolean isHeader(long lineNumber, String line) {
+            return false;
+        }
+
+        @Override
+        public SettlementLine parse(long lineNumber, String line) {
+            if (line.length() != LINE_LENGTH) {
+                throw new IllegalArgumentException("行长度应为" + LINE_LENGTH + "，实际为" + line.length());
+            }
+            return new SettlementLine(lineNumber,
+                    line.substring(0, REFERENCE_END).trim(),
+                    parseId(line.substring(REFERENCE_END, REPAYMENT_ID_END).trim()),
+                    parseAmount(new BigDecimal(line.substring(REPAYMENT_ID_END, AMOUNT_END).trim()).movePointLeft(2)),
+                    parseDate(line.substring(AMOUNT_END), DateTimeFormatter.BASIC_ISO_DATE));
+        }
+    };
+
+    /**
+     * 是否为应跳过的表头行
+     */
+    public abstract boolean isHeader(long lineNumber, String line);
+
+    /**
+     * 解析一行记录
+     *
+     * @throws IllegalArgumentException 行格式不正确
+     */
+    public abstract SettlementLine parse(long lineNumber, String line);
+
+    /**
+     * 按文件扩展名判断格式，.csv 为CSV，其余按定长处理
+     */
+    public static SettlementFormat fromFileName(String fileName) {
+        return fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : FIXED_WIDTH;
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("还款计划ID不是数字: " + value);
+        }
+    }
+
+    private static BigDecimal parseAmount(BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("扣款金额必须大于0: " + amount);
+        }
+        return amount;
+    }
+
+    private static LocalDate parseDate(String value, DateTimeFormatter formatter) {
+        try {
+            return LocalDate.parse(value, formatter);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("扣款日期格式不正确: " + value);
+        }
+    }
+}
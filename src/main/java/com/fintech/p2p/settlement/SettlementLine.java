@@ -0,0 +1,17 @@
+package com.fintech.p2p.settlement;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 结算文件中的一行扣款记录
+ *
+ * @param lineNumber  行号，从1开始
+ * @param reference   银行流水号
+ * @param repaymentId 对应的还款计划ID
+ * @param amount      实际扣款金额
+ * @param paymentDate 扣款日期
+ */
+public record SettlementLine(long lineNumber, String reference, Long repaymentId, BigDecimal amount,
+                             LocalDate paymentDate) {
+}
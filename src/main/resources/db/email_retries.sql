@@ -0,0 +1,16 @@
+-- 邮件延迟重试队列（MySQL），部署新版本前执行一次
+-- 须在 id_generator.sql 之前执行，主键改为段分配由该脚本完成
+
+CREATE TABLE IF NOT EXISTS email_retries (
+    id               BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    to_email         VARCHAR(255) NOT NULL,
+    subject          VARCHAR(255) NOT NULL,
+    content          LONGTEXT     NOT NULL,
+    stage            INT          NOT NULL,
+    status           VARCHAR(255) NOT NULL,
+    next_attempt_at  DATETIME(6)  NOT NULL,
+    first_attempt_at DATETIME(6)  NOT NULL,
+    last_error       VARCHAR(512) NULL
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_email_retry_due ON email_retries (status, next_attempt_at);
@@ -0,0 +1,22 @@
+-- 主键生成方式由 IDENTITY 迁移到 id_generator 表（MySQL）
+-- 在部署新版本前执行一次；next_val 是下一个未分配的主键，初始值取 MAX(id) + 1
+
+CREATE TABLE IF NOT EXISTS id_generator (
+    entity   VARCHAR(255) NOT NULL PRIMARY KEY,
+    next_val BIGINT       NOT NULL
+) ENGINE = InnoDB;
+
+INSERT INTO id_generator (entity, next_val) SELECT 'loan', COALESCE(MAX(id), 0) + 1 FROM loan;
+INSERT INTO id_generator (entity, next_val) SELECT 'repayments', COALESCE(MAX(id), 0) + 1 FROM repayments;
+INSERT INTO id_generator (entity, next_val) SELECT 'investments', COALESCE(MAX(id), 0) + 1 FROM investments;
+INSERT INTO id_generator (entity, next_val) SELECT 'user', COALESCE(MAX(id), 0) + 1 FROM `user`;
+INSERT INTO id_generator (entity, next_val) SELECT 'outbox_events', COALESCE(MAX(id), 0) + 1 FROM outbox_events;
+INSERT INTO id_generator (entity, next_val) SELECT 'email_retries', COALESCE(MAX(id), 0) + 1 FROM email_retries;
+
+-- 主键不再依赖自增，去掉 AUTO_INCREMENT（保留也不影响新主键分配）
+ALTER TABLE loan MODIFY id BIGINT NOT NULL;
+ALTER TABLE repayments MODIFY id BIGINT NOT NULL;
+ALTER TABLE investments MODIFY id BIGINT NOT NULL;
+ALTER TABLE `user` MODIFY id BIGINT NOT NULL;
+ALTER TABLE outbox_events MODIFY id BIGINT NOT NULL;
+ALTER TABLE email_retries MODIFY id BIGINT NOT NULL;
@@ -0,0 +1,16 @@
+-- 幂等键存储（MySQL），开启 Idempotency-Key 支持前执行一次
+-- 主键为 接口 + 调用方 + 客户端提供的键；claimed_at 为占用时间，处理中的键超过 app.idempotency.lease 后可被重新占用
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(512) NOT NULL PRIMARY KEY,
+    request_hash    VARCHAR(64)  NOT NULL,
+    status          VARCHAR(16)  NOT NULL,
+    response_status INT,
+    content_type    VARCHAR(255),
+    response_body   LONGBLOB,
+    created_at      DATETIME(6)  NOT NULL,
+    claimed_at      DATETIME(6)  NOT NULL,
+    expires_at      DATETIME(6)  NOT NULL
+);
+
+CREATE INDEX idx_idempotency_expires ON idempotency_keys (expires_at);
@@ -0,0 +1,3 @@
+-- 投资人对账单版本查询和生成用的索引（MySQL），在部署新版本前执行一次
+
+CREATE INDEX idx_investment_investor ON investments (investor_id, id);
@@ -0,0 +1,4 @@
+-- 投资记录版本号（MySQL），部署新版本前执行一次
+-- 投资文档和对账单的 ETag 由版本号得出，已有记录从 0 开始
+
+ALTER TABLE investments ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,19 @@
+-- 投资人回款台账（MySQL），在部署新版本前执行一次
+
+CREATE TABLE IF NOT EXISTS investor_payouts (
+    id            BIGINT         NOT NULL PRIMARY KEY,
+    repayment_id  BIGINT         NOT NULL,
+    loan_id       BIGINT         NOT NULL,
+    investment_id BIGINT         NOT NULL,
+    investor_id   BIGINT         NOT NULL,
+    amount        DECIMAL(38, 2) NOT NULL,
+    payout_date   DATE           NOT NULL,
+    created_at    DATETIME(6)    NOT NULL,
+    CONSTRAINT uk_payout_repayment_investment UNIQUE (repayment_id, investment_id),
+    INDEX idx_payout_investor_date (investor_id, payout_date)
+) ENGINE = InnoDB;
+
+INSERT INTO id_generator (entity, next_val) VALUES ('investor_payouts', 1);
+
+CREATE INDEX idx_investment_loan ON investments (loan_id, id);
+CREATE INDEX idx_repayment_payment_date ON repayments (payment_date, status, loan_id);
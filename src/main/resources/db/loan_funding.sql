@@ -0,0 +1,7 @@
+-- 贷款募集额度（MySQL），在部署新版本前执行一次
+-- 按已有投资记录回填已募集金额
+
+ALTER TABLE loan ADD COLUMN funded_amount DECIMAL(38, 2) NULL DEFAULT 0;
+
+UPDATE loan l
+SET l.funded_amount = (SELECT COALESCE(SUM(i.amount), 0) FROM investments i WHERE i.loan_id = l.id);
@@ -0,0 +1,5 @@
+-- 贷款增加已还利息（MySQL），在部署新版本前执行一次
+-- 还款计划每期应还 = 本金 + 利息，repaid_amount / remaining_amount 只记本金，利息部分单独累计
+
+ALTER TABLE loan
+    ADD COLUMN repaid_interest DECIMAL(38, 2) NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- 跨节点共享的登录锁定（MySQL），开启 app.login-throttle.shared-lockouts 前执行一次
+
+CREATE TABLE IF NOT EXISTS login_lockouts (
+    lock_key     VARCHAR(64) NOT NULL PRIMARY KEY,
+    locked_until DATETIME(6) NOT NULL
+);
+
+CREATE INDEX idx_login_lockout_until ON login_lockouts (locked_until);
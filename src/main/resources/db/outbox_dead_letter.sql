@@ -0,0 +1,8 @@
+-- 发件箱增加投递状态和下次投递时间（MySQL），部署新版本前执行一次
+-- 旧版本不读写这两列，滚动发布期间新旧实例可以共存
+
+ALTER TABLE outbox_events
+    ADD COLUMN status          VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+    ADD COLUMN next_attempt_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6);
+
+CREATE INDEX idx_outbox_status_next_attempt ON outbox_events (status, next_attempt_at, id);
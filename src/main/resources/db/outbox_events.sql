@@ -0,0 +1,11 @@
+-- 发件箱表（MySQL），部署发件箱版本前执行一次
+-- 须在 outbox_dead_letter.sql、id_generator.sql 之前执行：投递状态列和段分配主键由这两个脚本补上
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id         BIGINT          NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    topic      VARCHAR(128)    NOT NULL,
+    event_key  VARCHAR(128)    NULL,
+    payload    VARBINARY(2048) NOT NULL,
+    attempts   INT             NOT NULL DEFAULT 0,
+    created_at DATETIME(6)     NOT NULL
+) ENGINE = InnoDB;
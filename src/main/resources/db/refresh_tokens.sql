@@ -0,0 +1,18 @@
+-- 刷新令牌表（MySQL），在部署新版本前执行一次；已登录用户需要重新登录
+
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    token_hash VARCHAR(64)  NOT NULL PRIMARY KEY,
+    user_id    BIGINT       NOT NULL,
+    username   VARCHAR(255) NOT NULL,
+    family_id  VARCHAR(36)  NOT NULL,
+    created_at DATETIME(6)  NOT NULL,
+    expires_at DATETIME(6)  NOT NULL,
+    used_at    DATETIME(6),
+    revoked_at DATETIME(6)
+);
+
+CREATE INDEX idx_refresh_token_user ON refresh_tokens (user_id);
+CREATE INDEX idx_refresh_token_family ON refresh_tokens (family_id);
+CREATE INDEX idx_refresh_token_expires ON refresh_tokens (expires_at);
+
+-- user 表中的明文刷新令牌列在 refresh_tokens_drop_user_columns.sql 中删除
@@ -0,0 +1,4 @@
+-- 删除 user 表中的明文刷新令牌（MySQL）
+-- refresh_tokens.sql 执行且新版本在所有节点上运行正常后再执行；旧版本实例仍在运行时不要执行，旧版本会读写这两列
+
+ALTER TABLE `user` DROP COLUMN refresh_token, DROP COLUMN token_expiry;
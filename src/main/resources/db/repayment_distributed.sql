@@ -0,0 +1,15 @@
+-- 还款增加已分配标记（MySQL），部署新版本前执行一次
+-- 回款分配按 distributed 选取待分配的还款，不再按支付日期回溯固定天数
+
+ALTER TABLE repayments ADD COLUMN distributed BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- 已有回款行的还款视为已分配
+UPDATE repayments r SET r.distributed = TRUE
+WHERE EXISTS (SELECT 1 FROM investor_payouts p WHERE p.repayment_id = r.id);
+
+-- 异步入账的还款此前没有写入支付日期
+UPDATE repayments SET payment_date = DATE(payment_timestamp)
+WHERE payment_date IS NULL AND payment_timestamp IS NOT NULL;
+
+DROP INDEX idx_repayment_payment_date ON repayments;
+CREATE INDEX idx_repayment_undistributed ON repayments (status, distributed, loan_id);
@@ -0,0 +1,4 @@
+-- 借款人还款计划列表的键集分页索引（MySQL），在部署新版本前执行一次
+
+CREATE INDEX idx_repayment_borrower_due ON repayments (borrower_id, due_date, id);
+CREATE INDEX idx_repayment_borrower_status_due ON repayments (borrower_id, status, due_date, id);
@@ -0,0 +1,8 @@
+-- 还款计划分期字段（MySQL），在部署新版本前执行一次
+-- 手工创建的还款 installment_no 为空，唯一约束只作用于还款计划生成的分期
+
+ALTER TABLE repayments
+    ADD COLUMN installment_no   INT            NULL,
+    ADD COLUMN principal_amount DECIMAL(38, 2) NULL,
+    ADD COLUMN interest_amount  DECIMAL(38, 2) NULL,
+    ADD CONSTRAINT uk_repayment_loan_installment UNIQUE (loan_id, installment_no);
@@ -0,0 +1,22 @@
+-- 异步还款受理记录（MySQL），部署新版本前执行一次
+-- 受理时写入 QUEUED，入账时与还款记录在同一事务中改为 APPLIED / REJECTED
+
+CREATE TABLE IF NOT EXISTS repayment_submissions (
+    payment_id       VARCHAR(36)    NOT NULL PRIMARY KEY,
+    loan_id          BIGINT         NOT NULL,
+    borrower_id      BIGINT         NOT NULL,
+    borrower_email   VARCHAR(255)   NOT NULL,
+    amount           DECIMAL(38, 2) NOT NULL,
+    due_date         DATE           NOT NULL,
+    status           VARCHAR(255)   NOT NULL,
+    repayment_type   VARCHAR(255)   NOT NULL,
+    state            VARCHAR(16)    NOT NULL,
+    repayment_id     BIGINT         NULL,
+    remaining_amount DECIMAL(38, 2) NULL,
+    message          VARCHAR(255)   NULL,
+    accepted_at      DATETIME(6)    NOT NULL,
+    updated_at       DATETIME(6)    NOT NULL
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_repayment_submission_state ON repayment_submissions (state, accepted_at);
+CREATE INDEX idx_repayment_submission_updated ON repayment_submissions (updated_at);
@@ -0,0 +1,167 @@
+package com.fintech.p2p.investment;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.exception.BusinessException;
+import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.repository.InvestmentRepository;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.service.FundingLedger;
+import com.fintech.p2p.service.FundingWriter;
+import com.fintech.p2p.service.InvestmentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 贷款募集额度：大量投资人并发投资同一笔贷款时不会超募，募满后自动置为 FUNDED
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:funding;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, InvestmentService.class, FundingLedger.class, FundingWriter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class FundingLedgerTest {
+    private static final int THREADS = 32;
+    private static final int INVESTORS = 4000;
+
+    @Autowired
+    private InvestmentService investmentService;
+
+    @Autowired
+    private FundingLedger fundingLedger;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private InvestmentRepository investmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        investmentRepository.deleteAll();
+        loanRepository.deleteAll();
+    }
+
+    @Test
+    void testConcurrentInvestorsNeverOversubscribe() throws Exception {
+        // 4000 名投资人各投 50，只有前 1000 笔能成交
+        Loan loan = loanRepository.save(loan(new BigDecimal("50000.00"), Loan.LoanStatus.APPROVED));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < INVESTORS; i++) {
+            long investorId = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    investmentService.invest(investorId, loan.getId(), new BigDecimal("50.00"));
+                    accepted.incrementAndGet();
+                } catch (BusinessException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        pool.shutdown();
+        log.info("{}名投资人并发投资同一贷款: 成交{}笔, 拒绝{}笔, 耗时{}ms, {}笔/秒",
+                INVESTORS, accepted.get(), rejected.get(), elapsedMillis, INVESTORS * 1000L / elapsedMillis);
+
+        Loan funded = loanRepository.findById(loan.getId()).orElseThrow();
+        BigDecimal invested = investmentRepository.findByLoanId(loan.getId()).stream()
+                .map(Investment::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(1000, accepted.get());
+        assertEquals(INVESTORS - 1000, rejected.get());
+        assertEquals(0, loan.getAmount().compareTo(invested));
+        assertEquals(0, loan.getAmount().compareTo(funded.getFundedAmount()));
+        assertEquals(Loan.LoanStatus.FUNDED, funded.getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(fundingLedger.remaining(loan.getId()).orElseThrow()));
+    }
+
+    @Test
+    void testOversizedInvestmentIsRejectedButRemainderCanBeFilled() {
+        Loan loan = loanRepository.save(loan(new BigDecimal("1000.00"), Loan.LoanStatus.APPROVED));
+
+        investmentService.invest(1L, loan.getId(), new BigDecimal("700.00"));
+        assertThrows(BusinessException.class, () -> investmentService.invest(2L, loan.getId(), new BigDecimal("400.00")));
+        assertEquals(Loan.LoanStatus.APPROVED, loanRepository.findById(loan.getId()).orElseThrow().getStatus());
+        investmentService.invest(3L, loan.getId(), new BigDecimal("300.00"));
+
+        assertEquals(Loan.LoanStatus.FUNDED, loanRepository.findById(loan.getId()).orElseThrow().getStatus());
+        assertEquals(2, investmentRepository.findByLoanId(loan.getId()).size());
+    }
+
+    @Test
+    void testLoansNotOpenForFundingAreRejected() {
+        Loan pending = loanRepository.save(loan(new BigDecimal("1000.00"), Loan.LoanStatus.PENDING));
+
+        assertThrows(BusinessException.class, () -> investmentService.invest(1L, pending.getId(), new BigDecimal("10.00")));
+        assertThrows(BusinessException.class, () -> investmentService.invest(1L, pending.getId(), BigDecimal.ZERO));
+        assertTrue(fundingLedger.remaining(pending.getId()).isEmpty());
+
+        // 审批通过后可以投资
+        pending.setStatus(Loan.LoanStatus.APPROVED);
+        loanRepository.save(pending);
+        investmentService.invest(1L, pending.getId(), new BigDecimal("10.00"));
+        assertEquals(0, new BigDecimal("990.00").compareTo(fundingLedger.remaining(pending.getId()).orElseThrow()));
+    }
+
+    @Test
+    void testDatabaseRejectsWhenLocalLedgerIsStale() {
+        Loan loan = loanRepository.save(loan(new BigDecimal("1000.00"), Loan.LoanStatus.APPROVED));
+        investmentService.invest(1L, loan.getId(), new BigDecimal("100.00"));
+
+        // 模拟其他节点已占用剩余额度，本地台账仍认为还有 900
+        Loan other = loanRepository.findById(loan.getId()).orElseThrow();
+        other.setFundedAmount(new BigDecimal("950.00"));
+        loanRepository.save(other);
+
+        assertThrows(BusinessException.class, () -> investmentService.invest(2L, loan.getId(), new BigDecimal("100.00")));
+        assertTrue(fundingLedger.remaining(loan.getId()).isEmpty());
+        investmentService.invest(3L, loan.getId(), new BigDecimal("50.00"));
+
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(Loan.LoanStatus.FUNDED, result.getStatus());
+        assertEquals(0, loan.getAmount().compareTo(result.getFundedAmount()));
+    }
+
+    private Loan loan(BigDecimal amount, Loan.LoanStatus status) {
+        Loan loan = new Loan();
+        loan.setBorrowerId(7L);
+        loan.setBorrowerEmail("borrower@example.com");
+        loan.setAmount(amount);
+        loan.setTerm(12);
+        loan.setInterestRate(new BigDecimal("0.08"));
+        loan.setStatus(status);
+        return loan;
+    }
+}
@@ -0,0 +1,250 @@
+package com.fintech.p2p.investment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fintech.p2p.config.DocumentProperties;
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.document.DocumentResponseWriter;
+import com.fintech.p2p.exception.UnauthorizedOperationException;
+import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.repository.InvestmentRepository;
+import com.fintech.p2p.service.InvestmentDocumentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 投资文档与对账单下载：ETag、Range、归属校验、对账单文件缓存，以及与临时文件方式的对比
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:documents;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({JpaConfig.class, InvestmentDocumentService.class, DocumentProperties.class, DocumentResponseWriter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class InvestmentDocumentTest {
+    private static final long INVESTOR_ID = 11L;
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private InvestmentDocumentService investmentDocumentService;
+
+    @Autowired
+    private DocumentResponseWriter documentResponseWriter;
+
+    @Autowired
+    private DocumentProperties documentProperties;
+
+    @Autowired
+    private InvestmentRepository investmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        investmentRepository.deleteAll();
+        documentProperties.setDirectory(directory.toString());
+    }
+
+    @Test
+    void testDocumentSupportsEtagAndRange() throws Exception {
+        Investment investment = investmentRepository.save(investment("PENDING"));
+        InvestmentDocumentService.InvestmentDocument document =
+                investmentDocumentService.getInvestmentDocument(investment.getId(), INVESTOR_ID).orElseThrow();
+
+        MockHttpServletResponse full = download(document, null, null);
+        String etag = full.getHeader(HttpHeaders.ETAG);
+        assertEquals(200, full.getStatus());
+        assertArrayEquals(document.body(), full.getContentAsByteArray());
+        assertEquals(investment.getId(), new ObjectMapper().readTree(full.getContentAsByteArray()).get("id").asLong());
+
+        MockHttpServletResponse notModified = download(document, etag, null);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+
+        MockHttpServletResponse partial = download(document, null, "bytes=0-9");
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 0-9/" + document.body().length, partial.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(new String(document.body(), 0, 10), partial.getContentAsString());
+
+        MockHttpServletResponse unsatisfiable = download(document, null, "bytes=" + document.body().length + "-");
+        assertEquals(416, unsatisfiable.getStatus());
+    }
+
+    @Test
+    void testEtagFollowsRecordVersionAndOwnership() {
+        Investment investment = investmentRepository.save(investment("PENDING"));
+        String etag = investmentDocumentService.getInvestmentDocument(investment.getId(), INVESTOR_ID).orElseThrow().etag();
+        assertEquals(etag, investmentDocumentService.getInvestmentDocument(investment.getId(), null).orElseThrow().etag());
+
+        // 金额修改不改变状态和条数，ETag 仍随版本号变化
+        Investment changed = investmentRepository.findById(investment.getId()).orElseThrow();
+        changed.setAmount(new BigDecimal("150.00"));
+        investmentRepository.save(changed);
+        assertNotEquals(etag, investmentDocumentService.getInvestmentDocument(investment.getId(), INVESTOR_ID).orElseThrow().etag());
+
+        assertThrows(UnauthorizedOperationException.class,
+                () -> investmentDocumentService.getInvestmentDocument(investment.getId(), INVESTOR_ID + 1));
+        assertTrue(investmentDocumentService.getInvestmentDocument(-1L, INVESTOR_ID).isEmpty());
+    }
+
+    @Test
+    void testStatementIsRegeneratedWhenAmountChanges() throws Exception {
+        Investment investment = investmentRepository.save(investment("CONFIRMED"));
+        InvestmentDocumentService.StatementFile first = investmentDocumentService.getStatement(INVESTOR_ID);
+
+        Investment changed = investmentRepository.findById(investment.getId()).orElseThrow();
+        changed.setAmount(new BigDecimal("150.00"));
+        investmentRepository.save(changed);
+        InvestmentDocumentService.StatementFile second = investmentDocumentService.getStatement(INVESTOR_ID);
+
+        assertNotEquals(first.etag(), second.etag());
+        assertEquals(0, new BigDecimal("150.00").compareTo(
+                new ObjectMapper().readTree(second.file().toFile()).get("totalAmount").decimalValue()));
+    }
+
+    @Test
+    void testStatementIsCachedUntilInvestmentsChange() throws Exception {
+        List<Investment> investments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            investments.add(investment("PENDING"));
+        }
+        investmentRepository.saveAll(investments);
+
+        InvestmentDocumentService.StatementFile first = investmentDocumentService.getStatement(INVESTOR_ID);
+        InvestmentDocumentService.StatementFile cached = investmentDocumentService.getStatement(INVESTOR_ID);
+        assertEquals(first, cached);
+        JsonNode statement = new ObjectMapper().readTree(first.file().toFile());
+        assertEquals(500, statement.get("investmentCount").asInt());
+        assertEquals(0, new BigDecimal("50000.00").compareTo(statement.get("totalAmount").decimalValue()));
+
+        Investment confirmed = investmentRepository.findById(investments.get(0).getId()).orElseThrow();
+        confirmed.setStatus("CONFIRMED");
+        investmentRepository.save(confirmed);
+        InvestmentDocumentService.StatementFile changed = investmentDocumentService.getStatement(INVESTOR_ID);
+        assertNotEquals(first.etag(), changed.etag());
+        assertEquals(0, new BigDecimal("100.00").compareTo(
+                new ObjectMapper().readTree(changed.file().toFile()).get("confirmedAmount").decimalValue()));
+        // 旧版本仍在保留期内，不会被立即删除
+        assertTrue(Files.exists(first.file()));
+
+        // 容器不支持 sendfile 时通过 FileChannel.transferTo 写出指定区间
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/investments/statement/investor/" + INVESTOR_ID);
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        MockHttpServletResponse partial = new MockHttpServletResponse();
+        documentResponseWriter.write(request, partial, changed.file(), changed.etag(), "application/json", "statement.json");
+        byte[] content = Files.readAllBytes(changed.file());
+        assertEquals(206, partial.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), partial.getContentAsByteArray());
+
+        // 支持 sendfile 时只设置请求属性，由容器发送文件
+        MockHttpServletRequest sendfile = new MockHttpServletRequest("GET", "/api/investments/statement/investor/" + INVESTOR_ID);
+        sendfile.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse viaSendfile = new MockHttpServletResponse();
+        documentResponseWriter.write(sendfile, viaSendfile, changed.file(), changed.etag(), "application/json", "statement.json");
+        assertEquals(0, viaSendfile.getContentAsByteArray().length);
+        assertEquals(changed.file().toAbsolutePath().toString(), sendfile.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals((long) content.length, sendfile.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(content.length, viaSendfile.getContentLengthLong());
+    }
+
+    @Test
+    void testInMemoryDocumentAgainstTempFilePath() throws Exception {
+        Investment investment = investmentRepository.save(investment("CONFIRMED"));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 2_000;
+        for (int i = 0; i < 200; i++) {
+            tempFileDocument(investment);
+            investmentDocumentService.renderDocument(investment);
+        }
+
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tempFileDocument(investment);
+        }
+        long tempFileNanos = (System.nanoTime() - startNanos) / iterations;
+        long tempFileBytes = (threads.getThreadAllocatedBytes(threadId) - startBytes) / iterations;
+
+        startBytes = threads.getThreadAllocatedBytes(threadId);
+        startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            investmentDocumentService.renderDocument(investment);
+        }
+        long inMemoryNanos = (System.nanoTime() - startNanos) / iterations;
+        long inMemoryBytes = (threads.getThreadAllocatedBytes(threadId) - startBytes) / iterations;
+
+        log.info("投资文档: 临时文件 {}us/次 {}字节/次, 内存序列化 {}us/次 {}字节/次",
+                tempFileNanos / 1000, tempFileBytes, inMemoryNanos / 1000, inMemoryBytes);
+        assertTrue(inMemoryBytes < tempFileBytes, "内存序列化的分配量应低于临时文件方式");
+    }
+
+    /**
+     * 原先的实现：每次新建 ObjectMapper，写临时文件，再通过 DELETE_ON_CLOSE 的 FileChannel 读出
+     * （原实现未注册 JavaTimeModule，序列化 createdAt 会失败，这里补上以便对比）
+     */
+    private byte[] tempFileDocument(Investment investment) throws Exception {
+        Path tempFile = Files.createTempFile(directory, "investment_" + investment.getId() + "_", ".json");
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        objectMapper.writeValue(tempFile.toFile(), investment);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return buffer.array();
+        }
+    }
+
+    private MockHttpServletResponse download(InvestmentDocumentService.InvestmentDocument document,
+                                             String ifNoneMatch, String range) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/investments/1/document");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        documentResponseWriter.write(request, response, document.body(), document.etag(), "application/json", "investment.json");
+        return response;
+    }
+
+    private Investment investment(String status) {
+        Investment investment = new Investment();
+        investment.setInvestorId(INVESTOR_ID);
+        investment.setLoanId(1L);
+        investment.setAmount(new BigDecimal("100.00"));
+        investment.setStatus(status);
+        return investment;
+    }
+}
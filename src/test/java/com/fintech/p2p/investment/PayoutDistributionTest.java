@@ -0,0 +1,249 @@
+package com.fintech.p2p.investment;
+
+import com.fintech.p2p.config.AsyncConfig;
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.PasswordHashProperties;
+import com.fintech.p2p.config.PayoutProperties;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.model.Investment;
+import com.fintech.p2p.model.InvestorPayout;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.InvestmentRepository;
+import com.fintech.p2p.repository.InvestorPayoutRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.service.PayoutBatchWriter;
+import com.fintech.p2p.service.PayoutCalculator;
+import com.fintech.p2p.service.PayoutDistributionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 还款按投资份额分配给投资人：分位处理、只分给已确认的投资、按已分配标记选取、并行分批写入和重复运行
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:payout;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, AsyncConfig.class, PayoutProperties.class, PasswordHashProperties.class, PayoutCalculator.class,
+        PayoutBatchWriter.class, PayoutDistributionService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PayoutDistributionTest {
+    private static final LocalDate PAYMENT_DATE = LocalDate.of(2025, 3, 31);
+    private static final int LOANS = 400;
+    private static final int INVESTORS_PER_LOAN = 25;
+    private static final long PENDING_INVESTOR_ID = 9999L;
+
+    @Autowired
+    private PayoutCalculator payoutCalculator;
+
+    @Autowired
+    private PayoutDistributionService payoutDistributionService;
+
+    @Autowired
+    private PayoutProperties payoutProperties;
+
+    @Autowired
+    private InvestmentRepository investmentRepository;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @Autowired
+    private InvestorPayoutRepository investorPayoutRepository;
+
+    @BeforeEach
+    void setUp() {
+        investorPayoutRepository.deleteAll();
+        repaymentRepository.deleteAll();
+        investmentRepository.deleteAll();
+        payoutProperties.setChunkLoans(50);
+    }
+
+    @Test
+    void testRemainderCentsGoToLargestRemaindersThenInOrder() {
+        assertEquals(List.of(new BigDecimal("33.34"), new BigDecimal("33.33"), new BigDecimal("33.33")),
+                Arrays.asList(payoutCalculator.split(new BigDecimal("100.00"),
+                        List.of(new BigDecimal("500"), new BigDecimal("500"), new BigDecimal("500")))));
+        // 100 × 1/7 = 14 余 2，前两位各补1分
+        assertArrayEquals(new long[]{15, 15, 14, 14, 14, 14, 14}, payoutCalculator.split(100, new long[]{1, 1, 1, 1, 1, 1, 1}));
+        // 10 × {1,2,3}/6：1.67、3.33、5.00 → 余数最大的第一位补1分
+        assertArrayEquals(new long[]{2, 3, 5}, payoutCalculator.split(10, new long[]{1, 2, 3}));
+        assertArrayEquals(new long[]{0, 7}, payoutCalculator.split(7, new long[]{0, 9}));
+        assertThrows(IllegalArgumentException.class, () -> payoutCalculator.split(7, new long[]{0, 0}));
+    }
+
+    @Test
+    void testSplitsAlwaysSumToAmountWithinOneCent() {
+        Random random = new Random(42);
+        for (int round = 0; round < 10_000; round++) {
+            int n = 1 + random.nextInt(60);
+            long[] shares = new long[n];
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                shares[i] = 1 + random.nextInt(1_000_000);
+                total += shares[i];
+            }
+            long amount = random.nextInt(100_000_000);
+
+            long[] payouts = payoutCalculator.split(amount, shares);
+
+            assertEquals(amount, Arrays.stream(payouts).sum());
+            for (int i = 0; i < n; i++) {
+                double exact = (double) amount * shares[i] / total;
+                assertTrue(Math.abs(payouts[i] - exact) < 1.0, "分配偏离份额超过1分");
+            }
+        }
+        // 超过 long 乘法范围时改用大数计算
+        long[] large = payoutCalculator.split(Long.MAX_VALUE / 2, new long[]{Long.MAX_VALUE / 4, Long.MAX_VALUE / 4});
+        assertEquals(Long.MAX_VALUE / 2, large[0] + large[1]);
+    }
+
+    @Test
+    void testSplitThroughput() {
+        long[] shares = new long[50];
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = 10_000 + i * 137L;
+        }
+        long checksum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            checksum += payoutCalculator.split(123_457 + i, shares)[0];
+        }
+        int iterations = 1_000_000;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += payoutCalculator.split(123_457 + i, shares)[0];
+        }
+        long nanosPerSplit = (System.nanoTime() - startNanos) / iterations;
+        log.info("拆分{}次(每次{}位投资人), 平均{}ns/次, 约{}万行/秒 (checksum={})",
+                iterations, shares.length, nanosPerSplit, shares.length * 1_000_000_000L / Math.max(1, nanosPerSplit) / 10_000,
+                checksum);
+        assertTrue(checksum > 0);
+    }
+
+    @Test
+    void testPendingRepaymentsAreDistributedInParallelChunksExactlyOnce() {
+        List<Investment> investments = new ArrayList<>(LOANS * INVESTORS_PER_LOAN);
+        List<Repayment> repayments = new ArrayList<>(LOANS * 4);
+        for (long loanId = 1; loanId <= LOANS; loanId++) {
+            for (int i = 0; i < INVESTORS_PER_LOAN; i++) {
+                Investment investment = new Investment();
+                investment.setInvestorId(1000L + i);
+                investment.setLoanId(loanId);
+                investment.setAmount(new BigDecimal(100 + i * 10));
+                investment.setStatus("CONFIRMED");
+                investments.add(investment);
+            }
+            // 尚未确认的投资不参与分配
+            Investment unconfirmed = new Investment();
+            unconfirmed.setInvestorId(PENDING_INVESTOR_ID);
+            unconfirmed.setLoanId(loanId);
+            unconfirmed.setAmount(new BigDecimal("5000"));
+            unconfirmed.setStatus("PENDING");
+            investments.add(unconfirmed);
+            repayments.add(repayment(loanId, "1234.57", RepaymentStatus.PAID, PAYMENT_DATE));
+            repayments.add(repayment(loanId, "88.88", RepaymentStatus.PAID, PAYMENT_DATE));
+            repayments.add(repayment(loanId, "50.00", RepaymentStatus.PENDING, PAYMENT_DATE));
+            repayments.add(repayment(loanId, "70.00", RepaymentStatus.PAID, PAYMENT_DATE.plusDays(1)));
+        }
+        investmentRepository.saveAll(investments);
+        repaymentRepository.saveAll(repayments);
+
+        PayoutDistributionService.DistributionReport report = payoutDistributionService.distribute();
+        log.info("回款分配: 贷款{}笔, 还款{}笔, 回款{}行, 耗时{}ms, 约{}万行/小时",
+                report.loans(), report.repayments(), report.payouts(), report.elapsedMillis(),
+                report.payouts() * 3_600_000L / report.elapsedMillis() / 10_000);
+
+        // 不同支付日期的已支付还款一次分配完，未支付的不分配
+        assertEquals(LOANS, report.loans());
+        assertEquals(LOANS * 3, report.repayments());
+        assertEquals((long) LOANS * 3 * INVESTORS_PER_LOAN, report.payouts());
+        assertEquals(0, report.failedChunks());
+        assertEquals(0, new BigDecimal("1393.45").multiply(BigDecimal.valueOf(LOANS)).compareTo(report.amount()));
+
+        Map<Long, BigDecimal> byRepayment = new HashMap<>();
+        Map<Long, LocalDate> payoutDates = new HashMap<>();
+        for (InvestorPayout payout : investorPayoutRepository.findAll()) {
+            assertNotEquals(PENDING_INVESTOR_ID, payout.getInvestorId());
+            byRepayment.merge(payout.getRepaymentId(), payout.getAmount(), BigDecimal::add);
+            payoutDates.put(payout.getRepaymentId(), payout.getPayoutDate());
+        }
+        for (Repayment repayment : repayments) {
+            Repayment stored = repaymentRepository.findById(repayment.getId()).orElseThrow();
+            if (repayment.getStatus() == RepaymentStatus.PAID) {
+                assertEquals(0, repayment.getAmount().compareTo(byRepayment.get(repayment.getId())));
+                assertEquals(repayment.getPaymentDate(), payoutDates.get(repayment.getId()));
+                assertTrue(stored.isDistributed());
+            } else {
+                assertNull(byRepayment.get(repayment.getId()));
+                assertFalse(stored.isDistributed());
+            }
+        }
+        // 投资 100 与 340 的投资人在 1234.57 中按份额分别得到 22.45 和 76.32
+        Repayment first = repayments.get(0);
+        List<InvestorPayout> split = investorPayoutRepository.findByRepaymentId(first.getId());
+        assertEquals(0, new BigDecimal("22.45").compareTo(amountFor(split, 1000L)));
+        assertEquals(0, new BigDecimal("76.32").compareTo(amountFor(split, 1024L)));
+
+        PayoutDistributionService.DistributionReport rerun = payoutDistributionService.distribute();
+        assertEquals(0, rerun.payouts());
+        assertEquals((long) LOANS * 3 * INVESTORS_PER_LOAN, investorPayoutRepository.count());
+    }
+
+    @Test
+    void testLateRepaymentWithoutPaymentDateIsDistributed() {
+        Investment investment = new Investment();
+        investment.setInvestorId(1000L);
+        investment.setLoanId(1L);
+        investment.setAmount(new BigDecimal("100"));
+        investment.setStatus("CONFIRMED");
+        investmentRepository.save(investment);
+        // 早期异步入账的还款只有支付时间，且支付日期早于任何回溯窗口
+        Repayment late = repayment(1L, "10.00", RepaymentStatus.PAID, null);
+        late.setPaymentTimestamp(PAYMENT_DATE.minusDays(30).atTime(9, 30));
+        repaymentRepository.save(late);
+
+        assertEquals(1, payoutDistributionService.distribute().payouts());
+
+        InvestorPayout payout = investorPayoutRepository.findByRepaymentId(late.getId()).get(0);
+        assertEquals(PAYMENT_DATE.minusDays(30), payout.getPayoutDate());
+        assertEquals(0, new BigDecimal("10.00").compareTo(payout.getAmount()));
+    }
+
+    private static BigDecimal amountFor(List<InvestorPayout> payouts, long investorId) {
+        return payouts.stream().filter(p -> p.getInvestorId() == investorId).findFirst().orElseThrow().getAmount();
+    }
+
+    private Repayment repayment(long loanId, String amount, RepaymentStatus status, LocalDate paymentDate) {
+        Repayment repayment = new Repayment();
+        repayment.setLoanId(loanId);
+        repayment.setBorrowerId(7L);
+        repayment.setBorrowerEmail("borrower@example.com");
+        repayment.setAmount(new BigDecimal(amount));
+        repayment.setDueDate(paymentDate != null ? paymentDate : PAYMENT_DATE);
+        repayment.setPaymentDate(paymentDate);
+        repayment.setStatus(status);
+        repayment.setRepaymentType(RepaymentType.PARTIAL);
+        return repayment;
+    }
+}
@@ -1,17 +1,23 @@
 package com.fintech.p2p.loan;
 
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.enums.AmortizationMethod;
 import com.fintech.p2p.model.Loan;
 import com.fintech.p2p.repository.LoanRepository;
 import com.fintech.p2p.service.LoanService;
+import com.fintech.p2p.service.RepaymentScheduleService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,6 +27,12 @@ public class LoanServiceTest {
     @Mock
     private LoanRepository loanRepository;
 
+    @Mock
+    private RepaymentScheduleService repaymentScheduleService;
+
+    @Spy
+    private RepaymentProperties repaymentProperties = new RepaymentProperties();
+
     @InjectMocks
     private LoanService loanService;
 
@@ -52,4 +64,16 @@ public class LoanServiceTest {
         List<Loan> loans = loanService.getPendingLoans();
         assertFalse(loans.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testApproveLoanGeneratesRepaymentSchedule() {
+        loan.setId(5L);
+        when(loanRepository.findById(5L)).thenReturn(Optional.of(loan));
+
+        Optional<Loan> approved = loanService.approveLoan(5L);
+
+        assertEquals(Loan.LoanStatus.APPROVED, approved.orElseThrow().getStatus());
+        verify(repaymentScheduleService).createSchedule(loan, AmortizationMethod.EQUAL_INSTALLMENT,
+                LocalDate.now().plusMonths(1));
+    }
+}
@@ -0,0 +1,81 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.exception.EmailSendingException;
+import com.fintech.p2p.mail.SpooledEmail;
+import com.fintech.p2p.model.EmailRetry;
+import com.fintech.p2p.repository.EmailRetryRepository;
+import com.fintech.p2p.service.EmailRetryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmailRetryServiceTest {
+    @Mock
+    private EmailRetryRepository emailRetryRepository;
+
+    private EmailRetryService emailRetryService;
+
+    @BeforeEach
+    void setUp() {
+        EmailProperties properties = new EmailProperties();
+        properties.setRetryDelays(List.of(Duration.ofSeconds(10), Duration.ofMinutes(1)));
+        emailRetryService = new EmailRetryService(emailRetryRepository, properties);
+    }
+
+    @Test
+    void testFirstFailureIsScheduledForFirstStage() {
+        LocalDateTime before = LocalDateTime.now();
+
+        emailRetryService.scheduleRetry(email(0, before), new EmailSendingException("smtp down"));
+
+        EmailRetry saved = captureSaved();
+        assertEquals(1, saved.getStage());
+        assertEquals(EmailRetry.Status.PENDING, saved.getStatus());
+        assertFalse(saved.getNextAttemptAt().isBefore(before.plusSeconds(10)));
+        assertEquals(before, saved.getFirstAttemptAt());
+        assertEquals("smtp down", saved.getLastError());
+    }
+
+    @Test
+    void testFailureOnLastStageIsDeadLettered() {
+        emailRetryService.recordAttempt(2);
+
+        emailRetryService.scheduleRetry(email(2, LocalDateTime.now()), new EmailSendingException("smtp down"));
+
+        assertEquals(EmailRetry.Status.DEAD, captureSaved().getStatus());
+        assertEquals(1, emailRetryService.getStats().deadLettered());
+        assertEquals(1, emailRetryService.getStats().attemptsPerStage()[2]);
+    }
+
+    @Test
+    void testTimeToDeliveryIsMeasuredFromFirstAttempt() {
+        emailRetryService.recordDelivered(1, LocalDateTime.now().minusSeconds(30));
+
+        EmailRetryService.RetryStats stats = emailRetryService.getStats();
+        assertEquals(1, stats.deliveredPerStage()[1]);
+        assertTrue(stats.maxTimeToDeliveryMillis() >= 30_000);
+        assertEquals(stats.maxTimeToDeliveryMillis(), stats.avgTimeToDeliveryMillis());
+    }
+
+    private SpooledEmail email(int stage, LocalDateTime firstAttemptAt) {
+        return new SpooledEmail("user@example.com", "subject", "<p>hi</p>", stage, firstAttemptAt);
+    }
+
+    private EmailRetry captureSaved() {
+        ArgumentCaptor<EmailRetry> captor = ArgumentCaptor.forClass(EmailRetry.class);
+        verify(emailRetryRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,75 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.config.EmailProperties;
+import com.fintech.p2p.mail.EmailSpool;
+import com.fintech.p2p.mail.SpooledEmail;
+import com.fintech.p2p.service.EmailDeliveryService;
+import com.fintech.p2p.service.EmailRetryService;
+import com.fintech.p2p.service.EmailSpoolDispatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 发送队列投递器：无法读取的记录重试有限次后跳过，后续邮件照常投递
+ */
+public class EmailSpoolDispatcherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPoisonRecordIsSkippedAfterMaxAttempts() throws Exception {
+        Set<String> delivered = ConcurrentHashMap.newKeySet();
+        EmailDeliveryService deliveryService = mock(EmailDeliveryService.class);
+        when(deliveryService.deliver(anyList())).thenAnswer(invocation -> {
+            List<SpooledEmail> emails = invocation.getArgument(0);
+            emails.forEach(email -> delivered.add(email.toEmail()));
+            return emails.stream().map(email -> new EmailDeliveryService.DeliveryResult(email, null)).toList();
+        });
+        EmailProperties properties = new EmailProperties();
+        properties.getSpool().setMaxReadAttempts(2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.initialize();
+
+        try (EmailSpool spool = new EmailSpool(directory, 4096, 1)) {
+            spool.append(email(1)).join();
+            long poison = spool.append(email(2)).join();
+            spool.append(email(3)).join();
+            try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("%020d.spool", 0)).toFile(), "rw")) {
+                file.seek(poison + 10);
+                file.writeShort(0x7F7F);
+            }
+
+            EmailSpoolDispatcher dispatcher = new EmailSpoolDispatcher(spool, deliveryService,
+                    mock(EmailRetryService.class), executor, properties);
+            dispatcher.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (delivered.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            dispatcher.stop();
+
+            assertEquals(Set.of("user1@example.com", "user3@example.com"), delivered);
+            assertEquals(0, spool.backlogBytes());
+            assertTrue(Files.exists(directory.resolve("dead-letter")));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static SpooledEmail email(int i) {
+        return SpooledEmail.first("user" + i + "@example.com", "subject " + i, "<p>content " + i + "</p>");
+    }
+}
@@ -0,0 +1,145 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.mail.EmailSpool;
+import com.fintech.p2p.mail.SpooledEmail;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailSpoolTest {
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendedEmailsAreReadBackInOrder() throws Exception {
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 1)) {
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(spool.append(email(i)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            List<EmailSpool.Record> records = readAll(spool, spool.committedOffset());
+
+            assertEquals(50, records.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals("user" + i + "@example.com", records.get(i).email().toEmail());
+            }
+        }
+    }
+
+    @Test
+    void testRestartResumesAfterCheckpointAndDropsOldSegments() throws Exception {
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 1)) {
+            for (int i = 0; i < 100; i++) {
+                spool.append(email(i)).join();
+            }
+            List<EmailSpool.Record> records = readAll(spool, spool.committedOffset());
+            // 乱序完成，检查点只推进到连续完成的前缀
+            for (int i = 60; i >= 0; i--) {
+                if (i != 30) {
+                    spool.markDelivered(records.get(i));
+                }
+            }
+            assertEquals(records.get(30).offset(), spool.committedOffset());
+            spool.markDelivered(records.get(30));
+            spool.checkpoint();
+        }
+
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 1)) {
+            List<EmailSpool.Record> remaining = readAll(spool, spool.committedOffset());
+
+            assertEquals(39, remaining.size());
+            assertEquals("user61@example.com", remaining.get(0).email().toEmail());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertTrue(files.noneMatch(p -> p.getFileName().toString().equals(String.format("%020d.spool", 0))));
+            }
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncatedOnRecovery() throws Exception {
+        long lastOffset;
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 1)) {
+            spool.append(email(1)).join();
+            lastOffset = spool.append(email(2)).join();
+        }
+        // 模拟崩溃时最后一条记录只写了一半
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("%020d.spool", 0)).toFile(), "rw")) {
+            file.seek(lastOffset + 12);
+            file.writeLong(0xDEADBEEFL);
+        }
+
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 1)) {
+            assertEquals(1, readAll(spool, 0).size());
+
+            spool.append(email(3)).join();
+            List<EmailSpool.Record> records = readAll(spool, 0);
+            assertEquals(2, records.size());
+            assertEquals("user3@example.com", records.get(1).email().toEmail());
+        }
+    }
+
+    @Test
+    void testCorruptRecordIsSkippedToDeadLetterFile() throws Exception {
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 1)) {
+            spool.append(email(1)).join();
+            long corrupt = spool.append(email(2)).join();
+            spool.append(email(3)).join();
+            // 破坏第二条记录的内容，CRC 校验失败
+            try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("%020d.spool", 0)).toFile(), "rw")) {
+                file.seek(corrupt + 10);
+                file.writeShort(0x7F7F);
+            }
+
+            EmailSpool.Record first = spool.read(0);
+            spool.markDelivered(first);
+            assertThrows(IllegalStateException.class, () -> spool.read(corrupt));
+
+            long next = spool.skip(corrupt);
+            EmailSpool.Record third = spool.read(next);
+            assertEquals("user3@example.com", third.email().toEmail());
+            assertEquals(next, spool.committedOffset());
+            assertTrue(Files.size(directory.resolve("dead-letter")) > 0);
+        }
+    }
+
+    @Test
+    void testEmailLargerThanSegmentGetsOwnSegment() throws Exception {
+        String content = "x".repeat(SEGMENT_BYTES * 2);
+        try (EmailSpool spool = new EmailSpool(directory, SEGMENT_BYTES, 0)) {
+            spool.append(email(1)).join();
+            spool.append(new SpooledEmail("big@example.com", "subject", content, 0, java.time.LocalDateTime.now())).join();
+            spool.append(email(2)).join();
+
+            List<EmailSpool.Record> records = readAll(spool, 0);
+            assertEquals(3, records.size());
+            assertEquals(content, records.get(1).email().content());
+        }
+    }
+
+    private List<EmailSpool.Record> readAll(EmailSpool spool, long offset) {
+        List<EmailSpool.Record> records = new ArrayList<>();
+        EmailSpool.Record record;
+        while ((record = spool.read(offset)) != null) {
+            records.add(record);
+            offset = record.nextOffset();
+        }
+        return records;
+    }
+
+    private SpooledEmail email(int i) {
+        return SpooledEmail.first("user" + i + "@example.com", "subject " + i, "<p>content " + i + "</p>");
+    }
+}
@@ -0,0 +1,134 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.mail.EmailTemplate;
+import com.fintech.p2p.service.EmailTemplateRenderer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 邮件模板渲染：模板完整性、变量渲染、线程内缓冲区复用，以及与每次新建 Context 的渲染开销对比
+ */
+@Slf4j
+public class EmailTemplateRendererTest {
+
+    private SpringTemplateEngine templateEngine;
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        renderer = new EmailTemplateRenderer(templateEngine);
+    }
+
+    @Test
+    void testAllTemplatesExistAndWarmUp() {
+        assertDoesNotThrow(renderer::warmUp);
+    }
+
+    @Test
+    void testRepaymentSuccessTemplateRendersVariables() {
+        String html = renderer.render(EmailTemplate.REPAYMENT_SUCCESS, Map.of(
+                "loanId", 42L,
+                "amount", new BigDecimal("1500"),
+                "remainingAmount", new BigDecimal("8500.5"),
+                "dashboardUrl", "https://example.com/dashboard"));
+
+        assertTrue(html.contains("42"));
+        assertTrue(html.contains("1500.00円"));
+        assertTrue(html.contains("8500.50円"));
+        assertTrue(html.contains("https://example.com/dashboard"));
+    }
+
+    @Test
+    void testReusedBufferDoesNotLeakPreviousRender() {
+        String first = renderer.render(EmailTemplate.OVERDUE_NOTIFICATION, Map.of(
+                "loanId", "1001", "amount", new BigDecimal("10"), "repaymentUrl", "https://example.com/a"));
+        String second = renderer.render(EmailTemplate.OVERDUE_NOTIFICATION, Map.of(
+                "loanId", "2002", "amount", new BigDecimal("20"), "repaymentUrl", "https://example.com/b"));
+
+        assertTrue(first.contains("1001"));
+        assertTrue(second.contains("2002"));
+        assertFalse(second.contains("1001"));
+        assertFalse(second.contains("https://example.com/a"));
+        assertEquals(first.length(), second.length());
+    }
+
+    @Test
+    void testOverdueTemplateListsDigestItems() {
+        List<RepaymentEvent> items = List.of(
+                RepaymentEvent.builder().loanId(11L).amount(new BigDecimal("100")).dueDate(LocalDate.of(2024, 3, 1)).build(),
+                RepaymentEvent.builder().loanId(22L).amount(new BigDecimal("250.5")).dueDate(LocalDate.of(2024, 3, 15)).build());
+
+        String html = renderer.render(EmailTemplate.OVERDUE_NOTIFICATION, Map.of(
+                "items", items, "totalAmount", new BigDecimal("350.5"), "repaymentUrl", "https://example.com/pay"));
+
+        assertTrue(html.contains("2024-03-15"));
+        assertTrue(html.contains("250.50円"));
+        assertTrue(html.contains("350.50円"));
+    }
+
+    @Test
+    void testRenderCostAgainstNewContextPerCall() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Map<String, Object> variables = Map.of(
+                "loanId", 42L,
+                "amount", new BigDecimal("1500"),
+                "remainingAmount", new BigDecimal("8500.5"),
+                "dashboardUrl", "https://example.com/dashboard");
+        int iterations = 20_000;
+
+        // 先各预热一轮，再计时一轮
+        long checksum = 0;
+        long[] legacyNanos = new long[2];
+        long[] legacyBytes = new long[2];
+        long[] reuseNanos = new long[2];
+        long[] reuseBytes = new long[2];
+        for (int round = 0; round < 2; round++) {
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                // 改动前的路径：每封邮件新建 Context 和 StringWriter
+                Context context = new Context();
+                context.setVariables(variables);
+                StringWriter writer = new StringWriter();
+                templateEngine.process(EmailTemplate.REPAYMENT_SUCCESS.getPath(), context, writer);
+                checksum += writer.toString().length();
+            }
+            legacyNanos[round] = (System.nanoTime() - start) / iterations;
+            legacyBytes[round] = (threads.getThreadAllocatedBytes(threadId) - allocated) / iterations;
+
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += renderer.render(EmailTemplate.REPAYMENT_SUCCESS, variables).length();
+            }
+            reuseNanos[round] = (System.nanoTime() - start) / iterations;
+            reuseBytes[round] = (threads.getThreadAllocatedBytes(threadId) - allocated) / iterations;
+        }
+
+        log.info("还款成功邮件渲染: 每次新建Context {}ns/次 {}字节/次, 线程内复用 {}ns/次 {}字节/次 (checksum={})",
+                legacyNanos[1], legacyBytes[1], reuseNanos[1], reuseBytes[1], checksum);
+
+        assertTrue(reuseBytes[1] < legacyBytes[1]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.config.NotificationProperties;
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.service.EmailService;
+import com.fintech.p2p.service.NotificationService;
+import com.fintech.p2p.service.OverdueNotificationCoalescer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationServiceTest {
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private OverdueNotificationCoalescer overdueNotificationCoalescer;
+
+    @Mock
+    private Acknowledgment ack;
+
+    private NotificationService notificationService;
+
+    @BeforeEach
+    void setUp() {
+        NotificationProperties properties = new NotificationProperties();
+        properties.setBackpressurePauseMs(500);
+        notificationService = new NotificationService(emailService, properties, overdueNotificationCoalescer);
+    }
+
+    @Test
+    void testBatchIsHandedToCoalescerWithItsAcknowledgment() {
+        List<ConsumerRecord<String, RepaymentEvent>> records = records(3);
+        records.add(new ConsumerRecord<>(RepaymentEvent.OVERDUE_TOPIC, 0, 3, "3", null));
+
+        notificationService.sendOverdueNotifications(records, ack);
+
+        verify(overdueNotificationCoalescer).add(argThat(events -> events.size() == 3), eq(ack));
+        verify(ack, never()).acknowledge();
+        verify(ack, never()).nack(anyInt(), any(Duration.class));
+    }
+
+    @Test
+    void testSaturatedPipelinePausesInsteadOfDropping() {
+        when(emailService.isSaturated()).thenReturn(true);
+
+        notificationService.sendOverdueNotifications(records(5), ack);
+
+        verify(ack).nack(0, Duration.ofMillis(500));
+        verifyNoInteractions(overdueNotificationCoalescer);
+    }
+
+    private List<ConsumerRecord<String, RepaymentEvent>> records(int count) {
+        List<ConsumerRecord<String, RepaymentEvent>> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RepaymentEvent event = RepaymentEvent.builder()
+                    .type(RepaymentEvent.Type.OVERDUE)
+                    .loanId((long) i)
+                    .borrowerEmail("user" + i + "@example.com")
+                    .amount(new BigDecimal("100.00"))
+                    .build();
+            records.add(new ConsumerRecord<>(RepaymentEvent.OVERDUE_TOPIC, 0, i, event.key(), event));
+        }
+        return records;
+    }
+}
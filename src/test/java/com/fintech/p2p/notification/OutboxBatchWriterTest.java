@@ -0,0 +1,105 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.model.OutboxEvent;
+import com.fintech.p2p.repository.OutboxEventRepository;
+import com.fintech.p2p.service.OutboxBatchWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 发件箱取出租约、失败退避与死信
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, OutboxBatchWriter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OutboxBatchWriterTest {
+    @Autowired
+    private OutboxBatchWriter outboxBatchWriter;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAll();
+    }
+
+    @Test
+    void testClaimedEventsAreLeasedUntilCompleted() {
+        outboxEventRepository.saveAll(List.of(event("a"), event("b"), event("c")));
+
+        List<OutboxEvent> first = outboxBatchWriter.claim(2, LocalDateTime.now().plusMinutes(1));
+        List<OutboxEvent> second = outboxBatchWriter.claim(10, LocalDateTime.now().plusMinutes(1));
+
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertTrue(outboxBatchWriter.claim(10, LocalDateTime.now().plusMinutes(1)).isEmpty());
+    }
+
+    @Test
+    void testExpiredLeaseIsClaimedAgain() {
+        outboxEventRepository.saveAll(List.of(event("a"), event("b")));
+
+        // 取出后中继崩溃，租约到期
+        List<Long> ids = outboxBatchWriter.claim(10, LocalDateTime.now().minusSeconds(1))
+                .stream().map(OutboxEvent::getId).toList();
+
+        assertEquals(2, ids.size());
+        assertEquals(ids, outboxBatchWriter.claim(10, LocalDateTime.now().plusMinutes(1))
+                .stream().map(OutboxEvent::getId).toList());
+    }
+
+    @Test
+    void testFailingEventBecomesDeadAfterMaxAttempts() {
+        OutboxEvent sent = outboxEventRepository.save(event("ok"));
+        OutboxEvent failing = outboxEventRepository.save(event("poison"));
+        List<Long> failed = List.of(failing.getId());
+
+        assertEquals(0, outboxBatchWriter.complete(List.of(sent.getId()), failed, LocalDateTime.now(), 3));
+        assertEquals(0, outboxBatchWriter.complete(List.of(), failed, LocalDateTime.now(), 3));
+        assertEquals(1, outboxBatchWriter.complete(List.of(), failed, LocalDateTime.now(), 3));
+
+        assertFalse(outboxEventRepository.existsById(sent.getId()));
+        OutboxEvent dead = outboxEventRepository.findById(failing.getId()).orElseThrow();
+        assertEquals(OutboxEvent.Status.DEAD, dead.getStatus());
+        assertEquals(3, dead.getAttempts());
+        // 死信不再被取出
+        assertTrue(outboxBatchWriter.claim(10, LocalDateTime.now().plusMinutes(1)).isEmpty());
+    }
+
+    @Test
+    void testFailedEventWaitsForBackoff() {
+        OutboxEvent failing = outboxEventRepository.save(event("retry"));
+
+        outboxBatchWriter.complete(List.of(), List.of(failing.getId()), LocalDateTime.now().plusMinutes(5), 3);
+
+        assertTrue(outboxBatchWriter.claim(10, LocalDateTime.now().plusMinutes(1)).isEmpty());
+        assertEquals(OutboxEvent.Status.PENDING, outboxEventRepository.findById(failing.getId()).orElseThrow().getStatus());
+    }
+
+    private static OutboxEvent event(String payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setTopic("overdue-repayment-topic");
+        event.setEventKey("1");
+        event.setPayload(payload.getBytes(StandardCharsets.UTF_8));
+        event.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        return event;
+    }
+}
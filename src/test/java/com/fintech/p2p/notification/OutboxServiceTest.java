@@ -0,0 +1,108 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.model.OutboxEvent;
+import com.fintech.p2p.repository.OutboxEventRepository;
+import com.fintech.p2p.service.OutboxBatchWriter;
+import com.fintech.p2p.service.OutboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxServiceTest {
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxBatchWriter outboxBatchWriter;
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @InjectMocks
+    private OutboxService outboxService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(outboxService, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxService, "retryBackoffMs", 1000L);
+    }
+
+    @Test
+    void testDrainBatchDeletesDeliveredEvents() {
+        when(outboxBatchWriter.claim(eq(100), any(LocalDateTime.class)))
+                .thenReturn(List.of(event(1L, "a"), event(2L, "b")));
+        when(kafkaTemplate.send(eq("overdue-repayment-topic"), any(), any(byte[].class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        OutboxService.DrainResult result = outboxService.drainBatch(100);
+
+        assertEquals(2, result.fetched());
+        assertEquals(2, result.sent());
+        assertEquals(0, result.failed());
+        // 取出、发送、确认依次进行，发送不在事务内
+        InOrder inOrder = inOrder(outboxBatchWriter, kafkaTemplate);
+        inOrder.verify(outboxBatchWriter).claim(eq(100), any(LocalDateTime.class));
+        inOrder.verify(kafkaTemplate).flush();
+        inOrder.verify(outboxBatchWriter).complete(eq(List.of(1L, 2L)), eq(List.of()), any(LocalDateTime.class), eq(3));
+        verifyNoInteractions(outboxEventRepository);
+    }
+
+    @Test
+    void testDrainBatchKeepsFailedEvents() {
+        when(outboxBatchWriter.claim(eq(100), any(LocalDateTime.class)))
+                .thenReturn(List.of(event(1L, "a"), event(2L, "b")));
+        when(kafkaTemplate.send(eq("overdue-repayment-topic"), any(), eq(bytes("a"))))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        when(kafkaTemplate.send(eq("overdue-repayment-topic"), any(), eq(bytes("b"))))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        when(outboxBatchWriter.complete(eq(List.of(1L)), eq(List.of(2L)), any(LocalDateTime.class), eq(3)))
+                .thenReturn(1);
+
+        OutboxService.DrainResult result = outboxService.drainBatch(100);
+
+        assertEquals(1, result.sent());
+        assertEquals(1, result.failed());
+        assertEquals(1, result.dead());
+    }
+
+    @Test
+    void testDrainEmptyBatch() {
+        when(outboxBatchWriter.claim(eq(100), any(LocalDateTime.class))).thenReturn(List.of());
+
+        assertEquals(0, outboxService.drainBatch(100).fetched());
+        verifyNoInteractions(kafkaTemplate);
+        verify(outboxBatchWriter, never()).complete(any(), any(), any(), anyInt());
+    }
+
+    private OutboxEvent event(Long id, String payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setTopic("overdue-repayment-topic");
+        event.setPayload(bytes(payload));
+        event.setCreatedAt(LocalDateTime.now().minusSeconds(1));
+        return event;
+    }
+
+    private byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
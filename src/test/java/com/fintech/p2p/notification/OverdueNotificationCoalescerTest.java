@@ -0,0 +1,191 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.config.NotificationProperties;
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.service.EmailService;
+import com.fintech.p2p.service.OverdueNotificationCoalescer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OverdueNotificationCoalescerTest {
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private Acknowledgment firstAck;
+
+    @Mock
+    private Acknowledgment secondAck;
+
+    private NotificationProperties properties;
+    private OverdueNotificationCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new NotificationProperties();
+        properties.setOverdueDigestWindowMs(60_000);
+        coalescer = new OverdueNotificationCoalescer(emailService, properties);
+    }
+
+    @Test
+    void testEventsForSameBorrowerAreSentAsOneDigest() {
+        when(emailService.sendOverdueDigest(anyString(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        coalescer.add(List.of(event(1L, "a@example.com"), event(2L, "a@example.com")), firstAck);
+        coalescer.add(List.of(event(3L, "a@example.com"), event(4L, "b@example.com")), secondAck);
+        coalescer.flushDue();
+
+        verifyNoInteractions(emailService);
+        verify(firstAck, never()).acknowledge();
+
+        coalescer.flushAll();
+
+        verify(emailService).sendOverdueDigest(eq("a@example.com"), argThat(items -> items.size() == 3));
+        verify(emailService).sendOverdueDigest(eq("b@example.com"), argThat(items -> items.size() == 1));
+        InOrder inOrder = inOrder(firstAck, secondAck);
+        inOrder.verify(firstAck).acknowledge();
+        inOrder.verify(secondAck).acknowledge();
+
+        OverdueNotificationCoalescer.CoalescerStats stats = coalescer.getStats();
+        assertEquals(4, stats.eventsReceived());
+        assertEquals(2, stats.digestsSent());
+        assertEquals(2, stats.smtpSendsSaved());
+        assertEquals(0, stats.pendingDigests());
+    }
+
+    @Test
+    void testLaterBatchIsNotAcknowledgedBeforeEarlierOne() {
+        CompletableFuture<Boolean> slow = new CompletableFuture<>();
+        when(emailService.sendOverdueDigest(eq("a@example.com"), anyList())).thenReturn(slow);
+        when(emailService.sendOverdueDigest(eq("b@example.com"), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        coalescer.add(List.of(event(1L, "a@example.com")), firstAck);
+        coalescer.add(List.of(event(2L, "b@example.com")), secondAck);
+        coalescer.flushAll();
+
+        verify(secondAck, never()).acknowledge();
+
+        slow.complete(true);
+
+        verify(firstAck).acknowledge();
+        verify(secondAck).acknowledge();
+    }
+
+    @Test
+    void testDuplicateRepaymentIsListedOnceAndFailedDigestIsRetried() {
+        when(emailService.sendOverdueDigest(anyString(), anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("disk full")))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        coalescer.add(List.of(event(1L, "a@example.com"), event(1L, "a@example.com")), firstAck);
+        coalescer.flushAll();
+
+        verify(firstAck, never()).acknowledge();
+
+        coalescer.flushAll();
+
+        verify(emailService, times(2)).sendOverdueDigest(eq("a@example.com"), argThat(items -> items.size() == 1));
+        verify(firstAck).acknowledge();
+    }
+
+    @Test
+    void testDigestIsSentEarlyWhenFull() {
+        properties.setOverdueDigestMaxItems(2);
+        when(emailService.sendOverdueDigest(anyString(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        coalescer.add(List.of(event(1L, "a@example.com"), event(2L, "a@example.com")), firstAck);
+
+        verify(emailService).sendOverdueDigest(eq("a@example.com"), any());
+        verify(firstAck).acknowledge();
+    }
+
+    @Test
+    void testDigestIsAbandonedAfterMaxAttemptsSoLaterBatchesAreAcknowledged() {
+        properties.setOverdueDigestMaxAttempts(2);
+        when(emailService.sendOverdueDigest(eq("bad@example.com"), anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("disk full")));
+        when(emailService.sendOverdueDigest(eq("b@example.com"), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        coalescer.add(List.of(event(1L, "bad@example.com")), firstAck);
+        coalescer.add(List.of(event(2L, "b@example.com")), secondAck);
+        coalescer.flushAll();
+
+        verify(firstAck, never()).acknowledge();
+        verify(secondAck, never()).acknowledge();
+
+        coalescer.flushAll();
+
+        verify(emailService, times(2)).sendOverdueDigest(eq("bad@example.com"), anyList());
+        InOrder inOrder = inOrder(firstAck, secondAck);
+        inOrder.verify(firstAck).acknowledge();
+        inOrder.verify(secondAck).acknowledge();
+        assertEquals(1, coalescer.getStats().digestsAbandoned());
+        assertEquals(0, coalescer.getStats().bufferedEvents());
+    }
+
+    @Test
+    void testRetriedDigestKeepsEarliestStart() throws Exception {
+        properties.setOverdueDigestWindowMs(200);
+        CompletableFuture<Boolean> failing = new CompletableFuture<>();
+        when(emailService.sendOverdueDigest(eq("a@example.com"), anyList()))
+                .thenReturn(failing)
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        coalescer.add(List.of(event(1L, "a@example.com")), firstAck);
+        Thread.sleep(250);
+        coalescer.flushDue();
+        // 发送期间到达的新事件开启了新窗口，失败的邮件并入后仍按最早的事件计时
+        coalescer.add(List.of(event(2L, "a@example.com")), secondAck);
+        failing.completeExceptionally(new IllegalStateException("disk full"));
+        coalescer.flushDue();
+
+        verify(emailService).sendOverdueDigest(eq("a@example.com"), argThat(items -> items.size() == 2));
+        verify(firstAck).acknowledge();
+        verify(secondAck).acknowledge();
+    }
+
+    @Test
+    void testFullBufferIsFlushedImmediately() {
+        properties.setOverdueDigestMaxBuffered(3);
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        when(emailService.sendOverdueDigest(anyString(), anyList())).thenReturn(pending);
+
+        coalescer.add(List.of(event(1L, "a@example.com"), event(2L, "b@example.com")), firstAck);
+        assertFalse(coalescer.isSaturated());
+        verifyNoInteractions(emailService);
+
+        coalescer.add(List.of(event(3L, "c@example.com")), secondAck);
+
+        verify(emailService, times(3)).sendOverdueDigest(anyString(), anyList());
+        assertFalse(coalescer.isSaturated());
+        assertEquals(0, coalescer.getStats().pendingDigests());
+    }
+
+    private RepaymentEvent event(Long repaymentId, String email) {
+        return RepaymentEvent.builder()
+                .type(RepaymentEvent.Type.OVERDUE)
+                .repaymentId(repaymentId)
+                .loanId(repaymentId * 10)
+                .borrowerEmail(email)
+                .amount(new BigDecimal("100.00"))
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.event.RepaymentEvent;
+import com.fintech.p2p.event.RepaymentEventCodec;
+import com.fintech.p2p.event.RepaymentEventDeserializer;
+import com.fintech.p2p.model.Repayment;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 还款事件编解码：二进制往返、JSON 与旧版 CSV 兼容，以及三种格式的编解码耗时和消息大小
+ */
+@Slf4j
+public class RepaymentEventCodecTest {
+
+    private final RepaymentEventCodec binaryCodec = new RepaymentEventCodec(RepaymentEventCodec.Format.BINARY);
+    private final RepaymentEventCodec jsonCodec = new RepaymentEventCodec(RepaymentEventCodec.Format.JSON);
+
+    private RepaymentEvent sampleEvent() {
+        return RepaymentEvent.builder()
+                .type(RepaymentEvent.Type.OVERDUE)
+                .repaymentId(987654L)
+                .loanId(12345L)
+                .borrowerId(42L)
+                .borrowerEmail("\"last,first\"@example.com")
+                .amount(new BigDecimal("1234.56"))
+                .dueDate(LocalDate.of(2024, 3, 31))
+                .occurredAt(Instant.ofEpochMilli(1_711_900_000_123L))
+                .build();
+    }
+
+    @Test
+    void testBinaryRoundTrip() {
+        RepaymentEvent event = sampleEvent();
+
+        byte[] encoded = binaryCodec.encode(event);
+
+        assertEquals(event, binaryCodec.decode(encoded));
+        assertEquals("12345", event.key());
+    }
+
+    @Test
+    void testRepaidEventRoundTrip() {
+        Repayment repayment = new Repayment();
+        repayment.setId(5L);
+        repayment.setLoanId(12345L);
+        repayment.setBorrowerId(42L);
+        repayment.setBorrowerEmail("borrower@example.com");
+        repayment.setAmount(new BigDecimal("88.88"));
+        repayment.setDueDate(LocalDate.of(2024, 4, 30));
+        RepaymentEvent event = RepaymentEvent.repaid(repayment);
+        event.setOccurredAt(Instant.ofEpochMilli(1_714_000_000_000L)); // 二进制只保留到毫秒
+
+        byte[] encoded = binaryCodec.encode(event);
+
+        // 追加的类型不改变已有类型的序号
+        assertEquals(RepaymentEvent.Type.REPAID.ordinal(), encoded[1]);
+        assertEquals(event, binaryCodec.decode(encoded));
+        assertEquals(event, binaryCodec.decode(jsonCodec.encode(event)));
+    }
+
+    @Test
+    void testBinaryIsSmallerThanJson() {
+        RepaymentEvent event = sampleEvent();
+
+        assertTrue(binaryCodec.encode(event).length < jsonCodec.encode(event).length);
+    }
+
+    @Test
+    void testBinaryIsNoLargerThanLegacyCsvForSameFields() {
+        // 旧版 CSV 只有邮箱、贷款ID、金额三个字段
+        RepaymentEvent event = RepaymentEvent.builder()
+                .type(RepaymentEvent.Type.OVERDUE)
+                .loanId(12345L)
+                .borrowerEmail("borrower@example.com")
+                .amount(new BigDecimal("1234.56"))
+                .build();
+
+        assertTrue(binaryCodec.encode(event).length <= legacyCsv(event).length);
+    }
+
+    @Test
+    void testEncodeDecodeCostAgainstJsonAndLegacyCsv() {
+        RepaymentEvent event = sampleEvent();
+        event.setBorrowerEmail("borrower@example.com"); // 旧版按逗号切分，邮箱不能带逗号
+        int iterations = 200_000;
+
+        // 每种格式先预热一轮，再计时一轮
+        long checksum = 0;
+        long[] binary = new long[2];
+        long[] json = new long[2];
+        long[] csv = new long[2];
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += RepaymentEventCodec.decodeBinary(RepaymentEventCodec.encodeBinary(event)).getLoanId();
+            }
+            binary[round] = (System.nanoTime() - start) / iterations;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += RepaymentEventCodec.decodeJson(RepaymentEventCodec.encodeJson(event)).getLoanId();
+            }
+            json[round] = (System.nanoTime() - start) / iterations;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                // 改动前的路径：String.format 生成，消费端 split(",") 解析
+                String[] parts = new String(legacyCsv(event), StandardCharsets.UTF_8).split(",");
+                checksum += Long.parseLong(parts[1]) + new BigDecimal(parts[2]).scale();
+            }
+            csv[round] = (System.nanoTime() - start) / iterations;
+        }
+
+        int binaryBytes = binaryCodec.encode(event).length;
+        int jsonBytes = jsonCodec.encode(event).length;
+        int csvBytes = legacyCsv(event).length;
+        log.info("还款事件编码+解码: 二进制{}ns/次 {}字节(8个字段), JSON {}ns/次 {}字节(8个字段), 旧版CSV {}ns/次 {}字节(3个字段) (checksum={})",
+                binary[1], binaryBytes, json[1], jsonBytes, csv[1], csvBytes, checksum);
+
+        assertTrue(binaryBytes < jsonBytes);
+        assertTrue(binary[1] < json[1]);
+    }
+
+    @Test
+    void testJsonFallbackIsDetectedAutomatically() {
+        RepaymentEvent event = sampleEvent();
+
+        byte[] json = jsonCodec.encode(event);
+
+        assertEquals('{', json[0]);
+        assertEquals(event, binaryCodec.decode(json));
+    }
+
+    @Test
+    void testOptionalFieldsMayBeAbsent() {
+        RepaymentEvent event = RepaymentEvent.builder()
+                .type(RepaymentEvent.Type.OVERDUE)
+                .loanId(7L)
+                .build();
+
+        assertEquals(event, binaryCodec.decode(binaryCodec.encode(event)));
+    }
+
+    @Test
+    void testLegacyCsvMessageWithCommaInEmail() {
+        byte[] legacy = "\"a,b\"@example.com,99,100.00".getBytes(StandardCharsets.UTF_8);
+
+        RepaymentEvent event = binaryCodec.decode(legacy);
+
+        assertEquals(RepaymentEvent.Type.OVERDUE, event.getType());
+        assertEquals("\"a,b\"@example.com", event.getBorrowerEmail());
+        assertEquals(99L, event.getLoanId());
+        assertEquals(new BigDecimal("100.00"), event.getAmount());
+    }
+
+    private static byte[] legacyCsv(RepaymentEvent event) {
+        return String.format("%s,%s,%.2f", event.getBorrowerEmail(), event.getLoanId(), event.getAmount())
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testDeserializerRejectsTruncatedPayload() {
+        byte[] encoded = binaryCodec.encode(sampleEvent());
+        byte[] truncated = java.util.Arrays.copyOf(encoded, encoded.length - 3);
+
+        assertThrows(SerializationException.class,
+                () -> new RepaymentEventDeserializer().deserialize(RepaymentEvent.OVERDUE_TOPIC, truncated));
+    }
+}
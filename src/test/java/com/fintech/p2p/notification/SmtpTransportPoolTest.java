@@ -0,0 +1,104 @@
+package com.fintech.p2p.notification;
+
+import com.fintech.p2p.mail.SmtpTransportPool;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmtpTransportPoolTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+    }
+
+    @Test
+    void testBatchIsSentOverSingleConnection() throws Exception {
+        try (SmtpTransportPool pool = new SmtpTransportPool(mailSender, 1, 100, 5000, 1000)) {
+            List<MessagingException> failures = pool.send(messages(30));
+
+            assertTrue(failures.stream().allMatch(f -> f == null));
+            assertEquals(30, greenMail.getReceivedMessages().length);
+            SmtpTransportPool.ConnectionStats stats = pool.getStats().get(0);
+            assertEquals(1, stats.connects());
+            assertEquals(30, stats.sent());
+            assertTrue(stats.messagesPerSecond() > 0);
+        }
+    }
+
+    @Test
+    void testConnectionIsRecycledAfterMessageLimit() throws Exception {
+        try (SmtpTransportPool pool = new SmtpTransportPool(mailSender, 1, 5, 5000, 1000)) {
+            pool.send(messages(12));
+
+            assertEquals(12, greenMail.getReceivedMessages().length);
+            assertEquals(3, pool.getStats().get(0).connects());
+        }
+    }
+
+    @Test
+    void testReconnectsTransparentlyAfterServerRestart() throws Exception {
+        try (SmtpTransportPool pool = new SmtpTransportPool(mailSender, 1, 100, 60_000, 1000)) {
+            pool.send(messages(1));
+            greenMail.stop();
+            greenMail.start();
+            assertTrue(greenMail.getSmtp().waitTillRunning(5000));
+            awaitAcceptingConnections(greenMail.getSmtp().getPort());
+
+            List<MessagingException> failures = pool.send(messages(3));
+
+            assertTrue(failures.stream().allMatch(f -> f == null));
+            assertEquals(3, greenMail.getReceivedMessages().length);
+            assertEquals(2, pool.getStats().get(0).connects());
+        }
+    }
+
+    // waitTillRunning 返回时监听端口可能还未就绪
+    private static void awaitAcceptingConnections(int port) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try (Socket socket = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("GreenMail重启后未接受连接: " + e.getMessage());
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private List<MimeMessage> messages(int count) throws MessagingException {
+        List<MimeMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            helper.setFrom("noreply@example.com");
+            helper.setTo("user" + i + "@example.com");
+            helper.setSubject("subject " + i);
+            helper.setText("<p>content " + i + "</p>", true);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
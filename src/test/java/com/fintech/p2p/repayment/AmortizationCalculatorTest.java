@@ -0,0 +1,111 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.enums.AmortizationMethod;
+import com.fintech.p2p.service.AmortizationCalculator;
+import com.fintech.p2p.service.AmortizationCalculator.Installment;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class AmortizationCalculatorTest {
+    private static final LocalDate FIRST_DUE = LocalDate.of(2025, 1, 31);
+
+    private final AmortizationCalculator calculator = new AmortizationCalculator();
+
+    @Test
+    void testEqualInstallmentMatchesStandardPayment() {
+        List<Installment> schedule = calculator.calculate(new BigDecimal("10000"), new BigDecimal("5.5"), 12,
+                AmortizationMethod.EQUAL_INSTALLMENT, FIRST_DUE);
+
+        assertEquals(12, schedule.size());
+        for (Installment installment : schedule.subList(0, 11)) {
+            assertEquals(new BigDecimal("858.37"), installment.payment());
+        }
+        assertEquals(new BigDecimal("45.83"), schedule.get(0).interest());
+        assertEquals(new BigDecimal("812.54"), schedule.get(0).principal());
+        assertPrincipalFullyRepaid(new BigDecimal("10000.00"), schedule);
+        // 最后一期吸收舍入误差，与月供相差不超过几分
+        assertTrue(schedule.get(11).payment().subtract(new BigDecimal("858.37")).abs()
+                .compareTo(new BigDecimal("0.05")) <= 0);
+        assertEquals(LocalDate.of(2025, 2, 28), schedule.get(1).dueDate());
+    }
+
+    @Test
+    void testEqualPrincipalLastInstallmentAbsorbsRemainder() {
+        List<Installment> schedule = calculator.calculate(new BigDecimal("10000"), new BigDecimal("12"), 3,
+                AmortizationMethod.EQUAL_PRINCIPAL, FIRST_DUE);
+
+        assertEquals(new BigDecimal("3333.33"), schedule.get(0).principal());
+        assertEquals(new BigDecimal("3333.33"), schedule.get(1).principal());
+        assertEquals(new BigDecimal("3333.34"), schedule.get(2).principal());
+        assertEquals(new BigDecimal("100.00"), schedule.get(0).interest());
+        assertEquals(new BigDecimal("66.67"), schedule.get(1).interest());
+        assertEquals(new BigDecimal("33.33"), schedule.get(2).interest());
+        assertEquals(new BigDecimal("3433.33"), schedule.get(0).payment());
+        assertPrincipalFullyRepaid(new BigDecimal("10000.00"), schedule);
+    }
+
+    @Test
+    void testZeroRateSplitsPrincipalEvenly() {
+        List<Installment> schedule = calculator.calculate(new BigDecimal("100"), BigDecimal.ZERO, 3,
+                AmortizationMethod.EQUAL_INSTALLMENT, FIRST_DUE);
+
+        assertEquals(new BigDecimal("33.33"), schedule.get(0).payment());
+        assertEquals(new BigDecimal("33.34"), schedule.get(2).payment());
+        assertTrue(schedule.stream().allMatch(i -> i.interest().signum() == 0));
+        assertPrincipalFullyRepaid(new BigDecimal("100.00"), schedule);
+    }
+
+    @Test
+    void testPrincipalAlwaysSumsExactlyAcrossManyLoans() {
+        for (int cents = 100_00; cents < 100_000_00; cents += 7_919_33) {
+            BigDecimal amount = BigDecimal.valueOf(cents, 2);
+            for (int term : new int[]{1, 6, 13, 36, 360}) {
+                for (AmortizationMethod method : AmortizationMethod.values()) {
+                    assertPrincipalFullyRepaid(amount,
+                            calculator.calculate(amount, new BigDecimal("7.99"), term, method, FIRST_DUE));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testInvalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculate(BigDecimal.ZERO, BigDecimal.ONE, 12,
+                AmortizationMethod.EQUAL_INSTALLMENT, FIRST_DUE));
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculate(BigDecimal.TEN, BigDecimal.ONE, 0,
+                AmortizationMethod.EQUAL_PRINCIPAL, FIRST_DUE));
+    }
+
+    @Test
+    void testScheduleThroughputFor100kLoans() {
+        int loans = 100_000;
+        long installments = 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < loans; i++) {
+            BigDecimal amount = BigDecimal.valueOf(1_000_00L + i * 37L, 2);
+            AmortizationMethod method = (i & 1) == 0 ? AmortizationMethod.EQUAL_INSTALLMENT : AmortizationMethod.EQUAL_PRINCIPAL;
+            installments += calculator.calculate(amount, new BigDecimal("6.5"), 12 + i % 25, method, FIRST_DUE).size();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        log.info("生成{}笔贷款的还款计划({}期), 耗时{}ms, {}笔/秒",
+                loans, installments, elapsedMillis, loans * 1000L / elapsedMillis);
+        assertTrue(installments > loans * 12L);
+    }
+
+    private void assertPrincipalFullyRepaid(BigDecimal amount, List<Installment> schedule) {
+        BigDecimal principal = schedule.stream().map(Installment::principal).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, amount.compareTo(principal), "本金合计不等于借款金额: " + principal);
+        assertEquals(0, schedule.get(schedule.size() - 1).remainingPrincipal().signum());
+        for (Installment installment : schedule) {
+            assertEquals(2, installment.payment().scale());
+            assertEquals(installment.payment(), installment.principal().add(installment.interest()));
+        }
+    }
+}
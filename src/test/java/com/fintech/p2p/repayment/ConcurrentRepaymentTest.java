@@ -0,0 +1,271 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.model.RepaymentSubmission;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.repository.RepaymentSubmissionRepository;
+import com.fintech.p2p.service.NotificationService;
+import com.fintech.p2p.service.OutboxService;
+import com.fintech.p2p.service.OverdueRepaymentSweeper;
+import com.fintech.p2p.service.RepaymentBatchWriter;
+import com.fintech.p2p.service.RepaymentPipeline;
+import com.fintech.p2p.service.RepaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * 多线程并发对同一笔贷款还款，验证已还金额与还款记录始终一致
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:repayment;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, RepaymentService.class, RepaymentPipeline.class, RepaymentBatchWriter.class, RepaymentProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ConcurrentRepaymentTest {
+    private static final int THREADS = 16;
+    private static final int PAYMENTS_PER_THREAD = 50;
+    private static final long BORROWER_ID = 7L;
+
+    @Autowired
+    private RepaymentService repaymentService;
+
+    @Autowired
+    private RepaymentPipeline repaymentPipeline;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @Autowired
+    private RepaymentSubmissionRepository repaymentSubmissionRepository;
+
+    @Autowired
+    private RepaymentBatchWriter repaymentBatchWriter;
+
+    @Autowired
+    private RepaymentProperties repaymentProperties;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @MockitoBean
+    private OverdueRepaymentSweeper overdueRepaymentSweeper;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAll();
+        repaymentSubmissionRepository.deleteAll();
+        loanRepository.deleteAll();
+        when(notificationService.sendRepaymentNotification(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+    }
+
+    @Test
+    void testConcurrentPaymentsKeepTotalsExact() throws Exception {
+        Loan loan = loanRepository.save(loan(new BigDecimal("100000.00")));
+
+        int succeeded = hammer(loan.getId(), new BigDecimal("1.25"));
+
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        BigDecimal expected = new BigDecimal("1.25").multiply(BigDecimal.valueOf(THREADS * PAYMENTS_PER_THREAD));
+        assertEquals(THREADS * PAYMENTS_PER_THREAD, succeeded);
+        assertEquals(0, expected.compareTo(result.getRepaidAmount()));
+        assertEquals(0, new BigDecimal("100000.00").subtract(expected).compareTo(result.getRemainingAmount()));
+        assertEquals(succeeded, repaymentRepository.findByLoanId(loan.getId()).size());
+    }
+
+    @Test
+    void testOversubscribedLoanIsNeverOverpaid() throws Exception {
+        // 800次1元的还款争抢100元余额，只能有100次成功
+        Loan loan = loanRepository.save(loan(new BigDecimal("100.00")));
+
+        int succeeded = hammer(loan.getId(), BigDecimal.ONE);
+
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(100, succeeded);
+        assertEquals(0, new BigDecimal("100.00").compareTo(result.getRepaidAmount()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getRemainingAmount()));
+        assertEquals(Loan.LoanStatus.COMPLETED, result.getStatus());
+        assertEquals(100, repaymentRepository.findByLoanId(loan.getId()).size());
+    }
+
+    @Test
+    void testPipelineBatchesPaymentsOnSingleWriterLanes() throws Exception {
+        Loan loan = loanRepository.save(loan(new BigDecimal("100.00")));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < PAYMENTS_PER_THREAD; i++) {
+                    ids.add(repaymentPipeline.submit(new RepaymentBatchWriter.RepaymentCommand(loan.getId(), BORROWER_ID,
+                            "borrower@example.com", BigDecimal.ONE, LocalDate.now(),
+                            RepaymentStatus.PAID, RepaymentType.PARTIAL)).paymentId());
+                }
+                return ids;
+            }));
+        }
+        List<String> paymentIds = new ArrayList<>();
+        for (Future<List<String>> future : futures) {
+            paymentIds.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        int applied = 0;
+        for (String paymentId : paymentIds) {
+            RepaymentPipeline.PaymentHandle handle = awaitCompletion(paymentId);
+            if (handle.state() == RepaymentSubmission.State.APPLIED) {
+                applied++;
+            } else {
+                assertEquals(RepaymentSubmission.State.REJECTED, handle.state());
+            }
+        }
+
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(100, applied);
+        assertEquals(0, new BigDecimal("100.00").compareTo(result.getRepaidAmount()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getRemainingAmount()));
+        assertEquals(Loan.LoanStatus.COMPLETED, result.getStatus());
+        assertEquals(100, repaymentRepository.findByLoanId(loan.getId()).size());
+    }
+
+    @Test
+    void testStalledSubmissionIsRecoveredAfterNodeLoss() throws Exception {
+        Loan loan = loanRepository.save(loan(new BigDecimal("100.00")));
+        // 受理节点落库后崩溃，内存队列中的还款丢失
+        repaymentSubmissionRepository.save(submission("lost-payment", loan.getId(), new BigDecimal("30.00")));
+        assertEquals(0, repaymentPipeline.recoverStalled());
+
+        repaymentProperties.setRecoveryDelay(Duration.ZERO);
+        try {
+            assertEquals(1, repaymentPipeline.recoverStalled());
+        } finally {
+            repaymentProperties.setRecoveryDelay(Duration.ofMinutes(1));
+        }
+
+        RepaymentPipeline.PaymentHandle handle = awaitCompletion("lost-payment");
+        assertEquals(RepaymentSubmission.State.APPLIED, handle.state());
+        assertEquals(0, new BigDecimal("70.00").compareTo(handle.remainingAmount()));
+        assertEquals(1, repaymentRepository.findByLoanId(loan.getId()).size());
+    }
+
+    @Test
+    void testSubmissionRecoveredByTwoNodesIsAppliedOnce() {
+        Loan loan = loanRepository.save(loan(new BigDecimal("100.00")));
+        repaymentSubmissionRepository.save(submission("twice", loan.getId(), new BigDecimal("30.00")));
+
+        RepaymentBatchWriter.BatchResult first = repaymentBatchWriter.apply(loan.getId(), List.of("twice"));
+        RepaymentBatchWriter.BatchResult second = repaymentBatchWriter.apply(loan.getId(), List.of("twice"));
+
+        assertEquals(1, first.outcomes().size());
+        assertTrue(second.outcomes().isEmpty());
+        assertEquals(1, repaymentRepository.findByLoanId(loan.getId()).size());
+        // 回款分配按支付日期记账
+        assertNotNull(repaymentRepository.findByLoanId(loan.getId()).get(0).getPaymentDate());
+        assertEquals(0, new BigDecimal("30.00").compareTo(loanRepository.findById(loan.getId()).orElseThrow().getRepaidAmount()));
+        assertEquals(RepaymentSubmission.State.APPLIED,
+                repaymentSubmissionRepository.findById("twice").orElseThrow().getState());
+    }
+
+    private RepaymentPipeline.PaymentHandle awaitCompletion(String paymentId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            RepaymentPipeline.PaymentHandle handle = repaymentPipeline.getHandle(paymentId).orElseThrow();
+            if (handle.state() != RepaymentSubmission.State.QUEUED) {
+                return handle;
+            }
+            Thread.sleep(10);
+        }
+        return fail("还款未在期限内处理: " + paymentId);
+    }
+
+    private int hammer(Long loanId, BigDecimal amount) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < PAYMENTS_PER_THREAD; i++) {
+                    try {
+                        repaymentService.makeRepayment(loanId, BORROWER_ID, "borrower@example.com", amount,
+                                LocalDate.now(), RepaymentStatus.PAID, RepaymentType.PARTIAL);
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException rejected) {
+                        // 余额不足或已结清
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        return succeeded.get();
+    }
+
+    private static RepaymentSubmission submission(String paymentId, Long loanId, BigDecimal amount) {
+        RepaymentSubmission submission = new RepaymentSubmission();
+        submission.setPaymentId(paymentId);
+        submission.setLoanId(loanId);
+        submission.setBorrowerId(BORROWER_ID);
+        submission.setBorrowerEmail("borrower@example.com");
+        submission.setAmount(amount);
+        submission.setDueDate(LocalDate.now());
+        submission.setStatus(RepaymentStatus.PAID);
+        submission.setRepaymentType(RepaymentType.PARTIAL);
+        return submission;
+    }
+
+    private Loan loan(BigDecimal amount) {
+        Loan loan = new Loan();
+        loan.setBorrowerId(BORROWER_ID);
+        loan.setBorrowerEmail("borrower@example.com");
+        loan.setAmount(amount);
+        loan.setTerm(12);
+        loan.setInterestRate(new BigDecimal("0.08"));
+        loan.setStatus(Loan.LoanStatus.ACTIVE);
+        return loan;
+    }
+}
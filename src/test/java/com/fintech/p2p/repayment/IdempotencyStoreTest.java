@@ -0,0 +1,321 @@
+package com.fintech.p2p.repayment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fintech.p2p.config.IdempotencyProperties;
+import com.fintech.p2p.idempotency.IdempotencyFilter;
+import com.fintech.p2p.idempotency.IdempotencyStore;
+import com.fintech.p2p.idempotency.IdempotencyStore.Claim;
+import com.fintech.p2p.idempotency.IdempotencyStore.Outcome;
+import com.fintech.p2p.idempotency.IdempotencyStore.StoredResponse;
+import com.fintech.p2p.model.IdempotencyRecord;
+import com.fintech.p2p.repository.IdempotencyRecordRepository;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+/**
+ * 幂等键存储：重放、并发重复请求、请求体不一致、数据库层兜底、租约接管、保存响应失败和按调用方隔离
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({IdempotencyStore.class, IdempotencyProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class IdempotencyStoreTest {
+    private static final StoredResponse OK = new StoredResponse(200, "application/json",
+            "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private IdempotencyProperties idempotencyProperties;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        idempotencyProperties.setMaxEntries(100_000);
+        idempotencyProperties.setLease(Duration.ofMinutes(5));
+        idempotencyProperties.setInProgressWaitMillis(10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testCompletedKeyIsReplayed() {
+        assertEquals(Outcome.ACQUIRED, idempotencyStore.claim("pay k1", "h1").outcome());
+        idempotencyStore.complete("pay k1", OK);
+
+        Claim replay = idempotencyStore.claim("pay k1", "h1");
+
+        assertEquals(Outcome.REPLAY, replay.outcome());
+        assertArrayEquals(OK.body(), replay.response().body());
+        assertEquals(Outcome.MISMATCH, idempotencyStore.claim("pay k1", "h2").outcome());
+    }
+
+    @Test
+    void testReleasedKeyCanBeRetried() {
+        assertEquals(Outcome.ACQUIRED, idempotencyStore.claim("pay k2", "h1").outcome());
+        idempotencyStore.release("pay k2");
+
+        assertEquals(Outcome.ACQUIRED, idempotencyStore.claim("pay k2", "h1").outcome());
+    }
+
+    @Test
+    void testEvictedKeyIsReplayedFromDatabase() {
+        idempotencyProperties.setMaxEntries(1);
+        idempotencyStore.claim("pay k3", "h1");
+        idempotencyStore.complete("pay k3", OK);
+        // 写入第二个键后第一个键被挤出内存层
+        idempotencyStore.claim("pay k4", "h1");
+
+        Claim replay = idempotencyStore.claim("pay k3", "h1");
+
+        assertEquals(Outcome.REPLAY, replay.outcome());
+        assertEquals(200, replay.response().status());
+    }
+
+    @Test
+    void testKeyHeldPastLeaseIsReclaimed() throws Exception {
+        idempotencyProperties.setLease(Duration.ofMillis(100));
+        assertEquals(Outcome.ACQUIRED, idempotencyStore.claim("pay k8", "h1").outcome());
+        // 租约内仍在处理
+        idempotencyProperties.setInProgressWaitMillis(0);
+        assertEquals(Outcome.IN_PROGRESS, idempotencyStore.claim("pay k8", "h1").outcome());
+
+        // 占用方既未完成也未释放
+        Thread.sleep(150);
+
+        assertEquals(Outcome.MISMATCH, idempotencyStore.claim("pay k8", "h2").outcome());
+        assertEquals(Outcome.ACQUIRED, idempotencyStore.claim("pay k8", "h1").outcome());
+        idempotencyStore.complete("pay k8", OK);
+        assertEquals(Outcome.REPLAY, idempotencyStore.claim("pay k8", "h1").outcome());
+    }
+
+    @Test
+    void testCrashedNodeKeyIsReclaimedFromDatabase() {
+        // 其他节点占用后崩溃，只留下数据库中的处理中记录
+        IdempotencyRecord orphan = new IdempotencyRecord();
+        orphan.setIdempotencyKey("pay k9");
+        orphan.setRequestHash("h1");
+        orphan.setClaimedAt(LocalDateTime.now().minusMinutes(10));
+        orphan.setExpiresAt(LocalDateTime.now().plusHours(1));
+        idempotencyRecordRepository.save(orphan);
+
+        assertEquals(Outcome.ACQUIRED, idempotencyStore.claim("pay k9", "h1").outcome());
+        assertTrue(idempotencyRecordRepository.findById("pay k9").orElseThrow()
+                .getClaimedAt().isAfter(LocalDateTime.now().minusMinutes(1)));
+    }
+
+    @Test
+    void testConcurrentDuplicatesExecuteOnce() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger acquired = new AtomicInteger();
+        List<Future<Outcome>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                Claim claim = idempotencyStore.claim("pay k5", "h1");
+                if (claim.outcome() == Outcome.ACQUIRED) {
+                    acquired.incrementAndGet();
+                    Thread.sleep(50);
+                    idempotencyStore.complete("pay k5", OK);
+                }
+                return claim.outcome();
+            }));
+        }
+        start.countDown();
+        int replayed = 0;
+        for (Future<Outcome> future : futures) {
+            if (future.get(30, TimeUnit.SECONDS) == Outcome.REPLAY) {
+                replayed++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, acquired.get());
+        assertEquals(threads - 1, replayed);
+    }
+
+    @Test
+    void testFilterShortCircuitsReplayWithoutCallingController() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore, idempotencyProperties,
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        AtomicInteger controllerCalls = new AtomicInteger();
+        FilterChain controller = (request, response) -> {
+            controllerCalls.incrementAndGet();
+            assertEquals("{\"amount\":10}", new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            response.setContentType("application/json");
+            response.getWriter().write("{\"id\":" + controllerCalls.get() + "}");
+        };
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k6", "{\"amount\":10}"), first, controller);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k6", "{\"amount\":10}"), second, controller);
+        MockHttpServletResponse mismatch = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k6", "{\"amount\":99}"), mismatch, controller);
+
+        assertEquals(1, controllerCalls.get());
+        assertEquals("{\"id\":1}", first.getContentAsString());
+        assertEquals("{\"id\":1}", second.getContentAsString());
+        assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(422, mismatch.getStatus());
+    }
+
+    @Test
+    void testKeyIsKeptWhenSavingResponseFailsAfterSuccess() throws Exception {
+        IdempotencyStore failingStore = spy(idempotencyStore);
+        doThrow(new DataAccessResourceFailureException("数据库不可用")).when(failingStore).complete(anyString(), any());
+        IdempotencyFilter filter = new IdempotencyFilter(failingStore, idempotencyProperties,
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        AtomicInteger controllerCalls = new AtomicInteger();
+        FilterChain controller = (request, response) -> {
+            controllerCalls.incrementAndGet();
+            response.setContentType("application/json");
+            response.getWriter().write("{\"id\":1}");
+        };
+        idempotencyProperties.setInProgressWaitMillis(50);
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k11", "{\"amount\":10}"), first, controller);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k11", "{\"amount\":10}"), retry, controller);
+
+        // 付款已执行，客户端收到成功响应；重试不再执行，记录保持处理中
+        assertEquals(200, first.getStatus());
+        assertEquals("{\"id\":1}", first.getContentAsString());
+        assertEquals(409, retry.getStatus());
+        assertEquals(1, controllerCalls.get());
+        List<IdempotencyRecord> records = idempotencyRecordRepository.findAll();
+        assertEquals(1, records.size());
+        assertEquals(IdempotencyRecord.Status.IN_PROGRESS, records.get(0).getStatus());
+    }
+
+    @Test
+    void testCachedBodyNotifiesReadListener() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore, idempotencyProperties,
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        List<String> events = new ArrayList<>();
+        FilterChain controller = (request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    events.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.add("done");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    events.add("error");
+                }
+            });
+        };
+
+        filter.doFilter(payRequest("k12", "{\"amount\":10}"), new MockHttpServletResponse(), controller);
+
+        assertEquals(List.of("{\"amount\":10}", "done"), events);
+    }
+
+    @Test
+    void testSameKeyFromDifferentUsersIsNotShared() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore, idempotencyProperties,
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        AtomicInteger controllerCalls = new AtomicInteger();
+        FilterChain controller = (request, response) -> {
+            controllerCalls.incrementAndGet();
+            response.setContentType("application/json");
+            response.getWriter().write("{\"user\":\"" + SecurityContextHolder.getContext().getAuthentication().getName() + "\"}");
+        };
+
+        authenticate("alice");
+        MockHttpServletResponse alice = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k10", "{\"amount\":10}"), alice, controller);
+        authenticate("bob");
+        MockHttpServletResponse bob = new MockHttpServletResponse();
+        filter.doFilter(payRequest("k10", "{\"amount\":10}"), bob, controller);
+
+        assertEquals(2, controllerCalls.get());
+        assertEquals("{\"user\":\"bob\"}", bob.getContentAsString());
+        assertNull(bob.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testReplayLookupLatency() {
+        idempotencyStore.claim("pay k7", "h1");
+        idempotencyStore.complete("pay k7", OK);
+
+        int iterations = 1_000_000;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertSame(Outcome.REPLAY, idempotencyStore.claim("pay k7", "h1").outcome());
+        }
+        long nanosPerLookup = (System.nanoTime() - startNanos) / iterations;
+        log.info("幂等键重放查找{}次, 平均{}ns/次", iterations, nanosPerLookup);
+        assertTrue(nanosPerLookup < 10_000, "重放查找耗时过长: " + nanosPerLookup + "ns");
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    private MockHttpServletRequest payRequest(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/repayments/pay");
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
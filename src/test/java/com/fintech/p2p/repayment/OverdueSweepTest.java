@@ -0,0 +1,155 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.service.NotificationService;
+import com.fintech.p2p.service.OutboxService;
+import com.fintech.p2p.service.OverdueRepaymentSweeper;
+import com.fintech.p2p.service.RepaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 逾期扫描的键集分页：批次边界、同一到期日的多条记录、已处理记录不重复
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:overduesweep;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, RepaymentService.class, RepaymentProperties.class, OverdueRepaymentSweeper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OverdueSweepTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private RepaymentService repaymentService;
+
+    @Autowired
+    private OverdueRepaymentSweeper overdueRepaymentSweeper;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAll();
+    }
+
+    @Test
+    void testTiesOnDueDateAreSplitAcrossChunksWithoutLossOrRepeat() {
+        List<Repayment> repayments = new ArrayList<>();
+        // 同一到期日 10 条，批大小 4，同一到期日被拆到三批里
+        for (int i = 0; i < 10; i++) {
+            repayments.add(repayment(TODAY.minusDays(3), RepaymentStatus.PENDING));
+        }
+        for (int i = 0; i < 3; i++) {
+            repayments.add(repayment(TODAY.minusDays(1), RepaymentStatus.PENDING));
+        }
+        repayments.add(repayment(TODAY.minusDays(2), RepaymentStatus.PAID));
+        repayments.add(repayment(TODAY, RepaymentStatus.PENDING));
+        repayments.add(repayment(TODAY.plusDays(1), RepaymentStatus.PENDING));
+        repaymentRepository.saveAll(repayments);
+        ReflectionTestUtils.setField(repaymentService, "overdueChunkSize", 4);
+
+        repaymentService.checkOverdueRepayments();
+
+        Map<RepaymentStatus, Long> byStatus = repaymentRepository.findAll().stream()
+                .collect(Collectors.groupingBy(Repayment::getStatus, Collectors.counting()));
+        assertEquals(13L, byStatus.get(RepaymentStatus.OVERDUE));
+        assertEquals(2L, byStatus.get(RepaymentStatus.PENDING));
+        assertEquals(1L, byStatus.get(RepaymentStatus.PAID));
+        verify(outboxService, times(13)).enqueue(anyString(), any());
+    }
+
+    @Test
+    @Transactional // 扫描查询带行锁，需要在事务内执行
+    void testCursorResumesAfterLastIdWithinSameDueDate() {
+        LocalDate dueDate = TODAY.minusDays(5);
+        List<Repayment> saved = repaymentRepository.saveAll(List.of(
+                repayment(dueDate, RepaymentStatus.PENDING),
+                repayment(dueDate, RepaymentStatus.PENDING),
+                repayment(dueDate, RepaymentStatus.PENDING),
+                repayment(TODAY.minusDays(4), RepaymentStatus.PENDING)));
+        List<Long> ids = saved.stream().map(Repayment::getId).sorted().toList();
+
+        // 游标停在同一到期日的第二条：只返回该日之后的ID和更晚的到期日
+        List<Repayment> after = repaymentRepository.findOverdueChunkAfter(
+                RepaymentStatus.PENDING, TODAY, dueDate, ids.get(1), PageRequest.of(0, 10));
+        assertEquals(2, after.size());
+        assertEquals(dueDate, after.get(0).getDueDate());
+        assertTrue(after.get(0).getId() > ids.get(1));
+        assertEquals(TODAY.minusDays(4), after.get(1).getDueDate());
+
+        // 游标在最后一条之后：没有更多记录
+        Repayment last = after.get(1);
+        assertTrue(repaymentRepository.findOverdueChunkAfter(
+                RepaymentStatus.PENDING, TODAY, last.getDueDate(), last.getId(), PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void testChunkExactlyFillingLastPageEndsWithEmptyChunk() {
+        List<Repayment> repayments = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            repayments.add(repayment(TODAY.minusDays(1 + i % 2), RepaymentStatus.PENDING));
+        }
+        repaymentRepository.saveAll(repayments);
+
+        OverdueRepaymentSweeper.SweepChunk first = overdueRepaymentSweeper.sweepChunk(TODAY, null, null, 3);
+        OverdueRepaymentSweeper.SweepChunk second = overdueRepaymentSweeper.sweepChunk(
+                TODAY, first.lastDueDate(), first.lastId(), 3);
+        OverdueRepaymentSweeper.SweepChunk third = overdueRepaymentSweeper.sweepChunk(
+                TODAY, second.lastDueDate(), second.lastId(), 3);
+
+        assertEquals(3, first.updated());
+        assertEquals(3, second.updated());
+        assertEquals(0, third.scanned());
+        // 空批保留原游标
+        assertEquals(second.lastId(), third.lastId());
+        assertTrue(first.lastDueDate().isBefore(second.lastDueDate())
+                || (first.lastDueDate().equals(second.lastDueDate()) && first.lastId() < second.lastId()));
+    }
+
+    private static Repayment repayment(LocalDate dueDate, RepaymentStatus status) {
+        Repayment repayment = new Repayment();
+        repayment.setLoanId(1L);
+        repayment.setBorrowerId(7L);
+        repayment.setBorrowerEmail("borrower@example.com");
+        repayment.setAmount(new BigDecimal("10.00"));
+        repayment.setDueDate(dueDate);
+        repayment.setStatus(status);
+        repayment.setRepaymentType(RepaymentType.PARTIAL);
+        return repayment;
+    }
+}
@@ -0,0 +1,219 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.id.IdSegmentAllocator;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.RepaymentRepository;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量生成还款计划的插入吞吐：对比 IDENTITY 主键（改造前）与号段主键（改造后）的语句数和每秒插入条数
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:batchinsert;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+public class RepaymentBatchInsertBenchmarkTest {
+    private static final int SCHEDULE_ROWS = 5000;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Statistics statistics;
+    private long lastElapsedNanos;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM identity_repayments");
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testSegmentIdsBatchInsertsThatIdentityCannot() {
+        // 预热，排除首次加载的开销
+        insertSchedule(500, IdentityRepayment::of);
+        insertSchedule(500, Function.identity());
+
+        // IDENTITY 每插入一行都要立即执行 INSERT 取回主键，Hibernate 无法合并为批量语句
+        long identityStatements = statementsFor(() -> insertSchedule(SCHEDULE_ROWS, IdentityRepayment::of));
+        long identityNanos = lastElapsedNanos;
+        long segmentStatements = statementsFor(() -> insertSchedule(SCHEDULE_ROWS, Function.identity()));
+        long segmentNanos = lastElapsedNanos;
+
+        log.info("IDENTITY主键: {}条语句, {}条/秒; 号段主键: {}条语句, {}条/秒",
+                identityStatements, SCHEDULE_ROWS * 1_000_000_000L / identityNanos,
+                segmentStatements, SCHEDULE_ROWS * 1_000_000_000L / segmentNanos);
+
+        assertTrue(identityStatements >= SCHEDULE_ROWS);
+        // 每50行一条批量INSERT，另加主键分配的少量语句
+        assertTrue(segmentStatements < SCHEDULE_ROWS / 10, "号段主键插入语句数: " + segmentStatements);
+        assertEquals(SCHEDULE_ROWS + 500L, repaymentRepository.count());
+        assertEquals(SCHEDULE_ROWS + 500, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM identity_repayments", Integer.class));
+    }
+
+    @Test
+    void testSeededGeneratorStartsAboveExistingIds() {
+        // 模拟迁移：表中已有自增主键的数据，按迁移脚本以 MAX(id) + 1 初始化主键分配表
+        insertSchedule(1, Function.identity());
+        jdbcTemplate.update("INSERT INTO repayments (id, loan_id, borrower_id, borrower_email, amount, due_date, status, repayment_type) " +
+                "VALUES (1000, 1, 1, 'legacy@example.com', 1.00, CURRENT_DATE, 'PENDING', 'PARTIAL')");
+        jdbcTemplate.update("UPDATE id_generator SET next_val = (SELECT MAX(id) + 1 FROM repayments) WHERE entity = 'repayments'");
+
+        // 当前预取段用完后从分配表取下一段，新主键不能与迁移前的数据冲突
+        List<Repayment> saved = repaymentRepository.saveAll(schedule(120));
+
+        assertEquals(122, repaymentRepository.count());
+        assertTrue(saved.stream().allMatch(r -> r.getId() != 1000));
+        assertTrue(saved.get(saved.size() - 1).getId() > 1000);
+    }
+
+    @Test
+    void testMissingSegmentStartsAfterExistingIds() {
+        // 分配表中还没有该号段：从表中现有的 MAX(id) + 1 开始
+        jdbcTemplate.update("INSERT INTO repayments (id, loan_id, borrower_id, borrower_email, amount, due_date, status, repayment_type) " +
+                "VALUES (5000, 1, 1, 'legacy@example.com', 1.00, CURRENT_DATE, 'PENDING', 'PARTIAL')");
+        jdbcTemplate.update("DELETE FROM id_generator WHERE entity = 'repayments'");
+
+        // 共用测试连接池，不关闭分配器
+        IdSegmentAllocator allocator = new IdSegmentAllocator(dataSource, 10);
+        assertEquals(5001, allocator.next("repayments"));
+        assertEquals(5002, allocator.next("repayments"));
+        // 没有对应的表时直接失败
+        assertThrows(IllegalStateException.class, () -> allocator.next("no_such_table"));
+        assertEquals(5011L, jdbcTemplate.queryForObject(
+                "SELECT next_val FROM id_generator WHERE entity = 'repayments'", Long.class));
+    }
+
+    private long statementsFor(Runnable work) {
+        statistics.clear();
+        long start = System.nanoTime();
+        work.run();
+        lastElapsedNanos = Math.max(1, System.nanoTime() - start);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void insertSchedule(int rows, Function<Repayment, ?> mapping) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                schedule(rows).stream().map(mapping).forEach(entityManager::persist));
+    }
+
+    private List<Repayment> schedule(int rows) {
+        List<Repayment> repayments = new ArrayList<>(rows);
+        LocalDate firstDue = LocalDate.now().plusMonths(1);
+        for (int i = 0; i < rows; i++) {
+            Repayment repayment = new Repayment();
+            repayment.setLoanId((long) (i / 12 + 1));
+            repayment.setBorrowerId(7L);
+            repayment.setBorrowerEmail("borrower@example.com");
+            repayment.setAmount(new BigDecimal("833.33"));
+            repayment.setDueDate(firstDue.plusMonths(i % 12));
+            repayment.setStatus(RepaymentStatus.PENDING);
+            repayment.setRepaymentType(RepaymentType.PARTIAL);
+            repayments.add(repayment);
+        }
+        return repayments;
+    }
+
+    /**
+     * 与还款记录相同的列，主键仍用数据库自增，作为改造前的对照
+     */
+    @Entity
+    @Data
+    @Table(name = "identity_repayments")
+    static class IdentityRepayment {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        @Column(nullable = false)
+        private Long loanId;
+
+        @Column(nullable = false)
+        private Long borrowerId;
+
+        @Column(nullable = false)
+        private String borrowerEmail;
+
+        @Column(nullable = false)
+        private BigDecimal amount;
+
+        @Column(nullable = false)
+        private LocalDate dueDate;
+
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false)
+        private RepaymentStatus status;
+
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false)
+        private RepaymentType repaymentType;
+
+        static IdentityRepayment of(Repayment repayment) {
+            IdentityRepayment row = new IdentityRepayment();
+            row.setLoanId(repayment.getLoanId());
+            row.setBorrowerId(repayment.getBorrowerId());
+            row.setBorrowerEmail(repayment.getBorrowerEmail());
+            row.setAmount(repayment.getAmount());
+            row.setDueDate(repayment.getDueDate());
+            row.setStatus(repayment.getStatus());
+            row.setRepaymentType(repayment.getRepaymentType());
+            return row;
+        }
+    }
+}
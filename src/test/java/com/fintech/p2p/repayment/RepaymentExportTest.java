@@ -0,0 +1,173 @@
+package com.fintech.p2p.repayment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.exception.UnauthorizedOperationException;
+import com.fintech.p2p.export.RepaymentExportFormat;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.model.User;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.repository.UserRepository;
+import com.fintech.p2p.security.CallerResolver;
+import com.fintech.p2p.service.RepaymentExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 还款记录流式导出与导出范围
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, RepaymentExportService.class, RepaymentProperties.class, CallerResolver.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class RepaymentExportTest {
+    private static final long BORROWER_ID = 7L;
+    private static final int ROWS_PER_LOAN = 2500;
+
+    @Autowired
+    private RepaymentExportService repaymentExportService;
+
+    @Autowired
+    private RepaymentProperties repaymentProperties;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CallerResolver callerResolver;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAll();
+        repaymentProperties.setExportFlushRows(500);
+        List<Repayment> repayments = new ArrayList<>(ROWS_PER_LOAN * 2);
+        for (long loanId = 1; loanId <= 2; loanId++) {
+            for (int i = 1; i <= ROWS_PER_LOAN; i++) {
+                Repayment repayment = new Repayment();
+                repayment.setLoanId(loanId);
+                repayment.setBorrowerId(BORROWER_ID);
+                repayment.setBorrowerEmail("borrower@example.com");
+                repayment.setInstallmentNo(i);
+                repayment.setAmount(new BigDecimal("10.50"));
+                repayment.setDueDate(LocalDate.of(2025, 1, 1).plusDays(i));
+                repayment.setStatus(i % 2 == 0 ? RepaymentStatus.PAID : RepaymentStatus.PENDING);
+                repayment.setRepaymentType(RepaymentType.PARTIAL);
+                repayments.add(repayment);
+            }
+        }
+        repaymentRepository.saveAll(repayments);
+    }
+
+    @Test
+    void testCsvExportsEveryRowInIdOrderWithPeriodicFlush() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+
+        long rows = repaymentExportService.export(BORROWER_ID, null, RepaymentExportFormat.CSV, false, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(ROWS_PER_LOAN * 2, rows);
+        assertEquals(ROWS_PER_LOAN * 2 + 1, lines.length);
+        assertTrue(lines[0].startsWith("id,loan_id,borrower_id,installment_no,amount"));
+        String[] first = lines[1].split(",", -1);
+        assertEquals(14, first.length);
+        assertEquals("1", first[1]);
+        assertEquals("10.50", first[4]);
+        assertEquals("PENDING", first[8]);
+        long previousId = 0;
+        for (int i = 1; i < lines.length; i++) {
+            long id = Long.parseLong(lines[i].substring(0, lines[i].indexOf(',')));
+            assertTrue(id > previousId);
+            previousId = id;
+        }
+        assertTrue(out.flushes >= ROWS_PER_LOAN * 2 / 500, "导出过程中应分段刷新: " + out.flushes);
+    }
+
+    @Test
+    void testGzipNdjsonExportFiltersByLoan() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = repaymentExportService.export(null, 2L, RepaymentExportFormat.NDJSON, true, out);
+
+        byte[] content;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            content = in.readAllBytes();
+        }
+        String[] lines = new String(content, StandardCharsets.UTF_8).split("\n");
+        assertEquals(ROWS_PER_LOAN, rows);
+        assertEquals(ROWS_PER_LOAN, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (String line : lines) {
+            assertEquals(2L, objectMapper.readTree(line).get("loanId").asLong());
+        }
+        JsonNode last = objectMapper.readTree(lines[lines.length - 1]);
+        assertEquals(ROWS_PER_LOAN, last.get("installmentNo").asInt());
+        assertEquals(0, new BigDecimal("10.50").compareTo(last.get("amount").decimalValue()));
+        assertEquals(LocalDate.of(2025, 1, 1).plusDays(ROWS_PER_LOAN).toString(), last.get("dueDate").asText());
+        assertTrue(last.get("paymentDate").isNull());
+    }
+
+    @Test
+    void testExportIsScopedToCaller() throws Exception {
+        userRepository.deleteAll();
+        User borrower = new User();
+        borrower.setUsername("borrower7");
+        borrower.setPassword("hashed-password");
+        borrower.setEmail("borrower7@example.com");
+        borrower.setRole("BORROWER");
+        Long callerId = userRepository.save(borrower).getId();
+        UsernamePasswordAuthenticationToken user = new UsernamePasswordAuthenticationToken("borrower7", null, List.of());
+        UsernamePasswordAuthenticationToken admin = new UsernamePasswordAuthenticationToken("root", null,
+                List.of(new SimpleGrantedAuthority(CallerResolver.ADMIN_AUTHORITY)));
+
+        // 普通用户不传借款人ID时只导出自己的记录，不能导出他人的记录
+        assertEquals(callerId, callerResolver.scopeToCaller(user, null));
+        assertEquals(callerId, callerResolver.scopeToCaller(user, callerId));
+        assertThrows(UnauthorizedOperationException.class, () -> callerResolver.scopeToCaller(user, BORROWER_ID));
+        assertThrows(UnauthorizedOperationException.class, () -> callerResolver.scopeToCaller(null, null));
+        // 管理员不受限制
+        assertNull(callerResolver.scopeToCaller(admin, null));
+        assertEquals(BORROWER_ID, callerResolver.scopeToCaller(admin, BORROWER_ID));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, repaymentExportService.export(callerResolver.scopeToCaller(user, null), null,
+                RepaymentExportFormat.CSV, false, out));
+    }
+
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+        int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
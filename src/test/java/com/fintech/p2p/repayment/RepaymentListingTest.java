@@ -0,0 +1,164 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.dto.RepaymentSummary;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.exception.BusinessException;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.service.NotificationService;
+import com.fintech.p2p.service.OutboxService;
+import com.fintech.p2p.service.OverdueRepaymentSweeper;
+import com.fintech.p2p.service.RepaymentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 还款计划列表的键集分页
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:listing;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, RepaymentService.class, RepaymentProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class RepaymentListingTest {
+    private static final long BORROWER_ID = 7L;
+    private static final int INSTALLMENTS = 2000;
+    private static final LocalDate FIRST_DUE = LocalDate.of(2025, 1, 1);
+
+    @Autowired
+    private RepaymentService repaymentService;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @MockitoBean
+    private OverdueRepaymentSweeper overdueRepaymentSweeper;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAll();
+        List<Repayment> repayments = new ArrayList<>(INSTALLMENTS + 10);
+        for (int i = 0; i < INSTALLMENTS; i++) {
+            // 每天两期，同一到期日内按ID排序
+            repayments.add(repayment(BORROWER_ID, FIRST_DUE.plusDays(i / 2),
+                    i % 3 == 0 ? RepaymentStatus.PAID : RepaymentStatus.PENDING));
+        }
+        for (int i = 0; i < 10; i++) {
+            repayments.add(repayment(BORROWER_ID + 1, FIRST_DUE, RepaymentStatus.PENDING));
+        }
+        repaymentRepository.saveAll(repayments);
+    }
+
+    @Test
+    void testCursorWalksEveryInstallmentInOrder() {
+        List<RepaymentSummary> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        long firstPageNanos = 0;
+        long lastPageNanos = 0;
+        RepaymentService.SummaryPage page;
+        do {
+            long startNanos = System.nanoTime();
+            page = repaymentService.getRepaymentsByBorrower(BORROWER_ID, cursor, 100);
+            long elapsed = System.nanoTime() - startNanos;
+            if (pages == 0) {
+                firstPageNanos = elapsed;
+            }
+            lastPageNanos = elapsed;
+            all.addAll(page.rows());
+            cursor = page.nextCursor();
+            pages++;
+        } while (page.hasMore());
+        log.info("{}期还款分{}页, 首页{}us, 末页{}us",
+                all.size(), pages, firstPageNanos / 1000, lastPageNanos / 1000);
+
+        assertEquals(INSTALLMENTS, all.size());
+        assertEquals(INSTALLMENTS / 100, pages);
+        assertNull(cursor);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < all.size(); i++) {
+            assertTrue(ids.add(all.get(i).id()));
+            assertEquals(BORROWER_ID, all.get(i).borrowerId());
+            if (i > 0) {
+                RepaymentSummary previous = all.get(i - 1);
+                int order = previous.dueDate().compareTo(all.get(i).dueDate());
+                assertTrue(order < 0 || (order == 0 && previous.id() < all.get(i).id()));
+            }
+        }
+    }
+
+    @Test
+    void testPendingAndDateRangeArePaged() {
+        int pending = 0;
+        String cursor = null;
+        RepaymentService.SummaryPage page;
+        do {
+            page = repaymentService.getPendingRepaymentsByBorrower(BORROWER_ID, cursor, 500);
+            assertTrue(page.rows().stream().allMatch(r -> r.status() == RepaymentStatus.PENDING));
+            pending += page.rows().size();
+            cursor = page.nextCursor();
+        } while (page.hasMore());
+        assertEquals(INSTALLMENTS - (INSTALLMENTS + 2) / 3, pending);
+
+        RepaymentService.SummaryPage first = repaymentService.getRepaymentsByDateRange(
+                BORROWER_ID, FIRST_DUE.plusDays(10), FIRST_DUE.plusDays(19), null, 15);
+        RepaymentService.SummaryPage second = repaymentService.getRepaymentsByDateRange(
+                BORROWER_ID, FIRST_DUE.plusDays(10), FIRST_DUE.plusDays(19), first.nextCursor(), 15);
+        assertEquals(15, first.rows().size());
+        assertTrue(first.hasMore());
+        assertEquals(5, second.rows().size());
+        assertFalse(second.hasMore());
+        assertEquals(FIRST_DUE.plusDays(19), second.rows().get(4).dueDate());
+    }
+
+    @Test
+    void testPageSizeIsCappedAndCursorValidated() {
+        RepaymentService.SummaryPage page = repaymentService.getRepaymentsByBorrower(BORROWER_ID, null, 10_000);
+
+        assertEquals(100, page.pageSize());
+        assertEquals(100, page.rows().size());
+        assertThrows(BusinessException.class, () -> repaymentService.getRepaymentsByBorrower(BORROWER_ID, "not-a-cursor", 10));
+        assertThrows(BusinessException.class, () -> repaymentService.getRepaymentsByBorrower(BORROWER_ID, null, 0));
+    }
+
+    private Repayment repayment(long borrowerId, LocalDate dueDate, RepaymentStatus status) {
+        Repayment repayment = new Repayment();
+        repayment.setLoanId(1L);
+        repayment.setBorrowerId(borrowerId);
+        repayment.setBorrowerEmail("borrower@example.com");
+        repayment.setAmount(new BigDecimal("10.00"));
+        repayment.setDueDate(dueDate);
+        repayment.setStatus(status);
+        repayment.setRepaymentType(RepaymentType.PARTIAL);
+        return repayment;
+    }
+}
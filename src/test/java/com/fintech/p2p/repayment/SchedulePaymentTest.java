@@ -0,0 +1,200 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.RepaymentProperties;
+import com.fintech.p2p.enums.AmortizationMethod;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.model.RepaymentSubmission;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.repository.RepaymentSubmissionRepository;
+import com.fintech.p2p.service.AmortizationCalculator;
+import com.fintech.p2p.service.NotificationService;
+import com.fintech.p2p.service.OutboxService;
+import com.fintech.p2p.service.OverdueRepaymentSweeper;
+import com.fintech.p2p.service.RepaymentBatchWriter;
+import com.fintech.p2p.service.RepaymentPipeline;
+import com.fintech.p2p.service.RepaymentScheduleService;
+import com.fintech.p2p.service.RepaymentService;
+import com.fintech.p2p.service.SettlementBatchWriter;
+import com.fintech.p2p.settlement.SettlementLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * 按还款计划逐期还清贷款：每期应还含利息，只有本金部分冲减剩余本金，同步、异步和结算文件三条入账路径一致
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:schedulepayment;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, RepaymentService.class, RepaymentPipeline.class, RepaymentBatchWriter.class,
+        RepaymentScheduleService.class, AmortizationCalculator.class, SettlementBatchWriter.class,
+        RepaymentProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SchedulePaymentTest {
+    private static final long BORROWER_ID = 7L;
+    private static final String EMAIL = "borrower@example.com";
+
+    @Autowired
+    private RepaymentService repaymentService;
+
+    @Autowired
+    private RepaymentPipeline repaymentPipeline;
+
+    @Autowired
+    private RepaymentScheduleService repaymentScheduleService;
+
+    @Autowired
+    private SettlementBatchWriter settlementBatchWriter;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @Autowired
+    private RepaymentSubmissionRepository repaymentSubmissionRepository;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @MockitoBean
+    private OverdueRepaymentSweeper overdueRepaymentSweeper;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAll();
+        repaymentSubmissionRepository.deleteAll();
+        loanRepository.deleteAll();
+        when(notificationService.sendRepaymentNotification(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+    }
+
+    @Test
+    void testPayingEveryInstallmentThroughPayCompletesLoan() {
+        Loan loan = loanRepository.save(loan());
+        List<Repayment> schedule = schedule(loan);
+
+        for (Repayment installment : schedule) {
+            Repayment paid = repaymentService.makeRepayment(loan.getId(), BORROWER_ID, EMAIL, installment.getAmount(),
+                    installment.getDueDate(), RepaymentStatus.PAID, RepaymentType.PARTIAL);
+            assertEquals(0, installment.getPrincipalAmount().compareTo(paid.getPrincipalAmount()));
+            assertEquals(0, installment.getInterestAmount().compareTo(paid.getInterestAmount()));
+        }
+
+        assertRepaidInFull(loan.getId());
+    }
+
+    @Test
+    void testPayingEveryInstallmentThroughAsyncPayCompletesLoan() throws Exception {
+        Loan loan = loanRepository.save(loan());
+        List<Repayment> schedule = schedule(loan);
+
+        String lastPaymentId = null;
+        for (Repayment installment : schedule) {
+            lastPaymentId = repaymentPipeline.submit(new RepaymentBatchWriter.RepaymentCommand(loan.getId(), BORROWER_ID,
+                    EMAIL, installment.getAmount(), installment.getDueDate(), RepaymentStatus.PAID,
+                    RepaymentType.PARTIAL)).paymentId();
+        }
+        awaitCompletion(lastPaymentId);
+
+        assertTrue(repaymentSubmissionRepository.findAll().stream()
+                .allMatch(submission -> submission.getState() == RepaymentSubmission.State.APPLIED));
+        assertRepaidInFull(loan.getId());
+    }
+
+    @Test
+    void testSettlementAndPayShareTheSameInterestLedger() {
+        Loan loan = loanRepository.save(loan());
+        List<Repayment> schedule = schedule(loan);
+
+        // 第一期由银行结算文件入账，其余各期通过 /pay 还款
+        Repayment first = schedule.get(0);
+        settlementBatchWriter.apply(List.of(new SettlementLine(1, "BANK-1", first.getId(), first.getAmount(),
+                first.getDueDate())));
+        for (Repayment installment : schedule.subList(1, schedule.size())) {
+            repaymentService.makeRepayment(loan.getId(), BORROWER_ID, EMAIL, installment.getAmount(),
+                    installment.getDueDate(), RepaymentStatus.PAID, RepaymentType.PARTIAL);
+        }
+
+        assertRepaidInFull(loan.getId());
+    }
+
+    @Test
+    void testPaymentBeyondPrincipalAndDueInterestIsRejected() {
+        Loan loan = loanRepository.save(loan());
+        Repayment first = schedule(loan).get(0);
+
+        // 只到期了第一期的利息，多出的部分都算本金，超过剩余本金
+        assertThrows(IllegalArgumentException.class, () -> repaymentService.makeRepayment(loan.getId(), BORROWER_ID,
+                EMAIL, new BigDecimal("10000.00").add(first.getInterestAmount()).add(BigDecimal.ONE),
+                first.getDueDate(), RepaymentStatus.PAID, RepaymentType.PARTIAL));
+        Loan unchanged = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(0, BigDecimal.ZERO.compareTo(unchanged.getRepaidAmount()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(unchanged.getRepaidInterest()));
+    }
+
+    private List<Repayment> schedule(Loan loan) {
+        // 10000 元、年化 12%、3 期等额本金：各期利息 100.00 / 66.67 / 33.33
+        return repaymentScheduleService.createSchedule(loan, AmortizationMethod.EQUAL_PRINCIPAL,
+                        LocalDate.now().plusMonths(1)).stream()
+                .sorted(Comparator.comparing(Repayment::getInstallmentNo))
+                .toList();
+    }
+
+    private void assertRepaidInFull(Long loanId) {
+        Loan result = loanRepository.findById(loanId).orElseThrow();
+        assertEquals(Loan.LoanStatus.COMPLETED, result.getStatus());
+        assertEquals(0, new BigDecimal("10000.00").compareTo(result.getRepaidAmount()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getRemainingAmount()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(result.getRepaidInterest()));
+    }
+
+    private void awaitCompletion(String paymentId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (repaymentPipeline.getHandle(paymentId).orElseThrow().state() != RepaymentSubmission.State.QUEUED) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("还款未在期限内处理: " + paymentId);
+    }
+
+    private static Loan loan() {
+        Loan loan = new Loan();
+        loan.setBorrowerId(BORROWER_ID);
+        loan.setBorrowerEmail(EMAIL);
+        loan.setAmount(new BigDecimal("10000.00"));
+        loan.setTerm(3);
+        loan.setInterestRate(new BigDecimal("12"));
+        loan.setStatus(Loan.LoanStatus.ACTIVE);
+        return loan;
+    }
+}
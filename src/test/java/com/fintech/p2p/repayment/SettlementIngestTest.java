@@ -0,0 +1,311 @@
+package com.fintech.p2p.repayment;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.SettlementProperties;
+import com.fintech.p2p.enums.RepaymentStatus;
+import com.fintech.p2p.enums.RepaymentType;
+import com.fintech.p2p.model.Loan;
+import com.fintech.p2p.model.Repayment;
+import com.fintech.p2p.repository.LoanRepository;
+import com.fintech.p2p.repository.RepaymentRepository;
+import com.fintech.p2p.service.SettlementBatchWriter;
+import com.fintech.p2p.service.SettlementIngestJob;
+import com.fintech.p2p.service.SettlementIngestService;
+import com.fintech.p2p.settlement.SettlementFileReader;
+import com.fintech.p2p.settlement.SettlementFormat;
+import com.fintech.p2p.settlement.SettlementLine;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 结算文件分批入账与对账报告、并发批次不重复入账、上传暂存与归档
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:settlement;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, SettlementIngestService.class, SettlementBatchWriter.class, SettlementProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SettlementIngestTest {
+    private static final long BORROWER_ID = 7L;
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private SettlementIngestService settlementIngestService;
+
+    @Autowired
+    private SettlementProperties settlementProperties;
+
+    @Autowired
+    private SettlementBatchWriter settlementBatchWriter;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+
+    @BeforeEach
+    void setUp() {
+        repaymentRepository.deleteAll();
+        loanRepository.deleteAll();
+        settlementProperties.setDirectory(directory.toString());
+        settlementProperties.setChunkSize(2);
+    }
+
+    @Test
+    void testCsvLinesAreMatchedAndReconciled() throws Exception {
+        Loan loan = loanRepository.save(loan(new BigDecimal("300.00")));
+        List<Repayment> schedule = schedule(loan, 3, new BigDecimal("100.00"));
+        Path file = write("settlement.csv", List.of(
+                "reference,repayment_id,amount,payment_date",
+                "B001," + schedule.get(0).getId() + ",100.00,2025-01-31",
+                "B002," + schedule.get(1).getId() + ",99.00,2025-02-28",
+                "B003,999999,100.00,2025-02-28",
+                "B004," + schedule.get(0).getId() + ",100.00,2025-01-31",
+                "B005,not-a-number,100.00,2025-02-28",
+                "",
+                "B006," + schedule.get(2).getId() + ",100.00,2025-03-31"));
+
+        SettlementIngestService.SettlementReport report = settlementIngestService.ingest(file, SettlementFormat.CSV);
+
+        assertEquals(6, report.totalLines());
+        assertEquals(2, report.matched());
+        assertEquals(2, report.unmatched());
+        assertEquals(1, report.duplicate());
+        assertEquals(1, report.malformed());
+        assertEquals(0, new BigDecimal("200.00").compareTo(report.matchedAmount()));
+
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("200.00").compareTo(result.getRepaidAmount()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(result.getRemainingAmount()));
+        Repayment paid = repaymentRepository.findById(schedule.get(0).getId()).orElseThrow();
+        assertEquals(RepaymentStatus.PAID, paid.getStatus());
+        assertEquals(LocalDate.of(2025, 1, 31), paid.getPaymentDate());
+        assertEquals(RepaymentStatus.PENDING, repaymentRepository.findById(schedule.get(1).getId()).orElseThrow().getStatus());
+
+        List<String> reportLines = Files.readAllLines(Path.of(report.reportFile()));
+        assertEquals(5, reportLines.size());
+        assertTrue(reportLines.get(1).startsWith("3,UNMATCHED,B002,"));
+        assertTrue(reportLines.stream().anyMatch(line -> line.startsWith("5,DUPLICATE,B004,")));
+        assertTrue(reportLines.stream().anyMatch(line -> line.startsWith("6,MALFORMED,")));
+    }
+
+    @Test
+    void testReingestingFileOnlyReportsDuplicates() throws Exception {
+        Loan loan = loanRepository.save(loan(new BigDecimal("200.00")));
+        List<Repayment> schedule = schedule(loan, 2, new BigDecimal("100.00"));
+        Path file = write("settlement.dat", List.of(
+                fixedWidth("B001", schedule.get(0).getId(), 10000, "20250131"),
+                fixedWidth("B002", schedule.get(1).getId(), 10000, "20250228")));
+
+        SettlementIngestService.SettlementReport first = settlementIngestService.ingest(file, SettlementFormat.FIXED_WIDTH);
+        SettlementIngestService.SettlementReport second = settlementIngestService.ingest(file, SettlementFormat.FIXED_WIDTH);
+
+        assertEquals(2, first.matched());
+        assertEquals(0, second.matched());
+        assertEquals(2, second.duplicate());
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(Loan.LoanStatus.COMPLETED, result.getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getRemainingAmount()));
+    }
+
+    @Test
+    void testConcurrentBatchesOnSameLinesCreditLoanOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 10; round++) {
+                Loan loan = loanRepository.save(loan(new BigDecimal("300.00")));
+                List<Repayment> schedule = schedule(loan, 3, new BigDecimal("100.00"));
+                List<SettlementLine> lines = List.of(
+                        new SettlementLine(1, "B001", schedule.get(0).getId(), new BigDecimal("100.00"), LocalDate.of(2025, 1, 31)),
+                        new SettlementLine(2, "B002", schedule.get(1).getId(), new BigDecimal("100.00"), LocalDate.of(2025, 2, 28)));
+
+                // 两个节点同时处理同一批结算行，都在对方提交前查出了待支付的还款计划
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<List<SettlementBatchWriter.LineResult>>> futures = new ArrayList<>();
+                for (int t = 0; t < 2; t++) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        return settlementBatchWriter.apply(lines);
+                    }));
+                }
+                start.countDown();
+                long matched = 0;
+                for (Future<List<SettlementBatchWriter.LineResult>> future : futures) {
+                    matched += future.get(30, TimeUnit.SECONDS).stream()
+                            .filter(result -> result.status() == SettlementBatchWriter.LineStatus.MATCHED).count();
+                }
+
+                assertEquals(2, matched);
+                Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+                assertEquals(0, new BigDecimal("200.00").compareTo(result.getRepaidAmount()));
+                assertEquals(0, new BigDecimal("100.00").compareTo(result.getRemainingAmount()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testUploadIsStagedAndIngestedByJob() throws Exception {
+        Loan loan = loanRepository.save(loan(new BigDecimal("200.00")));
+        List<Repayment> schedule = schedule(loan, 2, new BigDecimal("100.00"));
+        byte[] content = String.join("\n",
+                "B001," + schedule.get(0).getId() + ",100.00,2025-01-31",
+                "B002," + schedule.get(1).getId() + ",100.00,2025-02-28").getBytes(StandardCharsets.UTF_8);
+
+        // 同名文件上传两次，格式由参数指定而非扩展名
+        SettlementIngestService.SettlementUpload first = settlementIngestService.stageUpload(
+                "bank.txt", new ByteArrayInputStream(content), SettlementFormat.CSV);
+        SettlementIngestService.SettlementUpload second = settlementIngestService.stageUpload(
+                "bank.txt", new ByteArrayInputStream(content), SettlementFormat.CSV);
+
+        assertNotEquals(first.fileName(), second.fileName());
+        assertEquals(SettlementFormat.CSV, SettlementFormat.fromFileName(first.fileName()));
+        assertTrue(Files.exists(directory.resolve("inbox").resolve(first.fileName())));
+        // 上传时尚未入账
+        assertEquals(RepaymentStatus.PENDING, repaymentRepository.findById(schedule.get(0).getId()).orElseThrow().getStatus());
+
+        new SettlementIngestJob(settlementIngestService).ingestInbox();
+
+        Loan result = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("200.00").compareTo(result.getRepaidAmount()));
+        assertEquals(0, count(directory.resolve("inbox")));
+        assertEquals(2, count(directory.resolve("archive")));
+        assertEquals(2, count(directory.resolve("reports")));
+    }
+
+    @Test
+    void testReprocessingKeepsEarlierReportAndArchive() throws Exception {
+        Files.createDirectories(directory.resolve("inbox"));
+        List<String> lines = List.of("B001,999999,100.00,2025-01-31");
+
+        SettlementIngestService.SettlementReport first = settlementIngestService.ingestAndArchive(
+                Files.write(directory.resolve("inbox").resolve("daily.csv"), lines), SettlementFormat.CSV);
+        SettlementIngestService.SettlementReport second = settlementIngestService.ingestAndArchive(
+                Files.write(directory.resolve("inbox").resolve("daily.csv"), lines), SettlementFormat.CSV);
+
+        assertNotEquals(first.reportFile(), second.reportFile());
+        assertTrue(Files.exists(Path.of(first.reportFile())));
+        assertTrue(Files.exists(directory.resolve("archive").resolve("daily.csv")));
+        assertEquals(2, count(directory.resolve("archive")));
+    }
+
+    @Test
+    void testReaderHandlesLinesAcrossMappingWindows() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("line-" + i + "-" + "x".repeat(i % 97));
+        }
+        Path file = directory.resolve("lines.txt");
+        Files.writeString(file, String.join("\r\n", lines), StandardCharsets.UTF_8);
+
+        List<String> read = new ArrayList<>();
+        try (SettlementFileReader reader = new SettlementFileReader(file, 256)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                read.add(line);
+            }
+            assertEquals(1000, reader.lineNumber());
+        }
+        assertEquals(lines, read);
+    }
+
+    @Test
+    void testLargeFileIngestThroughput() throws Exception {
+        settlementProperties.setChunkSize(1000);
+        int lines = 10_000;
+        List<Long> ids = new ArrayList<>(lines);
+        for (int l = 0; l < lines / 100; l++) {
+            Loan loan = loanRepository.save(loan(new BigDecimal("1000.00")));
+            schedule(loan, 100, new BigDecimal("10.00")).forEach(repayment -> ids.add(repayment.getId()));
+        }
+        Path file = directory.resolve("large.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                out.write("B" + i + "," + ids.get(i) + ",10.00,2025-01-31");
+                out.newLine();
+            }
+        }
+
+        SettlementIngestService.SettlementReport report = settlementIngestService.ingest(file, SettlementFormat.CSV);
+
+        log.info("结算文件{}行, 入账{}行, 耗时{}ms, {}行/秒", lines, report.matched(),
+                report.elapsedMillis(), lines * 1000L / report.elapsedMillis());
+        assertEquals(lines, report.matched());
+        assertEquals(0, new BigDecimal("100000.00").compareTo(report.matchedAmount()));
+    }
+
+    private List<Repayment> schedule(Loan loan, int installments, BigDecimal amount) {
+        List<Repayment> schedule = new ArrayList<>(installments);
+        for (int i = 1; i <= installments; i++) {
+            Repayment repayment = new Repayment();
+            repayment.setLoanId(loan.getId());
+            repayment.setBorrowerId(BORROWER_ID);
+            repayment.setBorrowerEmail("borrower@example.com");
+            repayment.setInstallmentNo(i);
+            repayment.setAmount(amount);
+            repayment.setDueDate(LocalDate.of(2025, 1, 31).plusMonths(i - 1));
+            repayment.setStatus(RepaymentStatus.PENDING);
+            repayment.setRepaymentType(RepaymentType.PARTIAL);
+            schedule.add(repayment);
+        }
+        return repaymentRepository.saveAll(schedule);
+    }
+
+    private static long count(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private Path write(String name, List<String> lines) throws Exception {
+        return Files.write(directory.resolve(name), lines, StandardCharsets.UTF_8);
+    }
+
+    private static String fixedWidth(String reference, Long repaymentId, long cents, String date) {
+        return String.format("%-20s%019d%015d%s", reference, repaymentId, cents, date);
+    }
+
+    private Loan loan(BigDecimal amount) {
+        Loan loan = new Loan();
+        loan.setBorrowerId(BORROWER_ID);
+        loan.setBorrowerEmail("borrower@example.com");
+        loan.setAmount(amount);
+        loan.setTerm(12);
+        loan.setInterestRate(new BigDecimal("0.08"));
+        loan.setStatus(Loan.LoanStatus.ACTIVE);
+        return loan;
+    }
+}
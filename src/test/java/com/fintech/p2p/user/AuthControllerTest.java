@@ -4,7 +4,12 @@ import com.fintech.p2p.dto.LoginRequest;
 import com.fintech.p2p.dto.RegisterRequest;
 import com.fintech.p2p.dto.UserDto;
 import com.fintech.p2p.model.User;
+import com.fintech.p2p.security.ClientIpResolver;
+import com.fintech.p2p.security.CredentialHasher;
 import com.fintech.p2p.security.JwtTokenUtil;
+import com.fintech.p2p.security.JwtTokenVerifier;
+import com.fintech.p2p.security.LoginThrottle;
+import com.fintech.p2p.service.RefreshTokenService;
 import com.fintech.p2p.service.UserService;
 import com.fintech.p2p.controller.AuthController;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,7 +19,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.util.Map;
 import java.util.Optional;
@@ -31,7 +35,19 @@ public class AuthControllerTest {
     private JwtTokenUtil jwtTokenUtil;
 
     @Mock
-    private BCryptPasswordEncoder passwordEncoder;
+    private CredentialHasher credentialHasher;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private ClientIpResolver clientIpResolver;
+
+    @Mock
+    private JwtTokenVerifier jwtTokenVerifier;
 
     @InjectMocks
     private AuthController authController;
@@ -71,8 +87,8 @@ public class AuthControllerTest {
     @Test
     void testLoginSuccess() {
         when(userService.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(passwordEncoder.matches("password123", user.getPassword())).thenReturn(true);
-        when(jwtTokenUtil.generateToken("testuser")).thenReturn("fake-jwt-token");
+        when(credentialHasher.matches("password123", user.getPassword())).thenReturn(true);
+        when(jwtTokenUtil.generateToken("testuser", user.getRole())).thenReturn("fake-jwt-token");
         when(jwtTokenUtil.getTokenExpirationTime(anyString())).thenReturn(3600L);
 
         ResponseEntity<?> response = authController.login(loginRequest);
@@ -102,7 +118,7 @@ public class AuthControllerTest {
     @Test
     void testLoginFailure_WrongPassword() {
         when(userService.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(passwordEncoder.matches("wrongpass", user.getPassword())).thenReturn(false);
+        when(credentialHasher.matches("wrongpass", user.getPassword())).thenReturn(false);
 
         LoginRequest wrongRequest = new LoginRequest();
         wrongRequest.setUsername("testuser");
@@ -112,4 +128,28 @@ public class AuthControllerTest {
         assertEquals(401, response.getStatusCodeValue());
         assertEquals("Invalid credentials", response.getBody());
     }
+
+    @Test
+    void testLogoutRevokesRefreshTokenFamily() {
+        when(jwtTokenUtil.getUsernameFromToken("access")).thenReturn("testuser");
+
+        ResponseEntity<?> response = authController.logout("Bearer access", Map.of("refreshToken", "refresh"));
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(jwtTokenVerifier).revoke("access");
+        verify(refreshTokenService).revoke("refresh", "testuser");
+        verify(refreshTokenService, never()).revokeAll(any());
+    }
+
+    @Test
+    void testLogoutWithoutRefreshTokenRevokesAllForUser() {
+        user.setId(7L);
+        when(jwtTokenUtil.getUsernameFromToken("access")).thenReturn("testuser");
+        when(userService.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        authController.logout("Bearer access", null);
+
+        verify(jwtTokenVerifier).revoke("access");
+        verify(refreshTokenService).revokeAll(7L);
+    }
 }
@@ -0,0 +1,168 @@
+package com.fintech.p2p.user;
+
+import com.fintech.p2p.config.PasswordHashProperties;
+import com.fintech.p2p.dto.UserDto;
+import com.fintech.p2p.exception.CredentialHashingBusyException;
+import com.fintech.p2p.model.User;
+import com.fintech.p2p.repository.UserRepository;
+import com.fintech.p2p.security.CredentialHasher;
+import com.fintech.p2p.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 密码哈希：注册只哈希一次、强度变化时登录升级、有界线程池的拒绝与超时
+ */
+@Slf4j
+public class CredentialHasherTest {
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    @Test
+    void testRegisteredPasswordMatchesRawPassword() {
+        CredentialHasher hasher = hasher(properties(4, 2, 10));
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        UserService userService = new UserService(userRepository, hasher);
+
+        UserDto userDto = new UserDto();
+        userDto.setUsername("alice");
+        userDto.setEmail("alice@example.com");
+        userDto.setPassword("Secret@123");
+        User user = userService.register(userDto);
+
+        assertTrue(hasher.matches("Secret@123", user.getPassword()));
+        assertFalse(hasher.matches("Secret@124", user.getPassword()));
+        assertEquals(1, hasher.getStats().hashed());
+    }
+
+    @Test
+    void testHashIsUpgradedWhenStrengthChanges() {
+        String legacy = hasher(properties(4, 1, 10)).hash("Secret@123");
+        CredentialHasher hasher = hasher(properties(5, 1, 10));
+        UserRepository userRepository = mock(UserRepository.class);
+        UserService userService = new UserService(userRepository, hasher);
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setPassword(legacy);
+
+        assertTrue(hasher.needsRehash(legacy));
+        assertTrue(hasher.matches("Secret@123", legacy));
+        userService.upgradePasswordHash(user, "Secret@123");
+
+        verify(userRepository).updatePassword(eq(7L), eq(user.getPassword()));
+        assertTrue(user.getPassword().startsWith("$2a$05$"));
+        assertFalse(hasher.needsRehash(user.getPassword()));
+        assertTrue(hasher.matches("Secret@123", user.getPassword()));
+
+        // 强度未变时不再重新计算
+        userService.upgradePasswordHash(user, "Secret@123");
+        verify(userRepository, times(1)).updatePassword(any(), any());
+    }
+
+    @Test
+    void testFullQueueIsRejectedAndSlowQueueTimesOut() throws Exception {
+        PasswordHashProperties properties = properties(4, 1, 1);
+        properties.setTimeout(Duration.ofMillis(100));
+        ThreadPoolTaskExecutor executor = executor(properties);
+        CredentialHasher hasher = new CredentialHasher(new BCryptPasswordEncoder(4), executor, properties);
+
+        // 占住唯一的线程
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> {
+            release.await();
+            return null;
+        });
+        // 队列还有一个位置：排队等待超时
+        assertThrows(CredentialHashingBusyException.class, () -> hasher.hash("Secret@123"));
+        // 超时的任务已出队，后续请求仍能排队
+        assertEquals(0, hasher.getStats().queueDepth());
+        assertThrows(CredentialHashingBusyException.class, () -> hasher.matches("Secret@123", "$2a$04$x"));
+        assertEquals(0, hasher.getStats().queueDepth());
+
+        // 占满队列后直接拒绝
+        executor.submit(() -> {
+            release.await();
+            return null;
+        });
+        assertThrows(CredentialHashingBusyException.class, () -> hasher.hash("Secret@123"));
+
+        CredentialHasher.HashingStats stats = hasher.getStats();
+        assertEquals(2, stats.timedOut());
+        assertEquals(1, stats.rejected());
+        assertEquals(1, stats.queueDepth());
+        release.countDown();
+    }
+
+    @Test
+    void testLoginStormThroughput() throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        PasswordHashProperties properties = properties(10, threads, 1000);
+        CredentialHasher hasher = hasher(properties);
+        String encoded = hasher.hash("Secret@123");
+
+        int requests = threads * 25;
+        ExecutorService callers = Executors.newFixedThreadPool(64);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            futures.add(callers.submit(() -> hasher.matches("Secret@123", encoded)));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(60, TimeUnit.SECONDS));
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        callers.shutdown();
+
+        CredentialHasher.HashingStats stats = hasher.getStats();
+        log.info("BCrypt(10) {}线程校验{}次: 耗时{}ms, {}次/秒, 平均计算{}ms, 平均排队{}ms, 最长计算{}ms",
+                threads, requests, elapsedMillis, requests * 1000L / elapsedMillis, String.format("%.1f", stats.averageMillis()),
+                String.format("%.1f", stats.averageWaitMillis()), String.format("%.1f", stats.maxMillis()));
+        assertEquals(requests, stats.verified());
+        assertEquals(0, stats.rejected());
+    }
+
+    private CredentialHasher hasher(PasswordHashProperties properties) {
+        return new CredentialHasher(new BCryptPasswordEncoder(properties.getStrength()), executor(properties), properties);
+    }
+
+    private ThreadPoolTaskExecutor executor(PasswordHashProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getThreads());
+        executor.setMaxPoolSize(properties.getThreads());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    private static PasswordHashProperties properties(int strength, int threads, int queueCapacity) {
+        PasswordHashProperties properties = new PasswordHashProperties();
+        properties.setStrength(strength);
+        properties.setThreads(threads);
+        properties.setQueueCapacity(queueCapacity);
+        return properties;
+    }
+}
@@ -0,0 +1,216 @@
+package com.fintech.p2p.user;
+
+import com.fintech.p2p.security.JwtTokenFilter;
+import com.fintech.p2p.security.JwtTokenUtil;
+import com.fintech.p2p.security.JwtTokenVerifier;
+import com.fintech.p2p.security.TokenRevocationList;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * JWT 校验：单次解析、按令牌缓存、注销后立即失效、角色授权
+ */
+@Slf4j
+public class JwtTokenVerifierTest {
+    private static final String SECRET = "test-secret-key-for-jwt-verification-0123456789";
+
+    private JwtTokenUtil jwtTokenUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenUtil = spy(jwtTokenUtil(3_600_000L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testTokenIsParsedOnceThenServedFromCache() {
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtTokenUtil, revocationList(), 100);
+        String token = jwtTokenUtil.generateToken("alice");
+
+        assertEquals(Optional.of("alice"), verifier.verify(token));
+        assertEquals(Optional.of("alice"), verifier.verify(token));
+        assertEquals(Optional.of("alice"), verifier.verify(token));
+
+        verify(jwtTokenUtil, times(1)).parseClaims(anyString());
+        assertEquals(1, verifier.cachedTokens());
+    }
+
+    @Test
+    void testRevokedTokenIsRejectedEvenWhenCached() {
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtTokenUtil, revocationList(), 100);
+        String alice = jwtTokenUtil.generateToken("alice");
+        String bob = jwtTokenUtil.generateToken("bob");
+        assertTrue(verifier.verify(alice).isPresent());
+        assertTrue(verifier.verify(bob).isPresent());
+
+        verifier.revoke(alice);
+
+        assertTrue(verifier.verify(alice).isEmpty());
+        assertEquals(Optional.of("bob"), verifier.verify(bob));
+        verifier.purgeExpired();
+        assertTrue(verifier.verify(alice).isEmpty());
+    }
+
+    @Test
+    void testInvalidTokensAreRejectedAndNotCached() {
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtTokenUtil, revocationList(), 100);
+        String token = jwtTokenUtil.generateToken("alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertTrue(verifier.verify(tampered).isEmpty());
+        assertTrue(verifier.verify("not-a-jwt").isEmpty());
+        assertTrue(verifier.verify(jwtTokenUtil(-60_000L).generateToken("alice")).isEmpty());
+        assertEquals(0, verifier.cachedTokens());
+    }
+
+    @Test
+    void testCachedTokenStopsVerifyingAtExpiry() throws InterruptedException {
+        JwtTokenUtil shortLived = jwtTokenUtil(1_000L);
+        JwtTokenVerifier verifier = new JwtTokenVerifier(shortLived, revocationList(), 100);
+        String token = shortLived.generateToken("alice");
+        assertEquals(Optional.of("alice"), verifier.verify(token));
+
+        Thread.sleep(1_100L);
+
+        assertTrue(verifier.verify(token).isEmpty());
+        assertEquals(0, verifier.cachedTokens());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtTokenUtil, revocationList(), 2);
+        for (String user : new String[]{"alice", "bob", "carol"}) {
+            assertEquals(Optional.of(user), verifier.verify(jwtTokenUtil.generateToken(user)));
+        }
+        assertEquals(2, verifier.cachedTokens());
+    }
+
+    @Test
+    void testFullCacheEvictsEldestToken() {
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtTokenUtil, revocationList(), 2);
+        String alice = jwtTokenUtil.generateToken("alice");
+        String bob = jwtTokenUtil.generateToken("bob");
+        String carol = jwtTokenUtil.generateToken("carol");
+        verifier.verify(alice);
+        verifier.verify(bob);
+        // 缓存命中不会重复进入淘汰队列
+        verifier.verify(bob);
+
+        verifier.verify(carol);
+        verifier.verify(bob);
+        verifier.verify(carol);
+        verify(jwtTokenUtil, times(3)).parseClaims(anyString());
+
+        // alice 已被淘汰，需要重新解析
+        verifier.verify(alice);
+        verify(jwtTokenUtil, times(4)).parseClaims(anyString());
+        assertEquals(2, verifier.cachedTokens());
+    }
+
+    @Test
+    void testRoleClaimBecomesAuthority() throws Exception {
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtTokenUtil, revocationList(), 100);
+        JwtTokenFilter filter = new JwtTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtTokenVerifier", verifier);
+        String ops = jwtTokenUtil.generateToken("olivia", "OPS");
+
+        runFilter(filter, ops);
+        // 第二次从缓存返回，角色同样保留
+        runFilter(filter, ops);
+        assertEquals(List.of("ROLE_OPS"), SecurityContextHolder.getContext().getAuthentication().getAuthorities()
+                .stream().map(GrantedAuthority::getAuthority).toList());
+
+        runFilter(filter, jwtTokenUtil.generateToken("alice"));
+        assertTrue(SecurityContextHolder.getContext().getAuthentication().getAuthorities().isEmpty());
+        assertEquals(Optional.of(new JwtTokenVerifier.VerifiedUser("olivia", "OPS")), verifier.authenticate(ops));
+    }
+
+    @Test
+    void testFilterCostPerRequest() throws Exception {
+        JwtTokenUtil util = jwtTokenUtil(3_600_000L);
+        JwtTokenVerifier verifier = new JwtTokenVerifier(util, revocationList(), 10_000);
+        JwtTokenFilter filter = new JwtTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtTokenVerifier", verifier);
+        String token = util.generateToken("alice");
+        int iterations = 20_000;
+
+        // 改动前：validateToken 与 getUsernameFromToken 各验签解析一次
+        for (int i = 0; i < iterations; i++) {
+            twoParseFilter(util, token);
+        }
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            twoParseFilter(util, token);
+        }
+        long twoParseNanos = (System.nanoTime() - startNanos) / iterations;
+
+        for (int i = 0; i < iterations; i++) {
+            util.parseClaims(token);
+        }
+        startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            util.parseClaims(token);
+        }
+        long singleParseNanos = (System.nanoTime() - startNanos) / iterations;
+
+        for (int i = 0; i < iterations; i++) {
+            runFilter(filter, token);
+        }
+        startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            runFilter(filter, token);
+        }
+        long cachedNanos = (System.nanoTime() - startNanos) / iterations;
+
+        log.info("JWT过滤器每请求耗时: 两次解析{}ns, 单次解析{}ns, 缓存命中(含过滤器){}ns",
+                twoParseNanos, singleParseNanos, cachedNanos);
+        assertEquals("alice", SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        assertTrue(cachedNanos < twoParseNanos);
+    }
+
+    private static void twoParseFilter(JwtTokenUtil util, String token) {
+        if (util.validateToken(token)) {
+            String username = util.getUsernameFromToken(token);
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, new ArrayList<>()));
+        }
+    }
+
+    private static void runFilter(JwtTokenFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/loans");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    private static JwtTokenUtil jwtTokenUtil(long expirationMillis) {
+        JwtTokenUtil util = new JwtTokenUtil();
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "expiration", expirationMillis);
+        util.init();
+        return util;
+    }
+
+    private static TokenRevocationList revocationList() {
+        return new TokenRevocationList(900_000L, 10_000, "");
+    }
+}
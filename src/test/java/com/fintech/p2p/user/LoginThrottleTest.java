@@ -0,0 +1,224 @@
+package com.fintech.p2p.user;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.LoginThrottleProperties;
+import com.fintech.p2p.repository.LoginLockoutRepository;
+import com.fintech.p2p.security.ClientIpResolver;
+import com.fintech.p2p.security.LoginThrottle;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 登录限流：按用户名和IP的滑动窗口计数、内存上限、锁定条目不被淘汰、跨节点共享锁定、代理后的客户端IP
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:loginthrottle;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LoginThrottleTest {
+    private static final int THREADS = 4;
+    private static final int USERNAMES = 2_000_000;
+
+    @Autowired
+    private LoginLockoutRepository loginLockoutRepository;
+
+    private LoginThrottleProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        loginLockoutRepository.deleteAll();
+        properties = new LoginThrottleProperties();
+    }
+
+    @Test
+    void testUsernameIsLockedAfterMaxFailures() {
+        LoginThrottle throttle = new LoginThrottle(properties, loginLockoutRepository);
+        for (int i = 0; i < 4; i++) {
+            throttle.recordFailure("alice", "10.0.0.1");
+        }
+        assertFalse(throttle.isLocked("alice", "10.0.0.1"));
+
+        // 登录成功清除用户名计数
+        throttle.recordSuccess("alice");
+        for (int i = 0; i < 4; i++) {
+            throttle.recordFailure("alice", "10.0.0.1");
+        }
+        assertFalse(throttle.isLocked("alice", "10.0.0.1"));
+
+        throttle.recordFailure("alice", "10.0.0.1");
+        assertTrue(throttle.isLocked("alice", "10.0.0.2"));
+        assertFalse(throttle.isLocked("bob", "10.0.0.1"));
+        assertEquals(0, loginLockoutRepository.count());
+    }
+
+    @Test
+    void testIpIsLockedAcrossUsernames() {
+        properties.setMaxIpFailures(10);
+        LoginThrottle throttle = new LoginThrottle(properties, loginLockoutRepository);
+        for (int i = 0; i < 10; i++) {
+            throttle.recordFailure("user" + i, "10.0.0.9");
+        }
+
+        assertTrue(throttle.isLocked("someone-else", "10.0.0.9"));
+        assertFalse(throttle.isLocked("someone-else", "10.0.0.10"));
+        assertFalse(throttle.isLocked("user1", null));
+    }
+
+    @Test
+    void testFailuresAndLockoutsExpire() throws InterruptedException {
+        properties.setWindow(Duration.ofMillis(200));
+        properties.setLockout(Duration.ofMillis(200));
+        LoginThrottle throttle = new LoginThrottle(properties, loginLockoutRepository);
+        for (int i = 0; i < 4; i++) {
+            throttle.recordFailure("alice", null);
+        }
+        Thread.sleep(450);
+
+        // 之前的失败已滑出窗口
+        for (int i = 0; i < 4; i++) {
+            throttle.recordFailure("alice", null);
+        }
+        assertFalse(throttle.isLocked("alice", null));
+        throttle.recordFailure("alice", null);
+        assertTrue(throttle.isLocked("alice", null));
+
+        Thread.sleep(450);
+        assertFalse(throttle.isLocked("alice", null));
+        throttle.evictExpired();
+        assertEquals(0, throttle.trackedUsers());
+    }
+
+    @Test
+    void testSharedLockoutHoldsOnOtherNodes() {
+        properties.setSharedLockouts(true);
+        LoginThrottle node1 = new LoginThrottle(properties, loginLockoutRepository);
+        LoginThrottle node2 = new LoginThrottle(properties, loginLockoutRepository);
+        for (int i = 0; i < 5; i++) {
+            node1.recordFailure("alice", "10.0.0.1");
+        }
+
+        assertTrue(node2.isLocked("alice", "10.0.0.7"));
+        assertFalse(node2.isLocked("bob", "10.0.0.7"));
+        assertEquals(1, loginLockoutRepository.count());
+        // 不保存原始用户名
+        assertTrue(loginLockoutRepository.findAll().get(0).getLockKey().startsWith("user:"));
+        assertFalse(loginLockoutRepository.findAll().get(0).getLockKey().contains("alice"));
+
+        // 另一节点再次锁定只延长已有记录
+        for (int i = 0; i < 5; i++) {
+            node2.recordFailure("alice", "10.0.0.1");
+        }
+        assertEquals(1, loginLockoutRepository.count());
+    }
+
+    @Test
+    void testLockedEntriesSurviveEviction() {
+        properties.setMaxUserFailures(1);
+        properties.setMaxEntries(10);
+        LoginThrottle throttle = new LoginThrottle(properties, loginLockoutRepository);
+        for (int i = 0; i < 10; i++) {
+            throttle.recordFailure("locked-" + i, null);
+        }
+
+        // 计数器已满且全部锁定：新用户名不再计数，已有锁定保持
+        for (int i = 0; i < 100; i++) {
+            throttle.recordFailure("stuffing-" + i, null);
+        }
+        assertEquals(10, throttle.trackedUsers());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(throttle.isLocked("locked-" + i, null));
+        }
+        assertFalse(throttle.isLocked("stuffing-0", null));
+    }
+
+    @Test
+    void testClientIpIsTakenFromForwardedHeaderOnlyBehindTrustedProxy() {
+        properties.setTrustedProxies(List.of("10.0.0.1", "10.0.0.2"));
+        ClientIpResolver resolver = new ClientIpResolver(properties);
+
+        MockHttpServletRequest direct = new MockHttpServletRequest();
+        direct.setRemoteAddr("203.0.113.5");
+        direct.addHeader("X-Forwarded-For", "198.51.100.1");
+        assertEquals("203.0.113.5", resolver.resolve(direct));
+
+        // 客户端自己填写的左侧地址被忽略，取代理链中最后一个不受信任的地址
+        MockHttpServletRequest proxied = new MockHttpServletRequest();
+        proxied.setRemoteAddr("10.0.0.1");
+        proxied.addHeader("X-Forwarded-For", "198.51.100.1, 203.0.113.7, 10.0.0.2");
+        assertEquals("203.0.113.7", resolver.resolve(proxied));
+
+        MockHttpServletRequest noHeader = new MockHttpServletRequest();
+        noHeader.setRemoteAddr("10.0.0.1");
+        assertEquals("10.0.0.1", resolver.resolve(noHeader));
+        assertNull(resolver.resolve());
+    }
+
+    @Test
+    void testMillionsOfDistinctUsernamesKeepMemoryFlat() throws Exception {
+        properties.setMaxEntries(100_000);
+        LoginThrottle throttle = new LoginThrottle(properties, loginLockoutRepository);
+        int rounds = 4;
+        long[] usedBytes = new long[rounds];
+
+        // 分四轮写入，每轮由多个线程并发写入不同的用户名和IP，每轮结束记录一次堆占用
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int perTask = USERNAMES / rounds / THREADS;
+        long startNanos = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int first = (round * THREADS + t) * perTask;
+                futures.add(pool.submit(() -> {
+                    for (int n = first; n < first + perTask; n++) {
+                        throttle.recordFailure("stuffing-" + n, "10." + (n >>> 16 & 255) + "." + (n >>> 8 & 255) + "." + (n & 255));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+            usedBytes[round] = usedHeap();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        pool.shutdown();
+
+        log.info("{}个不同用户名的失败登录: 耗时{}ms, {}次/秒, 内存计数器 用户名{} 条/IP{} 条, 堆占用 {}MB -> {}MB",
+                USERNAMES, elapsedMillis, USERNAMES * 1000L / elapsedMillis, throttle.trackedUsers(), throttle.trackedIps(),
+                usedBytes[0] >> 20, usedBytes[rounds - 1] >> 20);
+
+        assertTrue(throttle.trackedUsers() <= properties.getMaxEntries() + THREADS);
+        assertTrue(throttle.trackedIps() <= properties.getMaxEntries() + THREADS);
+        assertTrue(usedBytes[rounds - 1] - usedBytes[0] < 64L << 20, "写入更多用户名后堆占用持续增长");
+        assertFalse(throttle.isLocked("stuffing-1", null));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,191 @@
+package com.fintech.p2p.user;
+
+import com.fintech.p2p.config.JpaConfig;
+import com.fintech.p2p.config.RefreshTokenProperties;
+import com.fintech.p2p.model.RefreshToken;
+import com.fintech.p2p.model.User;
+import com.fintech.p2p.repository.RefreshTokenRepository;
+import com.fintech.p2p.service.RefreshTokenService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 刷新令牌：摘要存储、轮换、宽限期内的重复提交、盗用检测与按用户吊销
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refreshtoken;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, RefreshTokenService.class, RefreshTokenProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class RefreshTokenServiceTest {
+    private static final int THREADS = 32;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenProperties refreshTokenProperties;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenRepository.deleteAll();
+        refreshTokenProperties.setReuseGrace(Duration.ofSeconds(10));
+        refreshTokenProperties.setTtl(Duration.ofDays(30));
+    }
+
+    @Test
+    void testRotationIssuesNewTokenAndStoresOnlyHashes() {
+        String first = refreshTokenService.issue(user(7L, "alice"));
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(first).orElseThrow();
+        assertEquals("alice", rotation.username());
+        assertNotEquals(first, rotation.refreshToken());
+        // 宽限期内重复提交旧令牌得到同一个结果
+        assertEquals(rotation, refreshTokenService.rotate(first).orElseThrow());
+
+        RefreshTokenService.Rotation second = refreshTokenService.rotate(rotation.refreshToken()).orElseThrow();
+        assertNotEquals(rotation.refreshToken(), second.refreshToken());
+        assertTrue(refreshTokenService.rotate("unknown-token").isEmpty());
+
+        List<RefreshToken> stored = refreshTokenRepository.findAll();
+        assertEquals(3, stored.size());
+        assertEquals(1, stored.stream().map(RefreshToken::getFamilyId).distinct().count());
+        for (RefreshToken token : stored) {
+            assertNotEquals(first, token.getTokenHash());
+            assertNotEquals(rotation.refreshToken(), token.getTokenHash());
+        }
+    }
+
+    @Test
+    void testReuseAfterGraceRevokesFamily() {
+        refreshTokenProperties.setReuseGrace(Duration.ZERO);
+        String first = refreshTokenService.issue(user(7L, "alice"));
+        String other = refreshTokenService.issue(user(7L, "alice"));
+        String second = refreshTokenService.rotate(first).orElseThrow().refreshToken();
+
+        // 旧令牌被重放：同一 family 的令牌全部吊销，其他登录不受影响
+        assertTrue(refreshTokenService.rotate(first).isEmpty());
+        assertTrue(refreshTokenService.rotate(second).isEmpty());
+        assertTrue(refreshTokenService.rotate(other).isPresent());
+    }
+
+    @Test
+    void testDuplicateOnAnotherNodeWithinGraceIsRejectedWithoutRevoking() {
+        RefreshTokenService otherNode = new RefreshTokenService(refreshTokenRepository, refreshTokenProperties);
+        String first = refreshTokenService.issue(user(7L, "alice"));
+        String second = refreshTokenService.rotate(first).orElseThrow().refreshToken();
+
+        assertTrue(otherNode.rotate(first).isEmpty());
+        assertTrue(otherNode.rotate(second).isPresent());
+    }
+
+    @Test
+    void testRevocationOnAnotherNodeVoidsCachedRotation() {
+        RefreshTokenService otherNode = new RefreshTokenService(refreshTokenRepository, refreshTokenProperties);
+        String first = refreshTokenService.issue(user(7L, "alice"));
+        String second = refreshTokenService.rotate(first).orElseThrow().refreshToken();
+
+        // 本节点缓存了 first 的轮换结果，吊销发生在另一节点
+        otherNode.revokeAll(7L);
+
+        assertTrue(refreshTokenService.rotate(first).isEmpty());
+        assertTrue(refreshTokenService.rotate(second).isEmpty());
+    }
+
+    @Test
+    void testLogoutRevokesOnlyThatFamily() {
+        String phone = refreshTokenService.issue(user(7L, "alice"));
+        String laptop = refreshTokenService.issue(user(7L, "alice"));
+        String rotated = refreshTokenService.rotate(phone).orElseThrow().refreshToken();
+
+        // 其他用户提交的令牌不吊销
+        assertEquals(0, refreshTokenService.revoke(rotated, "bob"));
+        assertEquals(2, refreshTokenService.revoke(rotated, "alice"));
+
+        assertTrue(refreshTokenService.rotate(phone).isEmpty());
+        assertTrue(refreshTokenService.rotate(rotated).isEmpty());
+        assertTrue(refreshTokenService.rotate(laptop).isPresent());
+    }
+
+    @Test
+    void testRevokeAllAndExpiry() {
+        String phone = refreshTokenService.issue(user(7L, "alice"));
+        String laptop = refreshTokenService.issue(user(7L, "alice"));
+        String bob = refreshTokenService.issue(user(8L, "bob"));
+
+        assertEquals(2, refreshTokenService.revokeAll(7L));
+        assertTrue(refreshTokenService.rotate(phone).isEmpty());
+        assertTrue(refreshTokenService.rotate(laptop).isEmpty());
+        assertTrue(refreshTokenService.rotate(bob).isPresent());
+
+        refreshTokenProperties.setTtl(Duration.ofSeconds(-1));
+        String expired = refreshTokenService.issue(user(8L, "bob"));
+        assertTrue(refreshTokenService.rotate(expired).isEmpty());
+        long stored = refreshTokenRepository.count();
+        refreshTokenService.evictExpired();
+        assertEquals(stored - 1, refreshTokenRepository.count());
+    }
+
+    @Test
+    void testReconnectStormRotatesOnce() throws Exception {
+        String token = refreshTokenService.issue(user(7L, "alice"));
+        int requests = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<RefreshTokenService.Rotation>>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return refreshTokenService.rotate(token);
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Set<String> issued = new HashSet<>();
+        for (Future<Optional<RefreshTokenService.Rotation>> future : futures) {
+            future.get(60, TimeUnit.SECONDS).ifPresent(rotation -> issued.add(rotation.refreshToken()));
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        pool.shutdown();
+
+        log.info("同一刷新令牌并发提交{}次: 耗时{}ms, {}次/秒, 签发新令牌{}个",
+                requests, elapsedMillis, requests * 1000L / elapsedMillis, issued.size());
+        assertEquals(1, issued.size());
+        assertEquals(2, refreshTokenRepository.count());
+        assertTrue(refreshTokenService.rotate(issued.iterator().next()).isPresent());
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}
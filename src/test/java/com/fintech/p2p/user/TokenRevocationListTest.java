@@ -0,0 +1,147 @@
+package com.fintech.p2p.user;
+
+import com.fintech.p2p.security.JwtTokenUtil;
+import com.fintech.p2p.security.JwtTokenVerifier;
+import com.fintech.p2p.security.TokenRevocationList;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JWT 吊销列表：按 jti 吊销、按预计数量分配布隆过滤器、过期分桶清理、快照恢复
+ */
+@Slf4j
+public class TokenRevocationListTest {
+    private static final String SECRET = "test-secret-key-for-jwt-verification-0123456789";
+    private static final long HOUR = 3_600_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRevokeAndLookup() {
+        TokenRevocationList list = new TokenRevocationList(900_000L, 10_000, "");
+        long expiresAt = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 1_000; i++) {
+            list.revoke("revoked-" + i, expiresAt);
+        }
+
+        assertTrue(list.isRevoked("revoked-0", expiresAt));
+        assertTrue(list.isRevoked("revoked-999", expiresAt));
+        // 同一个桶里未吊销的令牌
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(list.isRevoked("live-" + i, expiresAt));
+        }
+        // 已过期的令牌不再记录
+        list.revoke("expired", System.currentTimeMillis() - 1);
+        assertFalse(list.isRevoked("expired", System.currentTimeMillis() - 1));
+        assertEquals(1_000, list.size());
+    }
+
+    @Test
+    void testBloomFilterIsSizedFromExpectedCount() {
+        assertEquals(131_072, ReflectionTestUtils.getField(new TokenRevocationList(900_000L, 10_000, ""), "bloomBits"));
+        assertEquals(1_024, ReflectionTestUtils.getField(new TokenRevocationList(50L, 100, ""), "bloomBits"));
+        assertEquals(64, ReflectionTestUtils.getField(new TokenRevocationList(50L, 0, ""), "bloomBits"));
+
+        // 超出预计数量时仍然准确
+        TokenRevocationList small = new TokenRevocationList(900_000L, 10, "");
+        long expiresAt = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 1_000; i++) {
+            small.revoke("revoked-" + i, expiresAt);
+        }
+        assertTrue(small.isRevoked("revoked-500", expiresAt));
+        assertFalse(small.isRevoked("live-500", expiresAt));
+    }
+
+    @Test
+    void testExpiredBucketsAreDropped() throws Exception {
+        TokenRevocationList list = new TokenRevocationList(50L, 100, "");
+        long shortLived = System.currentTimeMillis() + 60;
+        long longLived = System.currentTimeMillis() + HOUR;
+        list.revoke("short", shortLived);
+        list.revoke("long", longLived);
+        assertEquals(2, list.size());
+
+        Thread.sleep(200);
+        list.purgeExpired();
+
+        assertEquals(1, list.size());
+        assertFalse(list.isRevoked("short", shortLived));
+        assertTrue(list.isRevoked("long", longLived));
+    }
+
+    @Test
+    void testRevocationsSurviveRestartThroughSnapshot() {
+        String snapshot = tempDir.resolve("revocations.snapshot").toString();
+        JwtTokenUtil util = jwtTokenUtil();
+        String alice = util.generateToken("alice");
+        String bob = util.generateToken("bob");
+        Claims claims = util.parseClaims(alice).orElseThrow();
+        assertNotNull(claims.getId());
+        assertNotEquals(claims.getId(), util.parseClaims(bob).orElseThrow().getId());
+
+        TokenRevocationList list = new TokenRevocationList(900_000L, 10_000, snapshot);
+        list.loadSnapshot();
+        JwtTokenVerifier verifier = new JwtTokenVerifier(util, list, 100);
+        assertTrue(verifier.verify(alice).isPresent());
+        verifier.revoke(alice);
+        assertTrue(verifier.verify(alice).isEmpty());
+        list.writeSnapshot();
+        assertTrue(Files.exists(Path.of(snapshot)));
+
+        // 重启后从快照恢复
+        TokenRevocationList restarted = new TokenRevocationList(900_000L, 10_000, snapshot);
+        restarted.loadSnapshot();
+        JwtTokenVerifier restartedVerifier = new JwtTokenVerifier(util, restarted, 100);
+        assertEquals(1, restarted.size());
+        assertTrue(restartedVerifier.verify(alice).isEmpty());
+        assertTrue(restartedVerifier.verify(bob).isPresent());
+    }
+
+    @Test
+    void testLookupCostWithManyRevocations() {
+        TokenRevocationList list = new TokenRevocationList(900_000L, 10_000, "");
+        long now = System.currentTimeMillis();
+        int revocations = 100_000;
+        // 一天内的注销按过期时间均匀分布
+        for (int i = 0; i < revocations; i++) {
+            list.revoke(UUID.randomUUID().toString(), now + HOUR + (long) i * 86_400_000L / revocations);
+        }
+        int lookups = 1_000_000;
+        String[] ids = new String[1_024];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID().toString();
+        }
+
+        int hits = 0;
+        for (int i = 0; i < lookups; i++) {
+            hits += list.isRevoked(ids[i & 1_023], now + HOUR + (i % 86_400) * 1_000L) ? 1 : 0;
+        }
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            hits += list.isRevoked(ids[i & 1_023], now + HOUR + (i % 86_400) * 1_000L) ? 1 : 0;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        log.info("吊销列表{}条记录: 未吊销令牌每次检查{}ns", list.size(), elapsedNanos / lookups);
+        assertEquals(revocations, list.size());
+        assertEquals(0, hits);
+    }
+
+    private static JwtTokenUtil jwtTokenUtil() {
+        JwtTokenUtil util = new JwtTokenUtil();
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "expiration", HOUR);
+        util.init();
+        return util;
+    }
+}
@@ -3,6 +3,7 @@ package com.fintech.p2p.user;
 import com.fintech.p2p.dto.UserDto;
 import com.fintech.p2p.model.User;
 import com.fintech.p2p.repository.UserRepository;
+import com.fintech.p2p.security.CredentialHasher;
 import com.fintech.p2p.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,7 +12,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.util.Optional;
 
@@ -26,7 +26,7 @@ public class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private BCryptPasswordEncoder passwordEncoder;
+    private CredentialHasher credentialHasher;
 
     @InjectMocks
     private UserService userService;
@@ -53,7 +53,7 @@ public class UserServiceTest {
 
     @Test
     void testRegisterUser() {
-        when(passwordEncoder.encode(user.getPassword())).thenReturn("encoded_password");
+        when(credentialHasher.hash(user.getPassword())).thenReturn("encoded_password");
         when(userRepository.save(any(User.class))).thenReturn(user);
 
         User registeredUser = userService.register(userDto);
@@ -62,7 +62,7 @@ public class UserServiceTest {
         assertEquals("testuser", registeredUser.getUsername());
         assertEquals("encoded_password", registeredUser.getPassword());
         verify(userRepository, times(1)).save(any(User.class));
-        verify(passwordEncoder, times(1)).encode(userDto.getPassword());
+        verify(credentialHasher, times(1)).hash(userDto.getPassword());
     }
 
     @Test